@@ -0,0 +1,73 @@
+package eu.cvmatch.backend.config;
+
+import eu.cvmatch.backend.service.GeminiMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.Method;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One shared HTTP transport for every Gemini call: a single HTTP/2 client (so
+ * connections and TLS sessions are reused) with a connect timeout, running on
+ * virtual threads when the JVM has them and on a bounded pool otherwise.
+ * Per-request read timeouts are set by the client from {@link GeminiProperties}.
+ */
+@Configuration
+public class GeminiConfig {
+
+    @Bean
+    public GeminiProperties geminiProperties() {
+        return GeminiProperties.fromEnv();
+    }
+
+    /** Gemini meters, published through Actuator at {@code /actuator/metrics}. */
+    @Bean
+    public GeminiMetrics geminiMetrics(MeterRegistry registry) {
+        return new GeminiMetrics(registry);
+    }
+
+    /**
+     * The executor lives inside the client (see {@link HttpClient#executor()}) rather than
+     * as its own bean, so it doesn't displace Spring's default task executor.
+     */
+    @Bean
+    public HttpClient geminiHttpClient(GeminiProperties props) {
+        return newHttpClient(props, newExecutor(props));
+    }
+
+    /**
+     * Virtual-thread-per-task executor on Java 21+ (looked up reflectively, since we
+     * compile for 17), otherwise a fixed pool of {@code asyncThreads} daemon threads.
+     */
+    public static ExecutorService newExecutor(GeminiProperties props) {
+        if (props.isVirtualThreads()) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Pre-21 JVM: fall through to the bounded pool
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, props.getAsyncThreads()), r -> {
+            Thread t = new Thread(r, "gemini-async-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static HttpClient newHttpClient(GeminiProperties props, ExecutorService executor) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(props.getConnectTimeoutMs()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+    }
+}
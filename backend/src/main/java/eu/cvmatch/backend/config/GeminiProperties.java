@@ -0,0 +1,316 @@
+package eu.cvmatch.backend.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings for the Gemini client, read from .env (or the process environment).
+ */
+public class GeminiProperties {
+    /** Endpoint names that accept their own retry settings. */
+    public static final String[] ENDPOINTS = {"generate", "embed", "listModels"};
+
+    /** {@code GEMINI_SCREEN_MODEL_ID} value that screens with keyword and embedding matching instead of a model. */
+    public static final String HEURISTIC_SCREEN = "heuristic";
+
+    private String apiKey;
+    private String baseUrl = "https://generativelanguage.googleapis.com";
+    private String modelId = "gemini-2.0-flash";
+    private String embedModelId = "embedding-001";
+    private int asyncThreads = 8;
+    private boolean virtualThreads = true;
+    private long connectTimeoutMs = 10_000;
+    private long requestTimeoutMs = 60_000;
+    private int embedBatchSize = 100;
+    private int embedCacheSize = 10000;
+    private String embedCacheDir = "embeddingCache";
+    private int responseCacheSize = 1000;
+    private long responseCacheTtlSeconds = 3600;
+    private int contextCacheSize = 100;
+    private int contextCacheMinUses = 2;
+    private int contextCacheMinTokens = 4096;
+    private long contextCacheTtlSeconds = 600;
+    private int requestsPerMinute = 60;
+    private int tokensPerMinute = 1_000_000;
+    private int embedRequestsPerMinute = 1500;
+    private int maxConcurrency = 8;
+    private long queueTimeoutMs = 10_000;
+    private int interactiveReservePercent = 25;
+    private long bulkQueueTimeoutMs = 120_000;
+    private int breakerFailureThreshold = 5;
+    private int breakerThrottleThreshold = 3;
+    private long breakerOpenMs = 30_000;
+    private int promptTokenBudget = 8000;
+    private int scoreBatchSize = 10;
+    private long scoreBatchWindowMs = 50;
+    private String screenModelId = "gemini-2.0-flash-lite";
+    private int cascadeTopK = 5;
+    private int cascadeBorderline = 5;
+    private int hedgePercentile = 0;
+    private int hedgeMax = 1;
+    private long hedgeMinDelayMs = 200;
+    private Retry retry = new Retry();
+    private final Map<String, Retry> endpointRetries = new HashMap<>();
+
+    public GeminiProperties() {}
+
+    public GeminiProperties(String apiKey, String modelId, String embedModelId) {
+        this.apiKey = apiKey;
+        if (modelId != null && !modelId.isBlank()) this.modelId = modelId;
+        if (embedModelId != null && !embedModelId.isBlank()) this.embedModelId = embedModelId;
+    }
+
+    /**
+     * Reads every GEMINI_* setting from .env, falling back to the defaults above.
+     */
+    public static GeminiProperties fromEnv() {
+        Dotenv dotenv = Dotenv.configure()
+                .ignoreIfMissing()
+                .ignoreIfMalformed()
+                .load();
+        GeminiProperties props = new GeminiProperties(
+                dotenv.get("GEMINI_API_KEY"),
+                dotenv.get("GEMINI_MODEL_ID", "gemini-2.0-flash"),
+                dotenv.get("GEMINI_EMBED_MODEL_ID", "embedding-001")
+        );
+        props.setBaseUrl(dotenv.get("GEMINI_BASE_URL", props.getBaseUrl()));
+        props.setAsyncThreads(intValue(dotenv, "GEMINI_ASYNC_THREADS", props.getAsyncThreads()));
+        props.setVirtualThreads(Boolean.parseBoolean(dotenv.get("GEMINI_VIRTUAL_THREADS", String.valueOf(props.isVirtualThreads()))));
+        props.setConnectTimeoutMs(intValue(dotenv, "GEMINI_CONNECT_TIMEOUT_MS", (int) props.getConnectTimeoutMs()));
+        props.setRequestTimeoutMs(intValue(dotenv, "GEMINI_REQUEST_TIMEOUT_MS", (int) props.getRequestTimeoutMs()));
+        props.setEmbedBatchSize(intValue(dotenv, "GEMINI_EMBED_BATCH_SIZE", props.getEmbedBatchSize()));
+        props.setEmbedCacheSize(intValue(dotenv, "GEMINI_EMBED_CACHE_SIZE", props.getEmbedCacheSize()));
+        props.setEmbedCacheDir(dotenv.get("GEMINI_EMBED_CACHE_DIR", props.getEmbedCacheDir()));
+        props.setResponseCacheSize(intValue(dotenv, "GEMINI_RESPONSE_CACHE_SIZE", props.getResponseCacheSize()));
+        props.setResponseCacheTtlSeconds(intValue(dotenv, "GEMINI_RESPONSE_CACHE_TTL_SECONDS", (int) props.getResponseCacheTtlSeconds()));
+        props.setContextCacheSize(intValue(dotenv, "GEMINI_CONTEXT_CACHE_SIZE", props.getContextCacheSize()));
+        props.setContextCacheMinUses(intValue(dotenv, "GEMINI_CONTEXT_CACHE_MIN_USES", props.getContextCacheMinUses()));
+        props.setContextCacheMinTokens(intValue(dotenv, "GEMINI_CONTEXT_CACHE_MIN_TOKENS", props.getContextCacheMinTokens()));
+        props.setContextCacheTtlSeconds(intValue(dotenv, "GEMINI_CONTEXT_CACHE_TTL_SECONDS", (int) props.getContextCacheTtlSeconds()));
+        props.setRequestsPerMinute(intValue(dotenv, "GEMINI_RPM", props.getRequestsPerMinute()));
+        props.setTokensPerMinute(intValue(dotenv, "GEMINI_TPM", props.getTokensPerMinute()));
+        props.setEmbedRequestsPerMinute(intValue(dotenv, "GEMINI_EMBED_RPM", props.getEmbedRequestsPerMinute()));
+        props.setMaxConcurrency(intValue(dotenv, "GEMINI_MAX_CONCURRENCY", props.getMaxConcurrency()));
+        props.setQueueTimeoutMs(intValue(dotenv, "GEMINI_QUEUE_TIMEOUT_MS", (int) props.getQueueTimeoutMs()));
+        props.setInteractiveReservePercent(intValue(dotenv, "GEMINI_INTERACTIVE_RESERVE_PERCENT", props.getInteractiveReservePercent()));
+        props.setBulkQueueTimeoutMs(intValue(dotenv, "GEMINI_BULK_QUEUE_TIMEOUT_MS", (int) props.getBulkQueueTimeoutMs()));
+        props.setBreakerFailureThreshold(intValue(dotenv, "GEMINI_BREAKER_FAILURE_THRESHOLD", props.getBreakerFailureThreshold()));
+        props.setBreakerThrottleThreshold(intValue(dotenv, "GEMINI_BREAKER_THROTTLE_THRESHOLD", props.getBreakerThrottleThreshold()));
+        props.setBreakerOpenMs(intValue(dotenv, "GEMINI_BREAKER_OPEN_MS", (int) props.getBreakerOpenMs()));
+        props.setPromptTokenBudget(intValue(dotenv, "GEMINI_PROMPT_TOKEN_BUDGET", props.getPromptTokenBudget()));
+        props.setScoreBatchSize(intValue(dotenv, "GEMINI_SCORE_BATCH_SIZE", props.getScoreBatchSize()));
+        props.setScoreBatchWindowMs(intValue(dotenv, "GEMINI_SCORE_BATCH_WINDOW_MS", (int) props.getScoreBatchWindowMs()));
+        props.setScreenModelId(dotenv.get("GEMINI_SCREEN_MODEL_ID", props.getScreenModelId()));
+        props.setCascadeTopK(intValue(dotenv, "GEMINI_CASCADE_TOP_K", props.getCascadeTopK()));
+        props.setCascadeBorderline(intValue(dotenv, "GEMINI_CASCADE_BORDERLINE", props.getCascadeBorderline()));
+        props.setHedgePercentile(intValue(dotenv, "GEMINI_HEDGE_PERCENTILE", props.getHedgePercentile()));
+        props.setHedgeMax(intValue(dotenv, "GEMINI_HEDGE_MAX", props.getHedgeMax()));
+        props.setHedgeMinDelayMs(intValue(dotenv, "GEMINI_HEDGE_MIN_DELAY_MS", (int) props.getHedgeMinDelayMs()));
+
+        // GEMINI_RETRY_* sets the defaults, GEMINI_RETRY_<ENDPOINT>_* overrides one endpoint
+        props.setRetry(readRetry(dotenv, "GEMINI_RETRY_", props.getRetry()));
+        for (String endpoint : ENDPOINTS) {
+            String prefix = "GEMINI_RETRY_" + endpoint.toUpperCase(Locale.ROOT) + "_";
+            props.setRetry(endpoint, readRetry(dotenv, prefix, props.getRetry()));
+        }
+        return props;
+    }
+
+    private static Retry readRetry(Dotenv dotenv, String prefix, Retry defaults) {
+        Retry retry = new Retry();
+        retry.setMaxAttempts(intValue(dotenv, prefix + "MAX_ATTEMPTS", defaults.getMaxAttempts()));
+        retry.setBaseDelayMs(intValue(dotenv, prefix + "BASE_DELAY_MS", (int) defaults.getBaseDelayMs()));
+        retry.setMaxDelayMs(intValue(dotenv, prefix + "MAX_DELAY_MS", (int) defaults.getMaxDelayMs()));
+        retry.setMaxElapsedMs(intValue(dotenv, prefix + "MAX_ELAPSED_MS", (int) defaults.getMaxElapsedMs()));
+        return retry;
+    }
+
+    static int intValue(Dotenv dotenv, String key, int defaultValue) {
+        String raw = dotenv.get(key);
+        if (raw == null || raw.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(raw.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public String getApiKey() { return apiKey; }
+    public void setApiKey(String apiKey) { this.apiKey = apiKey; }
+
+    /** Scheme and host of the Gemini API; point it at a local stub for offline tests and load runs. */
+    public String getBaseUrl() { return baseUrl; }
+    public void setBaseUrl(String baseUrl) { this.baseUrl = baseUrl; }
+
+    public String getModelId() { return modelId; }
+    public void setModelId(String modelId) { this.modelId = modelId; }
+
+    public String getEmbedModelId() { return embedModelId; }
+    public void setEmbedModelId(String embedModelId) { this.embedModelId = embedModelId; }
+
+    public int getAsyncThreads() { return asyncThreads; }
+    public void setAsyncThreads(int asyncThreads) { this.asyncThreads = asyncThreads; }
+
+    /** Use virtual threads for Gemini I/O when the JVM supports them (Java 21+). */
+    public boolean isVirtualThreads() { return virtualThreads; }
+    public void setVirtualThreads(boolean virtualThreads) { this.virtualThreads = virtualThreads; }
+
+    public long getConnectTimeoutMs() { return connectTimeoutMs; }
+    public void setConnectTimeoutMs(long connectTimeoutMs) { this.connectTimeoutMs = connectTimeoutMs; }
+
+    /** Per-attempt limit for receiving a response; a timed-out attempt is retried like an I/O error. */
+    public long getRequestTimeoutMs() { return requestTimeoutMs; }
+    public void setRequestTimeoutMs(long requestTimeoutMs) { this.requestTimeoutMs = requestTimeoutMs; }
+
+    /** Max texts per batchEmbedContents call (the API accepts up to 100). */
+    public int getEmbedBatchSize() { return embedBatchSize; }
+    public void setEmbedBatchSize(int embedBatchSize) { this.embedBatchSize = embedBatchSize; }
+
+    /** Number of embeddings kept in the in-heap LRU tier. */
+    public int getEmbedCacheSize() { return embedCacheSize; }
+    public void setEmbedCacheSize(int embedCacheSize) { this.embedCacheSize = embedCacheSize; }
+
+    /** Directory of the on-disk embedding cache of the Spring client; blank keeps the cache in memory only. */
+    public String getEmbedCacheDir() { return embedCacheDir; }
+    public void setEmbedCacheDir(String embedCacheDir) { this.embedCacheDir = embedCacheDir; }
+
+    /** Number of generation replies kept for identical temperature-0 requests; 0 disables the cache. */
+    public int getResponseCacheSize() { return responseCacheSize; }
+    public void setResponseCacheSize(int responseCacheSize) { this.responseCacheSize = responseCacheSize; }
+
+    /** How long a cached generation reply stays valid. */
+    public long getResponseCacheTtlSeconds() { return responseCacheTtlSeconds; }
+    public void setResponseCacheTtlSeconds(long responseCacheTtlSeconds) { this.responseCacheTtlSeconds = responseCacheTtlSeconds; }
+
+    /** Prompt prefixes kept as Gemini cached contents (context caching); 0 turns it off. */
+    public int getContextCacheSize() { return contextCacheSize; }
+    public void setContextCacheSize(int contextCacheSize) { this.contextCacheSize = contextCacheSize; }
+
+    /** Times a prefix must be seen before it is uploaded as cached content. */
+    public int getContextCacheMinUses() { return contextCacheMinUses; }
+    public void setContextCacheMinUses(int contextCacheMinUses) { this.contextCacheMinUses = contextCacheMinUses; }
+
+    /** Shortest prefix worth caching, in estimated tokens; Gemini rejects smaller cached contents. */
+    public int getContextCacheMinTokens() { return contextCacheMinTokens; }
+    public void setContextCacheMinTokens(int contextCacheMinTokens) { this.contextCacheMinTokens = contextCacheMinTokens; }
+
+    /** How long an uploaded prefix is reused before it is uploaded again. */
+    public long getContextCacheTtlSeconds() { return contextCacheTtlSeconds; }
+    public void setContextCacheTtlSeconds(long contextCacheTtlSeconds) { this.contextCacheTtlSeconds = contextCacheTtlSeconds; }
+
+    /** Generation quota; 0 disables the requests-per-minute bucket. */
+    public int getRequestsPerMinute() { return requestsPerMinute; }
+    public void setRequestsPerMinute(int requestsPerMinute) { this.requestsPerMinute = requestsPerMinute; }
+
+    /** Generation token quota; 0 disables the tokens-per-minute bucket. */
+    public int getTokensPerMinute() { return tokensPerMinute; }
+    public void setTokensPerMinute(int tokensPerMinute) { this.tokensPerMinute = tokensPerMinute; }
+
+    /** Embedding quota, tracked separately from generation. */
+    public int getEmbedRequestsPerMinute() { return embedRequestsPerMinute; }
+    public void setEmbedRequestsPerMinute(int embedRequestsPerMinute) { this.embedRequestsPerMinute = embedRequestsPerMinute; }
+
+    /** Ceiling for the adaptive number of Gemini calls in flight. */
+    public int getMaxConcurrency() { return maxConcurrency; }
+    public void setMaxConcurrency(int maxConcurrency) { this.maxConcurrency = maxConcurrency; }
+
+    /** How long a call may wait for quota before failing. */
+    public long getQueueTimeoutMs() { return queueTimeoutMs; }
+    public void setQueueTimeoutMs(long queueTimeoutMs) { this.queueTimeoutMs = queueTimeoutMs; }
+
+    /** Share of the generation quota and concurrency that bulk calls leave free for interactive ones. */
+    public int getInteractiveReservePercent() { return interactiveReservePercent; }
+    public void setInteractiveReservePercent(int interactiveReservePercent) { this.interactiveReservePercent = interactiveReservePercent; }
+
+    /** How long a bulk call may wait for quota before failing; bulk calls yield to interactive ones, so wait longer. */
+    public long getBulkQueueTimeoutMs() { return bulkQueueTimeoutMs; }
+    public void setBulkQueueTimeoutMs(long bulkQueueTimeoutMs) { this.bulkQueueTimeoutMs = bulkQueueTimeoutMs; }
+
+    /** Consecutive failed generation calls (after retries) that open the circuit breaker. */
+    public int getBreakerFailureThreshold() { return breakerFailureThreshold; }
+    public void setBreakerFailureThreshold(int breakerFailureThreshold) { this.breakerFailureThreshold = breakerFailureThreshold; }
+
+    /** Consecutive generation calls still rejected with 429 after retries that open the circuit breaker. */
+    public int getBreakerThrottleThreshold() { return breakerThrottleThreshold; }
+    public void setBreakerThrottleThreshold(int breakerThrottleThreshold) { this.breakerThrottleThreshold = breakerThrottleThreshold; }
+
+    /** How long an open circuit rejects generation calls before letting a probe through. */
+    public long getBreakerOpenMs() { return breakerOpenMs; }
+    public void setBreakerOpenMs(long breakerOpenMs) { this.breakerOpenMs = breakerOpenMs; }
+
+    /** Estimated input tokens a scoring prompt may use; CV and job text are compacted to fit (0 = no limit). */
+    public int getPromptTokenBudget() { return promptTokenBudget; }
+    public void setPromptTokenBudget(int promptTokenBudget) { this.promptTokenBudget = promptTokenBudget; }
+
+    /** Most CV/job pairs scored in one batched prompt. */
+    public int getScoreBatchSize() { return scoreBatchSize; }
+    public void setScoreBatchSize(int scoreBatchSize) { this.scoreBatchSize = scoreBatchSize; }
+
+    /** How long concurrent scoring calls for the same job wait to be batched together (0 = never). */
+    public long getScoreBatchWindowMs() { return scoreBatchWindowMs; }
+    public void setScoreBatchWindowMs(long scoreBatchWindowMs) { this.scoreBatchWindowMs = scoreBatchWindowMs; }
+
+    /**
+     * Model that screens every pair in bulk matching before the finalists are re-scored
+     * with {@link #getModelId}; {@value #HEURISTIC_SCREEN} screens without a model, blank
+     * turns the cascade off.
+     */
+    public String getScreenModelId() { return screenModelId; }
+    public void setScreenModelId(String screenModelId) { this.screenModelId = screenModelId; }
+
+    /** Best-screened pairs re-scored with the main model. */
+    public int getCascadeTopK() { return cascadeTopK; }
+    public void setCascadeTopK(int cascadeTopK) { this.cascadeTopK = cascadeTopK; }
+
+    /** Pairs screened within this many points of the last top-K score are re-scored too. */
+    public int getCascadeBorderline() { return cascadeBorderline; }
+    public void setCascadeBorderline(int cascadeBorderline) { this.cascadeBorderline = cascadeBorderline; }
+
+    /**
+     * Latency percentile of recent generation calls after which a duplicate request is
+     * sent; the first success wins (0 = no hedging).
+     */
+    public int getHedgePercentile() { return hedgePercentile; }
+    public void setHedgePercentile(int hedgePercentile) { this.hedgePercentile = hedgePercentile; }
+
+    /** Most duplicate requests per generation call. */
+    public int getHedgeMax() { return hedgeMax; }
+    public void setHedgeMax(int hedgeMax) { this.hedgeMax = hedgeMax; }
+
+    /** Never hedge a call earlier than this. */
+    public long getHedgeMinDelayMs() { return hedgeMinDelayMs; }
+    public void setHedgeMinDelayMs(long hedgeMinDelayMs) { this.hedgeMinDelayMs = hedgeMinDelayMs; }
+
+    /** Default retry settings for every endpoint. */
+    public Retry getRetry() { return retry; }
+    public void setRetry(Retry retry) { this.retry = retry; }
+
+    /** Retry settings for one endpoint, falling back to the defaults. */
+    public Retry getRetry(String endpoint) { return endpointRetries.getOrDefault(endpoint, retry); }
+    public void setRetry(String endpoint, Retry retry) { endpointRetries.put(endpoint, retry); }
+
+    /** Backoff settings for retrying 429/5xx and transport failures. */
+    public static class Retry {
+        private int maxAttempts = 4;
+        private long baseDelayMs = 500;
+        private long maxDelayMs = 20_000;
+        private long maxElapsedMs = 60_000;
+
+        public int getMaxAttempts() { return maxAttempts; }
+        public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+
+        public long getBaseDelayMs() { return baseDelayMs; }
+        public void setBaseDelayMs(long baseDelayMs) { this.baseDelayMs = baseDelayMs; }
+
+        public long getMaxDelayMs() { return maxDelayMs; }
+        public void setMaxDelayMs(long maxDelayMs) { this.maxDelayMs = maxDelayMs; }
+
+        public long getMaxElapsedMs() { return maxElapsedMs; }
+        public void setMaxElapsedMs(long maxElapsedMs) { this.maxElapsedMs = maxElapsedMs; }
+    }
+}
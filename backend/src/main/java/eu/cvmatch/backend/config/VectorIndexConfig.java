@@ -0,0 +1,13 @@
+package eu.cvmatch.backend.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class VectorIndexConfig {
+
+    @Bean
+    public VectorIndexProperties vectorIndexProperties() {
+        return VectorIndexProperties.fromEnv();
+    }
+}
@@ -0,0 +1,73 @@
+package eu.cvmatch.backend.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Settings for the CV and job vector indexes, read from .env (or the process environment).
+ */
+public class VectorIndexProperties {
+    /** {@code VECTOR_INDEX_TYPE} value for exact search over every vector. */
+    public static final String EXACT = "exact";
+    /** {@code VECTOR_INDEX_TYPE} value for approximate search on an HNSW graph. */
+    public static final String HNSW = "hnsw";
+
+    private String type = EXACT;
+    private String dir = "vectorIndex";
+    private int hnswM = 16;
+    private int hnswEfConstruction = 200;
+    private int hnswEfSearch = 64;
+    private String quantization = "none";
+    private int rescoreFactor = 0;
+
+    /**
+     * Reads every VECTOR_INDEX_* setting from .env, falling back to the defaults above.
+     */
+    public static VectorIndexProperties fromEnv() {
+        Dotenv dotenv = Dotenv.configure()
+                .ignoreIfMissing()
+                .ignoreIfMalformed()
+                .load();
+        VectorIndexProperties props = new VectorIndexProperties();
+        props.setType(dotenv.get("VECTOR_INDEX_TYPE", props.getType()));
+        props.setDir(dotenv.get("VECTOR_INDEX_DIR", props.getDir()));
+        props.setHnswM(GeminiProperties.intValue(dotenv, "VECTOR_INDEX_HNSW_M", props.getHnswM()));
+        props.setHnswEfConstruction(GeminiProperties.intValue(dotenv, "VECTOR_INDEX_HNSW_EF_CONSTRUCTION", props.getHnswEfConstruction()));
+        props.setHnswEfSearch(GeminiProperties.intValue(dotenv, "VECTOR_INDEX_HNSW_EF_SEARCH", props.getHnswEfSearch()));
+        props.setQuantization(dotenv.get("VECTOR_INDEX_QUANTIZATION", props.getQuantization()));
+        props.setRescoreFactor(GeminiProperties.intValue(dotenv, "VECTOR_INDEX_RESCORE_FACTOR", props.getRescoreFactor()));
+        return props;
+    }
+
+    /** {@link #EXACT} or {@link #HNSW}; anything else means exact. */
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public boolean isHnsw() { return HNSW.equalsIgnoreCase(type == null ? "" : type.trim()); }
+
+    /**
+     * Where HNSW graphs are saved between runs, and where a quantized index maps its full
+     * vectors; blank keeps both in memory only.
+     */
+    public String getDir() { return dir; }
+    public void setDir(String dir) { this.dir = dir; }
+
+    /** Links per node and level (twice that on the bottom level). */
+    public int getHnswM() { return hnswM; }
+    public void setHnswM(int hnswM) { this.hnswM = hnswM; }
+
+    /** Candidates considered when linking a new vector. */
+    public int getHnswEfConstruction() { return hnswEfConstruction; }
+    public void setHnswEfConstruction(int hnswEfConstruction) { this.hnswEfConstruction = hnswEfConstruction; }
+
+    /** Candidates kept while searching; raises recall at the cost of latency. */
+    public int getHnswEfSearch() { return hnswEfSearch; }
+    public void setHnswEfSearch(int hnswEfSearch) { this.hnswEfSearch = hnswEfSearch; }
+
+    /** {@code none}, {@code int8} or {@code binary}: compact codes scanned by the exact index. */
+    public String getQuantization() { return quantization; }
+    public void setQuantization(String quantization) { this.quantization = quantization; }
+
+    /** Candidates re-ranked with full vectors per result, when quantized; 0 picks per encoding. */
+    public int getRescoreFactor() { return rescoreFactor; }
+    public void setRescoreFactor(int rescoreFactor) { this.rescoreFactor = rescoreFactor; }
+}
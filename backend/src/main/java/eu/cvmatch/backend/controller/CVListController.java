@@ -2,6 +2,7 @@ package eu.cvmatch.backend.controller;
 
 import eu.cvmatch.backend.model.CV;
 import eu.cvmatch.backend.service.FirebaseService;
+import eu.cvmatch.backend.service.VectorIndexService;
 import eu.cvmatch.backend.utils.TextExtractor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -20,9 +21,11 @@ import java.util.regex.Pattern;
 public class CVListController {
 
     private final FirebaseService firebaseService;
+    private final VectorIndexService vectorIndexService;
 
-    public CVListController(FirebaseService firebaseService) {
+    public CVListController(FirebaseService firebaseService, VectorIndexService vectorIndexService) {
         this.firebaseService = firebaseService;
+        this.vectorIndexService = vectorIndexService;
     }
 
     /**
@@ -71,6 +74,7 @@ public class CVListController {
             cv.setUploadedAt(Instant.now().toString());
 
             String cvId = firebaseService.saveCV(cv, file.getOriginalFilename());
+            vectorIndexService.indexCvAsync(cvId, cvText);
 
             return ResponseEntity.ok(Map.of(
                     "message", "CV uploaded successfully",
@@ -1,17 +1,24 @@
 package eu.cvmatch.backend.controller;
 
 import eu.cvmatch.backend.model.CVMatchResult;
+import eu.cvmatch.backend.model.ScoreBreakdown;
 import eu.cvmatch.backend.service.CVProcessingService;
+import eu.cvmatch.backend.service.ScoreStreamListener;
+import eu.cvmatch.backend.utils.Futures;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/processcv")
 public class ProcessCVController {
+    private static final long STREAM_TIMEOUT_MS = 120_000;
 
     private final CVProcessingService cvProcessingService;
 
@@ -41,6 +48,81 @@ public class ProcessCVController {
         }
     }
 
+    /**
+     * Same as {@link #processCV}, answered as server-sent events: {@code scores} as soon as
+     * the LLM has produced them, then {@code explanation} fragments, then {@code result}
+     * (the body the non-streaming endpoint returns) or {@code error}.
+     */
+    @PostMapping(params = "stream=true", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter processCVStream(
+            @RequestParam("jobId") String jobId,
+            @RequestParam("file") MultipartFile file
+    ) {
+        EventSink sink = new EventSink(new SseEmitter(STREAM_TIMEOUT_MS));
+        try {
+            cvProcessingService.processStream(jobId, file, new ScoreStreamListener() {
+                @Override
+                public void onScores(ScoreBreakdown scores) {
+                    sink.send("scores", scores);
+                }
+
+                @Override
+                public void onExplanation(String text) {
+                    sink.send("explanation", Map.of("text", text));
+                }
+            }).whenComplete((result, err) -> {
+                if (err != null) {
+                    Throwable cause = Futures.unwrap(err);
+                    sink.send("error", Map.of("error", "❌ Failed to process CV: " + cause.getMessage()));
+                } else {
+                    sink.send("result", Map.of(
+                            "message", "✅ CV processed successfully",
+                            "score", result.getScore(),
+                            "result", result
+                    ));
+                }
+                sink.complete();
+            });
+        } catch (IllegalArgumentException e) {
+            sink.send("error", Map.of("error", e.getMessage()));
+            sink.complete();
+        } catch (Exception e) {
+            sink.send("error", Map.of("error", "❌ Failed to process CV: " + e.getMessage()));
+            sink.complete();
+        }
+        return sink.emitter;
+    }
+
+    /**
+     * Sends events until the first failed send, then drops the rest: once the client
+     * has gone away the scorer still finishes and saves the result, it just isn't told.
+     */
+    private static final class EventSink {
+        private final SseEmitter emitter;
+        private volatile boolean closed;
+
+        EventSink(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void send(String event, Object data) {
+            if (closed) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                // disconnected, timed out or already completed
+                closed = true;
+            }
+        }
+
+        void complete() {
+            closed = true;
+            emitter.complete();
+        }
+    }
+
     @PostMapping("/byid")
     public ResponseEntity<?> processCVById(
             @RequestParam("jobId") String jobId,
@@ -0,0 +1,63 @@
+package eu.cvmatch.backend.controller;
+
+import eu.cvmatch.backend.model.NearestMatch;
+import eu.cvmatch.backend.service.VectorIndexService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/similar")
+public class SimilarityController {
+
+    private static final int MAX_RESULTS = 100;
+
+    private final VectorIndexService vectorIndexService;
+
+    public SimilarityController(VectorIndexService vectorIndexService) {
+        this.vectorIndexService = vectorIndexService;
+    }
+
+    /**
+     * GET /similar/cvs?jobId=...&k=10
+     * Returns the CVs whose embeddings are nearest to the job's, best first
+     */
+    @GetMapping("/cvs")
+    public ResponseEntity<?> similarCvs(@RequestParam String jobId,
+                                        @RequestParam(defaultValue = "10") int k) {
+        try {
+            List<NearestMatch> matches = vectorIndexService.similarCvsForJob(jobId, clamp(k));
+            return ResponseEntity.ok(matches);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to find similar CVs: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * GET /similar/jobs?cvId=...&k=10
+     * Returns the jobs whose embeddings are nearest to the CV's, best first
+     */
+    @GetMapping("/jobs")
+    public ResponseEntity<?> similarJobs(@RequestParam String cvId,
+                                         @RequestParam(defaultValue = "10") int k) {
+        try {
+            List<NearestMatch> matches = vectorIndexService.similarJobsForCv(cvId, clamp(k));
+            return ResponseEntity.ok(matches);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to find similar jobs: " + e.getMessage()));
+        }
+    }
+
+    private static int clamp(int k) {
+        return Math.max(1, Math.min(k, MAX_RESULTS));
+    }
+}
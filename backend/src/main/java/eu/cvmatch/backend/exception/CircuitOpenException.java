@@ -0,0 +1,10 @@
+package eu.cvmatch.backend.exception;
+
+/**
+ * Thrown instead of calling Gemini while its circuit breaker is open.
+ */
+public class CircuitOpenException extends IllegalStateException {
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -8,6 +8,8 @@ public class CVMatchResult {
     private double jdScore;
     private String explanation;
     private String uploadedAt;
+    private boolean provisional; // scored without the LLM while Gemini was unavailable
+    private ScoringTier tier;
 
     public CVMatchResult() {}
 
@@ -41,6 +43,12 @@ public class CVMatchResult {
     public String getUploadedAt() { return uploadedAt; }
     public void setUploadedAt(String uploadedAt) { this.uploadedAt = uploadedAt; }
 
+    public boolean isProvisional() { return provisional; }
+    public void setProvisional(boolean provisional) { this.provisional = provisional; }
+
+    public ScoringTier getTier() { return tier; }
+    public void setTier(ScoringTier tier) { this.tier = tier; }
+
     @Override
     public String toString() {
         return "CVMatchResult{" +
@@ -51,6 +59,8 @@ public class CVMatchResult {
                 ", jdScore=" + jdScore +
                 ", explanation='" + explanation + '\'' +
                 ", uploadedAt='" + uploadedAt + '\'' +
+                ", provisional=" + provisional +
+                ", tier=" + tier +
                 '}';
     }
 }
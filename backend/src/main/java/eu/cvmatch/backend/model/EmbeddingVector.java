@@ -0,0 +1,122 @@
+package eu.cvmatch.backend.model;
+
+import eu.cvmatch.backend.utils.SimilarityKernels;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One text embedding: the model that produced it and its values, scaled to unit
+ * length once on creation. Cosine similarity between two vectors of the same model
+ * is then just their dot product.
+ * <p>
+ * Instances are immutable and hold a bare {@code float[]} (4 bytes per dimension),
+ * so they are cheap to keep in caches and indexes. A zero vector stays zero and has
+ * similarity 0 with everything.
+ */
+public final class EmbeddingVector {
+    // Norms this close to 1 are left alone, so re-normalizing stored values is exact
+    private static final double UNIT_TOLERANCE = 1e-6;
+
+    private final String modelId;
+    private final float[] values;
+
+    private EmbeddingVector(String modelId, float[] values) {
+        this.modelId = modelId;
+        this.values = values;
+    }
+
+    /** Normalizes {@code values} into a new vector; the array itself is not kept. */
+    public static EmbeddingVector of(String modelId, float[] values) {
+        double sumSquares = 0;
+        for (float v : values) {
+            sumSquares += (double) v * v;
+        }
+        double norm = Math.sqrt(sumSquares);
+        float[] unit = values.clone();
+        if (norm > 0 && Math.abs(norm - 1) > UNIT_TOLERANCE) {
+            for (int i = 0; i < unit.length; i++) {
+                unit[i] = (float) (unit[i] / norm);
+            }
+        }
+        return new EmbeddingVector(modelId, unit);
+    }
+
+    public String getModelId() {
+        return modelId;
+    }
+
+    public int getDimension() {
+        return values.length;
+    }
+
+    public float get(int index) {
+        return values[index];
+    }
+
+    /**
+     * The unit-length values themselves, not a copy, for tight loops such as index
+     * scans. Callers must not modify the array.
+     */
+    public float[] values() {
+        return values;
+    }
+
+    /** A copy of the unit-length values. */
+    public float[] toArray() {
+        return values.clone();
+    }
+
+    /**
+     * Cosine similarity with {@code other}, in [-1, 1].
+     *
+     * @throws IllegalArgumentException if the vectors come from different models or
+     *                                  have different dimensions
+     */
+    public double dot(EmbeddingVector other) {
+        checkComparable(other);
+        return SimilarityKernels.get().dot(values, other.values);
+    }
+
+    /**
+     * Cosine similarity with each of {@code others}, in order, in one pass of the
+     * similarity kernel.
+     *
+     * @throws IllegalArgumentException if any of them is not comparable with this vector
+     */
+    public float[] dotAll(List<EmbeddingVector> others) {
+        float[][] rows = new float[others.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            EmbeddingVector other = others.get(i);
+            checkComparable(other);
+            rows[i] = other.values;
+        }
+        float[] out = new float[rows.length];
+        SimilarityKernels.get().dotMany(values, rows, out);
+        return out;
+    }
+
+    private void checkComparable(EmbeddingVector other) {
+        if (!Objects.equals(modelId, other.modelId) || values.length != other.values.length) {
+            throw new IllegalArgumentException("Cannot compare " + this + " with " + other);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EmbeddingVector that)) return false;
+        return Objects.equals(modelId, that.modelId) && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hashCode(modelId) + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "EmbeddingVector[" + modelId + ", " + values.length + " dims]";
+    }
+}
@@ -8,6 +8,7 @@ public class JobMatchResult {
     private double techScore;
     private double jdScore;
     private String explanation;
+    private ScoringTier tier;
 
     public JobMatchResult(String jobTitle, String industry, double matchScore, double industryScore, double techScore, double jdScore, String explanation) {
         this.jobTitle = jobTitle;
@@ -75,6 +76,14 @@ public class JobMatchResult {
         this.explanation = explanation;
     }
 
+    public ScoringTier getTier() {
+        return tier;
+    }
+
+    public void setTier(ScoringTier tier) {
+        this.tier = tier;
+    }
+
     @Override
     public String toString() {
         return "JobMatchResult{" +
@@ -85,6 +94,7 @@ public class JobMatchResult {
                 ", techScore=" + techScore +
                 ", jdScore=" + jdScore +
                 ", explanation='" + explanation + '\'' +
+                ", tier=" + tier +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package eu.cvmatch.backend.model;
+
+import java.util.List;
+
+/**
+ * Industry and weighted technical skills extracted from a job description.
+ */
+public class JobSkillsExtraction {
+    private String industry;
+    private List<JobPosting.TechnicalSkill> technicalSkills;
+
+    public JobSkillsExtraction() {}
+
+    public JobSkillsExtraction(String industry, List<JobPosting.TechnicalSkill> technicalSkills) {
+        this.industry = industry;
+        this.technicalSkills = technicalSkills;
+    }
+
+    public String getIndustry() { return industry; }
+    public void setIndustry(String industry) { this.industry = industry; }
+
+    public List<JobPosting.TechnicalSkill> getTechnicalSkills() { return technicalSkills; }
+    public void setTechnicalSkills(List<JobPosting.TechnicalSkill> technicalSkills) { this.technicalSkills = technicalSkills; }
+}
@@ -0,0 +1,28 @@
+package eu.cvmatch.backend.model;
+
+/**
+ * One hit of a vector index search: the id of a stored CV or job and its cosine
+ * similarity to the query, in [-1, 1].
+ */
+public class NearestMatch {
+    private final String id;
+    private final double score;
+
+    public NearestMatch(String id, double score) {
+        this.id = id;
+        this.score = score;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "NearestMatch{id='" + id + "', score=" + score + '}';
+    }
+}
@@ -0,0 +1,37 @@
+package eu.cvmatch.backend.model;
+
+/**
+ * The LLM's per-criterion assessment of a CV against a job, as returned in structured JSON mode.
+ */
+public class ScoreBreakdown {
+    private double industryScore;
+    private double techScore;
+    private double jdScore;
+    private double score;
+    private String explanation;
+
+    public ScoreBreakdown() {}
+
+    public ScoreBreakdown(double industryScore, double techScore, double jdScore, double score, String explanation) {
+        this.industryScore = industryScore;
+        this.techScore = techScore;
+        this.jdScore = jdScore;
+        this.score = score;
+        this.explanation = explanation;
+    }
+
+    public double getIndustryScore() { return industryScore; }
+    public void setIndustryScore(double industryScore) { this.industryScore = industryScore; }
+
+    public double getTechScore() { return techScore; }
+    public void setTechScore(double techScore) { this.techScore = techScore; }
+
+    public double getJdScore() { return jdScore; }
+    public void setJdScore(double jdScore) { this.jdScore = jdScore; }
+
+    public double getScore() { return score; }
+    public void setScore(double score) { this.score = score; }
+
+    public String getExplanation() { return explanation; }
+    public void setExplanation(String explanation) { this.explanation = explanation; }
+}
@@ -0,0 +1,13 @@
+package eu.cvmatch.backend.model;
+
+/**
+ * Which stage of the scoring cascade produced a result.
+ */
+public enum ScoringTier {
+    /** Keyword and embedding matching only, no LLM call. */
+    HEURISTIC,
+    /** The cheap screening model ({@code GEMINI_SCREEN_MODEL_ID}). */
+    SCREENING,
+    /** The main model ({@code GEMINI_MODEL_ID}). */
+    FULL
+}
@@ -0,0 +1,228 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.model.NearestMatch;
+import eu.cvmatch.backend.utils.SimilarityKernel;
+import eu.cvmatch.backend.utils.SimilarityKernels;
+import eu.cvmatch.backend.utils.TopKHeap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Exact search: every query is scored against every stored vector.
+ *
+ * Vectors live back to back in one {@code float[]} (a removed row is filled with the
+ * last one), so a scan is a straight walk through memory for the similarity kernel.
+ * Large indexes are split into slices scanned in parallel, each keeping its own
+ * bounded top-K heap; the heaps are merged at the end.
+ */
+public class BruteForceVectorIndex implements VectorIndex {
+    // Below this many rows per slice, handing work to another core costs more than it saves
+    private static final int MIN_ROWS_PER_TASK = 4096;
+    // Rows scored per kernel call; keeps the score buffer in L1
+    private static final int BLOCK_ROWS = 256;
+
+    private final Executor executor;
+    private final int parallelism;
+    private final SimilarityKernel kernel = SimilarityKernels.get();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> rowsById = new HashMap<>();
+    private String[] ids = new String[16];
+    private float[] matrix = new float[0];
+    private String modelId;
+    private int dimension;
+    private int count;
+
+    /** Scans in parallel on the common fork-join pool. */
+    public BruteForceVectorIndex() {
+        this(ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism most slices one search is split into; 1 scans on the caller's thread
+     */
+    public BruteForceVectorIndex(Executor executor, int parallelism) {
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    @Override
+    public void upsert(String id, EmbeddingVector vector) {
+        lock.writeLock().lock();
+        try {
+            if (count == 0 && rowsById.isEmpty()) {
+                modelId = vector.getModelId();
+                dimension = vector.getDimension();
+            }
+            checkCompatible(vector);
+            Integer row = rowsById.get(id);
+            if (row == null) {
+                ensureCapacity(count + 1);
+                row = count++;
+                ids[row] = id;
+                rowsById.put(id, row);
+            }
+            System.arraycopy(vector.values(), 0, matrix, row * dimension, dimension);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowsById.remove(id);
+            if (row == null) {
+                return false;
+            }
+            int last = --count;
+            if (row != last) {
+                System.arraycopy(matrix, last * dimension, matrix, row * dimension, dimension);
+                ids[row] = ids[last];
+                rowsById.put(ids[row], row);
+            }
+            ids[last] = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingVector get(String id) {
+        lock.readLock().lock();
+        try {
+            Integer row = rowsById.get(id);
+            if (row == null) {
+                return null;
+            }
+            int from = row * dimension;
+            return EmbeddingVector.of(modelId, Arrays.copyOfRange(matrix, from, from + dimension));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return rowsById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> ids() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(rowsById.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<NearestMatch> search(EmbeddingVector query, int k) {
+        lock.readLock().lock();
+        try {
+            if (count == 0 || k <= 0) {
+                return List.of();
+            }
+            checkCompatible(query);
+            float[] q = query.values();
+            float[] m = matrix;
+            int rows = count;
+            int tasks = (int) Math.min(parallelism, (rows + MIN_ROWS_PER_TASK - 1L) / MIN_ROWS_PER_TASK);
+
+            TopKHeap best;
+            if (tasks <= 1) {
+                best = scan(q, m, 0, rows, k);
+            } else {
+                // Slices only read the matrix; the read lock held here keeps writers out until they finish
+                int sliceRows = (rows + tasks - 1) / tasks;
+                List<CompletableFuture<TopKHeap>> slices = new ArrayList<>(tasks);
+                for (int from = 0; from < rows; from += sliceRows) {
+                    int start = from;
+                    int end = Math.min(rows, from + sliceRows);
+                    slices.add(CompletableFuture.supplyAsync(() -> scan(q, m, start, end, k), executor));
+                }
+                best = new TopKHeap(k);
+                for (CompletableFuture<TopKHeap> slice : slices) {
+                    best.addAll(slice.join());
+                }
+            }
+
+            int[] hitRows = new int[best.size()];
+            float[] scores = new float[best.size()];
+            int n = best.drainDescending(hitRows, scores);
+            List<NearestMatch> matches = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                matches.add(new NearestMatch(ids[hitRows[i]], scores[i]));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private TopKHeap scan(float[] query, float[] matrix, int from, int to, int k) {
+        TopKHeap heap = new TopKHeap(k);
+        float[] scores = new float[Math.min(BLOCK_ROWS, to - from)];
+        for (int block = from; block < to; block += BLOCK_ROWS) {
+            int n = Math.min(BLOCK_ROWS, to - block);
+            kernel.dotMany(query, matrix, block, n, scores);
+            float threshold = heap.threshold();
+            for (int i = 0; i < n; i++) {
+                if (scores[i] > threshold && heap.offer(block + i, scores[i])) {
+                    threshold = heap.threshold();
+                }
+            }
+        }
+        return heap;
+    }
+
+    private void checkCompatible(EmbeddingVector vector) {
+        if (!Objects.equals(modelId, vector.getModelId()) || dimension != vector.getDimension()) {
+            throw new IllegalArgumentException("Index holds " + dimension + "-dimension vectors of "
+                    + modelId + ", got " + vector);
+        }
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows > ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(rows, ids.length * 2));
+        }
+        if ((long) rows * dimension > matrix.length) {
+            long needed = (long) rows * dimension;
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Vector index is full at " + count + " vectors");
+            }
+            long grown = Math.max(needed, Math.min((long) matrix.length * 2, Integer.MAX_VALUE - 8));
+            matrix = Arrays.copyOf(matrix, (int) grown);
+        }
+    }
+}
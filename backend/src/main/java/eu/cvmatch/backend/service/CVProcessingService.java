@@ -8,6 +8,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.time.Instant;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class CVProcessingService {
@@ -21,16 +22,41 @@ public class CVProcessingService {
     }
 
     public CVMatchResult process(String jobId, MultipartFile file) throws Exception {
-        String cvText;
+        String cvText = extractText(file);
+        String cvId = getOrCreateCvId(file.getOriginalFilename());
+        return scoreAndSaveMatch(jobId, cvText, cvId, file.getOriginalFilename());
+    }
+
+    /**
+     * Like {@link #process}, but reports the scores and explanation to {@code listener}
+     * while they are generated. Text extraction and the job lookup happen before this
+     * returns (and throw as usual); the match is saved when the returned future completes.
+     */
+    public CompletableFuture<CVMatchResult> processStream(String jobId, MultipartFile file,
+                                                          ScoreStreamListener listener) throws Exception {
+        String cvText = extractText(file);
+        String fileName = file.getOriginalFilename();
+        String cvId = getOrCreateCvId(fileName);
+        JobPosting job = firebaseService.getJobById(jobId);
+        if (job == null) {
+            throw new Exception("Job not found");
+        }
+        return scoringService.streamScoreAsync(cvText, job, listener).thenApply(result -> {
+            result.setFileName(fileName);
+            result.setUploadedAt(Instant.now().toString());
+            firebaseService.saveCVMatch(jobId, cvId, result);
+            return result;
+        });
+    }
+
+    private String extractText(MultipartFile file) throws Exception {
         try {
-            cvText = TextExtractor.extract(file);
+            return TextExtractor.extract(file);
         } catch (UnsupportedOperationException e) {
             throw new IllegalArgumentException("Unsupported file format. Please upload a DOCX, DOC, PDF, or TXT file.");
         } catch (Exception e) {
             throw new Exception("Failed to extract text from file: " + e.getMessage(), e);
         }
-        String cvId = getOrCreateCvId(file.getOriginalFilename());
-        return scoreAndSaveMatch(jobId, cvText, cvId, file.getOriginalFilename());
     }
 
     public CVMatchResult processById(String jobId, String cvId) throws Exception {
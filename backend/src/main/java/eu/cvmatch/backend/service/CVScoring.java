@@ -1,43 +1,378 @@
 package eu.cvmatch.backend.service;
 
-import com.google.gson.*;
-import com.google.gson.stream.JsonReader;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import eu.cvmatch.backend.config.GeminiProperties;
+import eu.cvmatch.backend.exception.CircuitOpenException;
 import eu.cvmatch.backend.model.CVMatchResult;
 import eu.cvmatch.backend.model.JobPosting;
-import org.springframework.beans.factory.annotation.Value;
+import eu.cvmatch.backend.model.ScoreBreakdown;
+import eu.cvmatch.backend.model.ScoringTier;
+import eu.cvmatch.backend.utils.Futures;
+import eu.cvmatch.backend.utils.PromptCompactor;
+import eu.cvmatch.backend.utils.TokenEstimator;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
 
 @Service
 public class CVScoring {
+    // Gemini's structured output is constrained to this shape, so replies always parse
+    private static final JsonObject SCORE_SCHEMA = JsonParser.parseString("""
+            {
+              "type": "OBJECT",
+              "properties": {
+                "industryScore": {"type": "NUMBER"},
+                "techScore":     {"type": "NUMBER"},
+                "jdScore":       {"type": "NUMBER"},
+                "score":         {"type": "NUMBER"},
+                "explanation":   {"type": "STRING"}
+              },
+              "required": ["industryScore", "techScore", "jdScore", "score", "explanation"]
+            }
+            """).getAsJsonObject();
+
+    // One entry per pair in a batched prompt; index is the candidate or job number
+    private static final JsonObject BATCH_SCORE_SCHEMA = JsonParser.parseString("""
+            {
+              "type": "ARRAY",
+              "items": {
+                "type": "OBJECT",
+                "properties": {
+                  "index":         {"type": "INTEGER"},
+                  "industryScore": {"type": "NUMBER"},
+                  "techScore":     {"type": "NUMBER"},
+                  "jdScore":       {"type": "NUMBER"},
+                  "score":         {"type": "NUMBER"},
+                  "explanation":   {"type": "STRING"}
+                },
+                "required": ["index", "industryScore", "techScore", "jdScore", "score", "explanation"]
+              }
+            }
+            """).getAsJsonObject();
+
+    private static final String JSON_OUTPUT = "Return a single JSON object: "
+            + "{\"industryScore\":… , \"techScore\":… , \"jdScore\":… , \"score\":… , \"explanation\":\"…\"}";
+
+    // Scores first so they can be shown while the explanation is still being written
+    private static final String STREAM_OUTPUT = "First line: ONLY a single-line RAW JSON object "
+            + "{\"industryScore\":… , \"techScore\":… , \"jdScore\":… , \"score\":…}. "
+            + "Then, on the following lines, the explanation as plain text (no JSON, no markdown).";
+
+    private static final String BATCH_CANDIDATES_OUTPUT = "Return a JSON array with one object per candidate: "
+            + "{\"index\": <candidate number>, \"industryScore\":… , \"techScore\":… , \"jdScore\":… , \"score\":… , \"explanation\":\"…\"}";
+
+    private static final String BATCH_JOBS_OUTPUT = "Return a JSON array with one object per job posting: "
+            + "{\"index\": <job number>, \"industryScore\":… , \"techScore\":… , \"jdScore\":… , \"score\":… , \"explanation\":\"…\"}";
+
     private final Gson gson = new Gson();
 
-    private final GenerativeLanguageClient glClient = new GenerativeLanguageClient();;
+    private final GenerativeLanguageClient glClient;
 
-    private final EmbeddingSimilarityService embeddingService = new EmbeddingSimilarityService(glClient);;
+    private final EmbeddingSimilarityService embeddingService;
+
+    private final PromptCompactor promptCompactor;
+
+    private final int batchSize;
+
+    private final String screenModelId;
+
+    @Autowired
+    public CVScoring(GenerativeLanguageClient glClient, EmbeddingSimilarityService embeddingService,
+                     GeminiProperties props) {
+        this.glClient = glClient;
+        this.embeddingService = embeddingService;
+        this.promptCompactor = new PromptCompactor(props.getPromptTokenBudget());
+        this.batchSize = Math.max(1, props.getScoreBatchSize());
+        this.screenModelId = props.getScreenModelId();
+    }
+
+    public CVScoring(GenerativeLanguageClient glClient, EmbeddingSimilarityService embeddingService) {
+        this(glClient, embeddingService, GeminiProperties.fromEnv());
+    }
+
+    public CVScoring(GenerativeLanguageClient glClient) {
+        this(glClient, new EmbeddingSimilarityService(glClient));
+    }
 
     public CVMatchResult calculateScore(String cvText, JobPosting job) throws Exception {
+        return Futures.await(calculateScoreAsync(cvText, job));
+    }
+
+    /**
+     * Non-blocking variant of {@link #calculateScore}: the LLM breakdown and the
+     * embedding similarity are requested at the same time and blended when both arrive.
+     */
+    public CompletableFuture<CVMatchResult> calculateScoreAsync(String cvText, JobPosting job) {
+        // sentence embedding job description, in parallel with the LLM call
+        return calculateScoreAsync(cvText, job, embeddingService.cosineSimilarityAsync(job.getDescription(), cvText));
+    }
+
+    /**
+     * Scores with an embedding similarity computed elsewhere, so bulk callers can
+     * embed every text in one batch instead of two round-trips per pair.
+     */
+    public CompletableFuture<CVMatchResult> calculateScoreAsync(String cvText, JobPosting job,
+                                                                CompletableFuture<Double> embedSim) {
+        return calculateScoreAsync(cvText, job, embedSim, ScoringTier.FULL, RequestPriority.INTERACTIVE);
+    }
+
+    private CompletableFuture<CVMatchResult> calculateScoreAsync(String cvText, JobPosting job,
+                                                                 CompletableFuture<Double> embedSim, ScoringTier tier,
+                                                                 RequestPriority priority) {
         job.normalizeTechnicalSkillsScore();
+        if (tier == ScoringTier.HEURISTIC) {
+            return embedSim.thenApply(sim -> heuristicScore(cvText, job, sim));
+        }
         // 1) get the LLM breakdown
-        String prompt = buildPrompt(cvText, job);
-        JsonArray candidates = glClient.generateMessage(List.of(prompt), null, 1);
-        if (candidates == null || candidates.isEmpty()) {
-            throw new IllegalStateException("Gemini returned no candidates");
+        List<String> prompt = buildPrompt(cvText, job, JSON_OUTPUT);
+        CompletableFuture<ScoreBreakdown> breakdown = glClient
+                .generateJsonAsync(prompt, modelFor(tier), SCORE_SCHEMA, ScoreBreakdown.class,
+                        GenerationOptions.defaults().withPriority(priority).withSharedPrefix(jobTag(job.getId())))
+                .thenApply(data -> {
+                    if (data == null) {
+                        throw new IllegalStateException("Gemini returned no candidates");
+                    }
+                    return data;
+                });
+
+        return withDegradedFallback(breakdown.thenCombine(embedSim, (data, sim) -> blend(data, sim, tier)),
+                cvText, job, embedSim);
+    }
+
+    /**
+     * Scores several CVs against one job, up to {@code GEMINI_SCORE_BATCH_SIZE} CVs per
+     * prompt, so the rubric and job posting are sent once per batch instead of once per
+     * CV. Returns one future per CV, in order. A CV the batch reply leaves out is scored
+     * on its own.
+     */
+    public List<CompletableFuture<CVMatchResult>> calculateScoresForJobAsync(List<String> cvTexts, JobPosting job) {
+        return calculateScoresForJobAsync(cvTexts, job,
+                embeddingService.cosineSimilaritiesAsync(job.getDescription(), cvTexts));
+    }
+
+    /** Same as above, with the CV-to-job embedding similarities computed elsewhere. */
+    public List<CompletableFuture<CVMatchResult>> calculateScoresForJobAsync(List<String> cvTexts, JobPosting job,
+                                                                            CompletableFuture<List<Double>> embedSims) {
+        return calculateScoresForJobAsync(cvTexts, job, embedSims, ScoringTier.FULL);
+    }
+
+    /**
+     * Same as above, scored by the given tier: the main model, the screening model or,
+     * for {@link ScoringTier#HEURISTIC}, keyword and embedding matching without a prompt.
+     */
+    public List<CompletableFuture<CVMatchResult>> calculateScoresForJobAsync(List<String> cvTexts, JobPosting job,
+                                                                            CompletableFuture<List<Double>> embedSims,
+                                                                            ScoringTier tier) {
+        job.normalizeTechnicalSkillsScore();
+        List<CompletableFuture<CVMatchResult>> results = new ArrayList<>(cvTexts.size());
+        for (int from = 0; from < cvTexts.size(); from += batchSize) {
+            List<String> chunk = cvTexts.subList(from, Math.min(from + batchSize, cvTexts.size()));
+            CompletableFuture<Map<Integer, ScoreBreakdown>> batch = chunk.size() > 1 && tier != ScoringTier.HEURISTIC
+                    ? scoreBatch(buildCandidatesPrompt(chunk, job), jobTag(job.getId()), chunk.size(), tier,
+                            RequestPriority.INTERACTIVE)
+                    : CompletableFuture.completedFuture(Map.of());
+            for (int i = 0; i < chunk.size(); i++) {
+                int slot = from + i;
+                results.add(resolve(batch, i + 1, chunk.get(i), job, embedSims.thenApply(sims -> sims.get(slot)), tier,
+                        RequestPriority.INTERACTIVE));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Scores one CV against several jobs, up to {@code GEMINI_SCORE_BATCH_SIZE} jobs per
+     * prompt. Returns one future per job, in order; a job the batch reply leaves out is
+     * scored on its own.
+     */
+    public List<CompletableFuture<CVMatchResult>> calculateScoresForCvAsync(String cvText, List<JobPosting> jobs,
+                                                                           CompletableFuture<List<Double>> embedSims) {
+        return calculateScoresForCvAsync(cvText, jobs, embedSims, ScoringTier.FULL);
+    }
+
+    /** Same as above, scored by the given tier. */
+    public List<CompletableFuture<CVMatchResult>> calculateScoresForCvAsync(String cvText, List<JobPosting> jobs,
+                                                                           CompletableFuture<List<Double>> embedSims,
+                                                                           ScoringTier tier) {
+        return calculateScoresForCvAsync(cvText, jobs, embedSims, tier, RequestPriority.INTERACTIVE);
+    }
+
+    /** Same as above, queued in the given rate-limiter lane. */
+    public List<CompletableFuture<CVMatchResult>> calculateScoresForCvAsync(String cvText, List<JobPosting> jobs,
+                                                                           CompletableFuture<List<Double>> embedSims,
+                                                                           ScoringTier tier, RequestPriority priority) {
+        jobs.forEach(JobPosting::normalizeTechnicalSkillsScore);
+        List<CompletableFuture<CVMatchResult>> results = new ArrayList<>(jobs.size());
+        for (int from = 0; from < jobs.size(); from += batchSize) {
+            List<JobPosting> chunk = jobs.subList(from, Math.min(from + batchSize, jobs.size()));
+            CompletableFuture<Map<Integer, ScoreBreakdown>> batch = chunk.size() > 1 && tier != ScoringTier.HEURISTIC
+                    ? scoreBatch(buildJobsPrompt(cvText, chunk), null, chunk.size(), tier, priority)
+                    : CompletableFuture.completedFuture(Map.of());
+            for (int i = 0; i < chunk.size(); i++) {
+                int slot = from + i;
+                results.add(resolve(batch, i + 1, cvText, chunk.get(i), embedSims.thenApply(sims -> sims.get(slot)), tier,
+                        priority));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Index (1-based) to scores, for the entries of a batch reply that are usable.
+     * {@code prefixTag} tags the prompt's cached prefix, see {@link #jobTag}.
+     */
+    private CompletableFuture<Map<Integer, ScoreBreakdown>> scoreBatch(List<String> prompt, String prefixTag, int size,
+                                                                       ScoringTier tier, RequestPriority priority) {
+        return glClient.generateJsonAsync(prompt, modelFor(tier), BATCH_SCORE_SCHEMA, IndexedScore[].class,
+                GenerationOptions.defaults().withPriority(priority).withSharedPrefix(prefixTag))
+                .handle((items, err) -> {
+                    Map<Integer, ScoreBreakdown> byIndex = new HashMap<>();
+                    if (err != null) {
+                        // An open circuit is handled per pair below; anything else is worth a log line
+                        if (!(Futures.unwrap(err) instanceof CircuitOpenException)) {
+                            System.err.println("Batch scoring failed, scoring pairs one by one: " + Futures.unwrap(err).getMessage());
+                        }
+                        return byIndex;
+                    }
+                    if (items != null) {
+                        for (IndexedScore item : items) {
+                            if (item != null && item.index >= 1 && item.index <= size) {
+                                byIndex.putIfAbsent(item.index, item);
+                            }
+                        }
+                    }
+                    if (byIndex.size() < size) {
+                        System.err.printf("Batch scoring returned %d of %d results, scoring the rest one by one%n",
+                                byIndex.size(), size);
+                    }
+                    return byIndex;
+                });
+    }
+
+    private CompletableFuture<CVMatchResult> resolve(CompletableFuture<Map<Integer, ScoreBreakdown>> batch, int index,
+                                                     String cvText, JobPosting job, CompletableFuture<Double> embedSim,
+                                                     ScoringTier tier, RequestPriority priority) {
+        return batch.thenCompose(scores -> {
+            ScoreBreakdown data = scores.get(index);
+            if (data == null) {
+                return calculateScoreAsync(cvText, job, embedSim, tier, priority);
+            }
+            return embedSim.thenApply(sim -> blend(data, sim, tier));
+        });
+    }
+
+    /** Model id for a tier; null means the client's default model. */
+    private String modelFor(ScoringTier tier) {
+        return tier == ScoringTier.SCREENING ? screenModelId : null;
+    }
+
+    /**
+     * Streaming variant: the LLM's scores reach {@code listener} as soon as they are
+     * generated, followed by the explanation as it is written. The returned result is
+     * blended with the embedding similarity exactly like {@link #calculateScoreAsync}.
+     */
+    public CompletableFuture<CVMatchResult> streamScoreAsync(String cvText, JobPosting job,
+                                                             ScoreStreamListener listener) {
+        job.normalizeTechnicalSkillsScore();
+        CompletableFuture<Double> embedSim = embeddingService.cosineSimilarityAsync(job.getDescription(), cvText);
+
+        ScoreStreamParser parser = new ScoreStreamParser(gson, listener);
+        List<String> prompt = buildPrompt(cvText, job, STREAM_OUTPUT);
+        CompletableFuture<ScoreBreakdown> breakdown = glClient
+                .streamGenerateAsync(prompt, null, GenerationOptions.defaults(), parser::accept)
+                .thenApply(text -> parser.result());
+
+        return withDegradedFallback(breakdown.thenCombine(embedSim, (data, sim) -> blend(data, sim, ScoringTier.FULL)),
+                cvText, job, embedSim);
+    }
+
+    private CompletableFuture<CVMatchResult> withDegradedFallback(CompletableFuture<CVMatchResult> scored,
+                                                                  String cvText, JobPosting job,
+                                                                  CompletableFuture<Double> embedSim) {
+        return scored.exceptionallyCompose(err -> {
+            // Gemini generation is down or out of quota: answer from embeddings and keywords instead
+            if (Futures.unwrap(err) instanceof CircuitOpenException) {
+                return embedSim.thenApply(sim -> provisionalScore(cvText, job, sim));
+            }
+            return CompletableFuture.failedFuture(err);
+        });
+    }
+
+    /**
+     * Degraded scoring used while the LLM is unavailable: skills and industry are
+     * matched as keywords in the CV, the JD match is the embedding similarity alone.
+     * The result is flagged provisional.
+     */
+    CVMatchResult provisionalScore(String cvText, JobPosting job, double embedSim) {
+        CVMatchResult result = keywordScore(cvText, job, embedSim, "Provisional score: the AI reviewer is temporarily "
+                + "unavailable, so this uses keyword and embedding matching only.");
+        result.setProvisional(true);
+        return result;
+    }
+
+    /**
+     * The same keyword and embedding matching used as the cheapest screening tier.
+     * Not provisional: the AI reviewer was available, it just wasn't needed.
+     */
+    CVMatchResult heuristicScore(String cvText, JobPosting job, double embedSim) {
+        return keywordScore(cvText, job, embedSim,
+                "Screening score from keyword and embedding matching; not reviewed by the AI model.");
+    }
+
+    private CVMatchResult keywordScore(String cvText, JobPosting job, double embedSim, String note) {
+        String cv = cvText == null ? "" : cvText;
+        List<JobPosting.TechnicalSkill> skills = job.getTechnicalSkills() == null ? List.of() : job.getTechnicalSkills();
+
+        int totalWeight = 0;
+        int matchedWeight = 0;
+        StringBuilder found = new StringBuilder();
+        for (JobPosting.TechnicalSkill skill : skills) {
+            totalWeight += skill.getWeight();
+            if (mentions(cv, skill.getSkill())) {
+                matchedWeight += skill.getWeight();
+                found.append(found.length() == 0 ? "" : ", ").append(skill.getSkill());
+            }
         }
-        String raw = candidates.get(0).getAsJsonObject().get("content").getAsString().trim();
-        JsonObject data = tryParseOrFix(raw, glClient);
+        double techScore     = totalWeight > 0 ? matchedWeight * 100.0 / totalWeight : 0.0;
+        double industryScore = mentions(cv, job.getIndustry()) ? 100.0 : 0.0;
+        double jdScore       = embedSim * 100.0;
+        double finalScore    = industryScore * 0.10 + techScore * 0.30 + jdScore * 0.60;
+
+        String explanation = note
+                + "\nSkills found in CV: " + (found.length() == 0 ? "none" : found)
+                + "\nEmbedding JD‑CV similarity: " + String.format("%.2f%%", jdScore);
+
+        CVMatchResult result = new CVMatchResult(finalScore, industryScore, techScore, jdScore, explanation);
+        result.setTier(ScoringTier.HEURISTIC);
+        return result;
+    }
 
+    private static boolean mentions(String text, String keyword) {
+        if (keyword == null || keyword.isBlank()) {
+            return false;
+        }
+        // Word boundaries that also work for skills like "C++" or ".NET"
+        Pattern p = Pattern.compile("(?<![\\w])" + Pattern.quote(keyword.trim()) + "(?![\\w])",
+                Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        return p.matcher(text).find();
+    }
+
+    private CVMatchResult blend(ScoreBreakdown data, double embedSim, ScoringTier tier) {
         // 2) pull out their scores
-        double industryScore = data.get("industryScore").getAsDouble();
-        double techScore     = data.get("techScore").getAsDouble();
-        double llmJdScore    = data.get("jdScore").getAsDouble();
-        String explanation   = data.get("explanation").getAsString();
+        double industryScore = data.getIndustryScore();
+        double techScore     = data.getTechScore();
+        double llmJdScore    = data.getJdScore();
+        String explanation   = data.getExplanation() == null ? "" : data.getExplanation();
 
         // 3) compute an embedding‑based JD match (0.0–1.0 → 0–100)
-        // sentence embedding job description
-        double embedSim   = embeddingService.cosineSimilarity(job.getDescription(), cvText);
         double embedScore = embedSim * 100.0;
 
         // 4) blend the two JD scores
@@ -53,59 +388,96 @@ public class CVScoring {
                 + "\nEmbedding JD‑CV similarity: " + String.format("%.2f%%", embedScore)
                 + "\nBlended JD Match: "       + String.format("%.2f%%", blendedJdScore);
 
-        return new CVMatchResult(finalScore, industryScore, techScore, blendedJdScore, fullExplanation);
+        CVMatchResult result = new CVMatchResult(finalScore, industryScore, techScore, blendedJdScore, fullExplanation);
+        result.setTier(tier);
+        return result;
     }
 
     /**
-     * Attempts to parse the raw JSON string leniently.
-     * If that doesn't yield an object, calls glClient.fixJson(...) once, then parses its output.
+     * Drops the cached prompt prefixes built from a job posting, once it has been
+     * edited or deleted.
      */
-    private JsonObject tryParseOrFix(String raw, GenerativeLanguageClient glClient) throws Exception {
-        try {
-            JsonElement firstTry = parseLenient(raw);
-            if (firstTry.isJsonObject()) {
-                return firstTry.getAsJsonObject();
-            }
-        } catch (JsonSyntaxException ignored) {
-            // fall through to fix
+    public void invalidateJob(String jobId) {
+        String tag = jobTag(jobId);
+        if (tag != null) {
+            glClient.invalidateCachedPrefixes(tag);
         }
+    }
 
-        // Ask Gemini to correct the JSON
-        JsonObject fixedJson = glClient.fixJson(raw);
-        String fixedString = fixedJson.toString();
-
-        JsonElement secondTry = parseLenient(fixedString);
-        if (!secondTry.isJsonObject()) {
-            throw new IllegalStateException("Fixed JSON is still not an object:\n" + fixedString);
-        }
-        return secondTry.getAsJsonObject();
+    /** Tag of the cached prefixes (rubric plus job section) built from one job; null for unsaved jobs. */
+    private static String jobTag(String jobId) {
+        return jobId == null || jobId.isBlank() ? null : "job:" + jobId;
     }
 
     /**
-     * Performs lenient parsing:
-     *  - allows comments/unterminated strings
-     *  - unwraps quoted JSON strings
+     * The scoring prompt, with CV and job description normalized and, if needed,
+     * shortened so the whole prompt stays within the configured token budget.
+     * <p>
+     * Prompts are built as two messages: a prefix many calls share (the rubric plus
+     * the job here) and the part that changes per call. Gemini reads them as one
+     * prompt; the client may send a hot prefix as cached content instead of repeating it.
      */
-    private JsonElement parseLenient(String content) throws JsonSyntaxException {
-        JsonReader reader = new JsonReader(new StringReader(content));
-        reader.setLenient(true);
-        JsonElement elem = JsonParser.parseReader(reader);
-
-        // If it's a primitive (i.e. model wrapped JSON in quotes), unwrap it
-        if (elem.isJsonPrimitive()) {
-            String inner = elem.getAsString()
-                    .replaceAll("^\"|\"$", "")
-                    .replace("\\\"", "\"")
-                    .replace("\\\\n", "\n")
-                    .replaceAll("```json|```", "");
-            JsonReader reader2 = new JsonReader(new StringReader(inner));
-            reader2.setLenient(true);
-            elem = JsonParser.parseReader(reader2);
+    private List<String> buildPrompt(String cv, JobPosting job, String outputRequirements) {
+        String skills = gson.toJson(job.getTechnicalSkills());
+        int fixedTokens = TokenEstimator.estimate(formatPrompt(outputRequirements, job.getIndustry(), skills, "", ""));
+        String[] texts = promptCompactor.compactPair(cv, job.getDescription(), fixedTokens);
+        return List.of(rubric(outputRequirements) + jobSection("Job Posting:", job.getIndustry(), skills, texts[1]),
+                String.format("Candidate CV:%n%s%n%n", texts[0]) + "TASK: Evaluate and PRODUCE THE JSON RESULT.");
+    }
+
+    private static String formatPrompt(String outputRequirements, String industry, String skills,
+                                       String description, String cv) {
+        return rubric(outputRequirements)
+                + jobSection("Job Posting:", industry, skills, description)
+                + String.format("Candidate CV:%n%s%n%n", cv)
+                + "TASK: Evaluate and PRODUCE THE JSON RESULT.";
+    }
+
+    /** Several CVs against one job; the token budget applies per CV. The shared prefix is rubric plus job. */
+    private List<String> buildCandidatesPrompt(List<String> cvs, JobPosting job) {
+        String skills = gson.toJson(job.getTechnicalSkills());
+        int fixedTokens = TokenEstimator.estimate(formatPrompt(BATCH_CANDIDATES_OUTPUT, job.getIndustry(), skills, "", ""));
+        List<String> texts = promptCompactor.compactBatch(job.getDescription(), cvs, fixedTokens, 1.0 / 3);
+
+        String prefix = rubric(BATCH_CANDIDATES_OUTPUT) + jobSection("Job Posting:", job.getIndustry(), skills, texts.get(0));
+        StringBuilder prompt = new StringBuilder(
+                String.format("Candidates (score each one on its own, not relative to the others):%n%n"));
+        for (int i = 1; i < texts.size(); i++) {
+            prompt.append(String.format("### Candidate %d%n%s%n%n", i, texts.get(i)));
+        }
+        return List.of(prefix, prompt.append("TASK: Evaluate EVERY candidate and PRODUCE THE JSON ARRAY.").toString());
+    }
+
+    /** One CV against several jobs; the token budget applies per job. The shared prefix is rubric plus CV. */
+    private List<String> buildJobsPrompt(String cv, List<JobPosting> jobs) {
+        int fixedTokens = TokenEstimator.estimate(formatPrompt(BATCH_JOBS_OUTPUT, "", "", "", ""));
+        List<String> descriptions = new ArrayList<>(jobs.size());
+        jobs.forEach(job -> descriptions.add(job.getDescription()));
+        List<String> texts = promptCompactor.compactBatch(cv, descriptions, fixedTokens, 2.0 / 3);
+
+        String prefix = rubric(BATCH_JOBS_OUTPUT) + String.format("Candidate CV:%n%s%n%n", texts.get(0));
+        StringBuilder prompt = new StringBuilder(
+                String.format("Job Postings (score the CV against each one on its own):%n%n"));
+        for (int i = 0; i < jobs.size(); i++) {
+            JobPosting job = jobs.get(i);
+            prompt.append(jobSection("### Job " + (i + 1), job.getIndustry(),
+                    gson.toJson(job.getTechnicalSkills()), texts.get(i + 1)));
         }
-        return elem;
+        return List.of(prefix,
+                prompt.append("TASK: Evaluate the CV against EVERY job posting and PRODUCE THE JSON ARRAY.").toString());
+    }
+
+    private static String jobSection(String title, String industry, String skills, String description) {
+        return String.format(
+                "%s%n" +
+                        " Industry: %s%n" +
+                        " Required Skills and Weights: %s%n" +
+                        " Description: %s%n%n",
+                title, industry, skills, description);
     }
 
-    private String buildPrompt(String cv, JobPosting job) {
+    /** Instructions and scoring scale shared by single and batched prompts. */
+    private static String rubric(String outputRequirements) {
         return String.format(
                 "You are an expert recruiter and resume evaluator. Your task is to score the candidate’s CV against the given job posting.%n%n" +
 
@@ -151,25 +523,16 @@ public class CVScoring {
                         " Provide a brief rationale for Industry, Tech, JD Match, and final score, each on its own line.%n%n" +
 
                         "OUTPUT REQUIREMENTS:%n" +
-                        " Return ONLY a single RAW JSON object: " +
-                        "{\"industryScore\":… , \"techScore\":… , \"jdScore\":… , \"score\":… , \"explanation\":\"…\"}%n%n" +
+                        " %s%n%n" +
 
-                        "HINT: Use 0/25/50/75/100 as base checkpoints, but you may interpolate above the nearest lower bound if clearly warranted.%n%n" +
-
-                        "Job Posting:%n" +
-                        " Industry: %s%n" +
-                        " Required Skills and Weights: %s%n" +
-                        " Description: %s%n%n" +
-
-                        "Candidate CV:%n" +
-                        "%s%n%n" +
-
-                        "TASK: Evaluate and PRODUCE THE JSON RESULT.",
-                job.getIndustry(),
-                gson.toJson(job.getTechnicalSkills()),
-                job.getDescription(),
-                cv
+                        "HINT: Use 0/25/50/75/100 as base checkpoints, but you may interpolate above the nearest lower bound if clearly warranted.%n%n",
+                outputRequirements
         );
     }
 
+    /** An entry of a batched reply; {@code index} is the 1-based candidate or job number. */
+    private static final class IndexedScore extends ScoreBreakdown {
+        private int index;
+    }
+
 }
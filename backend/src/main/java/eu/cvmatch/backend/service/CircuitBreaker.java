@@ -0,0 +1,133 @@
+package eu.cvmatch.backend.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Fails calls fast while a dependency is known to be down.
+ *
+ * CLOSED: calls go through; {@code failureThreshold} consecutive failures open the circuit.
+ * OPEN: calls are rejected until {@code openMillis} have passed, then the circuit goes half-open.
+ * HALF_OPEN: a single probe call is let through; its success closes the circuit,
+ * its failure opens it again for another {@code openMillis}.
+ *
+ * Calls turned away for quota are reported with {@link #onThrottled()} and counted
+ * apart: a few are the rate limiter's business, but {@code throttleThreshold} in a
+ * row mean the quota is spent, and open the circuit like failures do. Calls that
+ * end without hearing from the provider (cancelled, or expired in our own queue)
+ * are reported with {@link #onIgnored()} and count either way.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final int throttleThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int consecutiveThrottles;
+    private long openedAt;
+    private boolean probeInFlight;
+    private long throttledCount;
+
+    public CircuitBreaker(String name, int failureThreshold, int throttleThreshold, long openMillis) {
+        this(name, failureThreshold, throttleThreshold, openMillis, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, long openMillis, LongSupplier clock) {
+        this(name, failureThreshold, failureThreshold, openMillis, clock);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, int throttleThreshold, long openMillis, LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.throttleThreshold = Math.max(1, throttleThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, openMillis));
+        this.clock = clock;
+    }
+
+    /**
+     * Returns true if a call may proceed now. Every permitted call must be followed
+     * by {@link #onSuccess()}, {@link #onFailure()}, {@link #onThrottled()} or
+     * {@link #onIgnored()}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (probeInFlight) {
+                    yield false;
+                }
+                probeInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            System.out.println("Gemini " + name + " circuit closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        consecutiveThrottles = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            open(consecutiveFailures + " failures");
+        }
+    }
+
+    /**
+     * A permitted call the provider still rejected for rate or quota (429) after its
+     * retries. A throttled probe means the quota is still spent and opens the circuit again.
+     */
+    public synchronized void onThrottled() {
+        throttledCount++;
+        consecutiveThrottles++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveThrottles >= throttleThreshold)) {
+            open(consecutiveThrottles + " throttled calls");
+        }
+    }
+
+    /** A permitted call that ended without an answer from the provider; a probe slot is freed. */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    /** Calls reported through {@link #onThrottled()} so far. */
+    public synchronized long getThrottledCount() {
+        return throttledCount;
+    }
+
+    private void open(String reason) {
+        System.out.println("Gemini " + name + " circuit opened after " + reason);
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        probeInFlight = false;
+    }
+
+    /** Current state; an expired OPEN circuit reports HALF_OPEN once the next call checks in. */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** True while calls are being rejected, i.e. open and not yet due for a probe. */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && clock.getAsLong() - openedAt < openNanos;
+    }
+}
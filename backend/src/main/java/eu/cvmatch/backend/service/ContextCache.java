@@ -0,0 +1,220 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.utils.Hashing;
+import eu.cvmatch.backend.utils.TokenEstimator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Handles to Gemini cached contents (context caching) for prompt prefixes sent over
+ * and over, such as the scoring rubric plus one job posting. Once a prefix has been
+ * seen {@code minUses} times and is at least {@code minTokens} long, it is uploaded
+ * once and later requests reference the handle and send only their suffix.
+ * <p>
+ * Prefixes are keyed by model and content, so an edited prefix simply gets a new
+ * handle. Handles are dropped locally before their server-side TTL runs out, when
+ * evicted from the LRU, and by tag (e.g. all prefixes of a job that was edited);
+ * dropped handles are deleted on the server. A prefix whose upload failed is sent in
+ * full for one TTL before another upload is tried.
+ * <p>
+ * A capacity of 0 or less disables the cache.
+ */
+public class ContextCache {
+
+    /** Uploads a prefix as cached content and completes with its name. */
+    @FunctionalInterface
+    public interface Uploader {
+        CompletableFuture<String> upload(String model, String prefix, RequestPriority priority);
+    }
+
+    private final int capacity;
+    private final int minUses;
+    private final int minTokens;
+    private final long ttlNanos;
+    private final Uploader create;
+    private final Consumer<String> delete;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong creations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param ttlMillis how long a handle is used; uploads ask the server to keep it a little longer
+     * @param create    uploads a prefix, at the priority of the request that made it hot
+     * @param delete    deletes a cached content by name
+     */
+    public ContextCache(int capacity, int minUses, int minTokens, long ttlMillis,
+                        Uploader create, Consumer<String> delete) {
+        this(capacity, minUses, minTokens, ttlMillis, create, delete, System::nanoTime);
+    }
+
+    ContextCache(int capacity, int minUses, int minTokens, long ttlMillis,
+                 Uploader create, Consumer<String> delete, LongSupplier clock) {
+        this.capacity = capacity;
+        this.minUses = Math.max(1, minUses);
+        this.minTokens = minTokens;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+        this.create = create;
+        this.delete = delete;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public boolean isEnabled() {
+        return capacity > 0 && ttlNanos > 0;
+    }
+
+    /**
+     * The cached content to use for {@code prefix}, uploading it if it has just become
+     * hot. Null means the prompt should be sent in full: the cache is off, the prefix
+     * is too short or not used often enough yet, or its upload failed recently. The
+     * future may still be pending, and fails if the upload does.
+     *
+     * @param tag      groups handles for {@link #invalidateTag}; may be null
+     * @param priority limiter lane for the upload, if this call triggers one
+     */
+    public CompletableFuture<String> handleFor(String model, String prefix, String tag, RequestPriority priority) {
+        if (!isEnabled() || TokenEstimator.estimate(prefix) < minTokens) {
+            return null;
+        }
+        String key = Hashing.sha256Hex(model, prefix);
+        List<Entry> dropped = new ArrayList<>();
+        Entry entry;
+        boolean upload = false;
+        synchronized (entries) {
+            long now = clock.getAsLong();
+            entry = entries.get(key);
+            if (entry != null && entry.handle != null && now - entry.createdAt >= ttlNanos) {
+                // Expired, or a failed upload whose back-off is over
+                entries.remove(key);
+                dropped.add(entry);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(tag);
+                entries.put(key, entry);
+                evictLocked(dropped);
+            }
+            entry.uses++;
+            if (entry.handle == null && entry.uses >= minUses) {
+                entry.handle = new CompletableFuture<>();
+                entry.createdAt = now;
+                upload = true;
+            }
+        }
+        dropped.forEach(this::deleteRemote);
+
+        if (upload) {
+            creations.incrementAndGet();
+            Entry created = entry;
+            create.upload(model, prefix, priority).whenComplete((name, err) -> {
+                if (err != null || name == null) {
+                    created.failed = true;
+                    created.handle.completeExceptionally(err != null ? err
+                            : new IllegalStateException("Gemini returned no cached content name"));
+                } else {
+                    created.handle.complete(name);
+                }
+            });
+            return entry.handle;
+        }
+        if (entry.handle == null || entry.failed) {
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.handle;
+    }
+
+    /** {@link #handleFor(String, String, String, RequestPriority)} for an interactive request. */
+    public CompletableFuture<String> handleFor(String model, String prefix, String tag) {
+        return handleFor(model, prefix, tag, RequestPriority.INTERACTIVE);
+    }
+
+    /** Drops the handle for a prefix, e.g. after Gemini no longer recognised it. */
+    public void invalidate(String model, String prefix) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(Hashing.sha256Hex(model, prefix));
+        }
+        if (entry != null) {
+            invalidations.incrementAndGet();
+            deleteRemote(entry);
+        }
+    }
+
+    /** Drops every handle uploaded with {@code tag}. */
+    public void invalidateTag(String tag) {
+        List<Entry> dropped = new ArrayList<>();
+        synchronized (entries) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (Objects.equals(entry.tag, tag)) {
+                    it.remove();
+                    dropped.add(entry);
+                }
+            }
+        }
+        invalidations.addAndGet(dropped.size());
+        dropped.forEach(this::deleteRemote);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** Requests that reused an uploaded prefix. */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** Prefixes uploaded. */
+    public long getCreationCount() {
+        return creations.get();
+    }
+
+    /** Handles dropped by tag or because Gemini no longer knew them. */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    private void evictLocked(List<Entry> dropped) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > capacity && it.hasNext()) {
+            dropped.add(it.next());
+            it.remove();
+        }
+    }
+
+    private void deleteRemote(Entry entry) {
+        if (entry.handle != null) {
+            entry.handle.thenAccept(delete);
+        }
+    }
+
+    private static final class Entry {
+        final String tag;
+        int uses;
+        CompletableFuture<String> handle;
+        long createdAt;
+        volatile boolean failed;
+
+        Entry(String tag) {
+            this.tag = tag;
+        }
+    }
+}
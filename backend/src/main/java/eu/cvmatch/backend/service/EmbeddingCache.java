@@ -0,0 +1,275 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.utils.Hashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Content-addressed embedding cache keyed by SHA-256(model id + text).
+ *
+ * Two tiers: an in-heap LRU of recently used vectors, and an optional append-only
+ * file on disk that survives restarts. The file is memory-mapped when opened, in
+ * chunks of at most 1 GB so files past the 2 GB limit of a single mapping still
+ * load; records appended afterwards are read back with positional reads.
+ *
+ * File layout: "CVEC" magic, int version, then records of
+ * [32-byte key][int dimension][dimension floats], all big-endian. Vectors are
+ * stored unit-length; records are normalized again on load, which is a no-op for
+ * those and upgrades raw values written by older versions.
+ */
+public class EmbeddingCache implements AutoCloseable {
+    private static final int MAGIC = 0x43564543; // "CVEC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int KEY_BYTES = 32;
+    private static final long MAP_CHUNK_BYTES = 1L << 30;
+
+    private final Map<String, EmbeddingVector> heap;
+    private final Map<String, Long> diskIndex = new HashMap<>();
+    private final long chunkBytes;
+    private FileChannel channel;
+    private MappedByteBuffer[] mapped = new MappedByteBuffer[0];
+    private long mappedBytes;
+    private long heapHits;
+    private long diskHits;
+    private long misses;
+
+    private EmbeddingCache(int heapCapacity, long chunkBytes) {
+        this.chunkBytes = chunkBytes;
+        int capacity = Math.max(1, heapCapacity);
+        this.heap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EmbeddingVector> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Heap-only cache; nothing survives a restart. */
+    public static EmbeddingCache inMemory(int heapCapacity) {
+        return new EmbeddingCache(heapCapacity, MAP_CHUNK_BYTES);
+    }
+
+    /**
+     * Heap cache backed by {@code dir/embeddings.bin}. If the file can't be opened
+     * the cache logs the problem and keeps working in memory only.
+     */
+    public static EmbeddingCache persistent(int heapCapacity, Path dir) {
+        return persistent(heapCapacity, dir, MAP_CHUNK_BYTES);
+    }
+
+    static EmbeddingCache persistent(int heapCapacity, Path dir, long chunkBytes) {
+        EmbeddingCache cache = new EmbeddingCache(heapCapacity, chunkBytes);
+        try {
+            cache.open(dir.resolve("embeddings.bin"));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Embedding cache disk tier disabled: " + e.getMessage());
+            cache.closeQuietly();
+        }
+        return cache;
+    }
+
+    public synchronized EmbeddingVector get(String modelId, String text) {
+        String key = key(modelId, text);
+        EmbeddingVector vector = heap.get(key);
+        if (vector != null) {
+            heapHits++;
+            return vector;
+        }
+        Long offset = diskIndex.get(key);
+        if (offset != null) {
+            float[] values = readRecord(offset);
+            if (values != null) {
+                vector = EmbeddingVector.of(modelId, values);
+                heap.put(key, vector);
+                diskHits++;
+                return vector;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(String modelId, String text, EmbeddingVector vector) {
+        String key = key(modelId, text);
+        heap.put(key, vector);
+        if (channel != null && !diskIndex.containsKey(key)) {
+            appendRecord(key, vector.values());
+        }
+    }
+
+    public synchronized int heapSize() {
+        return heap.size();
+    }
+
+    public synchronized int diskSize() {
+        return diskIndex.size();
+    }
+
+    /** Lookups answered from the heap tier. */
+    public synchronized long getHeapHitCount() {
+        return heapHits;
+    }
+
+    /** Lookups answered from the file, after missing the heap. */
+    public synchronized long getDiskHitCount() {
+        return diskHits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    @Override
+    public synchronized void close() {
+        closeQuietly();
+    }
+
+    private void open(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (channel.size() < HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+        }
+
+        map(channel.size());
+        if (getMappedInt(0) != MAGIC || getMappedInt(4) != VERSION) {
+            throw new IOException("Unrecognised embedding cache file " + file);
+        }
+
+        // Index every complete record; a torn tail from a crash is cut off
+        long pos = HEADER_BYTES;
+        long limit = mappedBytes;
+        byte[] keyBytes = new byte[KEY_BYTES];
+        while (pos + KEY_BYTES + Integer.BYTES <= limit) {
+            int dim = getMappedInt(pos + KEY_BYTES);
+            long end = pos + KEY_BYTES + Integer.BYTES + (long) dim * Float.BYTES;
+            if (dim <= 0 || end > limit) {
+                break;
+            }
+            getMapped(pos, keyBytes);
+            diskIndex.put(HexFormat.of().formatHex(keyBytes), pos);
+            pos = end;
+        }
+        if (pos < limit) {
+            channel.truncate(pos);
+            map(pos);
+        }
+    }
+
+    private void map(long size) throws IOException {
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + chunkBytes - 1) / chunkBytes)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = i * chunkBytes;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkBytes, size - start));
+        }
+        mapped = chunks;
+        mappedBytes = size;
+    }
+
+    private int getMappedInt(long pos) {
+        MappedByteBuffer chunk = mapped[(int) (pos / chunkBytes)];
+        int index = (int) (pos % chunkBytes);
+        if (index + Integer.BYTES <= chunk.capacity()) {
+            return chunk.getInt(index);
+        }
+        byte[] bytes = new byte[Integer.BYTES];
+        getMapped(pos, bytes);
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    // Copies bytes starting at a file offset, across chunk boundaries if need be
+    private void getMapped(long pos, byte[] dst) {
+        int done = 0;
+        while (done < dst.length) {
+            MappedByteBuffer chunk = mapped[(int) (pos / chunkBytes)];
+            int index = (int) (pos % chunkBytes);
+            int n = Math.min(dst.length - done, chunk.capacity() - index);
+            chunk.get(index, dst, done, n);
+            done += n;
+            pos += n;
+        }
+    }
+
+    private float[] readRecord(long offset) {
+        try {
+            ByteBuffer buf;
+            long dimPos = offset + KEY_BYTES;
+            if (dimPos + Integer.BYTES <= mappedBytes) {
+                int dim = getMappedInt(dimPos);
+                long valuesPos = dimPos + Integer.BYTES;
+                MappedByteBuffer chunk = mapped[(int) (valuesPos / chunkBytes)];
+                int index = (int) (valuesPos % chunkBytes);
+                if (index + dim * Float.BYTES <= chunk.capacity()) {
+                    buf = chunk.slice(index, dim * Float.BYTES);
+                } else {
+                    byte[] bytes = new byte[dim * Float.BYTES];
+                    getMapped(valuesPos, bytes);
+                    buf = ByteBuffer.wrap(bytes);
+                }
+            } else {
+                ByteBuffer dimBuf = ByteBuffer.allocate(Integer.BYTES);
+                channel.read(dimBuf, dimPos);
+                int dim = dimBuf.flip().getInt();
+                buf = ByteBuffer.allocate(dim * Float.BYTES);
+                channel.read(buf, dimPos + Integer.BYTES);
+                buf.flip();
+            }
+            float[] values = new float[buf.remaining() / Float.BYTES];
+            buf.asFloatBuffer().get(values);
+            return values;
+        } catch (IOException e) {
+            System.err.println("Embedding cache read failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void appendRecord(String key, float[] values) {
+        ByteBuffer buf = ByteBuffer.allocate(KEY_BYTES + Integer.BYTES + values.length * Float.BYTES);
+        buf.put(HexFormat.of().parseHex(key)).putInt(values.length);
+        buf.asFloatBuffer().put(values);
+        buf.position(buf.capacity()).flip();
+        try {
+            long offset = channel.size();
+            while (buf.hasRemaining()) {
+                channel.write(buf, offset + buf.position());
+            }
+            diskIndex.put(key, offset);
+        } catch (IOException e) {
+            System.err.println("Embedding cache write failed: " + e.getMessage());
+        }
+    }
+
+    private void closeQuietly() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing left to do
+            }
+        }
+        channel = null;
+        mapped = new MappedByteBuffer[0];
+        mappedBytes = 0;
+        diskIndex.clear();
+    }
+
+    static String key(String modelId, String text) {
+        return Hashing.sha256Hex(modelId, text);
+    }
+}
@@ -1,9 +1,14 @@
 package eu.cvmatch.backend.service;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.utils.Futures;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class EmbeddingSimilarityService {
     private final GenerativeLanguageClient glClient;
@@ -16,25 +21,33 @@ public class EmbeddingSimilarityService {
      * Returns cosine similarity between text1 and text2, as a [0.0–1.0] double.
      */
     public double cosineSimilarity(String text1, String text2) throws Exception {
-        JsonArray e1 = glClient.embedText(text1, null);
-        JsonArray e2 = glClient.embedText(text2, null);
-
-        JsonObject emb1 = e1.get(0).getAsJsonObject();
-        JsonObject emb2 = e2.get(0).getAsJsonObject();
+        return Futures.await(cosineSimilarityAsync(text1, text2));
+    }
 
-        var arr1 = emb1.getAsJsonArray("values");
-        var arr2 = emb2.getAsJsonArray("values");
+    /**
+     * Same as {@link #cosineSimilarity}, but both texts go out in a single batch call.
+     */
+    public CompletableFuture<Double> cosineSimilarityAsync(String text1, String text2) {
+        return glClient.embedVectorsAsync(Arrays.asList(text1, text2), null)
+                .thenApply(embeddings -> embeddings.get(0).dot(embeddings.get(1)));
+    }
 
-        int len = Math.min(arr1.size(), arr2.size());
-        double dot = 0, norm1 = 0, norm2 = 0;
-        for (int i = 0; i < len; i++) {
-            double v1 = arr1.get(i).getAsDouble();
-            double v2 = arr2.get(i).getAsDouble();
-            dot   += v1 * v2;
-            norm1 += v1 * v1;
-            norm2 += v2 * v2;
-        }
-        if (norm1 == 0 || norm2 == 0) return 0.0;
-        return dot / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    /**
+     * Similarity of {@code query} against each of {@code texts}, in order.
+     * Everything is embedded together, so N texts cost about N/100 HTTP calls.
+     */
+    public CompletableFuture<List<Double>> cosineSimilaritiesAsync(String query, List<String> texts) {
+        List<String> all = new ArrayList<>(texts.size() + 1);
+        all.add(query);
+        all.addAll(texts);
+        return glClient.embedVectorsAsync(all, null).thenApply(embeddings -> {
+            EmbeddingVector queryEmb = embeddings.get(0);
+            float[] scores = queryEmb.dotAll(embeddings.subList(1, embeddings.size()));
+            List<Double> out = new ArrayList<>(scores.length);
+            for (float score : scores) {
+                out.add((double) score);
+            }
+            return out;
+        });
     }
 }
@@ -0,0 +1,269 @@
+package eu.cvmatch.backend.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import eu.cvmatch.backend.exception.CircuitOpenException;
+import eu.cvmatch.backend.utils.Futures;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for Gemini traffic, tagged by endpoint ({@code generateContent},
+ * {@code embedContent}, …) and model. Read together they say where time goes:
+ * <ul>
+ *   <li>{@code gemini.client.requests}: one HTTP attempt, i.e. the provider's latency,
+ *       by {@code outcome} (SUCCESS, THROTTLED, SERVER_ERROR, CLIENT_ERROR, TIMEOUT,
+ *       IO_ERROR) and {@code status}, which also gives the 429 and 5xx rates;</li>
+ *   <li>{@code gemini.client.queue}: time spent waiting for a rate-limiter permit (quota),
+ *       by {@code lane} (interactive, bulk);</li>
+ *   <li>{@code gemini.client.calls}: a whole call, queueing and retries included;</li>
+ *   <li>{@code gemini.client.retries}: retries by {@code reason};</li>
+ *   <li>{@code gemini.client.tokens}: {@code usageMetadata} token counts per reply, by
+ *       {@code type} (prompt, candidates, total, and cached for prompt tokens served
+ *       from context caching).</li>
+ * </ul>
+ * The limiters (queue depth per lane) and the circuit breaker are exported as gauges, hedged requests as
+ * {@code gemini.client.hedges} by {@code result} (sent, won, skipped), and the response cache as
+ * {@code gemini.client.response.cache} by {@code result} (hit, miss, evicted). Deduplication shows in
+ * {@code gemini.client.embedding.cache} by {@code result} (heap_hit, disk_hit, miss) and in
+ * {@code gemini.client.coalesced} by {@code call}.
+ */
+public class GeminiMetrics {
+    private final MeterRegistry registry;
+
+    public GeminiMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Records into a registry of its own, for clients built outside Spring. Several such clients
+     * would otherwise bind their gauges under the same ids, and all but the first would be dropped.
+     */
+    public static GeminiMetrics standalone() {
+        return new GeminiMetrics(new SimpleMeterRegistry());
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /** One HTTP attempt, from sending the request to having read the whole body. */
+    void recordAttempt(HttpRequest req, HttpResponse<?> resp, Throwable err, long nanos) {
+        String[] call = endpointAndModel(req.uri());
+        Timer.builder("gemini.client.requests")
+                .description("Latency of single HTTP attempts to Gemini")
+                .tags("endpoint", call[0], "model", call[1], "outcome", outcome(resp, err), "status", status(resp, err))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** A whole call: queueing for quota, every attempt and the backoff between them. */
+    void recordCall(HttpRequest req, HttpResponse<?> resp, Throwable err, long nanos) {
+        String[] call = endpointAndModel(req.uri());
+        Timer.builder("gemini.client.calls")
+                .description("Latency of Gemini calls including queueing and retries")
+                .tags("endpoint", call[0], "model", call[1], "outcome", outcome(resp, err))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordQueueWait(HttpRequest req, RequestPriority priority, long nanos) {
+        String[] call = endpointAndModel(req.uri());
+        Timer.builder("gemini.client.queue")
+                .description("Time spent waiting for a rate-limiter permit")
+                .tags("endpoint", call[0], "model", call[1], "lane", lane(priority))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordRetry(HttpRequest req, HttpResponse<?> resp, Throwable err) {
+        String[] call = endpointAndModel(req.uri());
+        Counter.builder("gemini.client.retries")
+                .description("Gemini attempts that were retried")
+                .tags("endpoint", call[0], "model", call[1], "reason", status(resp, err))
+                .register(registry)
+                .increment();
+    }
+
+    /** Token counts from a reply's {@code usageMetadata}; missing counts are skipped. */
+    void recordUsage(String model, JsonObject usageMetadata) {
+        if (usageMetadata == null) {
+            return;
+        }
+        recordTokens(model, "prompt", usageMetadata.get("promptTokenCount"));
+        recordTokens(model, "candidates", usageMetadata.get("candidatesTokenCount"));
+        recordTokens(model, "total", usageMetadata.get("totalTokenCount"));
+        recordTokens(model, "cached", usageMetadata.get("cachedContentTokenCount"));
+    }
+
+    private void recordTokens(String model, String type, JsonElement count) {
+        if (count == null || !count.isJsonPrimitive()) {
+            return;
+        }
+        DistributionSummary.builder("gemini.client.tokens")
+                .description("Tokens per Gemini reply, from usageMetadata")
+                .baseUnit("tokens")
+                .tags("model", model, "type", type)
+                .register(registry)
+                .record(count.getAsDouble());
+    }
+
+    void bindLimiter(String name, GeminiRateLimiter limiter) {
+        Gauge.builder("gemini.client.limiter.inflight", limiter, GeminiRateLimiter::getInFlight)
+                .tag("limiter", name)
+                .register(registry);
+        for (RequestPriority priority : RequestPriority.values()) {
+            Gauge.builder("gemini.client.limiter.queued", limiter, l -> l.getQueueDepth(priority))
+                    .tags("limiter", name, "lane", lane(priority))
+                    .register(registry);
+        }
+        Gauge.builder("gemini.client.limiter.concurrency", limiter, GeminiRateLimiter::getConcurrencyLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("limiter", name)
+                .register(registry);
+    }
+
+    void bindCircuit(String name, CircuitBreaker breaker) {
+        Gauge.builder("gemini.client.circuit.open", breaker, b -> b.isOpen() ? 1 : 0)
+                .description("1 while the circuit is open and calls fail fast")
+                .tag("circuit", name)
+                .register(registry);
+        FunctionCounter.builder("gemini.client.circuit.throttled", breaker, CircuitBreaker::getThrottledCount)
+                .description("Calls still rejected with 429 after retries; a streak of them opens the circuit")
+                .tag("circuit", name)
+                .register(registry);
+    }
+
+    void bindHedger(RequestHedger hedger) {
+        FunctionCounter.builder("gemini.client.hedges", hedger, RequestHedger::getHedgeCount)
+                .description("Duplicate generation requests sent against tail latency")
+                .tag("result", "sent")
+                .register(registry);
+        FunctionCounter.builder("gemini.client.hedges", hedger, RequestHedger::getHedgeWinCount)
+                .tag("result", "won")
+                .register(registry);
+        FunctionCounter.builder("gemini.client.hedges", hedger, RequestHedger::getSkippedCount)
+                .tag("result", "skipped")
+                .register(registry);
+    }
+
+    private static String lane(RequestPriority priority) {
+        return priority.name().toLowerCase();
+    }
+
+    void bindContextCache(ContextCache cache) {
+        FunctionCounter.builder("gemini.client.context.cache", cache, ContextCache::getHitCount)
+                .description("Generation requests that reused a cached prompt prefix")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("gemini.client.context.cache", cache, ContextCache::getCreationCount)
+                .tag("result", "created")
+                .register(registry);
+        FunctionCounter.builder("gemini.client.context.cache", cache, ContextCache::getInvalidationCount)
+                .tag("result", "invalidated")
+                .register(registry);
+        Gauge.builder("gemini.client.context.cache.size", cache, ContextCache::size)
+                .register(registry);
+    }
+
+    void bindResponseCache(ResponseCache<?> cache) {
+        FunctionCounter.builder("gemini.client.response.cache", cache, ResponseCache::getHitCount)
+                .description("Generation requests answered from the response cache, or not")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("gemini.client.response.cache", cache, ResponseCache::getMissCount)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("gemini.client.response.cache", cache, ResponseCache::getEvictionCount)
+                .tag("result", "evicted")
+                .register(registry);
+        Gauge.builder("gemini.client.response.cache.size", cache, ResponseCache::size)
+                .register(registry);
+    }
+
+    void bindEmbeddingCache(EmbeddingCache cache) {
+        FunctionCounter.builder("gemini.client.embedding.cache", cache, EmbeddingCache::getHeapHitCount)
+                .description("Embedding lookups by the tier that answered them, or miss")
+                .tag("result", "heap_hit")
+                .register(registry);
+        FunctionCounter.builder("gemini.client.embedding.cache", cache, EmbeddingCache::getDiskHitCount)
+                .tag("result", "disk_hit")
+                .register(registry);
+        FunctionCounter.builder("gemini.client.embedding.cache", cache, EmbeddingCache::getMissCount)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("gemini.client.embedding.cache.size", cache, EmbeddingCache::heapSize)
+                .tag("tier", "heap")
+                .register(registry);
+        Gauge.builder("gemini.client.embedding.cache.size", cache, EmbeddingCache::diskSize)
+                .tag("tier", "disk")
+                .register(registry);
+    }
+
+    /** @param call which kind of request the single-flight group coalesces (generate, embed, …) */
+    void bindSingleFlight(String call, SingleFlight<?, ?> flight) {
+        FunctionCounter.builder("gemini.client.coalesced", flight, SingleFlight::getCoalescedCount)
+                .description("Calls that joined an identical call already in flight instead of sending their own")
+                .tag("call", call)
+                .register(registry);
+    }
+
+    static String outcome(HttpResponse<?> resp, Throwable err) {
+        if (err != null) {
+            Throwable cause = Futures.unwrap(err);
+            if (cause instanceof CancellationException) {
+                // The losing side of a hedged request
+                return "CANCELLED";
+            }
+            if (cause instanceof HttpTimeoutException) {
+                return "TIMEOUT";
+            }
+            if (cause instanceof CircuitOpenException) {
+                return "REJECTED";
+            }
+            return cause instanceof IOException ? "IO_ERROR" : "ERROR";
+        }
+        int status = resp.statusCode();
+        if (status == 200) {
+            return "SUCCESS";
+        }
+        if (status == 429) {
+            return "THROTTLED";
+        }
+        return status >= 500 ? "SERVER_ERROR" : "CLIENT_ERROR";
+    }
+
+    private static String status(HttpResponse<?> resp, Throwable err) {
+        return err != null ? Futures.unwrap(err).getClass().getSimpleName() : Integer.toString(resp.statusCode());
+    }
+
+    /** {@code /v1/models/{model}:{endpoint}}; {@code /v1/models} is listModels. */
+    static String[] endpointAndModel(URI uri) {
+        String path = uri.getPath();
+        if (path.contains("/cachedContents")) {
+            return new String[]{"cachedContents", "none"};
+        }
+        int models = path.indexOf("/models/");
+        int colon = path.lastIndexOf(':');
+        if (models < 0 || colon < models) {
+            return new String[]{"listModels", "none"};
+        }
+        return new String[]{path.substring(colon + 1), path.substring(models + "/models/".length(), colon)};
+    }
+}
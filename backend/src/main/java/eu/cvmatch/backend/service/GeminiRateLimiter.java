@@ -0,0 +1,298 @@
+package eu.cvmatch.backend.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Client-side limiter for Gemini quota.
+ *
+ * Requests-per-minute and tokens-per-minute are token buckets that refill
+ * continuously. On top of that, the number of calls in flight is capped by an
+ * AIMD limit: it halves when Gemini answers 429 and creeps back up by roughly
+ * one slot per window of successful calls.
+ *
+ * Callers get a future that completes when a permit is granted, so waiting in
+ * the queue never pins a thread. Each {@link RequestPriority} has its own FIFO
+ * lane. Interactive waiters always go first; bulk waiters are only served while
+ * no interactive call is queued and only from quota beyond the interactive
+ * reserve (a share of the request and token buckets and of the concurrency
+ * limit), so a large bulk job can't starve interactive traffic. A queued bulk
+ * call is overtaken by every interactive call that arrives meanwhile. Waiters
+ * fail after their lane's maximum wait.
+ */
+public class GeminiRateLimiter {
+
+    public enum Outcome { SUCCESS, THROTTLED, FAILURE }
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "gemini-rate-limiter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String name;
+    private final double requestCapacity;
+    private final double tokenCapacity;
+    private final int maxConcurrency;
+    private final double interactiveReserve;
+    private final Map<RequestPriority, Long> maxWaitMillis = new EnumMap<>(RequestPriority.class);
+
+    private final Map<RequestPriority, Deque<Waiter>> lanes = new EnumMap<>(RequestPriority.class);
+    private double availableRequests;
+    private double availableTokens;
+    private long lastRefillNanos;
+    private double concurrencyLimit;
+    private int inFlight;
+    private ScheduledFuture<?> pendingDrain;
+
+    /**
+     * @param requestsPerMinute request quota; 0 or less disables the request bucket
+     * @param tokensPerMinute   token quota; 0 or less disables the token bucket
+     * @param maxConcurrency    upper bound for the adaptive in-flight limit
+     * @param maxWaitMillis     how long a caller may queue before giving up
+     */
+    public GeminiRateLimiter(String name, int requestsPerMinute, int tokensPerMinute,
+                             int maxConcurrency, long maxWaitMillis) {
+        this(name, requestsPerMinute, tokensPerMinute, maxConcurrency, maxWaitMillis, 0, maxWaitMillis);
+    }
+
+    /**
+     * @param interactiveReserve share (0–1) of the quota and of the concurrency limit that
+     *                           bulk calls leave to interactive ones
+     * @param bulkMaxWaitMillis  how long a bulk caller may queue before giving up
+     */
+    public GeminiRateLimiter(String name, int requestsPerMinute, int tokensPerMinute,
+                             int maxConcurrency, long maxWaitMillis,
+                             double interactiveReserve, long bulkMaxWaitMillis) {
+        this.name = name;
+        this.requestCapacity = requestsPerMinute > 0 ? requestsPerMinute : Double.POSITIVE_INFINITY;
+        this.tokenCapacity = tokensPerMinute > 0 ? tokensPerMinute : Double.POSITIVE_INFINITY;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.interactiveReserve = Math.min(Math.max(0, interactiveReserve), 1);
+        this.maxWaitMillis.put(RequestPriority.INTERACTIVE, maxWaitMillis);
+        this.maxWaitMillis.put(RequestPriority.BULK, bulkMaxWaitMillis);
+        for (RequestPriority priority : RequestPriority.values()) {
+            lanes.put(priority, new ArrayDeque<>());
+        }
+        this.availableRequests = requestCapacity;
+        this.availableTokens = tokenCapacity;
+        this.concurrencyLimit = this.maxConcurrency;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Queues for a permit covering one request of roughly {@code estimatedTokens} tokens.
+     * The permit must be released with the call's outcome.
+     */
+    public CompletableFuture<Permit> acquire(int estimatedTokens) {
+        return acquire(estimatedTokens, RequestPriority.INTERACTIVE);
+    }
+
+    public CompletableFuture<Permit> acquire(int estimatedTokens, RequestPriority priority) {
+        Waiter waiter = new Waiter(Math.min(Math.max(0, estimatedTokens), tokenCapacity), priority);
+        List<Waiter> granted;
+        synchronized (this) {
+            lanes.get(priority).addLast(waiter);
+            granted = drainLocked();
+        }
+        complete(granted);
+        if (!waiter.future.isDone()) {
+            SCHEDULER.schedule(() -> expire(waiter), maxWaitMillis.get(priority), TimeUnit.MILLISECONDS);
+        }
+        return waiter.future;
+    }
+
+    /**
+     * Grants a permit only from spare capacity, for optional work such as hedged
+     * requests: never if anyone is queued, and never the last request of the bucket
+     * or the last in-flight slot, so it can't delay a regular call or cause a 429.
+     *
+     * @return the permit, or null if there is no spare capacity right now
+     */
+    public Permit tryAcquire(int estimatedTokens) {
+        double tokens = Math.min(Math.max(0, estimatedTokens), tokenCapacity);
+        synchronized (this) {
+            refillLocked();
+            if (queuedLocked() > 0 || inFlight + 1 >= Math.max(1, (int) concurrencyLimit)
+                    || availableRequests < 2 || availableTokens < tokens) {
+                return null;
+            }
+            availableRequests -= 1;
+            availableTokens -= tokens;
+            inFlight++;
+        }
+        return new Permit();
+    }
+
+    public synchronized double getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queuedLocked();
+    }
+
+    public synchronized int getQueueDepth(RequestPriority priority) {
+        return lanes.get(priority).size();
+    }
+
+    private int queuedLocked() {
+        int queued = 0;
+        for (Deque<Waiter> lane : lanes.values()) {
+            queued += lane.size();
+        }
+        return queued;
+    }
+
+    private void release(Permit permit, Outcome outcome) {
+        List<Waiter> granted;
+        synchronized (this) {
+            inFlight--;
+            switch (outcome) {
+                case SUCCESS -> concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1.0 / concurrencyLimit);
+                case THROTTLED -> {
+                    concurrencyLimit = Math.max(1.0, concurrencyLimit / 2);
+                    // The provider says the window is spent: make the next caller wait for a refill
+                    if (Double.isFinite(requestCapacity)) {
+                        availableRequests = Math.min(availableRequests, 0);
+                    }
+                }
+                case FAILURE -> { }
+            }
+            granted = drainLocked();
+        }
+        complete(granted);
+    }
+
+    private void expire(Waiter waiter) {
+        boolean removed;
+        synchronized (this) {
+            removed = lanes.get(waiter.priority).remove(waiter);
+        }
+        if (removed) {
+            waiter.future.completeExceptionally(new IllegalStateException("Gemini " + name + " rate limit: no "
+                    + waiter.priority.name().toLowerCase() + " capacity within " + maxWaitMillis.get(waiter.priority) + " ms"));
+        }
+    }
+
+    private void scheduledDrain() {
+        List<Waiter> granted;
+        synchronized (this) {
+            pendingDrain = null;
+            granted = drainLocked();
+        }
+        complete(granted);
+    }
+
+    private List<Waiter> drainLocked() {
+        refillLocked();
+        List<Waiter> granted = new ArrayList<>();
+        Deque<Waiter> interactive = lanes.get(RequestPriority.INTERACTIVE);
+        if (!drainLaneLocked(interactive, 0, 0, 0, granted) || !interactive.isEmpty()) {
+            return granted;
+        }
+        int limit = Math.max(1, (int) concurrencyLimit);
+        int reservedSlots = (int) Math.min(limit - 1, Math.ceil(limit * interactiveReserve));
+        drainLaneLocked(lanes.get(RequestPriority.BULK), reservedSlots,
+                reserved(requestCapacity), reserved(tokenCapacity), granted);
+        return granted;
+    }
+
+    /**
+     * Grants waiters from the head of {@code lane} while leaving the given slots and
+     * quota untouched. Returns false if it stopped on quota, in which case a drain is
+     * scheduled for when the quota has refilled.
+     */
+    private boolean drainLaneLocked(Deque<Waiter> lane, int reservedSlots, double reservedRequests,
+                                    double reservedTokens, List<Waiter> granted) {
+        while (!lane.isEmpty() && inFlight < Math.max(1, (int) concurrencyLimit) - reservedSlots) {
+            Waiter head = lane.peekFirst();
+            if (availableRequests < 1 + reservedRequests || availableTokens < head.tokens + reservedTokens) {
+                scheduleDrainLocked(nanosUntilAvailable(1 + reservedRequests, head.tokens + reservedTokens));
+                return false;
+            }
+            lane.pollFirst();
+            availableRequests -= 1;
+            availableTokens -= head.tokens;
+            inFlight++;
+            granted.add(head);
+        }
+        return true;
+    }
+
+    private double reserved(double capacity) {
+        return Double.isFinite(capacity) ? capacity * interactiveReserve : 0;
+    }
+
+    private void refillLocked() {
+        long now = System.nanoTime();
+        double minutes = (now - lastRefillNanos) / 60e9;
+        lastRefillNanos = now;
+        if (Double.isFinite(requestCapacity)) {
+            availableRequests = Math.min(requestCapacity, availableRequests + minutes * requestCapacity);
+        }
+        if (Double.isFinite(tokenCapacity)) {
+            availableTokens = Math.min(tokenCapacity, availableTokens + minutes * tokenCapacity);
+        }
+    }
+
+    private long nanosUntilAvailable(double requests, double tokens) {
+        double requestWait = availableRequests >= requests ? 0 : (requests - availableRequests) / requestCapacity;
+        double tokenWait = availableTokens >= tokens ? 0 : (tokens - availableTokens) / tokenCapacity;
+        return (long) Math.ceil(Math.max(requestWait, tokenWait) * 60e9);
+    }
+
+    private void scheduleDrainLocked(long delayNanos) {
+        // A bulk waiter may have scheduled a later drain than an interactive one needs
+        if (pendingDrain != null && !pendingDrain.isDone() && pendingDrain.getDelay(TimeUnit.NANOSECONDS) > delayNanos) {
+            pendingDrain.cancel(false);
+        }
+        if (pendingDrain == null || pendingDrain.isDone()) {
+            pendingDrain = SCHEDULER.schedule(this::scheduledDrain, Math.max(1, delayNanos), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void complete(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            waiter.future.complete(new Permit());
+        }
+    }
+
+    private static final class Waiter {
+        final double tokens;
+        final RequestPriority priority;
+        final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        Waiter(double tokens, RequestPriority priority) {
+            this.tokens = tokens;
+            this.priority = priority;
+        }
+    }
+
+    /** One granted slot; releasing it twice is a no-op. */
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {}
+
+        public void release(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                GeminiRateLimiter.this.release(this, outcome);
+            }
+        }
+    }
+}
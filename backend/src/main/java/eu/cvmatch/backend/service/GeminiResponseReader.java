@@ -0,0 +1,364 @@
+package eu.cvmatch.backend.service;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pulls the few fields we use out of Gemini replies without building a Gson tree.
+ * <p>
+ * Embedding values are scanned straight from the UTF-8 bytes into a {@code float[]}.
+ * Even {@link JsonReader#nextDouble} allocates a String per decimal number, and a
+ * batch of 100 × 768 values is the bulk of what a bulk scoring run allocates.
+ * Candidate text is read with a streaming {@link JsonReader}, skipping everything else.
+ */
+public final class GeminiResponseReader {
+    private static final int TYPICAL_DIMENSIONS = 768;
+
+    // Exactly representable powers of ten for the fast decimal path
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private GeminiResponseReader() {}
+
+    /** {@code embedContent}: the values of {@code embedding}, or null if the reply has none. */
+    public static float[] readEmbedding(byte[] json) {
+        try {
+            ByteScanner in = new ByteScanner(json);
+            float[] values = null;
+            in.expect('{');
+            if (!in.nextIf('}')) {
+                do {
+                    if (in.nameIs("embedding")) {
+                        values = readEmbeddingObject(in);
+                    } else {
+                        in.skipValue();
+                    }
+                } while (in.nextIf(','));
+                in.expect('}');
+            }
+            return values;
+        } catch (IllegalStateException e) {
+            throw malformed("embedContent", e);
+        }
+    }
+
+    /** {@code batchEmbedContents}: one array per entry of {@code embeddings}, in order. */
+    public static List<float[]> readEmbeddings(byte[] json) {
+        try {
+            ByteScanner in = new ByteScanner(json);
+            List<float[]> out = new ArrayList<>();
+            in.expect('{');
+            if (!in.nextIf('}')) {
+                do {
+                    if (in.nameIs("embeddings")) {
+                        in.expect('[');
+                        if (!in.nextIf(']')) {
+                            do {
+                                out.add(readEmbeddingObject(in));
+                            } while (in.nextIf(','));
+                            in.expect(']');
+                        }
+                    } else {
+                        in.skipValue();
+                    }
+                } while (in.nextIf(','));
+                in.expect('}');
+            }
+            return out;
+        } catch (IllegalStateException e) {
+            throw malformed("batchEmbedContents", e);
+        }
+    }
+
+    /**
+     * The concatenated {@code parts[].text} of the first candidate of a
+     * {@code generateContent} reply or stream chunk; empty if it carries no text.
+     */
+    public static String readFirstCandidateText(String json) {
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            StringBuilder text = new StringBuilder();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("candidates") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    if (reader.hasNext()) {
+                        readCandidateText(reader, text);
+                    }
+                    while (reader.hasNext()) {
+                        reader.skipValue();
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return text.toString();
+        } catch (IOException | IllegalStateException e) {
+            throw malformed("generateContent", e);
+        }
+    }
+
+    private static float[] readEmbeddingObject(ByteScanner in) {
+        float[] values = new float[0];
+        in.expect('{');
+        if (!in.nextIf('}')) {
+            do {
+                if (in.nameIs("values")) {
+                    values = readFloats(in);
+                } else {
+                    in.skipValue();
+                }
+            } while (in.nextIf(','));
+            in.expect('}');
+        }
+        return values;
+    }
+
+    private static float[] readFloats(ByteScanner in) {
+        float[] buffer = new float[TYPICAL_DIMENSIONS];
+        int size = 0;
+        in.expect('[');
+        if (!in.nextIf(']')) {
+            do {
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size * 2);
+                }
+                buffer[size++] = (float) in.nextDouble();
+            } while (in.nextIf(','));
+            in.expect(']');
+        }
+        return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+    }
+
+    private static void readCandidateText(JsonReader reader, StringBuilder text) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("content") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("parts") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        readPartsText(reader, text);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readPartsText(JsonReader reader, StringBuilder text) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("text") && reader.peek() == JsonToken.STRING) {
+                    text.append(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    private static IllegalStateException malformed(String endpoint, Exception cause) {
+        return new IllegalStateException("Malformed " + endpoint + " reply: " + cause.getMessage(), cause);
+    }
+
+    /**
+     * Minimal pull scanner over UTF-8 JSON bytes. Structural characters are ASCII, so
+     * strings can be skipped byte by byte; only the numbers we keep are decoded.
+     */
+    private static final class ByteScanner {
+        private final byte[] in;
+        private int pos;
+
+        ByteScanner(byte[] in) {
+            this.in = in;
+        }
+
+        void expect(char c) {
+            if (peek() != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        boolean nextIf(char c) {
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        /** Reads an object key and its colon; true if the key is exactly {@code name}. */
+        boolean nameIs(String name) {
+            expect('"');
+            int start = pos;
+            int end = skipStringBody();
+            expect(':');
+            if (end - start != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < name.length(); i++) {
+                if (in[start + i] != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void skipValue() {
+            byte b = peek();
+            if (b == '"') {
+                pos++;
+                skipStringBody();
+            } else if (b == '{' || b == '[') {
+                int depth = 0;
+                do {
+                    b = next();
+                    if (b == '"') {
+                        skipStringBody();
+                    } else if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        depth--;
+                    }
+                } while (depth > 0);
+            } else {
+                int start = pos;
+                while (pos < in.length && !isDelimiter(in[pos])) {
+                    pos++;
+                }
+                if (pos == start) {
+                    throw error("unexpected '" + (char) b + "'");
+                }
+            }
+        }
+
+        /**
+         * Decodes a JSON number. Up to 15 significant digits with a small exponent
+         * (every embedding value) take Clinger's exact fast path; anything else falls
+         * back to {@link Double#parseDouble}.
+         */
+        double nextDouble() {
+            skipWhitespace();
+            int start = pos;
+            boolean negative = at(pos) == '-';
+            if (negative) {
+                pos++;
+            }
+            long mantissa = 0;
+            int significant = 0;
+            int exponent = 0;
+            boolean anyDigit = false;
+            boolean exact = true;
+            for (boolean fraction = false; ; pos++) {
+                byte b = at(pos);
+                if (b >= '0' && b <= '9') {
+                    anyDigit = true;
+                    if (mantissa == 0 && b == '0') {
+                        exponent -= fraction ? 1 : 0;
+                    } else if (significant < 15) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        significant++;
+                        exponent -= fraction ? 1 : 0;
+                    } else {
+                        exact = false;
+                    }
+                } else if (b == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    break;
+                }
+            }
+            if (!anyDigit) {
+                throw error("expected a number");
+            }
+            byte b = at(pos);
+            if (b == 'e' || b == 'E') {
+                pos++;
+                boolean negativeExp = at(pos) == '-';
+                if (negativeExp || at(pos) == '+') {
+                    pos++;
+                }
+                int exp = 0;
+                boolean expDigit = false;
+                for (b = at(pos); b >= '0' && b <= '9'; b = at(++pos)) {
+                    exp = Math.min(exp * 10 + (b - '0'), 10_000);
+                    expDigit = true;
+                }
+                if (!expDigit) {
+                    throw error("bad exponent");
+                }
+                exponent += negativeExp ? -exp : exp;
+            }
+
+            if (!exact || exponent < -22 || exponent > 22) {
+                return Double.parseDouble(new String(in, start, pos - start, StandardCharsets.US_ASCII));
+            }
+            double value = exponent < 0 ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+            return negative ? -value : value;
+        }
+
+        private byte peek() {
+            skipWhitespace();
+            if (pos >= in.length) {
+                throw error("unexpected end of input");
+            }
+            return in[pos];
+        }
+
+        private byte next() {
+            if (pos >= in.length) {
+                throw error("unexpected end of input");
+            }
+            return in[pos++];
+        }
+
+        private byte at(int i) {
+            return i < in.length ? in[i] : 0;
+        }
+
+        /** Skips to just past the closing quote; returns the index of that quote. */
+        private int skipStringBody() {
+            while (true) {
+                byte b = next();
+                if (b == '\\') {
+                    next();
+                } else if (b == '"') {
+                    return pos - 1;
+                }
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < in.length && (in[pos] == ' ' || in[pos] == '\n' || in[pos] == '\r' || in[pos] == '\t')) {
+                pos++;
+            }
+        }
+
+        private static boolean isDelimiter(byte b) {
+            return b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t';
+        }
+
+        private IllegalStateException error(String message) {
+            return new IllegalStateException(message + " at byte " + pos);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package eu.cvmatch.backend.service;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Per-call switches for {@link GenerativeLanguageClient} generation requests.
+ * Instances are immutable; each {@code with...} method returns a modified copy.
+ */
+public final class GenerationOptions {
+    private static final GenerationOptions DEFAULTS =
+            new GenerationOptions(false, null, RequestPriority.INTERACTIVE, false, null);
+
+    private final boolean bypassCache;
+    private final JsonObject responseSchema;
+    private final RequestPriority priority;
+    private final boolean sharedPrefix;
+    private final String prefixTag;
+
+    private GenerationOptions(boolean bypassCache, JsonObject responseSchema, RequestPriority priority,
+                              boolean sharedPrefix, String prefixTag) {
+        this.bypassCache = bypassCache;
+        this.responseSchema = responseSchema;
+        this.priority = priority;
+        this.sharedPrefix = sharedPrefix;
+        this.prefixTag = prefixTag;
+    }
+
+    public static GenerationOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /** Skip the response cache lookup and always call Gemini; the fresh reply still refreshes the cache. */
+    public GenerationOptions withBypassCache(boolean bypassCache) {
+        return new GenerationOptions(bypassCache, responseSchema, priority, sharedPrefix, prefixTag);
+    }
+
+    /**
+     * Ask for a JSON reply ({@code responseMimeType: application/json}) that matches
+     * the given OpenAPI-style schema; null returns to free-form text.
+     */
+    public GenerationOptions withResponseSchema(JsonObject responseSchema) {
+        return new GenerationOptions(bypassCache, responseSchema, priority, sharedPrefix, prefixTag);
+    }
+
+    /** Rate-limiter lane for the call; bulk calls yield quota to interactive ones. Defaults to interactive. */
+    public GenerationOptions withPriority(RequestPriority priority) {
+        return new GenerationOptions(bypassCache, responseSchema, priority, sharedPrefix, prefixTag);
+    }
+
+    /**
+     * The first message is a prefix many calls share (rubric plus job, rubric plus CV):
+     * once it is hot it is sent as Gemini cached content and only the other messages
+     * go with each call. {@code tag} groups the cached prefixes that
+     * {@link GenerativeLanguageClient#invalidateCachedPrefixes} drops together; may be null.
+     */
+    public GenerationOptions withSharedPrefix(String tag) {
+        return new GenerationOptions(bypassCache, responseSchema, priority, true, tag);
+    }
+
+    public boolean isBypassCache() {
+        return bypassCache;
+    }
+
+    public JsonObject getResponseSchema() {
+        return responseSchema;
+    }
+
+    public RequestPriority getPriority() {
+        return priority;
+    }
+
+    public boolean isSharedPrefix() {
+        return sharedPrefix;
+    }
+
+    public String getPrefixTag() {
+        return prefixTag;
+    }
+}
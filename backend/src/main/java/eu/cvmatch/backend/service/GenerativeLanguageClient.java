@@ -3,44 +3,87 @@ package eu.cvmatch.backend.service;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import com.google.gson.stream.JsonReader;
+import eu.cvmatch.backend.config.GeminiConfig;
+import eu.cvmatch.backend.config.GeminiProperties;
+import eu.cvmatch.backend.exception.CircuitOpenException;
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.utils.Futures;
+import eu.cvmatch.backend.utils.Hashing;
+import eu.cvmatch.backend.utils.TokenEstimator;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import io.github.cdimascio.dotenv.Dotenv;
 
+import java.io.IOException;
 import java.io.StringReader;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Service
 public class GenerativeLanguageClient {
+    // Pattern to capture text between ```json``` or ``` fences
+    private static final Pattern FENCE = Pattern.compile("```(?:json)?\\s*(.*?)\\s*```", Pattern.DOTALL);
+    // Reply budget charged up front against the tokens-per-minute bucket
+    private static final int ESTIMATED_OUTPUT_TOKENS = 512;
+
     private final HttpClient httpClient;
+    private final Executor executor;
+    private final Duration requestTimeout;
     private final Gson gson;
     private final String apiKey;
     private final String defaultModel;
     private final String defaultEmbedModel;
-    private final String v1Base = "https://generativelanguage.googleapis.com/v1";
+    private final int embedBatchSize;
+    private final EmbeddingCache embeddingCache;
+    private final ResponseCache<JsonArray> responseCache;
+    private final GeminiRateLimiter generationLimiter;
+    private final GeminiRateLimiter embedLimiter;
+    private final CircuitBreaker generationBreaker;
+    private final RetryPolicy generateRetry;
+    private final RetryPolicy embedRetry;
+    private final RetryPolicy listModelsRetry;
+    private final SingleFlight<String, JsonArray> inFlight = new SingleFlight<>();
+    private final SingleFlight<String, EmbeddingVector> embedInFlight = new SingleFlight<>();
+    private final SingleFlight<String, List<EmbeddingVector>> batchEmbedInFlight = new SingleFlight<>();
+    private final GeminiMetrics metrics;
+    private final RequestHedger hedger;
+    private final String v1Base;
+    private final String v1betaBase;
+    private final ContextCache contextCache;
+    private final long contextCacheTtlSeconds;
 
     /**
      * No-args constructor: reads configuration from .env
      */
     public GenerativeLanguageClient() {
-        Dotenv dotenv = Dotenv.configure()
-                .ignoreIfMissing()
-                .ignoreIfMalformed()
-                .load();
-        this.apiKey = dotenv.get("GEMINI_API_KEY");
-        this.defaultModel = dotenv.get("GEMINI_MODEL_ID", "gemini-2.0-flash");
-        this.defaultEmbedModel = dotenv.get("GEMINI_EMBED_MODEL_ID", "embedding-001");
-        this.httpClient = HttpClient.newHttpClient();
-        this.gson = new Gson();
+        this(GeminiProperties.fromEnv());
     }
 
     public GenerativeLanguageClient(
@@ -48,37 +91,305 @@ public class GenerativeLanguageClient {
             @Value("${GEMINI_MODEL_ID:gemini-2.0-flash}") String defaultModel,
             @Value("${GEMINI_EMBED_MODEL_ID:embedding-001}") String defaultEmbedModel
     ) {
-        this.httpClient       = HttpClient.newHttpClient();
-        this.gson             = new Gson();
-        this.apiKey           = apiKey;
-        this.defaultModel     = defaultModel;
-        this.defaultEmbedModel = defaultEmbedModel;
+        this(new GeminiProperties(apiKey, defaultModel, defaultEmbedModel));
+    }
+
+    public GenerativeLanguageClient(GeminiProperties props) {
+        this(props, GeminiConfig.newExecutor(props));
+    }
+
+    public GenerativeLanguageClient(GeminiProperties props, ExecutorService executor) {
+        this(props, GeminiConfig.newHttpClient(props, executor));
+    }
+
+    /**
+     * Outside Spring: embeddings are cached in memory only, since several such clients would
+     * otherwise share {@code embedCacheDir} without a lock, and metrics go to a registry of their own.
+     */
+    public GenerativeLanguageClient(GeminiProperties props, HttpClient httpClient) {
+        this(props, httpClient, GeminiMetrics.standalone(), EmbeddingCache.inMemory(props.getEmbedCacheSize()));
+    }
+
+    /**
+     * Spring wiring: shares the application-wide Gemini transport from {@link GeminiConfig}.
+     * The client's executor also runs every async continuation and retry delay.
+     */
+    @Autowired
+    public GenerativeLanguageClient(GeminiProperties props, HttpClient httpClient, GeminiMetrics metrics) {
+        this(props, httpClient, metrics, (props.getEmbedCacheDir() == null || props.getEmbedCacheDir().isBlank())
+                ? EmbeddingCache.inMemory(props.getEmbedCacheSize())
+                : EmbeddingCache.persistent(props.getEmbedCacheSize(), Path.of(props.getEmbedCacheDir())));
+    }
+
+    private GenerativeLanguageClient(GeminiProperties props, HttpClient httpClient, GeminiMetrics metrics,
+                                     EmbeddingCache embeddingCache) {
+        this.executor          = httpClient.executor().orElseGet(ForkJoinPool::commonPool);
+        this.httpClient        = httpClient;
+        this.requestTimeout    = Duration.ofMillis(props.getRequestTimeoutMs());
+        this.gson              = new Gson();
+        this.apiKey            = props.getApiKey();
+        this.v1Base            = stripTrailingSlash(props.getBaseUrl()) + "/v1";
+        this.v1betaBase        = stripTrailingSlash(props.getBaseUrl()) + "/v1beta";
+        this.defaultModel      = props.getModelId();
+        this.defaultEmbedModel = props.getEmbedModelId();
+        this.embedBatchSize    = Math.max(1, Math.min(100, props.getEmbedBatchSize()));
+        this.embeddingCache    = embeddingCache;
+        this.responseCache     = new ResponseCache<>(props.getResponseCacheSize(),
+                TimeUnit.SECONDS.toMillis(props.getResponseCacheTtlSeconds()));
+        this.generationLimiter = new GeminiRateLimiter("generate", props.getRequestsPerMinute(),
+                props.getTokensPerMinute(), props.getMaxConcurrency(), props.getQueueTimeoutMs(),
+                props.getInteractiveReservePercent() / 100.0, props.getBulkQueueTimeoutMs());
+        this.embedLimiter      = new GeminiRateLimiter("embed", props.getEmbedRequestsPerMinute(),
+                0, props.getMaxConcurrency(), props.getQueueTimeoutMs());
+        this.generationBreaker = new CircuitBreaker("generate", props.getBreakerFailureThreshold(),
+                props.getBreakerThrottleThreshold(), props.getBreakerOpenMs());
+        this.generateRetry     = retryPolicy(props.getRetry("generate"));
+        this.embedRetry        = retryPolicy(props.getRetry("embed"));
+        this.listModelsRetry   = retryPolicy(props.getRetry("listModels"));
+        this.metrics           = metrics;
+        this.hedger            = new RequestHedger(props.getHedgePercentile(), props.getHedgeMax(),
+                props.getHedgeMinDelayMs(), executor);
+        this.contextCacheTtlSeconds = props.getContextCacheTtlSeconds();
+        this.contextCache      = new ContextCache(props.getContextCacheSize(), props.getContextCacheMinUses(),
+                props.getContextCacheMinTokens(), TimeUnit.SECONDS.toMillis(contextCacheTtlSeconds),
+                this::createCachedContent, this::deleteCachedContent);
+        metrics.bindHedger(hedger);
+        metrics.bindContextCache(contextCache);
+        metrics.bindResponseCache(responseCache);
+        metrics.bindEmbeddingCache(embeddingCache);
+        metrics.bindSingleFlight("generate", inFlight);
+        metrics.bindSingleFlight("embed", embedInFlight);
+        metrics.bindSingleFlight("batchEmbed", batchEmbedInFlight);
+        metrics.bindLimiter("generate", generationLimiter);
+        metrics.bindLimiter("embed", embedLimiter);
+        metrics.bindCircuit("generate", generationBreaker);
+    }
+
+    /** Closes the on-disk embedding cache; later embeddings are still cached in memory. */
+    @EventListener(ContextClosedEvent.class)
+    public void closeCaches() {
+        embeddingCache.close();
+    }
+
+    private HttpRequest.Builder newRequest(String url) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(requestTimeout);
+    }
+
+    private static RetryPolicy retryPolicy(GeminiProperties.Retry retry) {
+        return new RetryPolicy(retry.getMaxAttempts(), retry.getBaseDelayMs(),
+                retry.getMaxDelayMs(), retry.getMaxElapsedMs());
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+
+    /** Model used for embeddings when a call doesn't name one. */
+    public String getEmbedModelId() {
+        return defaultEmbedModel;
+    }
+
+    /** Number of calls that were served by an identical request already in flight. */
+    public long getCoalescedCallCount() {
+        return inFlight.getCoalescedCount() + embedInFlight.getCoalescedCount() + batchEmbedInFlight.getCoalescedCount();
+    }
+
+    /** False while the generation circuit is open and calls fail fast with {@link CircuitOpenException}. */
+    public boolean isGenerationAvailable() {
+        return !generationBreaker.isOpen();
+    }
+
+    public RequestHedger getHedger() {
+        return hedger;
+    }
+
+    public CircuitBreaker getGenerationCircuit() {
+        return generationBreaker;
+    }
+
+    /** Cache of deterministic generation replies, exposed for hit/miss statistics. */
+    public ResponseCache<JsonArray> getResponseCache() {
+        return responseCache;
     }
 
     /** List all models available to your API key. */
     public JsonArray listModels() throws Exception {
+        return Futures.await(listModelsAsync());
+    }
+
+    public CompletableFuture<JsonArray> listModelsAsync() {
         String url = String.format("%s/models?key=%s", v1Base, apiKey);
-        HttpRequest req = HttpRequest.newBuilder()
-                .uri(URI.create(url))
+        HttpRequest req = newRequest(url)
                 .GET()
                 .build();
-        HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
-        if (resp.statusCode() != 200) {
-            throw new IllegalStateException("listModels failed: " + resp.body());
-        }
-        JsonObject json = JsonParser.parseString(resp.body()).getAsJsonObject();
-        return json.getAsJsonArray("models");
+        return send(listModelsRetry, null, req, 0, RequestPriority.INTERACTIVE)
+                .thenApply(resp -> {
+                    if (resp.statusCode() != 200) {
+                        throw new IllegalStateException("listModels failed: " + resp.body());
+                    }
+                    JsonObject json = JsonParser.parseString(resp.body()).getAsJsonObject();
+                    return json.getAsJsonArray("models");
+                });
     }
 
-    private JsonArray generateContentRaw(
+    private CompletableFuture<JsonArray> generateContentRaw(
             List<String> messages,
             String modelId,
-            int candidateCount
-    ) throws Exception {
+            int candidateCount,
+            GenerationOptions options
+    ) {
         String model = (modelId == null || modelId.isBlank())
                 ? defaultModel
                 : modelId;
 
+        JsonObject body = generateBody(messages, model, candidateCount, options);
+
+        String url = String.format("%s/models/%s:generateContent?key=%s",
+                v1Base, model, apiKey);
+
+        String bodyJson = gson.toJson(body);
+        HttpRequest req = newRequest(url)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(bodyJson, StandardCharsets.UTF_8))
+                .build();
+
+        // The body pins temperature to 0, so identical requests get identical replies:
+        // serve them from the cache, and let concurrent ones share a single call
+        String requestKey = Hashing.sha256Hex("generateContent", model, bodyJson);
+        if (!options.isBypassCache()) {
+            JsonArray cached = responseCache.get(requestKey);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached.deepCopy());
+            }
+        }
+
+        int tokens = TokenEstimator.estimate(messages) + ESTIMATED_OUTPUT_TOKENS * candidateCount;
+        CompletableFuture<String> cachedPrefix = options.isSharedPrefix() && messages.size() > 1
+                ? contextCache.handleFor(model, messages.get(0), options.getPrefixTag(), options.getPriority())
+                : null;
+        // An interactive call must not wait on a shared call queued in the bulk lane,
+        // so only calls of the same priority share one
+        String flightKey = requestKey + ":" + options.getPriority();
+        return inFlight.execute(flightKey, () -> guarded(() -> cachedPrefix == null
+                ? hedged(model, req, tokens, options.getPriority())
+                : withCachedPrefix(cachedPrefix, model, messages, candidateCount, options, req, tokens)).thenApply(resp -> {
+            if (resp.statusCode() != 200) {
+                throw new IllegalStateException("generateContent failed: " + resp.body());
+            }
+            JsonObject json = gson.fromJson(resp.body(), JsonObject.class);
+            metrics.recordUsage(model, json.getAsJsonObject("usageMetadata"));
+            JsonArray candidates = json.getAsJsonArray("candidates");
+            if (candidates != null && !candidates.isEmpty()) {
+                responseCache.put(requestKey, candidates.deepCopy());
+            }
+            return candidates;
+        }));
+    }
+
+    /**
+     * Sends the request with its first message replaced by the cached content
+     * {@code handle}, through v1beta, which has context caching. The reply is the same
+     * as for {@code fullReq}. If the upload failed, or Gemini no longer knows the
+     * handle, {@code fullReq} is sent instead.
+     */
+    private CompletableFuture<HttpResponse<String>> withCachedPrefix(
+            CompletableFuture<String> handle, String model, List<String> messages, int candidateCount,
+            GenerationOptions options, HttpRequest fullReq, int tokens) {
+        RequestPriority priority = options.getPriority();
+        return handle.handle((name, err) -> name).thenCompose(name -> {
+            if (name == null) {
+                return hedged(model, fullReq, tokens, priority);
+            }
+            JsonObject body = generateBody(messages.subList(1, messages.size()), model, candidateCount, options);
+            body.addProperty("cachedContent", name);
+            String url = String.format("%s/models/%s:generateContent?key=%s", v1betaBase, model, apiKey);
+            HttpRequest req = newRequest(url)
+                    .header("Content-Type", "application/json; charset=utf-8")
+                    .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body), StandardCharsets.UTF_8))
+                    .build();
+            // Cached tokens still count towards the token quota, so the limiter is charged for the whole prompt
+            return hedged(model, req, tokens, priority).thenCompose(resp -> {
+                if (resp.statusCode() == 403 || resp.statusCode() == 404) {
+                    // Expired or deleted on Gemini's side
+                    contextCache.invalidate(model, messages.get(0));
+                    return hedged(model, fullReq, tokens, priority);
+                }
+                return CompletableFuture.completedFuture(resp);
+            });
+        });
+    }
+
+    /**
+     * Uploads a prompt prefix as cached content and returns its name ({@code cachedContents/...}).
+     * The upload waits in the limiter lane of the request that needs it, so bulk matching
+     * doesn't take interactive quota for it.
+     */
+    private CompletableFuture<String> createCachedContent(String model, String prefix, RequestPriority priority) {
+        JsonObject part = new JsonObject();
+        part.addProperty("text", prefix);
+        JsonArray parts = new JsonArray();
+        parts.add(part);
+        JsonObject content = new JsonObject();
+        content.addProperty("role", "user");
+        content.add("parts", parts);
+        JsonArray contents = new JsonArray();
+        contents.add(content);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("model", "models/" + model);
+        body.add("contents", contents);
+        // A minute longer than the handle is used locally, so it never expires mid-request
+        body.addProperty("ttl", (contextCacheTtlSeconds + 60) + "s");
+
+        HttpRequest req = newRequest(String.format("%s/cachedContents?key=%s", v1betaBase, apiKey))
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body), StandardCharsets.UTF_8))
+                .build();
+        return send(generateRetry, generationLimiter, req, TokenEstimator.estimate(prefix), priority)
+                .thenApply(resp -> {
+                    if (resp.statusCode() != 200) {
+                        throw new IllegalStateException("cachedContents.create failed: " + resp.body());
+                    }
+                    return gson.fromJson(resp.body(), JsonObject.class).get("name").getAsString();
+                })
+                .whenComplete((name, err) -> {
+                    if (err != null) {
+                        System.err.println("Context caching unavailable, sending the full prompt: "
+                                + Futures.unwrap(err).getMessage());
+                    }
+                });
+    }
+
+    private void deleteCachedContent(String name) {
+        HttpRequest req = newRequest(String.format("%s/%s?key=%s", v1betaBase, name, apiKey))
+                .DELETE()
+                .build();
+        send(listModelsRetry, null, req, 0, RequestPriority.INTERACTIVE).whenComplete((resp, err) -> {
+            // 404: it had already expired
+            if (err != null || (resp.statusCode() != 200 && resp.statusCode() != 404)) {
+                System.err.println("Could not delete cached content " + name + ": "
+                        + (err != null ? Futures.unwrap(err).getMessage() : resp.body()));
+            }
+        });
+    }
+
+    /**
+     * Drops the cached prompt prefixes sent with {@link GenerationOptions#withSharedPrefix}
+     * and {@code tag}, e.g. when the job they describe was edited.
+     */
+    public void invalidateCachedPrefixes(String tag) {
+        contextCache.invalidateTag(tag);
+    }
+
+    public ContextCache getContextCache() {
+        return contextCache;
+    }
+
+    private JsonObject generateBody(List<String> messages, String model, int candidateCount,
+                                    GenerationOptions options) {
         JsonObject body = new JsonObject();
         body.addProperty("model", model);
 
@@ -97,67 +408,283 @@ public class GenerativeLanguageClient {
         JsonObject cfg = new JsonObject();
         cfg.addProperty("temperature", 0.0);
         cfg.addProperty("candidateCount", candidateCount);
+        if (options.getResponseSchema() != null) {
+            cfg.addProperty("responseMimeType", "application/json");
+            cfg.add("responseSchema", options.getResponseSchema());
+        }
         body.add("generationConfig", cfg);
+        return body;
+    }
 
-        String url = String.format("%s/models/%s:generateContent?key=%s",
-                v1Base, model, apiKey);
+    /**
+     * Runs a generation call through the circuit breaker. Once retries are exhausted,
+     * transport failures and timeouts, 408 and 5xx count against the provider, and a
+     * 429 counts towards the breaker's separate quota streak. A call that never got an
+     * answer for local reasons (cancelled, or expired in the limiter queue) counts
+     * neither way. Other replies (including 4xx caused by the request itself) count as
+     * the provider being up.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> guarded(Supplier<CompletableFuture<HttpResponse<T>>> call) {
+        if (!generationBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(
+                    new CircuitOpenException("Gemini generation is unavailable (circuit open)"));
+        }
+        return call.get().whenComplete((resp, err) -> {
+            if (err != null) {
+                Throwable cause = Futures.unwrap(err);
+                if (cause instanceof IOException || cause instanceof TimeoutException) {
+                    generationBreaker.onFailure();
+                } else {
+                    generationBreaker.onIgnored();
+                }
+            } else if (resp.statusCode() == 429) {
+                generationBreaker.onThrottled();
+            } else if (RetryPolicy.isRetryableStatus(resp.statusCode())) {
+                generationBreaker.onFailure();
+            } else {
+                generationBreaker.onSuccess();
+            }
+        });
+    }
 
-        HttpRequest req = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("Content-Type", "application/json; charset=utf-8")
-                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body), StandardCharsets.UTF_8))
-                .build();
+    /**
+     * Sends the request through the limiter (when given) and retries retryable
+     * statuses and I/O failures as the policy allows. A 429 is also fed back to
+     * the limiter, which halves concurrency and drains the request bucket.
+     * Backoff waits are scheduled on a delayed executor, so no thread sleeps.
+     */
+    private CompletableFuture<HttpResponse<String>> send(
+            RetryPolicy policy, GeminiRateLimiter limiter, HttpRequest req, int tokens, RequestPriority priority) {
+        return send(policy, limiter, req, HttpResponse.BodyHandlers.ofString(), tokens, priority);
+    }
 
-        // ----------- RETRY BLOCK START ------------
-        int maxRetries = 1;
-        int retryDelayMs = 30000; // 30 seconds
-        int attempt = 0;
+    private <T> CompletableFuture<HttpResponse<T>> send(
+            RetryPolicy policy, GeminiRateLimiter limiter, HttpRequest req,
+            HttpResponse.BodyHandler<T> handler, int tokens) {
+        return send(policy, limiter, req, handler, tokens, RequestPriority.INTERACTIVE);
+    }
 
-        HttpResponse<String> resp = null;
-        boolean success = false;
+    private <T> CompletableFuture<HttpResponse<T>> send(
+            RetryPolicy policy, GeminiRateLimiter limiter, HttpRequest req,
+            HttpResponse.BodyHandler<T> handler, int tokens, RequestPriority priority) {
+        long startNanos = System.nanoTime();
+        Exchange exchange = new Exchange();
+        return exchange.cancelledWith(attempt(policy, limiter, req, handler, tokens, priority, 1, startNanos, exchange)
+                .whenComplete((resp, err) -> metrics.recordCall(req, resp, err, System.nanoTime() - startNanos)));
+    }
 
-        while (attempt <= maxRetries && !success) {
-            resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
+    private <T> CompletableFuture<HttpResponse<T>> attempt(
+            RetryPolicy policy, GeminiRateLimiter limiter, HttpRequest req, HttpResponse.BodyHandler<T> handler,
+            int tokens, RequestPriority priority, int attempt, long startNanos, Exchange exchange) {
+        long queuedAt = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> call = (limiter == null)
+                ? timedSend(req, handler, exchange)
+                : limiter.acquire(tokens, priority)
+                        .thenCompose(permit -> {
+                            metrics.recordQueueWait(req, priority, System.nanoTime() - queuedAt);
+                            return timedSend(req, handler, exchange)
+                                    .whenComplete((resp, err) -> permit.release(outcomeOf(resp, err)));
+                        });
 
-            if (resp.statusCode() == 429) {
-                if (attempt < maxRetries) {
-                    System.out.printf("Quota limit reached (attempt %d/%d). Waiting 30 seconds before retry...%n", attempt + 1, maxRetries + 1);
-                    try {
-                        Thread.sleep(retryDelayMs);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new RuntimeException("Interrupted during retry delay", e);
+        return call.handle((resp, err) -> {
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            Throwable cause = err == null ? null : Futures.unwrap(err);
+            long delayMs = (cause != null)
+                    ? policy.delayAfterFailure(attempt, cause, elapsedMs)
+                    : policy.delayAfterResponse(attempt, resp.statusCode(),
+                            resp.headers().firstValue("Retry-After"), elapsedMs);
+
+            if (delayMs < 0 || exchange.isCancelled()) {
+                return (cause != null)
+                        ? CompletableFuture.<HttpResponse<T>>failedFuture(cause)
+                        : CompletableFuture.completedFuture(resp);
+            }
+
+            metrics.recordRetry(req, resp, cause);
+            System.out.printf("Gemini call failed (%s, attempt %d/%d). Retrying in %d ms...%n",
+                    cause != null ? cause.getClass().getSimpleName() : "HTTP " + resp.statusCode(),
+                    attempt, policy.getMaxAttempts(), delayMs);
+            Executor delayed = CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS, executor);
+            return CompletableFuture.supplyAsync(() -> null, delayed)
+                    .thenCompose(ignored -> attempt(policy, limiter, req, handler, tokens, priority,
+                            attempt + 1, startNanos, exchange));
+        }).thenCompose(next -> next);
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> timedSend(HttpRequest req, HttpResponse.BodyHandler<T> handler,
+                                                             Exchange exchange) {
+        if (exchange.isCancelled()) {
+            return CompletableFuture.failedFuture(new CancellationException("Gemini call cancelled"));
+        }
+        long sentAt = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> sent = httpClient.sendAsync(req, handler);
+        exchange.sending(sent);
+        return sent.whenComplete((resp, err) -> metrics.recordAttempt(req, resp, err, System.nanoTime() - sentAt));
+    }
+
+    /**
+     * Sends a generation request, hedged when {@code GEMINI_HEDGE_PERCENTILE} is set: if
+     * it runs longer than that percentile of recent calls to the model, a duplicate goes
+     * out, but only from spare rate-limiter capacity and without retries of its own.
+     * The first 200 wins; the other is cancelled. Bulk calls are never hedged.
+     */
+    private CompletableFuture<HttpResponse<String>> hedged(String model, HttpRequest req, int tokens,
+                                                          RequestPriority priority) {
+        if (!hedger.isEnabled() || priority == RequestPriority.BULK) {
+            return send(generateRetry, generationLimiter, req, tokens, priority);
+        }
+        return hedger.execute(model,
+                () -> send(generateRetry, generationLimiter, req, tokens, priority),
+                () -> {
+                    GeminiRateLimiter.Permit permit = generationLimiter.tryAcquire(tokens);
+                    if (permit == null) {
+                        return null;
                     }
-                    attempt++;
-                } else {
-                    break; // Give up after maxRetries
-                }
-            } else {
-                success = true;
+                    Exchange exchange = new Exchange();
+                    return exchange.cancelledWith(timedSend(req, HttpResponse.BodyHandlers.ofString(), exchange)
+                            .whenComplete((resp, err) -> permit.release(outcomeOf(resp, err))));
+                },
+                resp -> resp.statusCode() == 200);
+    }
+
+    /**
+     * The HTTP exchange currently in flight for one logical call, so that cancelling
+     * the call (a hedged request that lost) aborts the request instead of leaving it
+     * running, and no further retry is started.
+     */
+    private static final class Exchange {
+        private volatile boolean cancelled;
+        private volatile CompletableFuture<?> current;
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        void sending(CompletableFuture<?> sent) {
+            current = sent;
+            if (cancelled) {
+                sent.cancel(true);
             }
         }
 
-        if (resp.statusCode() != 200) {
-            throw new IllegalStateException("generateContent failed: " + resp.body());
+        /** Cancelling {@code call} cancels this exchange. */
+        <T> CompletableFuture<T> cancelledWith(CompletableFuture<T> call) {
+            call.whenComplete((value, err) -> {
+                if (call.isCancelled()) {
+                    cancelled = true;
+                    CompletableFuture<?> sent = current;
+                    if (sent != null) {
+                        sent.cancel(true);
+                    }
+                }
+            });
+            return call;
         }
-        // ----------- RETRY BLOCK END ------------
+    }
 
-        JsonObject json = gson.fromJson(resp.body(), JsonObject.class);
-        return json.getAsJsonArray("candidates");
+    private static GeminiRateLimiter.Outcome outcomeOf(HttpResponse<?> resp, Throwable err) {
+        if (err != null) {
+            return GeminiRateLimiter.Outcome.FAILURE;
+        }
+        if (resp.statusCode() == 429) {
+            return GeminiRateLimiter.Outcome.THROTTLED;
+        }
+        return resp.statusCode() == 200 ? GeminiRateLimiter.Outcome.SUCCESS : GeminiRateLimiter.Outcome.FAILURE;
     }
 
+    public JsonArray generateMessage(
+            List<String> messages,
+            String modelId,
+            int candidateCount
+    ) throws Exception {
+        return Futures.await(generateMessageAsync(messages, modelId, candidateCount));
+    }
 
     public JsonArray generateMessage(
+            List<String> messages,
+            String modelId,
+            int candidateCount,
+            GenerationOptions options
+    ) throws Exception {
+        return Futures.await(generateMessageAsync(messages, modelId, candidateCount, options));
+    }
+
+    public CompletableFuture<JsonArray> generateMessageAsync(
             List<String> messages,
             String modelId,
             int candidateCount
+    ) {
+        return generateMessageAsync(messages, modelId, candidateCount, GenerationOptions.defaults());
+    }
+
+    public CompletableFuture<JsonArray> generateMessageAsync(
+            List<String> messages,
+            String modelId,
+            int candidateCount,
+            GenerationOptions options
+    ) {
+        return generateContentRaw(messages, modelId, candidateCount, options)
+                .thenApply(this::unwrapCandidates);
+    }
+
+    /**
+     * Structured generation: Gemini is constrained to reply with JSON matching
+     * {@code schema}, which is mapped straight onto {@code type}. No fence
+     * stripping or repair pass is needed.
+     *
+     * @return the parsed first candidate, or null when Gemini returned no candidates
+     */
+    public <T> T generateJson(
+            List<String> messages,
+            String modelId,
+            JsonObject schema,
+            Class<T> type
     ) throws Exception {
-        JsonArray raw = generateContentRaw(messages, modelId, candidateCount);
-        JsonArray out = new JsonArray();
+        return Futures.await(generateJsonAsync(messages, modelId, schema, type));
+    }
+
+    public <T> CompletableFuture<T> generateJsonAsync(
+            List<String> messages,
+            String modelId,
+            JsonObject schema,
+            Class<T> type
+    ) {
+        return generateJsonAsync(messages, modelId, schema, type, GenerationOptions.defaults());
+    }
 
-        // Pattern to capture text between ```json``` or ``` fences
-        Pattern fence = Pattern.compile("```(?:json)?\\s*(.*?)\\s*```", Pattern.DOTALL);
+    public <T> CompletableFuture<T> generateJsonAsync(
+            List<String> messages,
+            String modelId,
+            JsonObject schema,
+            Class<T> type,
+            GenerationOptions options
+    ) {
+        return generateContentRaw(messages, modelId, 1, options.withResponseSchema(schema))
+                .thenApply(candidates -> {
+                    if (candidates == null || candidates.isEmpty()) {
+                        return null;
+                    }
+                    String json = candidateText(candidates.get(0).getAsJsonObject());
+                    try {
+                        return gson.fromJson(json, type);
+                    } catch (JsonParseException e) {
+                        throw new IllegalStateException("Gemini returned JSON that doesn't match "
+                                + type.getSimpleName() + ": " + json, e);
+                    }
+                });
+    }
 
+    private static String candidateText(JsonObject candidate) {
+        JsonObject content = candidate.getAsJsonObject("content");
+        if (content == null || content.getAsJsonArray("parts") == null || content.getAsJsonArray("parts").isEmpty()) {
+            String reason = candidate.has("finishReason") ? candidate.get("finishReason").getAsString() : "unknown";
+            throw new IllegalStateException("Gemini candidate has no content (finishReason " + reason + ")");
+        }
+        return content.getAsJsonArray("parts").get(0).getAsJsonObject().get("text").getAsString();
+    }
+
+    private JsonArray unwrapCandidates(JsonArray raw) {
+        JsonArray out = new JsonArray();
         for (var el : raw) {
             JsonObject cand = el.getAsJsonObject();
             String txt = cand
@@ -169,7 +696,7 @@ public class GenerativeLanguageClient {
                     .getAsString();
 
             // 1) If txt contains a fenced block, extract the inner part
-            Matcher m = fence.matcher(txt);
+            Matcher m = FENCE.matcher(txt);
             if (m.find()) {
                 txt = m.group(1);
             }
@@ -192,14 +719,193 @@ public class GenerativeLanguageClient {
         return generateMessage(List.of(promptText), modelId, candidateCount);
     }
 
+    public CompletableFuture<JsonArray> generateTextAsync(
+            String promptText,
+            String modelId,
+            int candidateCount
+    ) {
+        return generateMessageAsync(List.of(promptText), modelId, candidateCount);
+    }
+
+    /**
+     * Streams a single candidate via streamGenerateContent (server-sent events).
+     * {@code onText} receives each text fragment as it arrives, on an HTTP client
+     * thread; the returned future completes with the full text.
+     *
+     * A reply already in the response cache is delivered as one fragment. Error
+     * statuses are retried as usual, but a stream that breaks halfway is not, since
+     * its fragments have already been handed out.
+     */
+    public CompletableFuture<String> streamGenerateAsync(
+            List<String> messages,
+            String modelId,
+            GenerationOptions options,
+            Consumer<String> onText
+    ) {
+        String model = (modelId == null || modelId.isBlank())
+                ? defaultModel
+                : modelId;
+
+        String bodyJson = gson.toJson(generateBody(messages, model, 1, options));
+        String requestKey = Hashing.sha256Hex("generateContent", model, bodyJson);
+        if (!options.isBypassCache()) {
+            JsonArray cached = responseCache.get(requestKey);
+            if (cached != null && !cached.isEmpty()) {
+                String text = candidateText(cached.get(0).getAsJsonObject());
+                onText.accept(text);
+                return CompletableFuture.completedFuture(text);
+            }
+        }
+
+        String url = String.format("%s/models/%s:streamGenerateContent?alt=sse&key=%s",
+                v1Base, model, apiKey);
+        HttpRequest req = newRequest(url)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .header("Accept", "text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(bodyJson, StandardCharsets.UTF_8))
+                .build();
+
+        // Only a 200 is parsed as an event stream; anything else is kept as the error body
+        HttpResponse.BodyHandler<String> handler = info -> info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromLineSubscriber(
+                        new SseTextSubscriber(onText, usage -> metrics.recordUsage(model, usage)),
+                        SseTextSubscriber::text, StandardCharsets.UTF_8, null)
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+
+        int tokens = TokenEstimator.estimate(messages) + ESTIMATED_OUTPUT_TOKENS;
+        return guarded(() -> send(generateRetry.withoutFailureRetries(), generationLimiter, req, handler, tokens,
+                options.getPriority()))
+                .thenApply(resp -> {
+                    if (resp.statusCode() != 200) {
+                        throw new IllegalStateException("streamGenerateContent failed: " + resp.body());
+                    }
+                    String text = resp.body();
+                    responseCache.put(requestKey, textCandidates(text));
+                    return text;
+                });
+    }
+
+    /** Same shape as generateContent's candidates, so a streamed reply can serve later non-streamed calls. */
+    private static JsonArray textCandidates(String text) {
+        JsonObject part = new JsonObject();
+        part.addProperty("text", text);
+        JsonArray parts = new JsonArray();
+        parts.add(part);
+        JsonObject content = new JsonObject();
+        content.add("parts", parts);
+        JsonObject candidate = new JsonObject();
+        candidate.add("content", content);
+        JsonArray candidates = new JsonArray();
+        candidates.add(candidate);
+        return candidates;
+    }
+
+    /**
+     * Collects {@code data:} lines into events and forwards the text of each
+     * event's first candidate. A failing consumer stops receiving fragments, but
+     * the stream is still read to the end so the full text is returned. The last
+     * event's {@code usageMetadata}, which covers the whole reply, goes to
+     * {@code onUsage} once the stream completes.
+     */
+    private static final class SseTextSubscriber implements Flow.Subscriber<String> {
+        private final Consumer<String> onText;
+        private final Consumer<JsonObject> onUsage;
+        private final StringBuilder event = new StringBuilder();
+        private final StringBuilder text = new StringBuilder();
+        private String lastEvent;
+        private boolean consumerFailed;
+
+        SseTextSubscriber(Consumer<String> onText, Consumer<JsonObject> onUsage) {
+            this.onText = onText;
+            this.onUsage = onUsage;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.isEmpty()) {
+                dispatch();
+            } else if (line.startsWith("data:")) {
+                event.append(line.substring(5).trim());
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // surfaced by the HTTP client through the response future
+        }
+
+        @Override
+        public void onComplete() {
+            dispatch();
+            if (lastEvent != null) {
+                try {
+                    onUsage.accept(JsonParser.parseString(lastEvent).getAsJsonObject().getAsJsonObject("usageMetadata"));
+                } catch (RuntimeException e) {
+                    System.err.println("Could not read stream usage: " + e.getMessage());
+                }
+            }
+        }
+
+        String text() {
+            return text.toString();
+        }
+
+        private void dispatch() {
+            if (event.length() == 0) {
+                return;
+            }
+            lastEvent = event.toString();
+            String fragment = GeminiResponseReader.readFirstCandidateText(lastEvent);
+            event.setLength(0);
+            if (fragment.isEmpty()) {
+                return;
+            }
+            text.append(fragment);
+            if (!consumerFailed) {
+                try {
+                    onText.accept(fragment);
+                } catch (RuntimeException e) {
+                    consumerFailed = true;
+                    System.err.println("Stream consumer failed, dropping further fragments: " + e.getMessage());
+                }
+            }
+        }
+    }
+
     /**
      * Text embedding via v1 embedContent, defaulting to Gemini’s embedding model.
      */
     public JsonArray embedText(String inputText, String modelId) throws Exception {
+        return Futures.await(embedTextAsync(inputText, modelId));
+    }
+
+    public CompletableFuture<JsonArray> embedTextAsync(String inputText, String modelId) {
+        return embedVectorAsync(inputText, modelId).thenApply(vector -> {
+            JsonArray out = new JsonArray();
+            out.add(toEmbeddingJson(vector));
+            return out;
+        });
+    }
+
+    /**
+     * Like {@link #embedTextAsync}, but returns the normalized vector itself. It may
+     * be shared with the embedding cache and other callers.
+     */
+    public CompletableFuture<EmbeddingVector> embedVectorAsync(String inputText, String modelId) {
         String model = (modelId == null || modelId.isBlank())
                 ? defaultEmbedModel
                 : modelId;
 
+        EmbeddingVector cached = embeddingCache.get(model, inputText);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
         // Build the EmbedContentRequest payload
         JsonObject body = new JsonObject();
         body.addProperty("model", model);
@@ -214,45 +920,178 @@ public class GenerativeLanguageClient {
 
         // Call v1 embedContent
         String url = String.format("%s/models/%s:embedContent?key=%s", v1Base, model, apiKey);
-        HttpRequest req = HttpRequest.newBuilder()
-                .uri(URI.create(url))
+        HttpRequest req = newRequest(url)
                 .header("Content-Type", "application/json; charset=utf-8")
                 .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body), StandardCharsets.UTF_8))
                 .build();
-        HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
 
-        if (resp.statusCode() != 200) {
-            throw new IllegalStateException("embedText failed: " + resp.body());
+        String flightKey = Hashing.sha256Hex("embedContent", model, inputText);
+        return embedInFlight.execute(flightKey, () -> send(embedRetry, embedLimiter, req, HttpResponse.BodyHandlers.ofByteArray(), 0)
+                .thenApply(resp -> {
+                    if (resp.statusCode() != 200) {
+                        throw new IllegalStateException("embedText failed: " + new String(resp.body(), StandardCharsets.UTF_8));
+                    }
+
+                    // Values are decoded straight into a float[], no JSON tree in between
+                    float[] values = GeminiResponseReader.readEmbedding(resp.body());
+                    if (values == null) {
+                        throw new IllegalStateException("embedText returned no embedding");
+                    }
+                    EmbeddingVector vector = EmbeddingVector.of(model, values);
+                    embeddingCache.put(model, inputText, vector);
+                    return vector;
+                }));
+    }
+
+    /**
+     * Embeds many texts via v1 batchEmbedContents, {@code embedBatchSize} texts per HTTP call.
+     * Returns one embedding object per input, in input order.
+     */
+    public JsonArray embedTexts(List<String> inputTexts, String modelId) throws Exception {
+        return Futures.await(embedTextsAsync(inputTexts, modelId));
+    }
+
+    public CompletableFuture<JsonArray> embedTextsAsync(List<String> inputTexts, String modelId) {
+        return embedVectorsAsync(inputTexts, modelId).thenApply(vectors -> {
+            JsonArray out = new JsonArray(vectors.size());
+            for (EmbeddingVector vector : vectors) {
+                out.add(toEmbeddingJson(vector));
+            }
+            return out;
+        });
+    }
+
+    /**
+     * Like {@link #embedTextsAsync}, but returns the normalized vectors, one per input
+     * in input order. Vectors may be shared with the embedding cache, other callers and
+     * each other (for repeated texts).
+     */
+    public CompletableFuture<List<EmbeddingVector>> embedVectorsAsync(List<String> inputTexts, String modelId) {
+        String model = (modelId == null || modelId.isBlank())
+                ? defaultEmbedModel
+                : modelId;
+
+        // Serve what we can from the cache; only distinct misses go over the wire
+        EmbeddingVector[] results = new EmbeddingVector[inputTexts.size()];
+        List<String> misses = new ArrayList<>();
+        Map<String, List<Integer>> missSlots = new LinkedHashMap<>();
+        for (int i = 0; i < inputTexts.size(); i++) {
+            String text = inputTexts.get(i) == null ? "" : inputTexts.get(i);
+            EmbeddingVector cached = embeddingCache.get(model, text);
+            if (cached != null) {
+                results[i] = cached;
+            } else {
+                missSlots.computeIfAbsent(text, t -> {
+                    misses.add(t);
+                    return new ArrayList<>();
+                }).add(i);
+            }
         }
 
-        // Parse the single-embedding response and wrap it in an array
-        JsonObject json = gson.fromJson(resp.body(), JsonObject.class);
-        JsonObject embedding = json.getAsJsonObject("embedding");
-        JsonArray out = new JsonArray();
-        out.add(embedding);
-        return out;
+        // Chunks are sent concurrently and stitched back together in order
+        List<CompletableFuture<List<EmbeddingVector>>> chunks = new ArrayList<>();
+        for (int from = 0; from < misses.size(); from += embedBatchSize) {
+            int to = Math.min(from + embedBatchSize, misses.size());
+            chunks.add(batchEmbedChunk(misses.subList(from, to), model));
+        }
+
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    int next = 0;
+                    for (CompletableFuture<List<EmbeddingVector>> chunk : chunks) {
+                        for (EmbeddingVector vector : chunk.join()) {
+                            String text = misses.get(next++);
+                            embeddingCache.put(model, text, vector);
+                            for (int slot : missSlots.get(text)) {
+                                results[slot] = vector;
+                            }
+                        }
+                    }
+                    return Arrays.asList(results);
+                });
+    }
+
+    private CompletableFuture<List<EmbeddingVector>> batchEmbedChunk(List<String> texts, String model) {
+        // Build the BatchEmbedContentsRequest payload; each request names its model
+        JsonArray requests = new JsonArray();
+        for (String text : texts) {
+            JsonObject request = new JsonObject();
+            request.addProperty("model", "models/" + model);
+
+            JsonObject content = new JsonObject();
+            JsonArray parts = new JsonArray();
+            JsonObject part = new JsonObject();
+            part.addProperty("text", text == null ? "" : text);
+            parts.add(part);
+            content.add("parts", parts);
+            request.add("content", content);
+            requests.add(request);
+        }
+        JsonObject body = new JsonObject();
+        body.add("requests", requests);
+
+        String url = String.format("%s/models/%s:batchEmbedContents?key=%s", v1Base, model, apiKey);
+        String bodyJson = gson.toJson(body);
+        HttpRequest req = newRequest(url)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(bodyJson, StandardCharsets.UTF_8))
+                .build();
+
+        String flightKey = Hashing.sha256Hex("batchEmbedContents", model, bodyJson);
+        return batchEmbedInFlight.execute(flightKey, () -> send(embedRetry, embedLimiter, req, HttpResponse.BodyHandlers.ofByteArray(), 0)
+                .thenApply(resp -> {
+                    if (resp.statusCode() != 200) {
+                        throw new IllegalStateException("batchEmbedContents failed: "
+                                + new String(resp.body(), StandardCharsets.UTF_8));
+                    }
+                    List<float[]> embeddings = GeminiResponseReader.readEmbeddings(resp.body());
+                    if (embeddings.size() != texts.size()) {
+                        throw new IllegalStateException("batchEmbedContents returned " + embeddings.size()
+                                + " embeddings for " + texts.size() + " texts");
+                    }
+                    List<EmbeddingVector> vectors = new ArrayList<>(embeddings.size());
+                    for (float[] values : embeddings) {
+                        vectors.add(EmbeddingVector.of(model, values));
+                    }
+                    return vectors;
+                }));
+    }
+
+    private static JsonObject toEmbeddingJson(EmbeddingVector vector) {
+        JsonArray arr = new JsonArray(vector.getDimension());
+        for (float v : vector.values()) {
+            arr.add(v);
+        }
+        JsonObject embedding = new JsonObject();
+        embedding.add("values", arr);
+        return embedding;
     }
 
     public JsonObject fixJson(String badJson) throws Exception {
+        return Futures.await(fixJsonAsync(badJson));
+    }
+
+    public CompletableFuture<JsonObject> fixJsonAsync(String badJson) {
         String prompt = String.format(
                 "The following text is intended to be valid JSON. Correct any errors and return only the fixed JSON object.\nInput: %s",
                 badJson
         );
-        JsonArray cands = generateMessage(List.of(prompt), defaultModel, 1);
-        String corrected = cands
-                .get(0)
-                .getAsJsonObject()
-                .get("content")
-                .getAsString();
-
-        int start = corrected.indexOf('{');
-        int end   = corrected.lastIndexOf('}');
-        if (start >= 0 && end > start) {
-            corrected = corrected.substring(start, end + 1);
-        }
+        return generateMessageAsync(List.of(prompt), defaultModel, 1).thenApply(cands -> {
+            String corrected = cands
+                    .get(0)
+                    .getAsJsonObject()
+                    .get("content")
+                    .getAsString();
+
+            int start = corrected.indexOf('{');
+            int end   = corrected.lastIndexOf('}');
+            if (start >= 0 && end > start) {
+                corrected = corrected.substring(start, end + 1);
+            }
 
-        JsonReader reader = new JsonReader(new StringReader(corrected));
-        reader.setLenient(true);
-        return JsonParser.parseReader(reader).getAsJsonObject();
+            JsonReader reader = new JsonReader(new StringReader(corrected));
+            reader.setLenient(true);
+            return JsonParser.parseReader(reader).getAsJsonObject();
+        });
     }
 }
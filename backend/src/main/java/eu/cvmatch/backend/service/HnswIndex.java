@@ -0,0 +1,855 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.model.NearestMatch;
+import eu.cvmatch.backend.utils.SimilarityKernel;
+import eu.cvmatch.backend.utils.SimilarityKernels;
+import eu.cvmatch.backend.utils.TopKHeap;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate search over a Hierarchical Navigable Small World graph (Malkov and
+ * Yashunin): every vector is a node linked to its nearest neighbours on level 0 and,
+ * with exponentially falling probability, on sparser levels above. A query descends
+ * greedily from the top level and then explores level 0 with a beam of
+ * {@code efSearch} candidates, so it scores a few thousand vectors instead of all.
+ * <p>
+ * {@code m} bounds the links per node (twice that on level 0); more links and a
+ * larger {@code efConstruction} give a better graph at a higher insert cost, a larger
+ * {@code efSearch} gives better recall at a higher query cost.
+ * <p>
+ * Inserts run concurrently with each other and with searches: a node is allocated
+ * under a short write lock, then linked while holding only the read lock and the
+ * locks of the neighbour lists it changes. Removing or replacing a vector leaves a
+ * tombstone: the node keeps routing searches but is never returned. {@link #compacted()}
+ * rebuilds the graph without tombstones.
+ * <p>
+ * {@link #save} writes a compact file (vectors, then levels, tombstones and links as
+ * flat arrays, then ids) that {@link #load} memory-maps and bulk-copies back.
+ */
+public class HnswIndex implements VectorIndex {
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int VERSION = 1;
+    private static final int MAX_LEVEL = 16;
+    private static final int LOCK_STRIPES = 1024;
+    private static final int[] NO_LINKS = new int[0];
+
+    private final int m;
+    private final int efConstruction;
+    private volatile int efSearch;
+    private final double levelFactor;
+    private final SimilarityKernel kernel = SimilarityKernels.get();
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    // Growing the arrays, allocating or removing nodes and copying them for a save take the write lock;
+    // everything else, including linking new nodes, runs under the read lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Neighbour lists are immutable arrays, swapped under the owning node's stripe
+    private final Object[] stripes = new Object[LOCK_STRIPES];
+    private final Object entryLock = new Object();
+
+    private final Map<String, Integer> nodesById = new HashMap<>();
+    private String modelId;
+    private int dimension;
+    private float[] vectors = new float[0];
+    private String[] ids = new String[0];
+    private byte[] levels = new byte[0];
+    private boolean[] deleted = new boolean[0];
+    private int[][][] links = new int[0][][];
+    private int count;
+    private int live;
+
+    // Guarded by entryLock
+    private int entryPoint = -1;
+    private int topLevel = -1;
+
+    public HnswIndex(int m, int efConstruction, int efSearch) {
+        this.m = Math.max(2, m);
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.efSearch = Math.max(1, efSearch);
+        this.levelFactor = 1 / Math.log(this.m);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /** Beam width for queries; takes effect for the next search. */
+    public void setEfSearch(int efSearch) {
+        this.efSearch = Math.max(1, efSearch);
+    }
+
+    @Override
+    public void upsert(String id, EmbeddingVector vector) {
+        int node;
+        lock.writeLock().lock();
+        try {
+            if (count == 0) {
+                modelId = vector.getModelId();
+                dimension = vector.getDimension();
+            }
+            checkCompatible(vector);
+            Integer old = nodesById.get(id);
+            if (old != null) {
+                if (Arrays.equals(vector.values(), 0, dimension, vectors, old * dimension, (old + 1) * dimension)) {
+                    return;
+                }
+                deleted[old] = true;
+                live--;
+            }
+            ensureCapacity(count + 1);
+            node = count++;
+            System.arraycopy(vector.values(), 0, vectors, node * dimension, dimension);
+            int level = randomLevel();
+            ids[node] = id;
+            levels[node] = (byte) level;
+            links[node] = new int[level + 1][];
+            Arrays.fill(links[node], NO_LINKS);
+            nodesById.put(id, node);
+            live++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        lock.readLock().lock();
+        try {
+            link(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodesById.remove(id);
+            if (node == null) {
+                return false;
+            }
+            deleted[node] = true;
+            live--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingVector get(String id) {
+        lock.readLock().lock();
+        try {
+            Integer node = nodesById.get(id);
+            if (node == null) {
+                return null;
+            }
+            int from = node * dimension;
+            return EmbeddingVector.of(modelId, Arrays.copyOfRange(vectors, from, from + dimension));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return nodesById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> ids() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(nodesById.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<NearestMatch> search(EmbeddingVector query, int k) {
+        lock.readLock().lock();
+        try {
+            if (live == 0 || k <= 0) {
+                return List.of();
+            }
+            checkCompatible(query);
+            float[] q = query.values();
+            int ep;
+            int top;
+            synchronized (entryLock) {
+                ep = entryPoint;
+                top = topLevel;
+            }
+            for (int level = top; level > 0; level--) {
+                ep = greedyClosest(q, ep, level);
+            }
+            float epScore = kernel.dot(q, vectors, ep);
+
+            Scratch s = scratch.get();
+            int n = searchLevel(q, ep, epScore, Math.max(efSearch, k), 0, true, s);
+            List<NearestMatch> matches = new ArrayList<>(Math.min(n, k));
+            for (int i = 0; i < n && matches.size() < k; i++) {
+                matches.add(new NearestMatch(ids[s.resultIds[i]], s.resultScores[i]));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Removed or replaced vectors still kept in the graph. */
+    public int getDeletedCount() {
+        lock.readLock().lock();
+        try {
+            return count - live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** A new index with the same settings and only the live vectors. */
+    public HnswIndex compacted() {
+        HnswIndex copy = new HnswIndex(m, efConstruction, efSearch);
+        lock.readLock().lock();
+        try {
+            for (int node = 0; node < count; node++) {
+                if (!deleted[node]) {
+                    int from = node * dimension;
+                    copy.upsert(ids[node], EmbeddingVector.of(modelId,
+                            Arrays.copyOfRange(vectors, from, from + dimension)));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return copy;
+    }
+
+    // ---- graph construction ----
+
+    private void link(int node) {
+        int level = levels[node];
+        int ep;
+        int top;
+        synchronized (entryLock) {
+            if (entryPoint < 0) {
+                entryPoint = node;
+                topLevel = level;
+                return;
+            }
+            ep = entryPoint;
+            top = topLevel;
+        }
+
+        Scratch s = scratch.get();
+        float[] q = s.buffer(0, dimension);
+        System.arraycopy(vectors, node * dimension, q, 0, dimension);
+
+        for (int lc = top; lc > level; lc--) {
+            ep = greedyClosest(q, ep, lc);
+        }
+        for (int lc = Math.min(level, top); lc >= 0; lc--) {
+            int n = searchLevel(q, ep, kernel.dot(q, vectors, ep), efConstruction, lc, false, s);
+            int[] candidates = Arrays.copyOf(s.resultIds, n);
+            float[] scores = Arrays.copyOf(s.resultScores, n);
+            int[] selected = selectNeighbors(candidates, scores, n, maxLinks(lc), s);
+            setLinks(node, lc, selected);
+            for (int neighbor : selected) {
+                addLink(neighbor, node, lc, s);
+            }
+            ep = candidates[0];
+        }
+
+        if (level > top) {
+            synchronized (entryLock) {
+                if (level > topLevel) {
+                    entryPoint = node;
+                    topLevel = level;
+                }
+            }
+        }
+    }
+
+    /**
+     * Heuristic from the HNSW paper: walking the candidates best first, keep one only
+     * if it is closer to the base than to every neighbour kept so far. Links then point
+     * in diverse directions instead of all into the nearest cluster.
+     */
+    private int[] selectNeighbors(int[] candidates, float[] scores, int n, int max, Scratch s) {
+        int[] selected = new int[Math.min(n, max)];
+        int size = 0;
+        float[] candidate = s.buffer(2, dimension);
+        for (int i = 0; i < n && size < selected.length; i++) {
+            System.arraycopy(vectors, candidates[i] * dimension, candidate, 0, dimension);
+            boolean diverse = true;
+            for (int j = 0; j < size; j++) {
+                if (kernel.dot(candidate, vectors, selected[j]) > scores[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[size++] = candidates[i];
+            }
+        }
+        return size == selected.length ? selected : Arrays.copyOf(selected, size);
+    }
+
+    private void addLink(int node, int neighbor, int level, Scratch s) {
+        synchronized (stripe(node)) {
+            int[] current = links[node][level];
+            int max = maxLinks(level);
+            if (current.length < max) {
+                int[] grown = Arrays.copyOf(current, current.length + 1);
+                grown[current.length] = neighbor;
+                links[node][level] = grown;
+                return;
+            }
+            // Full: re-select among the old links plus the new one, as seen from this node
+            float[] base = s.buffer(1, dimension);
+            System.arraycopy(vectors, node * dimension, base, 0, dimension);
+            TopKHeap heap = new TopKHeap(current.length + 1);
+            for (int other : current) {
+                heap.offer(other, kernel.dot(base, vectors, other));
+            }
+            heap.offer(neighbor, kernel.dot(base, vectors, neighbor));
+            int[] candidates = new int[heap.size()];
+            float[] scores = new float[heap.size()];
+            int n = heap.drainDescending(candidates, scores);
+            links[node][level] = selectNeighbors(candidates, scores, n, max, s);
+        }
+    }
+
+    private void setLinks(int node, int level, int[] neighbors) {
+        synchronized (stripe(node)) {
+            links[node][level] = neighbors;
+        }
+    }
+
+    private int[] linksOf(int node, int level) {
+        synchronized (stripe(node)) {
+            int[][] nodeLinks = links[node];
+            return level < nodeLinks.length ? nodeLinks[level] : NO_LINKS;
+        }
+    }
+
+    // ---- search ----
+
+    private int greedyClosest(float[] q, int ep, int level) {
+        float best = kernel.dot(q, vectors, ep);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : linksOf(ep, level)) {
+                float score = kernel.dot(q, vectors, neighbor);
+                if (score > best) {
+                    best = score;
+                    ep = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    /**
+     * Beam search on one level from {@code ep}. The up to {@code ef} best nodes found
+     * are left best first in {@code s.resultIds}/{@code s.resultScores}; returns how many.
+     */
+    private int searchLevel(float[] q, int ep, float epScore, int ef, int level, boolean liveOnly, Scratch s) {
+        s.startVisit(count);
+        s.visit(ep);
+        Candidates candidates = s.candidates;
+        candidates.clear();
+        candidates.push(ep, epScore);
+        TopKHeap results = new TopKHeap(ef);
+        if (!liveOnly || !deleted[ep]) {
+            results.offer(ep, epScore);
+        }
+
+        while (candidates.size() > 0) {
+            float score = candidates.topScore();
+            if (score < results.threshold()) {
+                break;
+            }
+            int current = candidates.pop();
+            for (int neighbor : linksOf(current, level)) {
+                if (!s.visit(neighbor)) {
+                    continue;
+                }
+                float neighborScore = kernel.dot(q, vectors, neighbor);
+                if (neighborScore > results.threshold()) {
+                    candidates.push(neighbor, neighborScore);
+                    if (!liveOnly || !deleted[neighbor]) {
+                        results.offer(neighbor, neighborScore);
+                    }
+                }
+            }
+        }
+        s.ensureResults(results.size());
+        return results.drainDescending(s.resultIds, s.resultScores);
+    }
+
+    // ---- persistence ----
+
+    /**
+     * Writes the index to {@code file}, replacing it atomically. Inserts and removals
+     * wait only while the graph is copied; the file is written from the copy.
+     */
+    public void save(Path file) throws IOException {
+        Snapshot snapshot = snapshot();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer out = new Writer(channel);
+            byte[] model = (snapshot.modelId == null ? "" : snapshot.modelId).getBytes(StandardCharsets.UTF_8);
+            out.putInt(MAGIC).putInt(VERSION).putInt(m).putInt(efConstruction)
+                    .putInt(snapshot.dimension).putInt(snapshot.count).putInt(snapshot.entryPoint)
+                    .putInt(snapshot.topLevel).putInt(model.length).putBytes(model);
+            out.putFloats(snapshot.vectors);
+            out.putBytes(snapshot.levels);
+            for (boolean tombstone : snapshot.deleted) {
+                out.putByte((byte) (tombstone ? 1 : 0));
+            }
+            for (int[][] nodeLinks : snapshot.links) {
+                for (int[] levelLinks : nodeLinks) {
+                    out.putInt(levelLinks.length).putInts(levelLinks);
+                }
+            }
+            for (String nodeId : snapshot.ids) {
+                byte[] id = nodeId.getBytes(StandardCharsets.UTF_8);
+                out.putInt(id.length).putBytes(id);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Taken under the write lock rather than the read lock, so no insert is caught half-linked.
+    // Neighbour lists are immutable, so copying the per-node arrays of references is enough.
+    private Snapshot snapshot() {
+        lock.writeLock().lock();
+        try {
+            Snapshot snapshot = new Snapshot();
+            synchronized (entryLock) {
+                snapshot.entryPoint = entryPoint;
+                snapshot.topLevel = topLevel;
+            }
+            snapshot.modelId = modelId;
+            snapshot.dimension = dimension;
+            snapshot.count = count;
+            snapshot.vectors = Arrays.copyOf(vectors, count * dimension);
+            snapshot.levels = Arrays.copyOf(levels, count);
+            snapshot.deleted = Arrays.copyOf(deleted, count);
+            snapshot.ids = Arrays.copyOf(ids, count);
+            snapshot.links = new int[count][][];
+            for (int node = 0; node < count; node++) {
+                snapshot.links[node] = links[node].clone();
+            }
+            return snapshot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #save}. The graph keeps the {@code m} and
+     * {@code efConstruction} it was built with; {@code efSearch} is set anew.
+     *
+     * @throws IOException if the file can't be read or isn't an index file
+     */
+    public static HnswIndex load(Path file, int efSearch) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Reader in = new Reader(channel);
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Unrecognised vector index file " + file);
+            }
+            HnswIndex index = new HnswIndex(in.getInt(), in.getInt(), efSearch);
+            int dimension = in.getInt();
+            int count = in.getInt();
+            int ep = in.getInt();
+            int top = in.getInt();
+            String modelId = new String(in.getBytes(in.getInt()), StandardCharsets.UTF_8);
+            if (dimension < 0 || count < 0 || (long) count * dimension > Integer.MAX_VALUE - 8) {
+                throw new IOException("Corrupt vector index file " + file);
+            }
+
+            index.modelId = modelId.isEmpty() ? null : modelId;
+            index.dimension = dimension;
+            index.ensureCapacity(count);
+            in.getFloats(index.vectors, count * dimension);
+            for (int node = 0; node < count; node++) {
+                index.levels[node] = in.getByte();
+            }
+            for (int node = 0; node < count; node++) {
+                index.deleted[node] = in.getByte() != 0;
+            }
+            for (int node = 0; node < count; node++) {
+                int[][] nodeLinks = new int[index.levels[node] + 1][];
+                for (int level = 0; level < nodeLinks.length; level++) {
+                    int n = in.getInt();
+                    if (n < 0 || n > count) {
+                        throw new IOException("Corrupt vector index file " + file);
+                    }
+                    nodeLinks[level] = n == 0 ? NO_LINKS : in.getInts(n);
+                }
+                index.links[node] = nodeLinks;
+            }
+            for (int node = 0; node < count; node++) {
+                String id = new String(in.getBytes(in.getInt()), StandardCharsets.UTF_8);
+                index.ids[node] = id;
+                if (!index.deleted[node]) {
+                    index.nodesById.put(id, node);
+                    index.live++;
+                }
+            }
+            index.count = count;
+            index.entryPoint = count == 0 ? -1 : ep;
+            index.topLevel = count == 0 ? -1 : top;
+            return index;
+        } catch (RuntimeException e) {
+            // Truncated or garbled sections surface as buffer or array index errors
+            throw new IOException("Corrupt vector index file " + file + ": " + e, e);
+        }
+    }
+
+    // ---- helpers ----
+
+    private int randomLevel() {
+        double r = ThreadLocalRandom.current().nextDouble();
+        return (int) Math.min(MAX_LEVEL, Math.floor(-Math.log(1 - r) * levelFactor));
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    private Object stripe(int node) {
+        return stripes[node & (LOCK_STRIPES - 1)];
+    }
+
+    private void checkCompatible(EmbeddingVector vector) {
+        if (!Objects.equals(modelId, vector.getModelId()) || dimension != vector.getDimension()) {
+            throw new IllegalArgumentException("Index holds " + dimension + "-dimension vectors of "
+                    + modelId + ", got " + vector);
+        }
+    }
+
+    private void ensureCapacity(int nodes) {
+        if (nodes > ids.length) {
+            int grown = Math.max(nodes, Math.max(16, ids.length * 2));
+            ids = Arrays.copyOf(ids, grown);
+            levels = Arrays.copyOf(levels, grown);
+            deleted = Arrays.copyOf(deleted, grown);
+            links = Arrays.copyOf(links, grown);
+        }
+        long needed = (long) nodes * dimension;
+        if (needed > vectors.length) {
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Vector index is full at " + count + " vectors");
+            }
+            long grown = Math.max(needed, Math.min((long) vectors.length * 2, Integer.MAX_VALUE - 8));
+            vectors = Arrays.copyOf(vectors, (int) grown);
+        }
+    }
+
+    /** Per-thread buffers, so searches and inserts allocate little. */
+    private static final class Scratch {
+        final Candidates candidates = new Candidates();
+        int[] visited = new int[0];
+        int visitMark;
+        int[] resultIds = new int[0];
+        float[] resultScores = new float[0];
+        // Vectors copied out of the shared array: the node being linked, the node whose
+        // links are being pruned, and the candidate the selection heuristic is checking
+        private final float[][] buffers = new float[3][0];
+
+        void startVisit(int nodes) {
+            if (visited.length < nodes) {
+                visited = Arrays.copyOf(visited, Math.max(nodes, visited.length * 2));
+            }
+            if (++visitMark == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                visitMark = 1;
+            }
+        }
+
+        /** Marks the node visited; false if it already was. */
+        boolean visit(int node) {
+            if (node >= visited.length) {
+                // Allocated by a concurrent insert after this search started
+                visited = Arrays.copyOf(visited, Math.max(node + 1, visited.length * 2));
+            }
+            if (visited[node] == visitMark) {
+                return false;
+            }
+            visited[node] = visitMark;
+            return true;
+        }
+
+        void ensureResults(int n) {
+            if (resultIds.length < n) {
+                resultIds = new int[n];
+                resultScores = new float[n];
+            }
+        }
+
+        float[] buffer(int which, int dimension) {
+            if (buffers[which].length != dimension) {
+                buffers[which] = new float[dimension];
+            }
+            return buffers[which];
+        }
+    }
+
+    /** Unbounded max-heap of (node, score) candidates still to expand. */
+    private static final class Candidates {
+        private int[] nodes = new int[64];
+        private float[] scores = new float[64];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] >= score) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            float lastScore = scores[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && scores[child + 1] > scores[child]) {
+                    child++;
+                }
+                if (scores[child] <= lastScore) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            scores[i] = lastScore;
+            return top;
+        }
+    }
+
+    /** What {@link #save} writes, copied out of the live index. */
+    private static final class Snapshot {
+        String modelId;
+        int dimension;
+        int count;
+        int entryPoint;
+        int topLevel;
+        float[] vectors;
+        byte[] levels;
+        boolean[] deleted;
+        int[][][] links;
+        String[] ids;
+    }
+
+    /** Buffered big-endian writes to a channel. */
+    private static final class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        Writer putInt(int v) throws IOException {
+            ensure(Integer.BYTES);
+            buf.putInt(v);
+            return this;
+        }
+
+        Writer putByte(byte v) throws IOException {
+            ensure(1);
+            buf.put(v);
+            return this;
+        }
+
+        Writer putBytes(byte[] v) throws IOException {
+            for (int done = 0; done < v.length; ) {
+                ensure(1);
+                int n = Math.min(v.length - done, buf.remaining());
+                buf.put(v, done, n);
+                done += n;
+            }
+            return this;
+        }
+
+        Writer putInts(int[] v) throws IOException {
+            for (int done = 0; done < v.length; ) {
+                ensure(Integer.BYTES);
+                int n = Math.min(v.length - done, buf.remaining() / Integer.BYTES);
+                buf.asIntBuffer().put(v, done, n);
+                buf.position(buf.position() + n * Integer.BYTES);
+                done += n;
+            }
+            return this;
+        }
+
+        Writer putFloats(float[] v) throws IOException {
+            for (int done = 0; done < v.length; ) {
+                ensure(Float.BYTES);
+                int n = Math.min(v.length - done, buf.remaining() / Float.BYTES);
+                buf.asFloatBuffer().put(v, done, n);
+                buf.position(buf.position() + n * Float.BYTES);
+                done += n;
+            }
+            return this;
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    /** Sequential big-endian reads through memory-mapped windows of the file. */
+    private static final class Reader {
+        private static final long WINDOW = 1L << 28;
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        int getInt() throws IOException {
+            return at(Integer.BYTES).getInt();
+        }
+
+        byte getByte() throws IOException {
+            return at(1).get();
+        }
+
+        byte[] getBytes(int n) throws IOException {
+            byte[] out = new byte[n];
+            at(n).get(out);
+            return out;
+        }
+
+        int[] getInts(int n) throws IOException {
+            int[] out = new int[n];
+            at((long) n * Integer.BYTES).asIntBuffer().get(out);
+            return out;
+        }
+
+        void getFloats(float[] out, int n) throws IOException {
+            int chunk = (int) (WINDOW / Float.BYTES);
+            for (int off = 0; off < n; off += chunk) {
+                int len = Math.min(chunk, n - off);
+                at((long) len * Float.BYTES).asFloatBuffer().get(out, off, len);
+            }
+        }
+
+        /** The window positioned at the next {@code bytes} bytes, which it is guaranteed to hold. */
+        private ByteBuffer at(long bytes) throws IOException {
+            if (bytes > WINDOW || position + bytes > size) {
+                throw new EOFException("Vector index file ends early");
+            }
+            long offset = position - windowStart;
+            if (window == null || offset + bytes > window.capacity()) {
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+                offset = 0;
+            }
+            window.position((int) offset);
+            position += bytes;
+            return window;
+        }
+    }
+}
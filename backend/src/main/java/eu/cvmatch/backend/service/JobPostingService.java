@@ -12,10 +12,15 @@ public class JobPostingService {
 
     private final Firestore db;
     private final FirebaseService firebaseService;
+    private final CVScoring cvScoring;
+    private final VectorIndexService vectorIndexService;
 
-    public JobPostingService(Firestore db, FirebaseService firebaseService) {
+    public JobPostingService(Firestore db, FirebaseService firebaseService, CVScoring cvScoring,
+                             VectorIndexService vectorIndexService) {
         this.db = db;
         this.firebaseService = firebaseService;
+        this.cvScoring = cvScoring;
+        this.vectorIndexService = vectorIndexService;
     }
 
     /**
@@ -67,6 +72,9 @@ public class JobPostingService {
             // Set the document in Firestore
             db.collection("jobs").document(jobId).set(data).get();
 
+            // Indexed in the background; the job is searchable once its embedding arrives
+            vectorIndexService.indexJobAsync(jobId, job.getDescription());
+
             return jobId;
         } catch (Exception e) {
             System.err.println("Error saving job: " + e.getMessage());
@@ -98,6 +106,12 @@ public class JobPostingService {
 
         // Update the document
         db.collection("jobs").document(jobId).update(updates).get();
+
+        // Prompt prefixes cached for the old version of the job are stale now
+        cvScoring.invalidateJob(jobId);
+        if (job.getDescription() != null) {
+            vectorIndexService.indexJobAsync(jobId, job.getDescription());
+        }
     }
 
     /**
@@ -112,6 +126,8 @@ public class JobPostingService {
 
         // Delete the document
         db.collection("jobs").document(jobId).delete().get();
+        cvScoring.invalidateJob(jobId);
+        vectorIndexService.removeJob(jobId);
     }
 
     /**
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
@@ -14,35 +15,46 @@ public class JobService {
 
     private final FirebaseService firebaseService;
     private final ScoringService scoringService;
+    private final EmbeddingSimilarityService embeddingService;
 
-    public JobService(FirebaseService firebaseService, ScoringService scoringService) {
+    public JobService(FirebaseService firebaseService, ScoringService scoringService,
+                      EmbeddingSimilarityService embeddingService) {
         this.firebaseService = firebaseService;
         this.scoringService = scoringService;
+        this.embeddingService = embeddingService;
     }
 
     public List<JobMatchResult> matchCVToJobs(String cvText) {
         try {
             List<JobPosting> allJobs = firebaseService.getAllJobs();
-            List<JobMatchResult> results = new ArrayList<>();
+            // Embed the CV and every job description in one batched call
+            List<String> descriptions = allJobs.stream()
+                    .map(JobPosting::getDescription)
+                    .collect(Collectors.toList());
+            CompletableFuture<List<Double>> similarities =
+                    embeddingService.cosineSimilaritiesAsync(cvText, descriptions);
 
-            for (JobPosting job : allJobs) {
-                try {
-                    CVMatchResult cvMatchResult = scoringService.scoreCVAgainstJob(cvText, job);
-
-                    JobMatchResult result = new JobMatchResult(
-                            job.getJobTitle(),
-                            job.getIndustry(),
-                            cvMatchResult.getScore(),
-                            cvMatchResult.getIndustryScore(),
-                            cvMatchResult.getTechScore(),
-                            cvMatchResult.getJdScore(),
-                            cvMatchResult.getExplanation()
-                    );
-
-                    results.add(result);
-                } catch (Exception e) {
-                    e.printStackTrace();
+            // Screen every job cheaply, re-score the best with the main model; a failed job is left out
+            List<CVMatchResult> scored =
+                    scoringService.rankJobsForCvAsync(cvText, allJobs, similarities).join();
+            List<JobMatchResult> results = new ArrayList<>();
+            for (int i = 0; i < allJobs.size(); i++) {
+                JobPosting job = allJobs.get(i);
+                CVMatchResult cvMatchResult = scored.get(i);
+                if (cvMatchResult == null) {
+                    continue;
                 }
+                JobMatchResult result = new JobMatchResult(
+                        job.getJobTitle(),
+                        job.getIndustry(),
+                        cvMatchResult.getScore(),
+                        cvMatchResult.getIndustryScore(),
+                        cvMatchResult.getTechScore(),
+                        cvMatchResult.getJdScore(),
+                        cvMatchResult.getExplanation()
+                );
+                result.setTier(cvMatchResult.getTier());
+                results.add(result);
             }
 
             return results.stream()
@@ -0,0 +1,43 @@
+package eu.cvmatch.backend.service;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of the most recent calls in a fixed-size ring, for percentile lookups.
+ */
+public class LatencyTracker {
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    public LatencyTracker(int capacity) {
+        this.samples = new long[Math.max(1, capacity)];
+    }
+
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    public synchronized int getSampleCount() {
+        return size;
+    }
+
+    /**
+     * The {@code percentile}-th (0–100) percentile of the recorded latencies, or -1
+     * while fewer than {@code minSamples} have been recorded.
+     */
+    public long percentile(double percentile, int minSamples) {
+        long[] sorted;
+        synchronized (this) {
+            if (size == 0 || size < minSamples) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,165 @@
+package eu.cvmatch.backend.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Groups items submitted by concurrent callers into batches. Items are collected
+ * per key; a group is handed to the batch function once it holds
+ * {@code maxBatchSize} items or {@code windowMillis} after its first item arrived,
+ * whichever comes first. Each caller gets the future for its own item, so one
+ * failed item doesn't fail the others.
+ * <p>
+ * An item for a key with no batch open or in flight is dispatched on its own right
+ * away: nothing is arriving that it could share a prompt with, so a lone caller
+ * never waits out the window. Items that come in while that call runs are batched.
+ * <p>
+ * With a window of 0 (or a batch size of 1) every item is dispatched on its own
+ * right away.
+ */
+public class MicroBatcher<K, T, R> {
+    private final BiFunction<K, List<T>, List<CompletableFuture<R>>> batchFunction;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final ScheduledExecutorService timer;
+    private final Map<K, Batch<T, R>> open = new HashMap<>();
+    // Dispatched batches per key whose results aren't all complete yet
+    private final Map<K, Integer> inFlight = new HashMap<>();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong itemCount = new AtomicLong();
+
+    /**
+     * @param batchFunction called with a key and its items; must return one future per
+     *                      item, in the same order
+     */
+    public MicroBatcher(String name, int maxBatchSize, long windowMillis,
+                        BiFunction<K, List<T>, List<CompletableFuture<R>>> batchFunction) {
+        this.batchFunction = batchFunction;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.windowMillis = windowMillis;
+        this.timer = isBatching() ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-batcher");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+    }
+
+    public boolean isBatching() {
+        return windowMillis > 0 && maxBatchSize > 1;
+    }
+
+    public CompletableFuture<R> submit(K key, T item) {
+        if (!isBatching()) {
+            Batch<T, R> single = new Batch<>();
+            single.add(item, new CompletableFuture<>());
+            dispatch(key, single);
+            return single.results.get(0);
+        }
+
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Batch<T, R> ready = null;
+        synchronized (open) {
+            Batch<T, R> batch = open.get(key);
+            if (batch == null && !inFlight.containsKey(key)) {
+                ready = new Batch<>();
+                ready.add(item, result);
+            } else {
+                if (batch == null) {
+                    batch = new Batch<>();
+                    open.put(key, batch);
+                    Batch<T, R> scheduled = batch;
+                    timer.schedule(() -> flush(key, scheduled), windowMillis, TimeUnit.MILLISECONDS);
+                }
+                batch.add(item, result);
+                if (batch.items.size() >= maxBatchSize) {
+                    open.remove(key);
+                    ready = batch;
+                }
+            }
+            if (ready != null) {
+                inFlight.merge(key, 1, Integer::sum);
+            }
+        }
+        if (ready != null) {
+            dispatch(key, ready);
+        }
+        return result;
+    }
+
+    /** Batches handed to the batch function so far. */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /** Items handed to the batch function so far; divided by {@link #getBatchCount} gives the average batch size. */
+    public long getItemCount() {
+        return itemCount.get();
+    }
+
+    private void flush(K key, Batch<T, R> batch) {
+        synchronized (open) {
+            // Already dispatched because it filled up before the window closed
+            if (open.get(key) != batch) {
+                return;
+            }
+            open.remove(key);
+            inFlight.merge(key, 1, Integer::sum);
+        }
+        dispatch(key, batch);
+    }
+
+    private void dispatch(K key, Batch<T, R> batch) {
+        if (isBatching()) {
+            CompletableFuture.allOf(batch.results.toArray(CompletableFuture[]::new))
+                    .whenComplete((ignored, err) -> landed(key));
+        }
+        batchCount.incrementAndGet();
+        itemCount.addAndGet(batch.items.size());
+        List<CompletableFuture<R>> outcomes;
+        try {
+            outcomes = batchFunction.apply(key, batch.items);
+        } catch (RuntimeException e) {
+            batch.results.forEach(r -> r.completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < batch.results.size(); i++) {
+            CompletableFuture<R> result = batch.results.get(i);
+            if (outcomes == null || i >= outcomes.size()) {
+                result.completeExceptionally(new IllegalStateException("Batch function returned "
+                        + (outcomes == null ? 0 : outcomes.size()) + " results for " + batch.items.size() + " items"));
+                continue;
+            }
+            outcomes.get(i).whenComplete((value, err) -> {
+                if (err != null) {
+                    result.completeExceptionally(err);
+                } else {
+                    result.complete(value);
+                }
+            });
+        }
+    }
+
+    private void landed(K key) {
+        synchronized (open) {
+            inFlight.computeIfPresent(key, (k, n) -> n > 1 ? n - 1 : null);
+        }
+    }
+
+    private static final class Batch<T, R> {
+        final List<T> items = new ArrayList<>();
+        final List<CompletableFuture<R>> results = new ArrayList<>();
+
+        void add(T item, CompletableFuture<R> result) {
+            items.add(item);
+            results.add(result);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package eu.cvmatch.backend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests against tail latency. A call still running after the
+ * {@code percentile}-th percentile of recent successful calls with the same key
+ * gets a duplicate sent alongside; the first successful reply wins and the others
+ * are cancelled. Until enough calls have been seen, nothing is hedged.
+ */
+public class RequestHedger {
+    private static final int WINDOW = 256;
+    private static final int MIN_SAMPLES = 20;
+
+    private final double percentile;
+    private final int maxHedges;
+    private final long minDelayMillis;
+    private final Executor executor;
+    private final Map<String, LatencyTracker> trackers = new ConcurrentHashMap<>();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    /**
+     * @param percentile     latency percentile (0–100) after which a hedge is sent; 0 or less disables hedging
+     * @param maxHedges      most duplicates per call, each sent one more delay later
+     * @param minDelayMillis hedges are never sent earlier than this
+     */
+    public RequestHedger(double percentile, int maxHedges, long minDelayMillis, Executor executor) {
+        this.percentile = percentile;
+        this.maxHedges = maxHedges;
+        this.minDelayMillis = Math.max(0, minDelayMillis);
+        this.executor = executor;
+    }
+
+    public boolean isEnabled() {
+        return percentile > 0 && maxHedges > 0;
+    }
+
+    /**
+     * Runs {@code primary}, and {@code hedge} if it is slow. {@code hedge} may return
+     * null when there is no budget for a duplicate right now. If no attempt succeeds,
+     * the primary's outcome is returned.
+     */
+    public <T> CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> primary,
+                                            Supplier<CompletableFuture<T>> hedge, Predicate<T> succeeded) {
+        LatencyTracker tracker = trackers.computeIfAbsent(key, k -> new LatencyTracker(WINDOW));
+        long delay = isEnabled() ? tracker.percentile(percentile, MIN_SAMPLES) : -1;
+
+        Race<T> race = new Race<>(tracker, succeeded);
+        race.watch(primary.get(), true);
+        if (delay < 0) {
+            return race.result;
+        }
+        long firstDelay = Math.max(minDelayMillis, delay);
+        for (int i = 1; i <= maxHedges; i++) {
+            Executor later = CompletableFuture.delayedExecutor(firstDelay * i, TimeUnit.MILLISECONDS, executor);
+            later.execute(() -> race.hedge(hedge));
+        }
+        return race.result;
+    }
+
+    /** Current hedge delay for {@code key}, or -1 while it isn't known yet. */
+    public long getDelayMillis(String key) {
+        LatencyTracker tracker = trackers.get(key);
+        long delay = tracker == null ? -1 : tracker.percentile(percentile, MIN_SAMPLES);
+        return delay < 0 ? -1 : Math.max(minDelayMillis, delay);
+    }
+
+    /** Duplicates sent. */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /** Calls answered by a duplicate rather than the original. */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    /** Duplicates not sent because there was no budget for them. */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    private final class Race<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final LatencyTracker tracker;
+        final Predicate<T> succeeded;
+        final List<CompletableFuture<T>> running = new ArrayList<>();
+        int pending;
+        boolean won;
+        boolean primaryDone;
+        T primaryValue;
+        Throwable primaryError;
+
+        Race(LatencyTracker tracker, Predicate<T> succeeded) {
+            this.tracker = tracker;
+            this.succeeded = succeeded;
+        }
+
+        synchronized void hedge(Supplier<CompletableFuture<T>> hedge) {
+            if (won || result.isDone() || primaryDone) {
+                return;
+            }
+            CompletableFuture<T> duplicate = hedge.get();
+            if (duplicate == null) {
+                skippedCount.incrementAndGet();
+                return;
+            }
+            hedgeCount.incrementAndGet();
+            watch(duplicate, false);
+        }
+
+        synchronized void watch(CompletableFuture<T> call, boolean primary) {
+            long start = System.nanoTime();
+            pending++;
+            running.add(call);
+            call.whenComplete((value, err) -> done(call, primary, value, err, start));
+        }
+
+        private synchronized void done(CompletableFuture<T> call, boolean primary, T value, Throwable err, long start) {
+            pending--;
+            if (won) {
+                return;
+            }
+            if (err == null && succeeded.test(value)) {
+                tracker.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                won = true;
+                if (!primary) {
+                    hedgeWinCount.incrementAndGet();
+                }
+                // Losers go first, so nobody sees the result while they still hold a permit
+                for (CompletableFuture<T> other : running) {
+                    if (other != call) {
+                        other.cancel(true);
+                    }
+                }
+                result.complete(value);
+                return;
+            }
+            if (primary) {
+                primaryDone = true;
+                primaryValue = value;
+                primaryError = err;
+            }
+            // Nothing left that could still succeed: report what the original call got
+            if (pending == 0 && primaryDone && !result.isDone()) {
+                if (primaryError != null) {
+                    result.completeExceptionally(primaryError);
+                } else {
+                    result.complete(primaryValue);
+                }
+            }
+        }
+    }
+}
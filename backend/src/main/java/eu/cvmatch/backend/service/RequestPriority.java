@@ -0,0 +1,11 @@
+package eu.cvmatch.backend.service;
+
+/**
+ * Lane a Gemini call queues in at the {@link GeminiRateLimiter}.
+ */
+public enum RequestPriority {
+    /** A user is waiting on this call (CV upload, skills extraction); served first, with reserved quota. */
+    INTERACTIVE,
+    /** Part of a bulk job such as ranking every job for a CV; only uses quota interactive calls don't need. */
+    BULK
+}
@@ -0,0 +1,113 @@
+package eu.cvmatch.backend.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache whose entries also expire a fixed time after they were written.
+ * Used for deterministic (temperature 0) Gemini replies, where the same request
+ * always yields the same answer.
+ *
+ * A capacity of 0 or less disables the cache: nothing is stored and every lookup misses.
+ */
+public class ResponseCache<V> {
+    private final int capacity;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Map<String, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ResponseCache(int capacity, long ttlMillis) {
+        this(capacity, ttlMillis, System::nanoTime);
+    }
+
+    ResponseCache(int capacity, long ttlMillis, LongSupplier clock) {
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                if (size() > ResponseCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Returns the live value for {@code key}, or null on a miss or an expired entry. */
+    public V get(String key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && clock.getAsLong() - entry.writtenAt >= ttlNanos) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.value;
+        }
+    }
+
+    public void put(String key, V value) {
+        if (capacity <= 0 || value == null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, clock.getAsLong()));
+        }
+    }
+
+    public void invalidate(String key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** Entries dropped because the cache was full or they had expired. */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long writtenAt;
+
+        Entry(V value, long writtenAt) {
+            this.value = value;
+            this.writtenAt = writtenAt;
+        }
+    }
+}
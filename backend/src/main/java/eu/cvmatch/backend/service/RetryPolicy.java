@@ -0,0 +1,127 @@
+package eu.cvmatch.backend.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Decides whether and when a failed Gemini call is retried.
+ *
+ * Delays use exponential backoff with full jitter: attempt n waits a random
+ * time in [0, min(maxDelay, baseDelay * 2^(n-1))]. A Retry-After header from
+ * the server takes precedence over the computed delay. Each request gets at
+ * most {@code maxAttempts} tries, and no retry is scheduled that would end past
+ * {@code maxElapsedMs} since the first attempt.
+ */
+public class RetryPolicy {
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(408, 429, 500, 502, 503, 504);
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final long maxElapsedMs;
+    private final DoubleSupplier random;
+    private final boolean retryFailures;
+
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, long maxElapsedMs) {
+        this(maxAttempts, baseDelayMs, maxDelayMs, maxElapsedMs, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, long maxElapsedMs, DoubleSupplier random) {
+        this(maxAttempts, baseDelayMs, maxDelayMs, maxElapsedMs, random, true);
+    }
+
+    private RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, long maxElapsedMs,
+                        DoubleSupplier random, boolean retryFailures) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMs = Math.max(0, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+        this.maxElapsedMs = maxElapsedMs;
+        this.random = random;
+        this.retryFailures = retryFailures;
+    }
+
+    /**
+     * Same backoff, but transport failures are never retried; only error statuses are.
+     * For streamed responses, where a failure may come after part of the body was consumed.
+     */
+    public RetryPolicy withoutFailureRetries() {
+        return new RetryPolicy(maxAttempts, baseDelayMs, maxDelayMs, maxElapsedMs, random, false);
+    }
+
+    /** A policy that never retries. */
+    public static RetryPolicy none() {
+        return new RetryPolicy(1, 0, 0, 0);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public static boolean isRetryableStatus(int status) {
+        return RETRYABLE_STATUSES.contains(status);
+    }
+
+    /**
+     * Delay before retrying after an HTTP response, or -1 to stop and surface it.
+     *
+     * @param attempt    the attempt that just finished, starting at 1
+     * @param retryAfter the response's Retry-After header, if any
+     * @param elapsedMs  time since the first attempt started
+     */
+    public long delayAfterResponse(int attempt, int status, Optional<String> retryAfter, long elapsedMs) {
+        if (!isRetryableStatus(status)) {
+            return -1;
+        }
+        long delay = retryAfter.map(RetryPolicy::parseRetryAfterMillis)
+                .filter(ms -> ms >= 0)
+                .orElseGet(() -> backoff(attempt));
+        return withinBudget(attempt, delay, elapsedMs) ? delay : -1;
+    }
+
+    /**
+     * Delay before retrying after a transport failure, or -1 to stop.
+     * Only I/O problems (connection resets, timeouts) are worth another try.
+     */
+    public long delayAfterFailure(int attempt, Throwable error, long elapsedMs) {
+        if (!retryFailures || !(error instanceof IOException)) {
+            return -1;
+        }
+        long delay = backoff(attempt);
+        return withinBudget(attempt, delay, elapsedMs) ? delay : -1;
+    }
+
+    private boolean withinBudget(int attempt, long delay, long elapsedMs) {
+        return attempt < maxAttempts && elapsedMs + delay <= maxElapsedMs;
+    }
+
+    private long backoff(int attempt) {
+        double ceiling = Math.min(maxDelayMs, baseDelayMs * Math.pow(2, attempt - 1));
+        return (long) (random.getAsDouble() * ceiling);
+    }
+
+    /**
+     * Parses a Retry-After value given either as delta-seconds or as an HTTP date.
+     * Returns -1 when the value can't be understood.
+     */
+    static long parseRetryAfterMillis(String value) {
+        String trimmed = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(trimmed)) * 1000;
+        } catch (NumberFormatException ignored) {
+            // not delta-seconds, try the date form
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
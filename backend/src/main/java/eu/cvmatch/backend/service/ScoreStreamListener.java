@@ -0,0 +1,15 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.model.ScoreBreakdown;
+
+/**
+ * Receives a streamed CV score as it is generated: the LLM's numeric scores
+ * first, then the explanation in fragments.
+ */
+public interface ScoreStreamListener {
+
+    /** The scores as the LLM gave them, before blending with the embedding similarity. */
+    void onScores(ScoreBreakdown scores);
+
+    void onExplanation(String text);
+}
@@ -0,0 +1,116 @@
+package eu.cvmatch.backend.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import eu.cvmatch.backend.model.ScoreBreakdown;
+
+/**
+ * Splits a streamed scoring reply of the form {@code {"industryScore":…,…}} followed
+ * by free-text explanation. The scores are reported once the JSON object is complete,
+ * no matter how the fragments cut it; everything after it is explanation.
+ * <p>
+ * Text is recorded before the listener hears about it, and a failing listener (say,
+ * a client that disconnected) is dropped rather than allowed to cut the reply short,
+ * so {@link #result()} always has the whole explanation.
+ */
+class ScoreStreamParser {
+    private final Gson gson;
+    private final ScoreStreamListener listener;
+    private final StringBuilder head = new StringBuilder();
+    private final StringBuilder explanation = new StringBuilder();
+    private ScoreBreakdown scores;
+    private boolean listenerFailed;
+
+    ScoreStreamParser(Gson gson, ScoreStreamListener listener) {
+        this.gson = gson;
+        this.listener = listener;
+    }
+
+    void accept(String fragment) {
+        if (scores != null) {
+            appendExplanation(fragment);
+            return;
+        }
+        head.append(fragment);
+        int end = endOfFirstObject(head);
+        if (end < 0) {
+            return;
+        }
+        int start = head.indexOf("{");
+        try {
+            scores = gson.fromJson(head.substring(start, end + 1), ScoreBreakdown.class);
+        } catch (JsonParseException e) {
+            throw new IllegalStateException("Gemini streamed unreadable scores: " + head.substring(start, end + 1), e);
+        }
+        String rest = record(head.substring(end + 1));
+        ScoreBreakdown parsed = scores;
+        notifyListener(() -> listener.onScores(parsed));
+        if (!rest.isEmpty()) {
+            notifyListener(() -> listener.onExplanation(rest));
+        }
+    }
+
+    /** The scores with the full explanation; fails if the reply never contained the scores object. */
+    ScoreBreakdown result() {
+        if (scores == null) {
+            throw new IllegalStateException("Gemini stream ended without scores: " + head);
+        }
+        scores.setExplanation(explanation.toString().trim());
+        return scores;
+    }
+
+    private void appendExplanation(String text) {
+        String recorded = record(text);
+        if (!recorded.isEmpty()) {
+            notifyListener(() -> listener.onExplanation(recorded));
+        }
+    }
+
+    /** Adds {@code text} to the explanation and returns what was added. */
+    private String record(String text) {
+        // Skip the line break between the scores and the prose
+        if (explanation.length() == 0) {
+            text = text.stripLeading();
+        }
+        explanation.append(text);
+        return text;
+    }
+
+    private void notifyListener(Runnable call) {
+        if (listenerFailed) {
+            return;
+        }
+        try {
+            call.run();
+        } catch (RuntimeException e) {
+            listenerFailed = true;
+            System.err.println("Score stream listener failed, no longer notifying it: " + e.getMessage());
+        }
+    }
+
+    /** Index of the brace closing the first top-level object, or -1 if it hasn't arrived yet. */
+    private static int endOfFirstObject(CharSequence text) {
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"' && depth > 0) {
+                inString = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && depth > 0 && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,20 +1,207 @@
 package eu.cvmatch.backend.service;
 
+import com.google.gson.Gson;
+import eu.cvmatch.backend.config.GeminiProperties;
 import eu.cvmatch.backend.model.CVMatchResult;
 import eu.cvmatch.backend.model.JobPosting;
+import eu.cvmatch.backend.model.ScoringTier;
+import eu.cvmatch.backend.utils.Futures;
+import eu.cvmatch.backend.utils.Hashing;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+
 @Service
 public class ScoringService {
 
     private final CVScoring cvScoring;
 
-    public ScoringService(CVScoring cvScoring) {
+    private final Gson gson = new Gson();
+
+    // Concurrent single-CV calls for the same job share one batched prompt
+    private final MicroBatcher<String, ScoreRequest, CVMatchResult> batcher;
+
+    // How bulk matching screens before the main model; null scores everything with the main model
+    private final ScoringTier screeningTier;
+
+    private final int cascadeTopK;
+
+    private final double cascadeBorderline;
+
+    @Autowired
+    public ScoringService(CVScoring cvScoring, GeminiProperties props) {
         this.cvScoring = cvScoring;
+        this.batcher = new MicroBatcher<>("scoring", props.getScoreBatchSize(), props.getScoreBatchWindowMs(),
+                this::scoreBatch);
+        String screenModel = props.getScreenModelId();
+        if (screenModel == null || screenModel.isBlank()) {
+            this.screeningTier = null;
+        } else if (screenModel.trim().equalsIgnoreCase(GeminiProperties.HEURISTIC_SCREEN)) {
+            this.screeningTier = ScoringTier.HEURISTIC;
+        } else {
+            this.screeningTier = ScoringTier.SCREENING;
+        }
+        this.cascadeTopK = Math.max(1, props.getCascadeTopK());
+        this.cascadeBorderline = Math.max(0, props.getCascadeBorderline());
+    }
+
+    public ScoringService(CVScoring cvScoring) {
+        this(cvScoring, GeminiProperties.fromEnv());
     }
 
     public CVMatchResult scoreCVAgainstJob(String cvText, JobPosting job) throws Exception {
         // delegate to our Gemini-backed scorer
-        return cvScoring.calculateScore(cvText, job);
+        return Futures.await(scoreCVAgainstJobAsync(cvText, job));
+    }
+
+    /**
+     * Scores one CV against one job. A call with nothing else pending for its job is
+     * sent at once; calls for the same job that arrive while it runs are grouped for
+     * up to {@code GEMINI_SCORE_BATCH_WINDOW_MS} and scored in one prompt.
+     */
+    public CompletableFuture<CVMatchResult> scoreCVAgainstJobAsync(String cvText, JobPosting job) {
+        return batcher.submit(jobKey(job), new ScoreRequest(cvText, job));
+    }
+
+    public CompletableFuture<CVMatchResult> scoreCVAgainstJobAsync(String cvText, JobPosting job,
+                                                                   CompletableFuture<Double> embedSim) {
+        return cvScoring.calculateScoreAsync(cvText, job, embedSim);
+    }
+
+    /** Many CVs against one job in as few prompts as the batch size allows; one future per CV. */
+    public List<CompletableFuture<CVMatchResult>> scoreCVsAgainstJobAsync(List<String> cvTexts, JobPosting job) {
+        return cvScoring.calculateScoresForJobAsync(cvTexts, job);
+    }
+
+    /** One CV against many jobs in as few prompts as the batch size allows; one future per job. */
+    public List<CompletableFuture<CVMatchResult>> scoreCVAgainstJobsAsync(String cvText, List<JobPosting> jobs,
+                                                                         CompletableFuture<List<Double>> embedSims) {
+        return cvScoring.calculateScoresForCvAsync(cvText, jobs, embedSims);
+    }
+
+    /**
+     * Ranks one CV against many jobs through the scoring cascade: every job is screened
+     * by {@code GEMINI_SCREEN_MODEL_ID} (or by keywords and embeddings), then only the
+     * {@code GEMINI_CASCADE_TOP_K} best, plus any within {@code GEMINI_CASCADE_BORDERLINE}
+     * points of them, are re-scored by the main model. Returns one result per job, in
+     * order, tagged with the tier that produced it; null where a job couldn't be scored.
+     * The calls go through the rate limiter's bulk lane, behind interactive traffic.
+     */
+    public CompletableFuture<List<CVMatchResult>> rankJobsForCvAsync(String cvText, List<JobPosting> jobs,
+                                                                    CompletableFuture<List<Double>> embedSims) {
+        return cascade(jobs.size(), (tier, slots) -> cvScoring.calculateScoresForCvAsync(
+                cvText, pick(jobs, slots), embedSims.thenApply(sims -> pick(sims, slots)), tier,
+                RequestPriority.BULK));
+    }
+
+    public CompletableFuture<CVMatchResult> streamScoreAsync(String cvText, JobPosting job,
+                                                             ScoreStreamListener listener) {
+        return cvScoring.streamScoreAsync(cvText, job, listener);
+    }
+
+    private List<CompletableFuture<CVMatchResult>> scoreBatch(String jobKey, List<ScoreRequest> requests) {
+        if (requests.size() == 1) {
+            return List.of(cvScoring.calculateScoreAsync(requests.get(0).cvText, requests.get(0).job));
+        }
+        // Every request in the batch has an identical job, so any of them can stand in
+        List<String> cvTexts = new ArrayList<>(requests.size());
+        requests.forEach(r -> cvTexts.add(r.cvText));
+        return cvScoring.calculateScoresForJobAsync(cvTexts, requests.get(0).job);
+    }
+
+    /**
+     * @param scorer scores the pairs at the given positions with the given tier, one
+     *               future per position, in order
+     */
+    private CompletableFuture<List<CVMatchResult>> cascade(
+            int size, BiFunction<ScoringTier, List<Integer>, List<CompletableFuture<CVMatchResult>>> scorer) {
+        List<Integer> all = IntStream.range(0, size).boxed().toList();
+        if (screeningTier == null || size <= cascadeTopK) {
+            return settle(scorer.apply(ScoringTier.FULL, all));
+        }
+        return settle(scorer.apply(screeningTier, all)).thenCompose(screened -> {
+            List<Integer> finalists = finalists(screened, cascadeTopK, cascadeBorderline);
+            System.out.printf("Scoring cascade: %d pairs screened (%s), %d re-scored by the main model%n",
+                    size, screeningTier, finalists.size());
+            return settle(scorer.apply(ScoringTier.FULL, finalists)).thenApply(rescored -> {
+                List<CVMatchResult> results = new ArrayList<>(screened);
+                for (int i = 0; i < finalists.size(); i++) {
+                    // If the main model fails on a finalist, its screening score stands
+                    if (rescored.get(i) != null) {
+                        results.set(finalists.get(i), rescored.get(i));
+                    }
+                }
+                return results;
+            });
+        });
+    }
+
+    /**
+     * Positions to re-score with the main model: the {@code topK} best screening scores,
+     * any within {@code borderline} points of the lowest of those, and any pair screening
+     * failed on. Sorted by position.
+     */
+    static List<Integer> finalists(List<CVMatchResult> screened, int topK, double borderline) {
+        List<Integer> finalists = new ArrayList<>();
+        List<Integer> ranked = new ArrayList<>();
+        for (int i = 0; i < screened.size(); i++) {
+            (screened.get(i) == null ? finalists : ranked).add(i);
+        }
+        ranked.sort((a, b) -> Double.compare(screened.get(b).getScore(), screened.get(a).getScore()));
+        if (!ranked.isEmpty()) {
+            double cutoff = screened.get(ranked.get(Math.min(topK, ranked.size()) - 1)).getScore() - borderline;
+            for (int rank = 0; rank < ranked.size(); rank++) {
+                if (rank >= topK && screened.get(ranked.get(rank)).getScore() < cutoff) {
+                    break;
+                }
+                finalists.add(ranked.get(rank));
+            }
+        }
+        Collections.sort(finalists);
+        return finalists;
+    }
+
+    /** Waits for every future; a failed one is logged and comes back as null. */
+    private static CompletableFuture<List<CVMatchResult>> settle(List<CompletableFuture<CVMatchResult>> futures) {
+        List<CompletableFuture<CVMatchResult>> settled = new ArrayList<>(futures.size());
+        for (CompletableFuture<CVMatchResult> future : futures) {
+            settled.add(future.exceptionally(e -> {
+                System.err.println("Scoring failed: " + Futures.unwrap(e).getMessage());
+                return null;
+            }));
+        }
+        return CompletableFuture.allOf(settled.toArray(new CompletableFuture[0]))
+                .thenApply(v -> settled.stream().map(CompletableFuture::join).toList());
+    }
+
+    private static <T> List<T> pick(List<T> items, List<Integer> positions) {
+        if (positions.size() == items.size()) {
+            return items;
+        }
+        List<T> picked = new ArrayList<>(positions.size());
+        positions.forEach(i -> picked.add(items.get(i)));
+        return picked;
+    }
+
+    /** Jobs are fetched per request, so they're grouped by content rather than by instance. */
+    private String jobKey(JobPosting job) {
+        return Hashing.sha256Hex(job.getId(), job.getIndustry(), job.getDescription(),
+                gson.toJson(job.getTechnicalSkills()));
+    }
+
+    static final class ScoreRequest {
+        final String cvText;
+        final JobPosting job;
+
+        ScoreRequest(String cvText, JobPosting job) {
+            this.cvText = cvText;
+            this.job = job;
+        }
     }
 }
@@ -0,0 +1,54 @@
+package eu.cvmatch.backend.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical calls: while a call for a key is in flight,
+ * later callers with the same key share its result instead of starting their own.
+ * The key is forgotten as soon as the call completes, so nothing is cached.
+ *
+ * Each caller gets its own dependent copy of the shared future, so cancelling one
+ * caller's future does not cancel the call for the others.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> leader = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, leader);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing.copy();
+        }
+
+        try {
+            call.get().whenComplete((value, error) -> {
+                inFlight.remove(key, leader);
+                if (error != null) {
+                    leader.completeExceptionally(error);
+                } else {
+                    leader.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, leader);
+            leader.completeExceptionally(e);
+        }
+        return leader.copy();
+    }
+
+    /** Number of calls currently in flight. */
+    public int size() {
+        return inFlight.size();
+    }
+
+    /** Number of calls that joined an in-flight call instead of making their own. */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+}
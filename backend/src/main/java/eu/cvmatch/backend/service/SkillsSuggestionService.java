@@ -1,10 +1,9 @@
 package eu.cvmatch.backend.service;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import eu.cvmatch.backend.model.JobPosting;
+import eu.cvmatch.backend.model.JobSkillsExtraction;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -13,6 +12,28 @@ import java.util.List;
 @Service
 public class SkillsSuggestionService {
 
+    // Gemini's structured output is constrained to this shape, so replies always parse
+    private static final JsonObject SKILLS_SCHEMA = JsonParser.parseString("""
+            {
+              "type": "OBJECT",
+              "properties": {
+                "industry": {"type": "STRING"},
+                "technicalSkills": {
+                  "type": "ARRAY",
+                  "items": {
+                    "type": "OBJECT",
+                    "properties": {
+                      "skill":  {"type": "STRING"},
+                      "weight": {"type": "INTEGER"}
+                    },
+                    "required": ["skill", "weight"]
+                  }
+                }
+              },
+              "required": ["industry", "technicalSkills"]
+            }
+            """).getAsJsonObject();
+
     private final GenerativeLanguageClient glClient;
 
     public SkillsSuggestionService(GenerativeLanguageClient glClient) {
@@ -24,37 +45,24 @@ public class SkillsSuggestionService {
             throw new IllegalArgumentException("Job description cannot be empty");
         }
 
-        String json = loadOrFetchJobJson(jobDescription);
-        JsonObject jobJson = JsonParser.parseString(json).getAsJsonObject();
-
-        List<JobPosting.TechnicalSkill> skills = new ArrayList<>();
-        JsonArray techSkillsArray = jobJson.getAsJsonArray("technicalSkills");
-
-        for (JsonElement e : techSkillsArray) {
-            JsonObject o = e.getAsJsonObject();
-            JobPosting.TechnicalSkill ts = new JobPosting.TechnicalSkill();
-            ts.setSkill(o.get("skill").getAsString());
-            ts.setWeight(o.get("weight").getAsInt());
-            skills.add(ts);
-        }
-
-        return skills;
+        JobSkillsExtraction extraction = loadOrFetchJobSkills(jobDescription);
+        List<JobPosting.TechnicalSkill> skills = extraction.getTechnicalSkills();
+        return skills == null ? new ArrayList<>() : skills;
     }
 
-    private String loadOrFetchJobJson(String jdText) throws Exception {
+    private JobSkillsExtraction loadOrFetchJobSkills(String jdText) throws Exception {
         String prompt = "Extract from this job description:\n" +
                 "• industry,\n" +
-                "• top 5 technical skills + weights summing to 100.\n" +
-                "Return ONLY valid JSON:\n" +
-                "{\"industry\":\"...\",\"technicalSkills\":[{\"skill\":\"...\",\"weight\":...},...]}\n\n" +
+                "• top 5 technical skills + weights summing to 100.\n\n" +
                 "Job Description:\n" + jdText;
 
-        JsonArray cands = glClient.generateMessage(List.of(prompt), null, 1);
-        if (cands.isEmpty()) {
+        JobSkillsExtraction extraction = glClient.generateJson(
+                List.of(prompt), null, SKILLS_SCHEMA, JobSkillsExtraction.class);
+        if (extraction == null) {
             throw new IllegalStateException("Gemini returned no candidates for job description");
         }
 
-        return cands.get(0).getAsJsonObject().get("content").getAsString().trim();
+        return extraction;
     }
 
     public String extractIndustry(String jobDescription) throws Exception {
@@ -62,9 +70,6 @@ public class SkillsSuggestionService {
             throw new IllegalArgumentException("Job description cannot be empty");
         }
 
-        String json = loadOrFetchJobJson(jobDescription);
-        JsonObject jobJson = JsonParser.parseString(json).getAsJsonObject();
-
-        return jobJson.get("industry").getAsString();
+        return loadOrFetchJobSkills(jobDescription).getIndustry();
     }
-}
\ No newline at end of file
+}
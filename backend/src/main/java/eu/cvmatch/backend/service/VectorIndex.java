@@ -0,0 +1,33 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.model.NearestMatch;
+
+import java.util.List;
+
+/**
+ * Embedding vectors by id, searchable by cosine similarity. All vectors of one index
+ * come from the same embedding model; implementations reject others with an
+ * IllegalArgumentException. Implementations are thread-safe.
+ */
+public interface VectorIndex {
+
+    /** Adds the vector, or replaces the one stored under {@code id}. */
+    void upsert(String id, EmbeddingVector vector);
+
+    /** Returns whether a vector was stored under {@code id}. */
+    boolean remove(String id);
+
+    /** The vector stored under {@code id}, or null. */
+    EmbeddingVector get(String id);
+
+    boolean contains(String id);
+
+    /** Ids of every stored vector, in no particular order. */
+    List<String> ids();
+
+    /** Up to {@code k} stored vectors most similar to {@code query}, best first. */
+    List<NearestMatch> search(EmbeddingVector query, int k);
+
+    int size();
+}
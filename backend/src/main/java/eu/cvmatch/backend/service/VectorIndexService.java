@@ -0,0 +1,283 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.config.VectorIndexProperties;
+import eu.cvmatch.backend.model.CV;
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.model.JobPosting;
+import eu.cvmatch.backend.model.NearestMatch;
+import eu.cvmatch.backend.utils.Futures;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-process retrieval over the embeddings of every CV and job: nearest CVs for a
+ * job and nearest jobs for a CV, without a Gemini call per pair.
+ *
+ * Both indexes are filled from Firestore once the application is up, then kept
+ * current by CV uploads and job create/update/delete. A CV or job that isn't
+ * indexed yet when it is queried is embedded and indexed on the spot. Jobs are
+ * embedded by description and CVs by text, the same texts the matching flow
+ * embeds, so the embedding cache serves both.
+ *
+ * With {@code VECTOR_INDEX_TYPE=hnsw} both indexes are HNSW graphs, saved under
+ * {@code VECTOR_INDEX_DIR} once warm-up finishes and on shutdown, and read back at
+ * startup. Warm-up still embeds every stored text, so jobs and CVs edited while the
+ * app was down get fresh vectors; the embedding cache answers unchanged texts without
+ * a Gemini call, and re-indexing an unchanged vector is a no-op.
+ * {@code VECTOR_INDEX_QUANTIZATION} makes the exact indexes scan int8 or binary codes
+ * and keep full vectors off the heap, for re-ranking only; with {@code VECTOR_INDEX_DIR}
+ * set they are paged from scratch files there, deleted on shutdown or, after a crash,
+ * at the next startup.
+ */
+@Service
+public class VectorIndexService {
+    private final FirebaseService firebaseService;
+    private final GenerativeLanguageClient glClient;
+    private final VectorIndexProperties props;
+    private final Path cvFile;
+    private final Path jobFile;
+    private final VectorIndex cvIndex;
+    private final VectorIndex jobIndex;
+
+    public VectorIndexService(FirebaseService firebaseService, GenerativeLanguageClient glClient,
+                              VectorIndexProperties props) {
+        this.firebaseService = firebaseService;
+        this.glClient = glClient;
+        this.props = props;
+        boolean persist = props.isHnsw() && !isBlank(props.getDir());
+        this.cvFile = persist ? Path.of(props.getDir(), "cvs.hnsw") : null;
+        this.jobFile = persist ? Path.of(props.getDir(), "jobs.hnsw") : null;
+        if (!props.isHnsw() && !isBlank(props.getDir())) {
+            QuantizedVectorIndex.deleteStaleScratchFiles(Path.of(props.getDir()));
+        }
+        this.cvIndex = newIndex(cvFile);
+        this.jobIndex = newIndex(jobFile);
+    }
+
+    /** (Re-)indexes every stored job and CV in the background, and drops deleted ones. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndexes() {
+        CompletableFuture.runAsync(() -> {
+            List<String> jobIds = new ArrayList<>();
+            List<String> jobTexts = new ArrayList<>();
+            for (JobPosting job : firebaseService.getAllJobs()) {
+                if (job.getId() != null && !isBlank(job.getDescription())) {
+                    jobIds.add(job.getId());
+                    jobTexts.add(job.getDescription());
+                }
+            }
+            List<String> cvIds = new ArrayList<>();
+            List<String> cvTexts = new ArrayList<>();
+            for (CV cv : firebaseService.getAllCVs()) {
+                if (cv.getId() != null && !isBlank(cv.getContentText())) {
+                    cvIds.add(cv.getId());
+                    cvTexts.add(cv.getContentText());
+                }
+            }
+            CompletableFuture.allOf(
+                    reconcile(jobIndex, jobIds, jobTexts),
+                    reconcile(cvIndex, cvIds, cvTexts)
+            ).join();
+            System.out.println("Vector index loaded: " + jobIndex.size() + " jobs, " + cvIndex.size() + " CVs");
+            saveIndexes();
+        }).exceptionally(e -> {
+            System.err.println("Vector index load failed: " + Futures.unwrap(e).getMessage());
+            return null;
+        });
+    }
+
+    /** Writes HNSW graphs to {@code VECTOR_INDEX_DIR}, if set; failures are logged, not thrown. */
+    @EventListener(ContextClosedEvent.class)
+    public void saveIndexes() {
+        save(jobIndex, jobFile);
+        save(cvIndex, cvFile);
+    }
+
+    /** Releases the off-heap vectors and scratch files of quantized indexes. */
+    @EventListener(ContextClosedEvent.class)
+    public void closeIndexes() {
+        for (VectorIndex index : List.of(jobIndex, cvIndex)) {
+            if (index instanceof QuantizedVectorIndex quantized) {
+                quantized.close();
+            }
+        }
+    }
+
+    /** Embeds and (re-)indexes a job; failures are logged, not thrown. */
+    public CompletableFuture<Void> indexJobAsync(String jobId, String description) {
+        return index(jobIndex, "job", jobId, description);
+    }
+
+    /** Embeds and (re-)indexes a CV; failures are logged, not thrown. */
+    public CompletableFuture<Void> indexCvAsync(String cvId, String cvText) {
+        return index(cvIndex, "CV", cvId, cvText);
+    }
+
+    public void removeJob(String jobId) {
+        jobIndex.remove(jobId);
+    }
+
+    public void removeCv(String cvId) {
+        cvIndex.remove(cvId);
+    }
+
+    /**
+     * The {@code k} CVs most similar to a job, best first.
+     *
+     * @throws IllegalArgumentException if there is no such job
+     */
+    public List<NearestMatch> similarCvsForJob(String jobId, int k) throws Exception {
+        EmbeddingVector job = jobIndex.get(jobId);
+        if (job == null) {
+            JobPosting posting = firebaseService.getJobById(jobId);
+            if (posting == null || isBlank(posting.getDescription())) {
+                throw new IllegalArgumentException("Job not found: " + jobId);
+            }
+            job = embedAndIndex(jobIndex, jobId, posting.getDescription());
+        }
+        return cvIndex.search(job, k);
+    }
+
+    /**
+     * The {@code k} jobs most similar to a CV, best first.
+     *
+     * @throws IllegalArgumentException if there is no such CV
+     */
+    public List<NearestMatch> similarJobsForCv(String cvId, int k) throws Exception {
+        EmbeddingVector cv = cvIndex.get(cvId);
+        if (cv == null) {
+            Object cvText = firebaseService.getCVText(cvId);
+            if (!(cvText instanceof String text) || text.isBlank()) {
+                throw new IllegalArgumentException("CV not found: " + cvId);
+            }
+            cv = embedAndIndex(cvIndex, cvId, text);
+        }
+        return jobIndex.search(cv, k);
+    }
+
+    public int getJobCount() {
+        return jobIndex.size();
+    }
+
+    public int getCvCount() {
+        return cvIndex.size();
+    }
+
+    private EmbeddingVector embedAndIndex(VectorIndex index, String id, String text) throws Exception {
+        EmbeddingVector vector = Futures.await(glClient.embedVectorAsync(text, null));
+        index.upsert(id, vector);
+        return vector;
+    }
+
+    private CompletableFuture<Void> index(VectorIndex index, String kind, String id, String text) {
+        if (id == null || isBlank(text)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return glClient.embedVectorAsync(text, null)
+                .thenAccept(vector -> index.upsert(id, vector))
+                .exceptionally(e -> {
+                    System.err.println("Failed to index " + kind + " " + id + ": " + Futures.unwrap(e).getMessage());
+                    return null;
+                });
+    }
+
+    private CompletableFuture<Void> reconcile(VectorIndex index, List<String> ids, List<String> texts) {
+        Set<String> stored = new HashSet<>(ids);
+        for (String id : index.ids()) {
+            if (!stored.contains(id)) {
+                index.remove(id);
+            }
+        }
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // Every id, not just missing ones: a loaded index can't tell which texts were edited.
+        // One batched embedding call per chunk; cached texts cost nothing
+        return glClient.embedVectorsAsync(texts, null).thenAccept(vectors -> {
+            for (int i = 0; i < ids.size(); i++) {
+                index.upsert(ids.get(i), vectors.get(i));
+            }
+        });
+    }
+
+    private VectorIndex newIndex(Path file) {
+        QuantizedVectorIndex.Encoding encoding = quantization();
+        if (!props.isHnsw()) {
+            if (encoding == null) {
+                return new BruteForceVectorIndex();
+            }
+            Path scratchDir = isBlank(props.getDir()) ? null : Path.of(props.getDir());
+            return new QuantizedVectorIndex(encoding, props.getRescoreFactor(), scratchDir);
+        }
+        if (encoding != null) {
+            System.out.println("VECTOR_INDEX_QUANTIZATION applies to the exact index only; HNSW keeps full vectors");
+        }
+        if (file != null && Files.exists(file)) {
+            try {
+                HnswIndex loaded = HnswIndex.load(file, props.getHnswEfSearch());
+                if (embeddedWithCurrentModel(loaded)) {
+                    System.out.println("Vector index read " + loaded.size() + " vectors from " + file);
+                    return compactIfSparse(loaded);
+                }
+                System.out.println("Vector index " + file + " was built with another embedding model; rebuilding");
+            } catch (IOException e) {
+                System.err.println("Vector index " + file + " unreadable, rebuilding: " + e.getMessage());
+            }
+        }
+        return new HnswIndex(props.getHnswM(), props.getHnswEfConstruction(), props.getHnswEfSearch());
+    }
+
+    private QuantizedVectorIndex.Encoding quantization() {
+        String value = props.getQuantization() == null ? "" : props.getQuantization().trim();
+        if (value.isEmpty() || value.equalsIgnoreCase("none")) {
+            return null;
+        }
+        try {
+            return QuantizedVectorIndex.Encoding.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown VECTOR_INDEX_QUANTIZATION " + value + "; storing full vectors");
+            return null;
+        }
+    }
+
+    private boolean embeddedWithCurrentModel(VectorIndex index) {
+        List<String> ids = index.ids();
+        if (ids.isEmpty()) {
+            return true;
+        }
+        EmbeddingVector sample = index.get(ids.get(0));
+        return sample == null || glClient.getEmbedModelId().equals(sample.getModelId());
+    }
+
+    /** Rebuilds a graph that is more than half tombstones, which only slow searches down. */
+    private static HnswIndex compactIfSparse(HnswIndex index) {
+        return index.getDeletedCount() > index.size() ? index.compacted() : index;
+    }
+
+    private static void save(VectorIndex index, Path file) {
+        if (file == null || !(index instanceof HnswIndex hnsw)) {
+            return;
+        }
+        try {
+            hnsw.save(file);
+        } catch (IOException e) {
+            System.err.println("Failed to save vector index " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+}
@@ -0,0 +1,38 @@
+package eu.cvmatch.backend.utils;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+public class Futures {
+
+    private Futures() {}
+
+    /**
+     * Blocks on the future and rethrows the original failure instead of the
+     * CompletionException wrapper, so the sync APIs keep their old exceptions.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Strips CompletionException/ExecutionException layers added by future chaining.
+     */
+    public static Exception unwrap(Throwable t) {
+        Throwable cause = t;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        return new RuntimeException(cause);
+    }
+}
@@ -0,0 +1,31 @@
+package eu.cvmatch.backend.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public class Hashing {
+
+    private Hashing() {}
+
+    /**
+     * SHA-256 over the given parts, separated by a NUL byte so that
+     * ("ab", "c") and ("a", "bc") hash differently. Null parts hash as "".
+     */
+    public static String sha256Hex(String... parts) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    sha.update((byte) 0);
+                }
+                String part = parts[i] == null ? "" : parts[i];
+                sha.update(part.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package eu.cvmatch.backend.utils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Shrinks extracted CV and job texts before they go into a prompt.
+ * <p>
+ * {@link #normalize} drops what carries no meaning for the model: repeated
+ * whitespace, invisible characters, page numbers and the headers and footers PDF
+ * extraction leaves at page breaks. {@link #fit} then enforces a token budget by section:
+ * low-value sections (hobbies, references, …) go first, and what is still too long
+ * is cut so that every remaining section keeps its beginning.
+ */
+public class PromptCompactor {
+    private static final String CUT_MARK = " […]";
+    // Lines on each side of a page break that may be a running header or footer
+    private static final int PAGE_EDGE_LINES = 2;
+
+    private static final Pattern INVISIBLE = Pattern.compile("[\\u00AD\\u200B-\\u200D\\u2060\\uFEFF]");
+    private static final Pattern SPACES = Pattern.compile("[\\s&&[^\\n]]+");
+    private static final Pattern BULLET = Pattern.compile("^[•▪●◦■□➢►\\uF0A7\\uF0B7*]\\s*");
+    private static final Pattern PAGE_NUMBER = Pattern.compile(
+            "(?i)^(page\\s*)?\\d{1,3}(\\s*(/|of)\\s*\\d{1,3})?$|^[-–—]\\s*\\d{1,3}\\s*[-–—]$");
+
+    private static final Set<String> HEADINGS = Set.of(
+            "summary", "profile", "about me", "objective", "experience", "work experience",
+            "professional experience", "employment history", "education", "skills",
+            "technical skills", "projects", "certifications", "courses", "languages",
+            "publications", "awards", "volunteering", "responsibilities", "requirements",
+            "qualifications", "what you will do", "what we offer", "benefits", "about us",
+            "interests", "hobbies", "references", "personal details", "personal information",
+            "contact", "contact details");
+
+    // Dropped whole before anything else is shortened
+    private static final Set<String> LOW_VALUE = Set.of(
+            "interests", "hobbies", "references", "personal details", "personal information",
+            "contact", "contact details", "what we offer", "benefits", "about us");
+
+    private final int tokenBudget;
+
+    /** @param tokenBudget tokens a whole prompt may use; 0 or less only normalizes */
+    public PromptCompactor(int tokenBudget) {
+        this.tokenBudget = tokenBudget;
+    }
+
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+
+    public boolean isBounded() {
+        return tokenBudget > 0;
+    }
+
+    /**
+     * Collapses whitespace, strips invisible characters and page numbers, and drops
+     * running headers and footers: lines in the same place at the top or bottom of
+     * more than one page, kept where they first appear. Pages are told apart by form feeds and page-number
+     * lines; text without either keeps all its lines, repeated or not.
+     */
+    public static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String cleaned = INVISIBLE.matcher(text.replace("\r\n", "\n").replace('\r', '\n')).replaceAll("");
+
+        // One entry per line, empty for blank lines and null for page breaks
+        List<String> lines = new ArrayList<>();
+        for (String raw : cleaned.split("\n")) {
+            String[] pages = raw.split("\f", -1);
+            for (int p = 0; p < pages.length; p++) {
+                if (p > 0) {
+                    lines.add(null);
+                }
+                String line = BULLET.matcher(SPACES.matcher(pages[p]).replaceAll(" ").trim()).replaceFirst("- ");
+                lines.add(PAGE_NUMBER.matcher(line).matches() ? null : line);
+            }
+        }
+        Set<Integer> running = runningHeadersAndFooters(lines);
+
+        StringBuilder out = new StringBuilder(cleaned.length());
+        boolean blank = false;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line == null || line.isEmpty()) {
+                blank = out.length() > 0;
+                continue;
+            }
+            if (running.contains(i)) {
+                continue;
+            }
+            if (out.length() > 0) {
+                out.append(blank ? "\n\n" : "\n");
+            }
+            out.append(line);
+            blank = false;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Indexes of the lines to drop: a line that was already found in the same place
+     * (second line from the top, last line, …) on an earlier page.
+     */
+    private static Set<Integer> runningHeadersAndFooters(List<String> lines) {
+        List<int[]> breaks = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i) == null) {
+                breaks.add(new int[]{i, -1});
+                breaks.add(new int[]{i, 1});
+            }
+        }
+        if (breaks.isEmpty()) {
+            return Set.of();
+        }
+        // The first page has no break above its header, the last none below its footer
+        breaks.add(0, new int[]{-1, 1});
+        breaks.add(new int[]{lines.size(), -1});
+
+        Set<String> seen = new HashSet<>();
+        Set<Integer> drop = new HashSet<>();
+        for (int[] edge : breaks) {
+            int found = 0;
+            for (int i = edge[0] + edge[1]; i >= 0 && i < lines.size() && found < PAGE_EDGE_LINES; i += edge[1]) {
+                String line = lines.get(i);
+                if (line == null) {
+                    break;
+                }
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String key = edge[1] * (found + 1) + ":" + line.toLowerCase(Locale.ROOT);
+                found++;
+                if (line.length() > 3 && !seen.add(key)) {
+                    drop.add(i);
+                }
+            }
+        }
+        return drop;
+    }
+
+    /**
+     * Returns {@code text} unchanged if it fits in {@code maxTokens}; otherwise drops
+     * low-value sections and then shortens the longest sections until it does.
+     */
+    public static String fit(String text, int maxTokens) {
+        if (text == null || text.isEmpty() || TokenEstimator.estimate(text) <= maxTokens) {
+            return text == null ? "" : text;
+        }
+        if (maxTokens <= 0) {
+            return "";
+        }
+        List<Section> sections = sections(text);
+
+        for (int i = sections.size() - 1; i >= 0 && total(sections) > maxTokens; i--) {
+            if (sections.get(i).lowValue) {
+                sections.remove(i);
+            }
+        }
+        if (total(sections) > maxTokens) {
+            shorten(sections, maxTokens);
+        }
+
+        StringBuilder out = new StringBuilder();
+        for (Section section : sections) {
+            if (section.text.isEmpty()) {
+                continue;
+            }
+            if (out.length() > 0) {
+                out.append("\n\n");
+            }
+            out.append(section.text);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Splits what is left of the budget after {@code fixedTokens} between a CV and a
+     * job description and compacts both. The description gets up to a third; any of
+     * that third it doesn't need goes to the CV, and the other way around.
+     *
+     * @return the compacted CV and description, in that order
+     */
+    public String[] compactPair(String cv, String jobDescription, int fixedTokens) {
+        String cvText = normalize(cv);
+        String jdText = normalize(jobDescription);
+        if (!isBounded()) {
+            return new String[]{cvText, jdText};
+        }
+        int available = Math.max(0, tokenBudget - fixedTokens);
+        int cvTokens = TokenEstimator.estimate(cvText);
+        int jdTokens = TokenEstimator.estimate(jdText);
+        if (cvTokens + jdTokens <= available) {
+            return new String[]{cvText, jdText};
+        }
+        int jdShare = Math.min(jdTokens, Math.max(available / 3, available - cvTokens));
+        String fittedJd = fit(jdText, jdShare);
+        String fittedCv = fit(cvText, available - TokenEstimator.estimate(fittedJd));
+        System.out.printf("Prompt over budget: CV %d -> %d tokens, job %d -> %d tokens%n",
+                cvTokens, TokenEstimator.estimate(fittedCv), jdTokens, TokenEstimator.estimate(fittedJd));
+        return new String[]{fittedCv, fittedJd};
+    }
+
+    /**
+     * Batch counterpart of {@link #compactPair}: {@code shared}, the text every item is
+     * scored against, is compacted once to at most {@code sharedShare} of what is left
+     * after {@code fixedTokens}, and each item may use the rest. The budget is per
+     * pair, as if every item were scored in a prompt of its own.
+     *
+     * @return the compacted shared text followed by the compacted items, in order
+     */
+    public List<String> compactBatch(String shared, List<String> items, int fixedTokens, double sharedShare) {
+        String sharedText = normalize(shared);
+        List<String> itemTexts = new ArrayList<>(items.size());
+        int largestItem = 0;
+        for (String item : items) {
+            String text = normalize(item);
+            itemTexts.add(text);
+            largestItem = Math.max(largestItem, TokenEstimator.estimate(text));
+        }
+
+        List<String> out = new ArrayList<>(items.size() + 1);
+        if (!isBounded()) {
+            out.add(sharedText);
+            out.addAll(itemTexts);
+            return out;
+        }
+        int available = Math.max(0, tokenBudget - fixedTokens);
+        // The shared text may take whatever the largest item leaves, but at least its share
+        sharedText = fit(sharedText, Math.max(available - largestItem, (int) (available * sharedShare)));
+        out.add(sharedText);
+        int itemBudget = available - TokenEstimator.estimate(sharedText);
+        for (String text : itemTexts) {
+            out.add(fit(text, itemBudget));
+        }
+        return out;
+    }
+
+    private static List<Section> sections(String text) {
+        List<Section> sections = new ArrayList<>();
+        Section current = new Section(false);
+        for (String line : text.split("\n")) {
+            String heading = headingKey(line);
+            if (heading != null) {
+                if (!current.text.isEmpty()) {
+                    sections.add(current.done());
+                }
+                current = new Section(LOW_VALUE.contains(heading));
+            }
+            current.add(line);
+        }
+        sections.add(current.done());
+        sections.removeIf(s -> s.text.isBlank());
+        return sections;
+    }
+
+    /** The heading's lower-case name if {@code line} looks like a section heading, else null. */
+    private static String headingKey(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.length() > 40) {
+            return null;
+        }
+        String key = trimmed.replaceAll("[:\\s]+$", "").toLowerCase(Locale.ROOT);
+        if (HEADINGS.contains(key)) {
+            return key;
+        }
+        boolean shouted = trimmed.chars().anyMatch(Character::isLetter)
+                && trimmed.equals(trimmed.toUpperCase(Locale.ROOT))
+                && trimmed.split("\\s+").length <= 4;
+        return shouted || (trimmed.endsWith(":") && trimmed.split("\\s+").length <= 4) ? key : null;
+    }
+
+    /**
+     * Gives every section an equal share of {@code maxTokens}; sections under their
+     * share keep all of it and pass the rest on to the longer ones.
+     */
+    private static void shorten(List<Section> sections, int maxTokens) {
+        List<Section> byLength = new ArrayList<>(sections);
+        byLength.sort((a, b) -> Integer.compare(a.tokens, b.tokens));
+        int remaining = maxTokens;
+        for (int i = 0; i < byLength.size(); i++) {
+            Section section = byLength.get(i);
+            int share = remaining / (byLength.size() - i);
+            if (section.tokens > share) {
+                section.truncate(share);
+            }
+            remaining -= section.tokens;
+        }
+    }
+
+    private static int total(List<Section> sections) {
+        int tokens = 0;
+        for (Section section : sections) {
+            tokens += section.tokens;
+        }
+        return tokens;
+    }
+
+    private static final class Section {
+        final boolean lowValue;
+        String text = "";
+        int tokens;
+        private final StringBuilder builder = new StringBuilder();
+
+        Section(boolean lowValue) {
+            this.lowValue = lowValue;
+        }
+
+        void add(String line) {
+            if (builder.length() > 0) {
+                builder.append('\n');
+            }
+            builder.append(line);
+            text = builder.toString();
+        }
+
+        Section done() {
+            text = text.strip();
+            tokens = TokenEstimator.estimate(text);
+            return this;
+        }
+
+        /** Keeps whole lines while they fit, then as many words of the next one as fit. */
+        void truncate(int maxTokens) {
+            int budget = maxTokens - TokenEstimator.estimate(CUT_MARK);
+            StringBuilder kept = new StringBuilder();
+            int used = 0;
+            for (String line : text.split("\n")) {
+                int lineTokens = TokenEstimator.estimate(line);
+                if (used + lineTokens <= budget) {
+                    kept.append(kept.length() == 0 ? "" : "\n").append(line);
+                    used += lineTokens;
+                    continue;
+                }
+                String separator = kept.length() == 0 ? "" : "\n";
+                for (String word : line.split(" ")) {
+                    int wordTokens = TokenEstimator.estimate(word);
+                    if (used + wordTokens > budget) {
+                        break;
+                    }
+                    kept.append(separator).append(word);
+                    separator = " ";
+                    used += wordTokens;
+                }
+                break;
+            }
+            text = budget > 0 && kept.length() > 0 ? kept + CUT_MARK : "";
+            tokens = TokenEstimator.estimate(text);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package eu.cvmatch.backend.utils;
+
+/**
+ * Plain Java kernel, used where the Vector API isn't available. Four independent
+ * accumulators let the JIT keep several multiply-adds in flight.
+ */
+public final class ScalarSimilarityKernel implements SimilarityKernel {
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        return dot(a, b, 0, a.length);
+    }
+
+    @Override
+    public float dot(float[] query, float[] matrix, int row) {
+        return dot(query, matrix, row * query.length, query.length);
+    }
+
+    @Override
+    public int dot(byte[] query, byte[] codes, int row) {
+        int offset = row * query.length;
+        int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i <= query.length - 4; i += 4) {
+            s0 += query[i] * codes[offset + i];
+            s1 += query[i + 1] * codes[offset + i + 1];
+            s2 += query[i + 2] * codes[offset + i + 2];
+            s3 += query[i + 3] * codes[offset + i + 3];
+        }
+        for (; i < query.length; i++) {
+            s0 += query[i] * codes[offset + i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    @Override
+    public void dotMany(float[] query, float[][] rows, float[] out) {
+        for (int r = 0; r < rows.length; r++) {
+            out[r] = dot(query, rows[r], 0, query.length);
+        }
+    }
+
+    @Override
+    public void dotMany(float[] query, float[] matrix, int fromRow, int count, float[] out) {
+        int dim = query.length;
+        for (int r = 0; r < count; r++) {
+            out[r] = dot(query, matrix, (fromRow + r) * dim, dim);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    private static float dot(float[] a, float[] b, int offset, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i <= length - 4; i += 4) {
+            s0 += a[i] * b[offset + i];
+            s1 += a[i + 1] * b[offset + i + 1];
+            s2 += a[i + 2] * b[offset + i + 2];
+            s3 += a[i + 3] * b[offset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[i] * b[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
@@ -0,0 +1,37 @@
+package eu.cvmatch.backend.utils;
+
+/**
+ * Dot products over float vectors, the inner loop of every embedding similarity.
+ * For unit-length vectors the dot product is the cosine similarity.
+ * {@link SimilarityKernels#get()} returns the fastest implementation this JVM can run.
+ */
+public interface SimilarityKernel {
+
+    /** Dot product of two vectors of the same length. */
+    float dot(float[] a, float[] b);
+
+    /**
+     * Dot product of {@code query} with row {@code row} of {@code matrix}, whose rows are
+     * stored back to back, {@code query.length} floats each.
+     */
+    float dot(float[] query, float[] matrix, int row);
+
+    /**
+     * Integer dot product of {@code query} with row {@code row} of {@code codes}, int8
+     * codes stored back to back, {@code query.length} bytes each.
+     */
+    int dot(byte[] query, byte[] codes, int row);
+
+    /** {@code out[r] = query · rows[r]} for every row; rows have the query's length. */
+    void dotMany(float[] query, float[][] rows, float[] out);
+
+    /**
+     * Like {@link #dotMany(float[], float[][], float[])} for rows stored back to back in
+     * {@code matrix}, each {@code query.length} floats long: {@code out[i]} is the score
+     * of row {@code fromRow + i}, for {@code i < count}.
+     */
+    void dotMany(float[] query, float[] matrix, int fromRow, int count, float[] out);
+
+    /** Short name for logs and benchmarks. */
+    String name();
+}
@@ -0,0 +1,55 @@
+package eu.cvmatch.backend.utils;
+
+/**
+ * Picks the {@link SimilarityKernel} once, when first used: the Vector API kernel
+ * if the JVM was started with {@code --add-modules jdk.incubator.vector} and the
+ * CPU has wide enough vectors, the scalar one otherwise.
+ */
+public class SimilarityKernels {
+    private static final SimilarityKernel KERNEL = select();
+
+    private SimilarityKernels() {}
+
+    public static SimilarityKernel get() {
+        return KERNEL;
+    }
+
+    /** The scalar kernel, whatever {@link #get()} picked; for tests and benchmarks. */
+    public static SimilarityKernel scalar() {
+        return new ScalarSimilarityKernel();
+    }
+
+    /** The Vector API kernel, or null if this JVM can't run it. */
+    public static SimilarityKernel vectorApi() {
+        return vectorApi(0);
+    }
+
+    /**
+     * The Vector API kernel with int8 dot products on {@code intVectorBits}-bit vectors
+     * (0 for the CPU's preferred width), or null; lets tests cover narrower CPUs.
+     */
+    static SimilarityKernel vectorApi(int intVectorBits) {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            // Loaded reflectively so this class links without the incubator module
+            return (SimilarityKernel) Class.forName("eu.cvmatch.backend.utils.VectorApiSimilarityKernel")
+                    .getDeclaredConstructor(int.class)
+                    .newInstance(intVectorBits);
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("Vector API similarity kernel unavailable: " + cause);
+            return null;
+        }
+    }
+
+    private static SimilarityKernel select() {
+        SimilarityKernel kernel = vectorApi();
+        if (kernel == null) {
+            kernel = scalar();
+        }
+        System.out.println("Similarity kernel: " + kernel.name());
+        return kernel;
+    }
+}
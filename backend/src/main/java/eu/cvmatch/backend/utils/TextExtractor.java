@@ -82,6 +82,8 @@ public class TextExtractor {
     private static String extractPdf(MultipartFile file) throws Exception {
         try (PDDocument document = PDDocument.load(file.getInputStream())) {
             PDFTextStripper stripper = new PDFTextStripper();
+            // Marks page breaks, so PromptCompactor can tell running headers and footers from content
+            stripper.setPageEnd("\f");
             return stripper.getText(document);
         }
     }
@@ -0,0 +1,48 @@
+package eu.cvmatch.backend.utils;
+
+import java.util.List;
+
+/**
+ * Local approximation of Gemini's token count, good enough for budgeting prompts
+ * and charging the rate limiter without a countTokens round-trip. Runs of letters
+ * and digits count one token per four characters (at least one), every other
+ * visible character counts as a token of its own and whitespace is free.
+ */
+public class TokenEstimator {
+
+    private TokenEstimator() {}
+
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        long tokens = 0;
+        int word = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word++;
+                continue;
+            }
+            tokens += wordTokens(word);
+            word = 0;
+            if (!Character.isWhitespace(c) && !Character.isLowSurrogate(c)) {
+                tokens++;
+            }
+        }
+        tokens += wordTokens(word);
+        return (int) Math.min(Integer.MAX_VALUE, tokens);
+    }
+
+    public static int estimate(List<String> texts) {
+        long tokens = 0;
+        for (String text : texts) {
+            tokens += estimate(text);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, tokens);
+    }
+
+    private static int wordTokens(int chars) {
+        return chars == 0 ? 0 : (chars + 3) / 4;
+    }
+}
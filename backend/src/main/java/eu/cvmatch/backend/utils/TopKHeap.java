@@ -0,0 +1,101 @@
+package eu.cvmatch.backend.utils;
+
+/**
+ * Keeps the {@code k} highest-scoring ids seen so far in a min-heap of primitives,
+ * so a scan over many rows allocates nothing per row. Not thread-safe: give each
+ * scanning thread its own heap and {@link #addAll merge} them.
+ */
+public final class TopKHeap {
+    private final int[] ids;
+    private final float[] scores;
+    private int size;
+
+    public TopKHeap(int k) {
+        this.ids = new int[Math.max(0, k)];
+        this.scores = new float[Math.max(0, k)];
+    }
+
+    /** Keeps {@code id} if it is among the best {@code k} so far; returns whether it was kept. */
+    public boolean offer(int id, float score) {
+        if (size < ids.length) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (size == 0 || score <= scores[0]) {
+            return false;
+        }
+        ids[0] = id;
+        scores[0] = score;
+        siftDown(0, size);
+        return true;
+    }
+
+    /** Score a candidate must beat to be kept; negative infinity until the heap is full. */
+    public float threshold() {
+        return size < ids.length || size == 0 ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public void addAll(TopKHeap other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ids[i], other.scores[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sorts the kept entries best first and empties the heap; {@code ids} and
+     * {@code scores} need room for {@link #size()} entries. Returns the count.
+     */
+    public int drainDescending(int[] idsOut, float[] scoresOut) {
+        int n = size;
+        // Heapsort: moving the minimum to the end each round leaves the array descending
+        for (int end = n - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        System.arraycopy(ids, 0, idsOut, 0, n);
+        System.arraycopy(scores, 0, scoresOut, 0, n);
+        size = 0;
+        return n;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= scores[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int n) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= n) {
+                return;
+            }
+            int smallest = left + 1 < n && scores[left + 1] < scores[left] ? left + 1 : left;
+            if (scores[i] <= scores[smallest]) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -0,0 +1,142 @@
+package eu.cvmatch.backend.utils;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernel on the incubating Vector API, using the widest float vectors the CPU
+ * has (8 lanes with AVX2, 16 with AVX-512). Needs
+ * {@code --add-modules jdk.incubator.vector} at compile and run time; without it
+ * {@link SimilarityKernels} never loads this class.
+ */
+final class VectorApiSimilarityKernel implements SimilarityKernel {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final SimilarityKernel SCALAR = new ScalarSimilarityKernel();
+
+    // Null when the int8 species can't be set up here; int8 then takes the scalar loop
+    private final Int8Dot int8;
+
+    VectorApiSimilarityKernel() {
+        this(0);
+    }
+
+    /**
+     * @param intVectorBits width of the int vectors for int8 dot products; 0 for the
+     *                      CPU's preferred width. Other widths are for tests.
+     */
+    VectorApiSimilarityKernel(int intVectorBits) {
+        // Narrower vectors than this are no faster than the scalar loop
+        if (SPECIES.length() < 4) {
+            throw new UnsupportedOperationException("only " + SPECIES.length() + " float lanes");
+        }
+        Int8Dot int8Dot;
+        try {
+            int8Dot = new Int8Dot(intVectorBits == 0
+                    ? IntVector.SPECIES_PREFERRED
+                    : VectorSpecies.of(int.class, VectorShape.forBitSize(intVectorBits)));
+        } catch (RuntimeException e) {
+            System.err.println("Vector API int8 dot product unavailable, using the scalar loop: " + e);
+            int8Dot = null;
+        }
+        this.int8 = int8Dot;
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        return dot(a, b, 0, a.length);
+    }
+
+    @Override
+    public float dot(float[] query, float[] matrix, int row) {
+        return dot(query, matrix, row * query.length, query.length);
+    }
+
+    @Override
+    public int dot(byte[] query, byte[] codes, int row) {
+        return int8 != null ? int8.dot(query, codes, row) : SCALAR.dot(query, codes, row);
+    }
+
+    @Override
+    public void dotMany(float[] query, float[][] rows, float[] out) {
+        for (int r = 0; r < rows.length; r++) {
+            out[r] = dot(query, rows[r], 0, query.length);
+        }
+    }
+
+    @Override
+    public void dotMany(float[] query, float[] matrix, int fromRow, int count, float[] out) {
+        int dim = query.length;
+        for (int r = 0; r < count; r++) {
+            out[r] = dot(query, matrix, (fromRow + r) * dim, dim);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector-api-" + SPECIES.vectorBitSize();
+    }
+
+    /**
+     * int8 codes widened to int lanes. Bytes are loaded at least 64 bits at a time, the
+     * narrowest byte vector there is: with 128-bit int vectors (NEON, SSE) one load
+     * fills two int vectors, so it is widened in two parts.
+     */
+    private static final class Int8Dot {
+        private final VectorSpecies<Integer> ints;
+        private final VectorSpecies<Byte> bytes;
+        private final int parts;
+
+        Int8Dot(VectorSpecies<Integer> ints) {
+            this.ints = ints;
+            this.bytes = VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, ints.length() * 8)));
+            this.parts = bytes.length() / ints.length();
+        }
+
+        int dot(byte[] query, byte[] codes, int row) {
+            int offset = row * query.length;
+            int step = bytes.length();
+            IntVector acc = IntVector.zero(ints);
+            int i = 0;
+            for (; i <= query.length - step; i += step) {
+                ByteVector q = ByteVector.fromArray(bytes, query, i);
+                ByteVector c = ByteVector.fromArray(bytes, codes, offset + i);
+                for (int part = 0; part < parts; part++) {
+                    IntVector qi = (IntVector) q.castShape(ints, part);
+                    IntVector ci = (IntVector) c.castShape(ints, part);
+                    acc = qi.mul(ci).add(acc);
+                }
+            }
+            int sum = acc.reduceLanes(VectorOperators.ADD);
+            for (; i < query.length; i++) {
+                sum += query[i] * codes[offset + i];
+            }
+            return sum;
+        }
+    }
+
+    private static float dot(float[] a, float[] b, int offset, int length) {
+        int step = SPECIES.length();
+        FloatVector acc0 = FloatVector.zero(SPECIES);
+        FloatVector acc1 = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i <= length - 2 * step; i += 2 * step) {
+            acc0 = FloatVector.fromArray(SPECIES, a, i)
+                    .fma(FloatVector.fromArray(SPECIES, b, offset + i), acc0);
+            acc1 = FloatVector.fromArray(SPECIES, a, i + step)
+                    .fma(FloatVector.fromArray(SPECIES, b, offset + i + step), acc1);
+        }
+        for (; i <= length - step; i += step) {
+            acc0 = FloatVector.fromArray(SPECIES, a, i)
+                    .fma(FloatVector.fromArray(SPECIES, b, offset + i), acc0);
+        }
+        float sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i] * b[offset + i];
+        }
+        return sum;
+    }
+}
@@ -2,6 +2,7 @@ package eu.cvmatch.backend.controller;
 
 import eu.cvmatch.backend.model.CV;
 import eu.cvmatch.backend.service.FirebaseService;
+import eu.cvmatch.backend.service.VectorIndexService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
@@ -20,6 +21,9 @@ class CVListControllerTest {
     @Mock
     private FirebaseService firebaseService;
 
+    @Mock
+    private VectorIndexService vectorIndexService;
+
     @InjectMocks
     private CVListController controller;
 
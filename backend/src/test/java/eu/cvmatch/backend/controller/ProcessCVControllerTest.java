@@ -1,7 +1,9 @@
 package eu.cvmatch.backend.controller;
 
 import eu.cvmatch.backend.model.CVMatchResult;
+import eu.cvmatch.backend.model.ScoreBreakdown;
 import eu.cvmatch.backend.service.CVProcessingService;
+import eu.cvmatch.backend.service.ScoreStreamListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
@@ -11,7 +13,9 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
@@ -95,4 +99,35 @@ class ProcessCVControllerTest {
                 .andExpect(status().isInternalServerError())
                 .andExpect(jsonPath("$.error").value("❌ Failed to process CV: Internal server error"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void processCV_stream_sendsScoresThenExplanationThenResult() throws Exception {
+        // arrange
+        CVMatchResult fakeResult = new CVMatchResult();
+        fakeResult.setScore(85.5);
+        when(processingService.processStream(eq("job123"), any(), any())).thenAnswer(invocation -> {
+            ScoreStreamListener listener = invocation.getArgument(2);
+            listener.onScores(new ScoreBreakdown(90.0, 80.0, 86.5, 85.5, null));
+            listener.onExplanation("Strong match");
+            return CompletableFuture.completedFuture(fakeResult);
+        });
+
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "resume.pdf", MediaType.APPLICATION_PDF_VALUE, "dummy".getBytes()
+        );
+
+        // act
+        String body = mockMvc.perform(multipart("/processcv")
+                        .file(file)
+                        .param("jobId", "job123")
+                        .param("stream", "true"))
+                .andReturn().getResponse().getContentAsString();
+
+        // assert
+        int scores = body.indexOf("event:scores");
+        int explanation = body.indexOf("event:explanation");
+        int result = body.indexOf("event:result");
+        assertTrue(scores >= 0 && explanation > scores && result > explanation, body);
+        assertTrue(body.contains("\"jdScore\":86.5"), body);
+    }
+}
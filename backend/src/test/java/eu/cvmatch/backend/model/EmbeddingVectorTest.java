@@ -0,0 +1,52 @@
+package eu.cvmatch.backend.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddingVectorTest {
+
+    @Test
+    public void of_scalesToUnitLength() {
+        float[] raw = {3f, 4f};
+        EmbeddingVector vector = EmbeddingVector.of("text-embedding-004", raw);
+
+        assertEquals("text-embedding-004", vector.getModelId());
+        assertEquals(2, vector.getDimension());
+        assertArrayEquals(new float[]{0.6f, 0.8f}, vector.values(), 1e-6f);
+        assertArrayEquals(new float[]{3f, 4f}, raw);
+    }
+
+    @Test
+    public void of_unitVector_isUnchanged() {
+        EmbeddingVector once = EmbeddingVector.of("m", new float[]{0.1f, -0.7f, 0.3f, 0.2f});
+        EmbeddingVector twice = EmbeddingVector.of("m", once.toArray());
+
+        assertEquals(once, twice);
+    }
+
+    @Test
+    public void dot_isCosineSimilarity() {
+        EmbeddingVector a = EmbeddingVector.of("m", new float[]{1f, 0f});
+        EmbeddingVector b = EmbeddingVector.of("m", new float[]{2f, 2f});
+
+        assertEquals(Math.sqrt(0.5), a.dot(b), 1e-6);
+        assertEquals(1.0, b.dot(b), 1e-6);
+    }
+
+    @Test
+    public void dot_zeroVector_isZero() {
+        EmbeddingVector zero = EmbeddingVector.of("m", new float[]{0f, 0f});
+        EmbeddingVector other = EmbeddingVector.of("m", new float[]{1f, 1f});
+
+        assertEquals(0.0, zero.dot(other));
+    }
+
+    @Test
+    public void dot_differentModels_throws() {
+        EmbeddingVector a = EmbeddingVector.of("embedding-001", new float[]{1f});
+        EmbeddingVector b = EmbeddingVector.of("text-embedding-004", new float[]{1f});
+
+        assertThrows(IllegalArgumentException.class, () -> a.dot(b));
+    }
+}
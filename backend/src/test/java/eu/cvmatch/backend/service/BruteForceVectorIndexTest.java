@@ -0,0 +1,106 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.model.NearestMatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BruteForceVectorIndexTest {
+
+    @Test
+    void search_returnsTopK_bestFirst() {
+        VectorIndex index = new BruteForceVectorIndex();
+        index.upsert("java", vec(1f, 0f, 0f));
+        index.upsert("kotlin", vec(0.9f, 0.1f, 0f));
+        index.upsert("python", vec(0f, 1f, 0f));
+        index.upsert("sales", vec(-1f, 0f, 0f));
+
+        List<NearestMatch> matches = index.search(vec(1f, 0.05f, 0f), 2);
+
+        assertEquals(2, matches.size());
+        assertEquals("java", matches.get(0).getId());
+        assertEquals("kotlin", matches.get(1).getId());
+        assertTrue(matches.get(0).getScore() >= matches.get(1).getScore());
+    }
+
+    @Test
+    void upsert_sameId_replacesVector() {
+        VectorIndex index = new BruteForceVectorIndex();
+        index.upsert("job-1", vec(1f, 0f));
+        index.upsert("job-1", vec(0f, 1f));
+
+        assertEquals(1, index.size());
+        assertEquals(vec(0f, 1f), index.get("job-1"));
+        assertEquals("job-1", index.search(vec(0f, 1f), 1).get(0).getId());
+    }
+
+    @Test
+    void remove_keepsOtherIdsAttachedToTheirVectors() {
+        VectorIndex index = new BruteForceVectorIndex();
+        index.upsert("a", vec(1f, 0f));
+        index.upsert("b", vec(0f, 1f));
+        index.upsert("c", vec(1f, 1f));
+
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+
+        assertEquals(2, index.size());
+        assertNull(index.get("a"));
+        assertEquals(vec(1f, 1f), index.get("c"));
+        assertEquals("b", index.search(vec(0f, 1f), 1).get(0).getId());
+    }
+
+    @Test
+    void parallelSearch_matchesSingleThreadedSearch() {
+        SplittableRandom random = new SplittableRandom(3);
+        VectorIndex sequential = new BruteForceVectorIndex(Runnable::run, 1);
+        VectorIndex parallel = new BruteForceVectorIndex(ForkJoinPool.commonPool(), 4);
+        for (int i = 0; i < 20_000; i++) {
+            EmbeddingVector v = randomVector(random, 32);
+            sequential.upsert("cv-" + i, v);
+            parallel.upsert("cv-" + i, v);
+        }
+        EmbeddingVector query = randomVector(random, 32);
+
+        List<NearestMatch> expected = sequential.search(query, 10);
+        List<NearestMatch> actual = parallel.search(query, 10);
+
+        assertEquals(10, actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getScore(), actual.get(i).getScore());
+        }
+    }
+
+    @Test
+    void search_emptyIndex_returnsNothing() {
+        assertTrue(new BruteForceVectorIndex().search(vec(1f), 5).isEmpty());
+    }
+
+    @Test
+    void upsert_otherModelOrDimension_throws() {
+        VectorIndex index = new BruteForceVectorIndex();
+        index.upsert("a", vec(1f, 0f));
+
+        assertThrows(IllegalArgumentException.class, () -> index.upsert("b", vec(1f, 0f, 0f)));
+        assertThrows(IllegalArgumentException.class,
+                () -> index.search(EmbeddingVector.of("other-model", new float[]{1f, 0f}), 1));
+    }
+
+    private static EmbeddingVector vec(float... values) {
+        return EmbeddingVector.of("m", values);
+    }
+
+    private static EmbeddingVector randomVector(SplittableRandom random, int dim) {
+        float[] values = new float[dim];
+        for (int i = 0; i < dim; i++) {
+            values[i] = (float) random.nextDouble(-1, 1);
+        }
+        return EmbeddingVector.of("m", values);
+    }
+}
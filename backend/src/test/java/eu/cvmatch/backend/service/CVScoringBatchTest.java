@@ -0,0 +1,179 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.config.GeminiProperties;
+import eu.cvmatch.backend.model.CVMatchResult;
+import eu.cvmatch.backend.model.JobPosting;
+import eu.cvmatch.backend.test.GeminiStubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Batched scoring against {@link GeminiStubServer}: the stub answers a batch prompt
+ * with one entry per "### Candidate n", scoring candidate n as n * 10.
+ */
+class CVScoringBatchTest {
+
+    private static final Pattern CANDIDATE = Pattern.compile("### Candidate (\\d+)");
+
+    private GeminiStubServer stub;
+    private GeminiProperties props;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new GeminiStubServer().dimensions(64).start();
+        props = new GeminiProperties("test-key", null, null);
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        props.setResponseCacheSize(0);
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+
+    private static String batchReply(String prompt, int skipIndex) {
+        Matcher m = CANDIDATE.matcher(prompt);
+        if (!m.find()) {
+            return null;
+        }
+        StringBuilder json = new StringBuilder("[");
+        do {
+            int index = Integer.parseInt(m.group(1));
+            if (index == skipIndex) {
+                continue;
+            }
+            json.append(json.length() > 1 ? "," : "")
+                    .append(String.format("{\"index\":%d,\"industryScore\":%d,\"techScore\":%d,\"jdScore\":%d,"
+                            + "\"score\":%d,\"explanation\":\"candidate %d\"}", index, index * 10, index * 10,
+                            index * 10, index * 10, index));
+        } while (m.find());
+        return json.append("]").toString();
+    }
+
+    private static JobPosting job() {
+        JobPosting job = new JobPosting();
+        job.setIndustry("Fintech");
+        job.setDescription("Java backend developer for payment services");
+        job.setTechnicalSkills(new ArrayList<>());
+        return job;
+    }
+
+    private static List<String> cvs(int n) {
+        List<String> cvs = new ArrayList<>();
+        for (int i = 1; i <= n; i++) {
+            cvs.add("CV " + i + ": Java developer with " + i + " years of payments experience");
+        }
+        return cvs;
+    }
+
+    private CVScoring scoring() {
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props);
+        return new CVScoring(client, new EmbeddingSimilarityService(client), props);
+    }
+
+    @Test
+    void manyCvsForOneJob_areScoredInBatchesOfConfiguredSize() {
+        stub.jsonReply(prompt -> batchReply(prompt, -1));
+        props.setScoreBatchSize(4);
+
+        List<CVMatchResult> results = scoring().calculateScoresForJobAsync(cvs(10), job())
+                .stream().map(CompletableFuture::join).toList();
+
+        assertEquals(10, results.size());
+        assertEquals(3, stub.requestCount("generateContent"));
+        // 10th CV is 2nd in the 3rd batch
+        assertTrue(results.get(9).getExplanation().startsWith("candidate 2"));
+        assertEquals(20.0, results.get(9).getTechScore(), 1e-9);
+    }
+
+    @Test
+    void pairMissingFromBatchReply_isScoredOnItsOwn() {
+        stub.jsonReply(prompt -> batchReply(prompt, 2));
+
+        List<CVMatchResult> results = scoring().calculateScoresForJobAsync(cvs(3), job())
+                .stream().map(CompletableFuture::join).toList();
+
+        assertEquals(2, stub.requestCount("generateContent"));
+        assertTrue(results.get(0).getExplanation().startsWith("candidate 1"));
+        assertFalse(results.get(1).getExplanation().startsWith("candidate"));
+        assertTrue(results.get(2).getExplanation().startsWith("candidate 3"));
+    }
+
+    // The rubric alone is about 530 tokens, so the job section decides whether a prefix is long enough
+    private static JobPosting jobOfRepeats(int repeats) {
+        JobPosting job = job();
+        job.setDescription("Build and run payment services in Java for card issuers. ".repeat(repeats));
+        return job;
+    }
+
+    private int cachedAfterTwoBatches(CVScoring scoring, JobPosting job) {
+        for (int use = 0; use < 2; use++) {
+            scoring.calculateScoresForJobAsync(cvs(2), job).forEach(CompletableFuture::join);
+        }
+        int cached = stub.cachedContentCount();
+        stub.expireCachedContents();
+        return cached;
+    }
+
+    @Test
+    void contextCacheDefaults_onlyLongJobPostingsReachTheMinimum() {
+        // Default GEMINI_CONTEXT_CACHE_MIN_TOKENS (4096) and GEMINI_PROMPT_TOKEN_BUDGET (8000)
+        stub.jsonReply(prompt -> batchReply(prompt, -1));
+        CVScoring scoring = scoring();
+
+        assertEquals(0, cachedAfterTwoBatches(scoring, job()));
+        assertEquals(0, cachedAfterTwoBatches(scoring, jobOfRepeats(60)));      // ~900 tokens
+        assertEquals(1, cachedAfterTwoBatches(scoring, jobOfRepeats(800)));     // compacted to ~7400
+    }
+
+    @Test
+    void contextCacheMinimumLowered_mediumJobPostingIsCached() {
+        // GEMINI_CONTEXT_CACHE_MIN_TOKENS=1024, for models that accept prefixes that short
+        props.setContextCacheMinTokens(1024);
+        stub.jsonReply(prompt -> batchReply(prompt, -1));
+        CVScoring scoring = scoring();
+
+        assertEquals(0, cachedAfterTwoBatches(scoring, job()));
+        assertEquals(1, cachedAfterTwoBatches(scoring, jobOfRepeats(60)));
+    }
+
+    @Test
+    void concurrentSingleCalls_forSameJob_areMicroBatched() {
+        stub.jsonReply(prompt -> batchReply(prompt, -1));
+        stub.latency("generateContent", GeminiStubServer.Latency.fixed(300));
+        props.setScoreBatchWindowMs(200);
+        ScoringService service = new ScoringService(scoring(), props);
+
+        List<CompletableFuture<CVMatchResult>> pending = new ArrayList<>();
+        for (String cv : cvs(5)) {
+            // a fresh, equal job per call, like separate requests loading it from Firestore
+            pending.add(service.scoreCVAgainstJobAsync(cv, job()));
+        }
+
+        for (CompletableFuture<CVMatchResult> result : pending) {
+            assertNotNull(result.join());
+        }
+        // The first call goes out alone; the four that arrive while it runs share a prompt
+        assertEquals(2, stub.requestCount("generateContent"));
+    }
+
+    @Test
+    void loneSingleCall_doesNotWaitForTheBatchWindow() throws Exception {
+        stub.jsonReply(prompt -> batchReply(prompt, -1));
+        props.setScoreBatchWindowMs(60_000);
+        ScoringService service = new ScoringService(scoring(), props);
+
+        assertNotNull(service.scoreCVAgainstJobAsync(cvs(1).get(0), job()).get(10, TimeUnit.SECONDS));
+    }
+}
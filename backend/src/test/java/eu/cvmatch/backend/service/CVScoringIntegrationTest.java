@@ -4,10 +4,15 @@ import com.google.gson.*;
 import eu.cvmatch.backend.model.CVMatchResult;
 import eu.cvmatch.backend.model.JobPosting;
 import eu.cvmatch.backend.service.GenerativeLanguageClient;
+import eu.cvmatch.backend.test.GeminiStubConfig;
+import eu.cvmatch.backend.test.GeminiStubServer;
 import eu.cvmatch.backend.utils.TextExtractor;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.mock.web.MockMultipartFile;
@@ -23,18 +28,40 @@ import static org.assertj.core.api.Assertions.*;
 
 @SpringBootTest
 @ActiveProfiles("integration")
+@Import(GeminiStubConfig.class)
 class CVScoringIntegrationTest {
 
+    /** What the stub answers to the job-extraction prompt. */
+    private static final String STUB_JOB_JSON = """
+            {"industry":"Software","technicalSkills":[{"skill":"Java","weight":40},{"skill":"Spring","weight":30},
+            {"skill":"SQL","weight":20},{"skill":"Docker","weight":10}]}
+            """;
+
     @Autowired
     private CVScoring cvScoring;
 
     @Autowired
     private GenerativeLanguageClient glClient;
 
+    /** Absent when GEMINI_LIVE_TESTS=true. */
+    @Autowired(required = false)
+    private GeminiStubServer stub;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void cannedJobJson() {
+        if (stub != null) {
+            stub.textReply(prompt -> STUB_JOB_JSON);
+        }
+    }
+
     @Test
     void allCvsAgainstAllJobs_withCaching_andPrintDeltas() throws Exception {
         var resolver = new PathMatchingResourcePatternResolver();
-        Path cacheDir = Paths.get("jobDescriptionCache");
+        // Stub answers must not end up in the cache live runs read
+        Path cacheDir = stub != null ? tempDir : Paths.get("jobDescriptionCache");
         Files.createDirectories(cacheDir);
 
         Resource[] jobResources = resolver.getResources("classpath:jobDescription/*.docx");
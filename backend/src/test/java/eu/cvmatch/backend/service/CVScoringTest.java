@@ -0,0 +1,53 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.config.GeminiProperties;
+import eu.cvmatch.backend.model.CVMatchResult;
+import eu.cvmatch.backend.model.JobPosting;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CVScoringTest {
+
+    private final GenerativeLanguageClient glClient = mock(GenerativeLanguageClient.class);
+    private final CVScoring cvScoring = new CVScoring(glClient, new EmbeddingSimilarityService(glClient),
+            new GeminiProperties("test-key", null, null));
+
+    private static JobPosting.TechnicalSkill skill(String name, int weight) {
+        JobPosting.TechnicalSkill s = new JobPosting.TechnicalSkill();
+        s.setSkill(name);
+        s.setWeight(weight);
+        return s;
+    }
+
+    @Test
+    void provisionalScore_usesKeywordSkillsAndEmbedding() {
+        JobPosting job = new JobPosting();
+        job.setIndustry("Fintech");
+        job.setTechnicalSkills(List.of(skill("Java", 50), skill("C++", 30), skill("Kafka", 20)));
+
+        CVMatchResult result = cvScoring.provisionalScore(
+                "Backend engineer in fintech: Java, c++ and SQL.", job, 0.5);
+
+        assertTrue(result.isProvisional());
+        assertEquals(80.0, result.getTechScore(), 1e-9);
+        assertEquals(100.0, result.getIndustryScore(), 1e-9);
+        assertEquals(50.0, result.getJdScore(), 1e-9);
+        assertEquals(10.0 + 24.0 + 30.0, result.getScore(), 1e-9);
+        assertTrue(result.getExplanation().contains("Provisional"));
+        verifyNoInteractions(glClient);
+    }
+
+    @Test
+    void provisionalScore_skillMustBeWholeWord() {
+        JobPosting job = new JobPosting();
+        job.setTechnicalSkills(List.of(skill("Go", 100)));
+
+        CVMatchResult result = cvScoring.provisionalScore("Good at Google Sheets", job, 0.0);
+
+        assertEquals(0.0, result.getTechScore(), 1e-9);
+    }
+}
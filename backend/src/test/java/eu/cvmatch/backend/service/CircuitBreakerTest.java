@@ -0,0 +1,123 @@
+package eu.cvmatch.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 3, 1_000, now::get);
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+    }
+
+    @Test
+    void closed_untilConsecutiveFailuresReachThreshold() {
+        fail(2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    void success_resetsFailureCount() {
+        fail(2);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        fail(2);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void throttledStreak_opensCircuitAtItsOwnThreshold() {
+        CircuitBreaker quota = new CircuitBreaker("test", 3, 5, 1_000, now::get);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(quota.tryAcquire());
+            quota.onThrottled();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, quota.getState());
+        assertEquals(4, quota.getThrottledCount());
+
+        assertTrue(quota.tryAcquire());
+        quota.onThrottled();
+
+        assertEquals(CircuitBreaker.State.OPEN, quota.getState());
+    }
+
+    @Test
+    void throttledProbe_reopensCircuit() {
+        fail(3);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onThrottled();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void ignored_neverOpensCircuit_andFreesTheProbe() {
+        fail(2);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onIgnored();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(1);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        assertTrue(breaker.tryAcquire());
+        breaker.onIgnored();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void afterOpenPeriod_letsOneProbeThrough() {
+        fail(3);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void probeSuccess_closesCircuit() {
+        fail(3);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void probeFailure_reopensForAnotherPeriod() {
+        fail(3);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertFalse(breaker.tryAcquire());
+    }
+}
@@ -0,0 +1,106 @@
+package eu.cvmatch.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger uploads = new AtomicInteger();
+    private final List<String> deleted = new ArrayList<>();
+
+    private ContextCache cache(int capacity, int minUses, int minTokens) {
+        return new ContextCache(capacity, minUses, minTokens, 1_000,
+                (model, prefix, priority) -> CompletableFuture.completedFuture("cachedContents/" + uploads.incrementAndGet()),
+                deleted::add, now::get);
+    }
+
+    @Test
+    void prefix_isUploadedOnceItIsHot_thenReused() {
+        ContextCache cache = cache(10, 2, 0);
+
+        assertNull(cache.handleFor("m", "rubric + job", null));
+        assertEquals("cachedContents/1", cache.handleFor("m", "rubric + job", null).join());
+        assertEquals("cachedContents/1", cache.handleFor("m", "rubric + job", null).join());
+
+        assertEquals(1, uploads.get());
+        assertEquals(1, cache.getHitCount());
+        // Same text for another model is another cached content
+        assertNull(cache.handleFor("other", "rubric + job", null));
+    }
+
+    @Test
+    void shortPrefix_orDisabledCache_isNeverUploaded() {
+        assertNull(cache(10, 1, 1_000).handleFor("m", "short", null));
+        assertNull(cache(0, 1, 0).handleFor("m", "rubric + job", null));
+        assertEquals(0, uploads.get());
+    }
+
+    @Test
+    void expiredHandle_isDeletedAndUploadedAgain() {
+        ContextCache cache = cache(10, 1, 0);
+        cache.handleFor("m", "rubric + job", null).join();
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        assertEquals("cachedContents/2", cache.handleFor("m", "rubric + job", null).join());
+        assertEquals(List.of("cachedContents/1"), deleted);
+    }
+
+    @Test
+    void invalidateTag_dropsOnlyThatTag() {
+        ContextCache cache = cache(10, 1, 0);
+        cache.handleFor("m", "rubric + job 1", "job:1").join();
+        cache.handleFor("m", "rubric + job 2", "job:2").join();
+
+        cache.invalidateTag("job:1");
+
+        assertEquals(List.of("cachedContents/1"), deleted);
+        assertEquals(1, cache.size());
+        assertEquals("cachedContents/2", cache.handleFor("m", "rubric + job 2", "job:2").join());
+    }
+
+    @Test
+    void failedUpload_sendsFullPromptsUntilTtlPasses() {
+        ContextCache cache = new ContextCache(10, 1, 0, 1_000,
+                (model, prefix, priority) -> CompletableFuture.failedFuture(new IllegalStateException("too small")),
+                deleted::add, now::get);
+
+        assertTrue(cache.handleFor("m", "rubric + job", null).isCompletedExceptionally());
+        assertNull(cache.handleFor("m", "rubric + job", null));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        assertNotNull(cache.handleFor("m", "rubric + job", null));
+        assertEquals(2, cache.getCreationCount());
+    }
+
+    @Test
+    void upload_usesThePriorityOfTheRequestThatMadeThePrefixHot() {
+        List<RequestPriority> priorities = new ArrayList<>();
+        ContextCache cache = new ContextCache(10, 2, 0, 1_000, (model, prefix, priority) -> {
+            priorities.add(priority);
+            return CompletableFuture.completedFuture("cachedContents/1");
+        }, deleted::add, now::get);
+
+        cache.handleFor("m", "rubric + cv", null, RequestPriority.INTERACTIVE);
+        cache.handleFor("m", "rubric + cv", null, RequestPriority.BULK).join();
+
+        assertEquals(List.of(RequestPriority.BULK), priorities);
+    }
+
+    @Test
+    void eviction_deletesTheLeastRecentlyUsedHandle() {
+        ContextCache cache = cache(1, 1, 0);
+        cache.handleFor("m", "first", null).join();
+        cache.handleFor("m", "second", null).join();
+
+        assertEquals(List.of("cachedContents/1"), deleted);
+    }
+}
@@ -0,0 +1,170 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.model.EmbeddingVector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void get_missingEntry_returnsNull() {
+        EmbeddingCache cache = EmbeddingCache.inMemory(10);
+        assertNull(cache.get("embedding-001", "unknown text"));
+    }
+
+    @Test
+    void put_thenGet_returnsSameVector() {
+        EmbeddingCache cache = EmbeddingCache.inMemory(10);
+        EmbeddingVector vector = EmbeddingVector.of("embedding-001", new float[]{0.1f, 0.2f, 0.3f});
+        cache.put("embedding-001", "Java developer", vector);
+
+        assertEquals(vector, cache.get("embedding-001", "Java developer"));
+    }
+
+    @Test
+    void get_differentModel_isSeparateEntry() {
+        EmbeddingCache cache = EmbeddingCache.inMemory(10);
+        cache.put("embedding-001", "Java developer", EmbeddingVector.of("embedding-001", new float[]{1f}));
+
+        assertNull(cache.get("text-embedding-004", "Java developer"));
+    }
+
+    @Test
+    void heapTier_evictsLeastRecentlyUsed() {
+        EmbeddingCache cache = EmbeddingCache.inMemory(2);
+        cache.put("m", "a", vec(1f));
+        cache.put("m", "b", vec(2f));
+        cache.get("m", "a");
+        cache.put("m", "c", vec(3f));
+
+        assertNotNull(cache.get("m", "a"));
+        assertNull(cache.get("m", "b"));
+        assertEquals(2, cache.heapSize());
+    }
+
+    @Test
+    void diskTier_servesEntriesEvictedFromHeap() {
+        try (EmbeddingCache cache = EmbeddingCache.persistent(1, tempDir)) {
+            cache.put("m", "a", vec(1f, 2f));
+            cache.put("m", "b", vec(3f, 4f));
+
+            assertEquals(1, cache.heapSize());
+            assertEquals(vec(1f, 2f), cache.get("m", "a"));
+        }
+    }
+
+    @Test
+    void diskTier_survivesReopen() {
+        try (EmbeddingCache cache = EmbeddingCache.persistent(10, tempDir)) {
+            cache.put("m", "Tech Lead", vec(0.5f, -0.25f, 0.125f));
+        }
+
+        try (EmbeddingCache reopened = EmbeddingCache.persistent(10, tempDir)) {
+            assertEquals(1, reopened.diskSize());
+            assertEquals(vec(0.5f, -0.25f, 0.125f), reopened.get("m", "Tech Lead"));
+
+            // appends after reopening land after the mapped region and are still readable
+            reopened.put("m", "Project Manager", vec(9f));
+        }
+
+        try (EmbeddingCache again = EmbeddingCache.persistent(1, tempDir)) {
+            assertEquals(2, again.diskSize());
+            assertEquals(vec(9f), again.get("m", "Project Manager"));
+            assertEquals(vec(0.5f, -0.25f, 0.125f), again.get("m", "Tech Lead"));
+        }
+    }
+
+    @Test
+    void diskTier_dropsTornTailRecord() throws Exception {
+        try (EmbeddingCache cache = EmbeddingCache.persistent(10, tempDir)) {
+            cache.put("m", "complete", vec(1f, 2f, 3f));
+            cache.put("m", "torn", vec(4f, 5f, 6f));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(tempDir.resolve("embeddings.bin").toFile(), "rw")) {
+            file.setLength(file.length() - 2);
+        }
+
+        try (EmbeddingCache reopened = EmbeddingCache.persistent(10, tempDir)) {
+            assertEquals(1, reopened.diskSize());
+            assertEquals(vec(1f, 2f, 3f), reopened.get("m", "complete"));
+            assertNull(reopened.get("m", "torn"));
+
+            reopened.put("m", "torn", vec(7f));
+        }
+
+        try (EmbeddingCache again = EmbeddingCache.persistent(10, tempDir)) {
+            assertEquals(vec(7f), again.get("m", "torn"));
+        }
+    }
+
+    @Test
+    void diskTier_normalizesRawRecordsOnLoad() throws Exception {
+        // What older versions wrote: the raw values, not scaled to unit length
+        try (EmbeddingCache cache = EmbeddingCache.persistent(10, tempDir)) {
+            cache.put("m", "Tech Lead", vec(3f, 4f));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(tempDir.resolve("embeddings.bin").toFile(), "rw")) {
+            file.seek(8 + 32 + 4);
+            file.writeFloat(3f);
+            file.writeFloat(4f);
+        }
+
+        try (EmbeddingCache reopened = EmbeddingCache.persistent(10, tempDir)) {
+            EmbeddingVector vector = reopened.get("m", "Tech Lead");
+            assertEquals("m", vector.getModelId());
+            assertArrayEquals(new float[]{0.6f, 0.8f}, vector.values(), 1e-6f);
+        }
+    }
+
+    @Test
+    void diskTier_recordsSpanningMappedChunks_readBack() {
+        try (EmbeddingCache cache = EmbeddingCache.persistent(1, tempDir, 64)) {
+            for (int i = 0; i < 20; i++) {
+                cache.put("m", "text " + i, vec(i + 1f, 2f, 3f, 4f, 5f));
+            }
+        }
+
+        try (EmbeddingCache reopened = EmbeddingCache.persistent(1, tempDir, 64)) {
+            assertEquals(20, reopened.diskSize());
+            for (int i = 0; i < 20; i++) {
+                assertEquals(vec(i + 1f, 2f, 3f, 4f, 5f), reopened.get("m", "text " + i));
+            }
+        }
+    }
+
+    @Test
+    void diskTier_fileOverTwoGigabytes_opensAndReadsPastTheLimit() throws Exception {
+        // A sparse file: one huge record that is never read, then a real one past 2 GB
+        long spacerFloats = (3L << 30) / Float.BYTES;
+        long realOffset = 8 + 32 + 4 + spacerFloats * Float.BYTES;
+        try (RandomAccessFile file = new RandomAccessFile(tempDir.resolve("embeddings.bin").toFile(), "rw")) {
+            file.writeInt(0x43564543);
+            file.writeInt(1);
+            file.write(new byte[32]);
+            file.writeInt((int) spacerFloats);
+            file.seek(realOffset);
+            file.write(HexFormat.of().parseHex(EmbeddingCache.key("m", "Tech Lead")));
+            file.writeInt(2);
+            file.writeFloat(0.6f);
+            file.writeFloat(0.8f);
+        }
+
+        try (EmbeddingCache cache = EmbeddingCache.persistent(10, tempDir)) {
+            assertEquals(2, cache.diskSize());
+            assertEquals(vec(0.6f, 0.8f), cache.get("m", "Tech Lead"));
+        }
+    }
+
+    private static EmbeddingVector vec(float... values) {
+        return EmbeddingVector.of("m", values);
+    }
+}
@@ -0,0 +1,91 @@
+package eu.cvmatch.backend.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import eu.cvmatch.backend.model.EmbeddingVector;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a batchEmbedContents reply and scoring every embedding against the first:
+ * the old Gson-tree path against {@link GeminiResponseReader} plus {@link EmbeddingVector}.
+ * <p>
+ * Run with {@code -prof gc} to compare allocation per operation, e.g.
+ * {@code java -cp target/test-classes:<test classpath> eu.cvmatch.backend.service.EmbeddingDecodeBenchmark -prof gc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class EmbeddingDecodeBenchmark {
+
+    @Param({"2", "100"})
+    public int batchSize;
+
+    @Param({"768"})
+    public int dimensions;
+
+    private final Gson gson = new Gson();
+    private byte[] reply;
+
+    @Setup
+    public void buildReply() {
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder json = new StringBuilder("{\n  \"embeddings\": [\n");
+        for (int e = 0; e < batchSize; e++) {
+            json.append(e == 0 ? "" : ",\n").append("    {\n      \"values\": [\n");
+            for (int d = 0; d < dimensions; d++) {
+                json.append(d == 0 ? "" : ",\n")
+                        .append("        ")
+                        .append(String.format(Locale.ROOT, "%.9f", random.nextDouble(-0.1, 0.1)));
+            }
+            json.append("\n      ]\n    }");
+        }
+        json.append("\n  ]\n}\n");
+        reply = json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void gsonTree(Blackhole bh) {
+        JsonArray embeddings = gson.fromJson(new String(reply, StandardCharsets.UTF_8), JsonObject.class)
+                .getAsJsonArray("embeddings");
+        JsonArray query = embeddings.get(0).getAsJsonObject().getAsJsonArray("values");
+        for (int i = 1; i < embeddings.size(); i++) {
+            JsonArray other = embeddings.get(i).getAsJsonObject().getAsJsonArray("values");
+            double dot = 0, norm1 = 0, norm2 = 0;
+            for (int d = 0; d < query.size(); d++) {
+                double v1 = query.get(d).getAsDouble();
+                double v2 = other.get(d).getAsDouble();
+                dot   += v1 * v2;
+                norm1 += v1 * v1;
+                norm2 += v2 * v2;
+            }
+            bh.consume(dot / (Math.sqrt(norm1) * Math.sqrt(norm2)));
+        }
+    }
+
+    @Benchmark
+    public void streamingFloats(Blackhole bh) {
+        List<float[]> embeddings = GeminiResponseReader.readEmbeddings(reply);
+        EmbeddingVector query = EmbeddingVector.of("m", embeddings.get(0));
+        for (int i = 1; i < embeddings.size(); i++) {
+            bh.consume(query.dot(EmbeddingVector.of("m", embeddings.get(i))));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] jmhArgs = new String[args.length + 1];
+        jmhArgs[0] = EmbeddingDecodeBenchmark.class.getSimpleName();
+        System.arraycopy(args, 0, jmhArgs, 1, args.length);
+        org.openjdk.jmh.Main.main(jmhArgs);
+    }
+}
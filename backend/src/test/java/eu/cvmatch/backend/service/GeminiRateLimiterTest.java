@@ -0,0 +1,155 @@
+package eu.cvmatch.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiRateLimiterTest {
+
+    @Test
+    void acquire_beyondConcurrencyLimit_queuesUntilRelease() throws Exception {
+        GeminiRateLimiter limiter = new GeminiRateLimiter("test", 0, 0, 2, 5_000);
+
+        CompletableFuture<GeminiRateLimiter.Permit> first = limiter.acquire(10);
+        CompletableFuture<GeminiRateLimiter.Permit> second = limiter.acquire(10);
+        CompletableFuture<GeminiRateLimiter.Permit> third = limiter.acquire(10);
+
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+        assertEquals(1, limiter.getQueueDepth());
+
+        first.get().release(GeminiRateLimiter.Outcome.SUCCESS);
+        assertNotNull(third.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void release_throttled_halvesConcurrency_andSuccessGrowsItBack() throws Exception {
+        GeminiRateLimiter limiter = new GeminiRateLimiter("test", 0, 0, 8, 5_000);
+
+        limiter.acquire(0).get().release(GeminiRateLimiter.Outcome.THROTTLED);
+        assertEquals(4.0, limiter.getConcurrencyLimit(), 1e-9);
+
+        limiter.acquire(0).get().release(GeminiRateLimiter.Outcome.THROTTLED);
+        assertEquals(2.0, limiter.getConcurrencyLimit(), 1e-9);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(0).get().release(GeminiRateLimiter.Outcome.SUCCESS);
+        }
+        assertTrue(limiter.getConcurrencyLimit() > 4.0);
+        assertTrue(limiter.getConcurrencyLimit() <= 8.0);
+    }
+
+    @Test
+    void release_isIdempotent() throws Exception {
+        GeminiRateLimiter limiter = new GeminiRateLimiter("test", 0, 0, 1, 5_000);
+        GeminiRateLimiter.Permit permit = limiter.acquire(0).get();
+
+        permit.release(GeminiRateLimiter.Outcome.SUCCESS);
+        permit.release(GeminiRateLimiter.Outcome.SUCCESS);
+
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void acquire_noCapacityWithinTimeout_failsInsteadOfBlocking() {
+        GeminiRateLimiter limiter = new GeminiRateLimiter("test", 0, 0, 1, 50);
+        limiter.acquire(0);
+
+        CompletableFuture<GeminiRateLimiter.Permit> waiting = limiter.acquire(0);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> waiting.get(2, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertEquals(0, limiter.getQueueDepth());
+    }
+
+    @Test
+    void requestBucket_exhausted_grantsAgainAfterRefill() throws Exception {
+        // 120 rpm: a full bucket of 120, then one more request every 0.5 s
+        GeminiRateLimiter limiter = new GeminiRateLimiter("test", 120, 0, 1_000, 5_000);
+        for (int i = 0; i < 120; i++) {
+            limiter.acquire(0).get().release(GeminiRateLimiter.Outcome.SUCCESS);
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<GeminiRateLimiter.Permit> next = limiter.acquire(0);
+        assertFalse(next.isDone());
+        assertNotNull(next.get(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    void tokenBucket_largeRequestWaitsForTokens() throws Exception {
+        GeminiRateLimiter limiter = new GeminiRateLimiter("test", 0, 600, 1_000, 5_000);
+        limiter.acquire(600).get().release(GeminiRateLimiter.Outcome.SUCCESS);
+
+        CompletableFuture<GeminiRateLimiter.Permit> next = limiter.acquire(5);
+        assertFalse(next.isDone());
+        assertNotNull(next.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void tryAcquire_neverQueuesNorTakesTheLastSlot() throws Exception {
+        GeminiRateLimiter limiter = new GeminiRateLimiter("test", 0, 0, 3, 5_000);
+
+        GeminiRateLimiter.Permit spare = limiter.tryAcquire(0);
+        assertNotNull(spare);
+        limiter.acquire(0);
+        // One slot left: kept for regular calls
+        assertNull(limiter.tryAcquire(0));
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueDepth());
+
+        spare.release(GeminiRateLimiter.Outcome.SUCCESS);
+        assertNotNull(limiter.tryAcquire(0));
+    }
+
+    @Test
+    void tryAcquire_requestBucketNearlyEmpty_returnsNull() throws Exception {
+        GeminiRateLimiter limiter = new GeminiRateLimiter("test", 2, 0, 1_000, 5_000);
+        limiter.acquire(0).get().release(GeminiRateLimiter.Outcome.SUCCESS);
+
+        assertNull(limiter.tryAcquire(0));
+    }
+
+    @Test
+    void interactiveWaiter_overtakesQueuedBulkWork() throws Exception {
+        GeminiRateLimiter limiter = new GeminiRateLimiter("test", 0, 0, 1, 5_000, 0, 5_000);
+        GeminiRateLimiter.Permit running = limiter.acquire(0, RequestPriority.BULK).get();
+
+        CompletableFuture<GeminiRateLimiter.Permit> bulk = limiter.acquire(0, RequestPriority.BULK);
+        CompletableFuture<GeminiRateLimiter.Permit> interactive = limiter.acquire(0, RequestPriority.INTERACTIVE);
+        assertEquals(1, limiter.getQueueDepth(RequestPriority.BULK));
+        assertEquals(1, limiter.getQueueDepth(RequestPriority.INTERACTIVE));
+
+        running.release(GeminiRateLimiter.Outcome.SUCCESS);
+        assertTrue(interactive.isDone());
+        assertFalse(bulk.isDone());
+
+        interactive.get().release(GeminiRateLimiter.Outcome.SUCCESS);
+        assertNotNull(bulk.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void bulk_leavesReservedSlotsAndQuotaToInteractive() throws Exception {
+        // 4 slots, a quarter reserved: bulk gets 3, the fourth is kept for interactive calls
+        GeminiRateLimiter limiter = new GeminiRateLimiter("test", 0, 0, 4, 5_000, 0.25, 5_000);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.acquire(0, RequestPriority.BULK).isDone());
+        }
+        assertFalse(limiter.acquire(0, RequestPriority.BULK).isDone());
+        assertTrue(limiter.acquire(0, RequestPriority.INTERACTIVE).isDone());
+
+        // 8 rpm with a quarter reserved: bulk stops once 2 requests are left in the bucket
+        GeminiRateLimiter quota = new GeminiRateLimiter("test", 8, 0, 100, 5_000, 0.25, 5_000);
+        for (int i = 0; i < 6; i++) {
+            quota.acquire(0, RequestPriority.BULK).get().release(GeminiRateLimiter.Outcome.SUCCESS);
+        }
+        assertFalse(quota.acquire(0, RequestPriority.BULK).isDone());
+        assertTrue(quota.acquire(0, RequestPriority.INTERACTIVE).isDone());
+    }
+}
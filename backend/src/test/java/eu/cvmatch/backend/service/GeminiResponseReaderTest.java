@@ -0,0 +1,69 @@
+package eu.cvmatch.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiResponseReaderTest {
+
+    private static byte[] utf8(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void readEmbedding_decodesValues_skippingUnknownFields() {
+        float[] values = GeminiResponseReader.readEmbedding(utf8(
+                "{\"embedding\": {\"stats\": {\"note\": \"a \\\"quoted\\\" ]\", \"truncated\": false}, \"values\": [0.5, -1.25e-3, 2]},"
+                        + " \"extra\": [1, {}, null]}"));
+
+        assertArrayEquals(new float[]{0.5f, -0.00125f, 2f}, values);
+    }
+
+    @Test
+    void readEmbedding_numbersMatchDoubleParsing() {
+        String[] numbers = {"0", "-0.0", "0.012345678", "-0.000123", "12345678901234567890", "1E-30",
+                "3.4028235e38", "-7.5e+2", "0.30000000000000004", "1e-7"};
+        float[] values = GeminiResponseReader.readEmbedding(utf8(
+                "{\"embedding\": {\"values\": [" + String.join(", ", numbers) + "]}}"));
+
+        for (int i = 0; i < numbers.length; i++) {
+            assertEquals((float) Double.parseDouble(numbers[i]), values[i], numbers[i]);
+        }
+    }
+
+    @Test
+    void readEmbeddings_keepsOrder_andGrowsPastTypicalDimensions() {
+        StringBuilder large = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            large.append(i == 0 ? "" : ",").append(i);
+        }
+        large.append(']');
+
+        List<float[]> embeddings = GeminiResponseReader.readEmbeddings(utf8(
+                "{\"embeddings\": [{\"values\": [1, 2]}, {\"values\": " + large + "}]}"));
+
+        assertEquals(2, embeddings.size());
+        assertArrayEquals(new float[]{1f, 2f}, embeddings.get(0));
+        assertEquals(1000, embeddings.get(1).length);
+        assertEquals(999f, embeddings.get(1)[999]);
+    }
+
+    @Test
+    void readFirstCandidateText_joinsPartsOfFirstCandidateOnly() {
+        String text = GeminiResponseReader.readFirstCandidateText(
+                "{\"candidates\": [{\"content\": {\"role\": \"model\", \"parts\": [{\"text\": \"Hel\"}, {\"text\": \"lo\"}]},"
+                        + " \"finishReason\": \"STOP\"}, {\"content\": {\"parts\": [{\"text\": \"other\"}]}}],"
+                        + " \"usageMetadata\": {\"promptTokenCount\": 3}}");
+
+        assertEquals("Hello", text);
+        assertEquals("", GeminiResponseReader.readFirstCandidateText("{\"promptFeedback\": {\"blockReason\": \"SAFETY\"}}"));
+    }
+
+    @Test
+    void malformedReply_throwsIllegalState() {
+        assertThrows(IllegalStateException.class, () -> GeminiResponseReader.readEmbeddings(utf8("{\"embeddings\": [")));
+    }
+}
@@ -4,21 +4,42 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import eu.cvmatch.backend.config.GeminiProperties;
+import eu.cvmatch.backend.test.GeminiStubConfig;
+import eu.cvmatch.backend.test.GeminiStubServer;
 import io.github.cdimascio.dotenv.Dotenv;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
 
+/**
+ * Runs against {@link GeminiStubServer} unless GEMINI_LIVE_TESTS=true, in which case
+ * it uses the key and models from .env.
+ */
 class GenerativeLanguageClientIntegrationTest {
 
+    private static GeminiStubServer stub;
     private static GenerativeLanguageClient glClient;
     private static String apiKey;
     private static String modelId;
     private static String modelEmbeddedId;
 
     @BeforeAll
-    static void init() {
+    static void init() throws Exception {
+        if (!GeminiStubConfig.isLive()) {
+            stub = new GeminiStubServer().start();
+            stub.textReply(prompt -> prompt.contains("valid JSON") ? "{\"key\": \"value\"}" : "Stub reply");
+            modelId = "gemini-2.0-flash";
+            modelEmbeddedId = "embedding-001";
+            GeminiProperties props = new GeminiProperties("test-key", modelId, modelEmbeddedId);
+            props.setBaseUrl(stub.baseUrl());
+            props.setEmbedCacheDir("");
+            glClient = new GenerativeLanguageClient(props);
+            return;
+        }
+
         // Load .env from src/test/resources
         Dotenv dotenv = Dotenv.configure()
                 .directory("src/main/resources")
@@ -36,7 +57,16 @@ class GenerativeLanguageClientIntegrationTest {
         assertNotNull(modelEmbeddedId, "GEMINI_MODEL_EMBEDDED_ID must be set");
         assertFalse(modelEmbeddedId.isBlank(), "GEMINI_MODEL_EMBEDDED_ID must not be blank");
 
-        glClient = new GenerativeLanguageClient(apiKey, modelId, modelEmbeddedId);
+        GeminiProperties props = new GeminiProperties(apiKey, modelId, modelEmbeddedId);
+        props.setEmbedCacheDir("");
+        glClient = new GenerativeLanguageClient(props);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        if (stub != null) {
+            stub.close();
+        }
     }
 
     @Test
@@ -0,0 +1,399 @@
+package eu.cvmatch.backend.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import eu.cvmatch.backend.config.GeminiConfig;
+import eu.cvmatch.backend.config.GeminiProperties;
+import eu.cvmatch.backend.exception.CircuitOpenException;
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.model.ScoreBreakdown;
+import eu.cvmatch.backend.test.GeminiStubServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exercises the client end to end against {@link GeminiStubServer}, so it runs offline.
+ */
+class GenerativeLanguageClientStubTest {
+
+    private static final JsonObject SCORE_SCHEMA = JsonParser.parseString("""
+            {"type": "OBJECT", "properties": {
+              "industryScore": {"type": "NUMBER"}, "techScore": {"type": "NUMBER"},
+              "jdScore": {"type": "NUMBER"}, "score": {"type": "NUMBER"},
+              "explanation": {"type": "STRING"}}}
+            """).getAsJsonObject();
+
+    @TempDir
+    Path tempDir;
+
+    private GeminiStubServer stub;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new GeminiStubServer().dimensions(64).start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+
+    private GenerativeLanguageClient client() {
+        GeminiProperties props = new GeminiProperties("test-key", "gemini-2.0-flash", "embedding-001");
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        props.getRetry().setBaseDelayMs(1);
+        props.getRetry().setMaxDelayMs(5);
+        props.getRetry().setMaxAttempts(10);
+        return new GenerativeLanguageClient(props);
+    }
+
+    @Test
+    void generateJson_returnsTypedResult() throws Exception {
+        ScoreBreakdown result = client().generateJson(List.of("score this"), null, SCORE_SCHEMA, ScoreBreakdown.class);
+
+        assertNotNull(result);
+        assertTrue(result.getJdScore() >= 0 && result.getJdScore() <= 100);
+        assertNotNull(result.getExplanation());
+    }
+
+    @Test
+    void generateMessage_repeatedPrompt_isServedFromCache() throws Exception {
+        GenerativeLanguageClient client = client();
+
+        JsonArray first = client.generateMessage(List.of("same prompt"), null, 1);
+        JsonArray second = client.generateMessage(List.of("same prompt"), null, 1);
+
+        assertEquals(first, second);
+        assertEquals(1, stub.requestCount("generateContent"));
+        assertEquals(1, client.getResponseCache().getHitCount());
+    }
+
+    @Test
+    void generateMessage_bypassCache_callsAgain() throws Exception {
+        GenerativeLanguageClient client = client();
+
+        client.generateMessage(List.of("same prompt"), null, 1);
+        client.generateMessage(List.of("same prompt"), null, 1, GenerationOptions.defaults().withBypassCache(true));
+
+        assertEquals(2, stub.requestCount("generateContent"));
+    }
+
+    @Test
+    void embedTexts_returnsOneVectorPerText_inOrder() throws Exception {
+        JsonArray embeddings = client().embedTexts(List.of("java spring", "python django", "java spring"), null);
+
+        assertEquals(3, embeddings.size());
+        assertEquals(64, embeddings.get(0).getAsJsonObject().getAsJsonArray("values").size());
+        assertEquals(embeddings.get(0), embeddings.get(2));
+        assertEquals(1, stub.requestCount("batchEmbedContents"));
+    }
+
+    @Test
+    void generateMessage_concurrentSamePrompt_coalescesOnlyWithinAPriority() throws Exception {
+        stub.latency("generateContent", GeminiStubServer.Latency.fixed(200));
+        GenerativeLanguageClient client = client();
+        GenerationOptions bulk = GenerationOptions.defaults().withPriority(RequestPriority.BULK);
+
+        CompletableFuture<JsonArray> first = client.generateMessageAsync(List.of("same prompt"), null, 1, bulk);
+        CompletableFuture<JsonArray> joinedBulk = client.generateMessageAsync(List.of("same prompt"), null, 1, bulk);
+        CompletableFuture<JsonArray> interactive = client.generateMessageAsync(List.of("same prompt"), null, 1);
+        CompletableFuture.allOf(first, joinedBulk, interactive).get();
+
+        assertEquals(2, stub.requestCount("generateContent"));
+        assertEquals(1, client.getCoalescedCallCount());
+        assertEquals(first.get(), interactive.get());
+    }
+
+    @Test
+    void transientErrors_areRetried() throws Exception {
+        stub.serverErrorRate(0.3);
+
+        for (int i = 0; i < 5; i++) {
+            JsonArray result = client().generateMessage(List.of("prompt " + i), null, 1);
+            assertEquals(1, result.size());
+        }
+        assertTrue(stub.requestCount("generateContent") >= 5);
+    }
+
+    @Test
+    void generation_failingRepeatedly_opensCircuit_andFailsFast() throws Exception {
+        stub.serverErrorRate(1.0);
+        GeminiProperties props = new GeminiProperties("test-key", null, null);
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        props.setBreakerFailureThreshold(2);
+        props.getRetry().setMaxAttempts(1);
+        props.setRetry("generate", props.getRetry());
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props);
+
+        for (int i = 0; i < 2; i++) {
+            int n = i;
+            assertThrows(IllegalStateException.class, () -> client.generateMessage(List.of("p" + n), null, 1));
+        }
+        long callsBeforeOpen = stub.requestCount("generateContent");
+
+        assertFalse(client.isGenerationAvailable());
+        assertThrows(CircuitOpenException.class, () -> client.generateMessage(List.of("p3"), null, 1));
+        assertEquals(callsBeforeOpen, stub.requestCount("generateContent"));
+    }
+
+    @Test
+    void generation_throttledRepeatedly_opensCircuitAtThrottleThreshold() throws Exception {
+        stub.throttleRate(1.0).retryAfterSeconds(0);
+        GeminiProperties props = new GeminiProperties("test-key", null, null);
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        props.setBreakerFailureThreshold(2);
+        props.setBreakerThrottleThreshold(3);
+        props.getRetry().setMaxAttempts(1);
+        props.setRetry("generate", props.getRetry());
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props);
+
+        for (int i = 0; i < 2; i++) {
+            int n = i;
+            assertThrows(IllegalStateException.class, () -> client.generateMessage(List.of("p" + n), null, 1));
+        }
+        assertTrue(client.isGenerationAvailable());
+
+        assertThrows(IllegalStateException.class, () -> client.generateMessage(List.of("p2"), null, 1));
+
+        assertFalse(client.isGenerationAvailable());
+        assertEquals(3, client.getGenerationCircuit().getThrottledCount());
+        assertThrows(CircuitOpenException.class, () -> client.generateMessage(List.of("p3"), null, 1));
+        assertEquals(3, stub.requestCount("generateContent"));
+    }
+
+    @Test
+    void generation_expiringInLimiterQueue_doesNotOpenCircuit() {
+        stub.latency("generateContent", GeminiStubServer.Latency.fixed(300));
+        GeminiProperties props = new GeminiProperties("test-key", null, null);
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        props.setMaxConcurrency(1);
+        props.setQueueTimeoutMs(20);
+        props.setBreakerFailureThreshold(1);
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props);
+
+        CompletableFuture<JsonArray> running = client.generateMessageAsync(List.of("running"), null, 1);
+        List<CompletableFuture<JsonArray>> queued = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            queued.add(client.generateMessageAsync(List.of("queued " + i), null, 1));
+        }
+
+        for (CompletableFuture<JsonArray> call : queued) {
+            assertThrows(CompletionException.class, call::join);
+        }
+        // Checked while the first call still runs, before its success could close the circuit
+        assertFalse(running.isDone());
+        assertTrue(client.isGenerationAvailable());
+        running.join();
+    }
+
+    @Test
+    void streamGenerate_deliversFragmentsInOrder_thenServesRepeatFromCache() throws Exception {
+        stub.textReply(prompt -> "{\"score\":42}\nA fairly long explanation, streamed in pieces.").streamChunkChars(8);
+        GenerativeLanguageClient client = client();
+
+        List<String> fragments = new ArrayList<>();
+        String text = client.streamGenerateAsync(List.of("stream me"), null, GenerationOptions.defaults(), fragments::add).get();
+
+        assertTrue(fragments.size() > 1);
+        assertEquals(text, String.join("", fragments));
+        assertEquals("{\"score\":42}\nA fairly long explanation, streamed in pieces.", text);
+
+        List<String> cached = new ArrayList<>();
+        client.streamGenerateAsync(List.of("stream me"), null, GenerationOptions.defaults(), cached::add).get();
+
+        assertEquals(List.of(text), cached);
+        assertEquals(1, stub.requestCount("streamGenerateContent"));
+    }
+
+    @Test
+    void metrics_recordAttemptsRetriesAndTokenUsage() throws Exception {
+        GeminiProperties props = new GeminiProperties("test-key", "gemini-2.0-flash", "embedding-001");
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        props.getRetry().setBaseDelayMs(1);
+        props.getRetry().setMaxDelayMs(5);
+        props.getRetry().setMaxAttempts(3);
+        props.setRetry("generate", props.getRetry());
+        MeterRegistry registry = new SimpleMeterRegistry();
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props,
+                GeminiConfig.newHttpClient(props, GeminiConfig.newExecutor(props)), new GeminiMetrics(registry));
+
+        client.generateMessage(List.of("count my tokens"), null, 1);
+        stub.serverErrorRate(1.0);
+        assertThrows(IllegalStateException.class, () -> client.generateMessage(List.of("fails"), null, 1));
+
+        String[] generate = {"endpoint", "generateContent", "model", "gemini-2.0-flash"};
+        assertEquals(1, registry.get("gemini.client.requests").tags(generate).tag("outcome", "SUCCESS").timer().count());
+        assertEquals(3, registry.get("gemini.client.requests").tags(generate).tag("outcome", "SERVER_ERROR").timer().count());
+        assertEquals(2.0, registry.get("gemini.client.retries").tags(generate).tag("reason", "503").counter().count());
+        assertEquals(1, registry.get("gemini.client.calls").tags(generate).tag("outcome", "SERVER_ERROR").timer().count());
+        assertEquals(4, registry.get("gemini.client.queue").tags(generate).timer().count());
+        assertEquals(1, registry.get("gemini.client.tokens").tags("model", "gemini-2.0-flash", "type", "total").summary().count());
+        assertTrue(registry.get("gemini.client.tokens").tags("model", "gemini-2.0-flash", "type", "prompt").summary().totalAmount() > 0);
+    }
+
+    @Test
+    void metrics_countResponseCacheHitsAndMisses() throws Exception {
+        GeminiProperties props = new GeminiProperties("test-key", "gemini-2.0-flash", "embedding-001");
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        MeterRegistry registry = new SimpleMeterRegistry();
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props,
+                GeminiConfig.newHttpClient(props, GeminiConfig.newExecutor(props)), new GeminiMetrics(registry));
+
+        client.generateMessage(List.of("same prompt"), null, 1);
+        client.generateMessage(List.of("same prompt"), null, 1);
+
+        assertEquals(1.0, registry.get("gemini.client.response.cache").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("gemini.client.response.cache").tag("result", "miss").functionCounter().count());
+        assertEquals(1.0, registry.get("gemini.client.response.cache.size").gauge().value());
+    }
+
+    @Test
+    void metrics_countEmbeddingCacheTiersAndCoalescedCalls() throws Exception {
+        stub.latency("embedContent", GeminiStubServer.Latency.fixed(200));
+        GeminiProperties props = new GeminiProperties("test-key", "gemini-2.0-flash", "embedding-001");
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        MeterRegistry registry = new SimpleMeterRegistry();
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props,
+                GeminiConfig.newHttpClient(props, GeminiConfig.newExecutor(props)), new GeminiMetrics(registry));
+
+        CompletableFuture<EmbeddingVector> first = client.embedVectorAsync("Java developer", null);
+        CompletableFuture<EmbeddingVector> joined = client.embedVectorAsync("Java developer", null);
+        CompletableFuture.allOf(first, joined).get();
+        client.embedVectorAsync("Java developer", null).get();
+
+        assertEquals(1, stub.requestCount("embedContent"));
+        assertEquals(1.0, registry.get("gemini.client.coalesced").tag("call", "embed").functionCounter().count());
+        assertEquals(0.0, registry.get("gemini.client.coalesced").tag("call", "generate").functionCounter().count());
+        assertEquals(1.0, registry.get("gemini.client.embedding.cache").tag("result", "heap_hit").functionCounter().count());
+        assertEquals(2.0, registry.get("gemini.client.embedding.cache").tag("result", "miss").functionCounter().count());
+        assertEquals(1.0, registry.get("gemini.client.embedding.cache.size").tag("tier", "heap").gauge().value());
+    }
+
+    @Test
+    void standaloneClient_cachesEmbeddingsInMemoryOnly() throws Exception {
+        GeminiProperties props = new GeminiProperties("test-key", "gemini-2.0-flash", "embedding-001");
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir(tempDir.toString());
+        GenerativeLanguageClient first = new GenerativeLanguageClient(props);
+        GenerativeLanguageClient second = new GenerativeLanguageClient(props);
+
+        first.embedVectorAsync("Java developer", null).get();
+        second.embedVectorAsync("Java developer", null).get();
+
+        assertEquals(2, stub.requestCount("embedContent"));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void closeCaches_closesPersistentEmbeddingCache_heapStillServes() throws Exception {
+        GeminiProperties props = new GeminiProperties("test-key", "gemini-2.0-flash", "embedding-001");
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir(tempDir.toString());
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props,
+                GeminiConfig.newHttpClient(props, GeminiConfig.newExecutor(props)), new GeminiMetrics(new SimpleMeterRegistry()));
+
+        client.embedVectorAsync("Java developer", null).get();
+        client.closeCaches();
+        client.embedVectorAsync("Java developer", null).get();
+
+        assertEquals(1, stub.requestCount("embedContent"));
+        try (EmbeddingCache reopened = EmbeddingCache.persistent(10, tempDir)) {
+            assertEquals(1, reopened.diskSize());
+        }
+    }
+
+    @Test
+    void metrics_streamRecordsUsageOfWholeReply() throws Exception {
+        stub.textReply(prompt -> "x".repeat(40)).streamChunkChars(8);
+        GeminiProperties props = new GeminiProperties("test-key", "gemini-2.0-flash", "embedding-001");
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        MeterRegistry registry = new SimpleMeterRegistry();
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props,
+                GeminiConfig.newHttpClient(props, GeminiConfig.newExecutor(props)), new GeminiMetrics(registry));
+
+        client.streamGenerateAsync(List.of("stream me"), null, GenerationOptions.defaults(), fragment -> {}).get();
+
+        // One usage record for the reply, from its last event: 40 characters is 10 stub tokens
+        var candidates = registry.get("gemini.client.tokens").tags("type", "candidates").summary();
+        assertEquals(1, candidates.count());
+        assertEquals(10.0, candidates.totalAmount(), 1e-9);
+        assertEquals(1, registry.get("gemini.client.requests")
+                .tags("endpoint", "streamGenerateContent", "outcome", "SUCCESS").timer().count());
+    }
+
+    @Test
+    void sharedPrefix_isSentAsCachedContentOnceHot_andInvalidatedByTag() throws Exception {
+        GeminiProperties props = new GeminiProperties("test-key", "gemini-2.0-flash", "embedding-001");
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        props.setContextCacheMinTokens(0);
+        props.setContextCacheMinUses(2);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props,
+                GeminiConfig.newHttpClient(props, GeminiConfig.newExecutor(props)), new GeminiMetrics(registry));
+        GenerationOptions shared = GenerationOptions.defaults().withSharedPrefix("job:1");
+        String prefix = "Rubric and job posting shared by every CV. ".repeat(20);
+
+        List<JsonArray> replies = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            replies.add(client.generateMessage(List.of(prefix, "Candidate CV " + i), null, 1, shared));
+        }
+
+        assertEquals(1, stub.requestCount("cachedContents"));
+        assertEquals(1, stub.cachedContentCount());
+        assertEquals(2, client.getContextCache().getHitCount() + client.getContextCache().getCreationCount());
+        // The stub answers from the whole prompt, so a cached prefix gives the same reply as the full one
+        JsonArray full = client().generateMessage(List.of(prefix, "Candidate CV 2"), null, 1);
+        assertEquals(full, replies.get(2));
+        assertEquals(2, registry.get("gemini.client.tokens").tags("type", "cached").summary().count());
+
+        client.invalidateCachedPrefixes("job:1");
+        Thread.sleep(200);
+        assertEquals(0, stub.cachedContentCount());
+    }
+
+    @Test
+    void cachedContentUnknownToGemini_fallsBackToFullPrompt() throws Exception {
+        GeminiProperties props = new GeminiProperties("test-key", "gemini-2.0-flash", "embedding-001");
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        props.setContextCacheMinTokens(0);
+        props.setContextCacheMinUses(1);
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props);
+        GenerationOptions shared = GenerationOptions.defaults().withSharedPrefix(null);
+
+        client.generateMessage(List.of("prefix", "first"), null, 1, shared);
+        stub.expireCachedContents();
+        JsonArray reply = client.generateMessage(List.of("prefix", "second"), null, 1, shared);
+
+        assertNotNull(reply);
+        assertEquals(1, client.getContextCache().getInvalidationCount());
+        // first (cached), second (cached, 404), second again in full
+        assertEquals(3, stub.requestCount("generateContent"));
+    }
+}
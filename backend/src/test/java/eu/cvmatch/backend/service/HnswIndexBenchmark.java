@@ -0,0 +1,111 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.model.NearestMatch;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Query latency of the HNSW index against exact search over the same vectors, at
+ * several {@code efSearch} beam widths. Setup prints the recall@10 of each width
+ * against {@link BruteForceVectorIndex}, so the latency numbers can be read as a
+ * recall-vs-latency curve.
+ * <p>
+ * Run with {@code java --add-modules jdk.incubator.vector -cp target/test-classes:<test classpath>
+ * eu.cvmatch.backend.service.HnswIndexBenchmark}. Building the graph takes a while at
+ * the larger sizes; pass {@code -p vectors=1000000} to try a million.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class HnswIndexBenchmark {
+    private static final int K = 10;
+    private static final int QUERIES = 256;
+
+    @Param({"100000"})
+    public int vectors;
+
+    @Param({"768"})
+    public int dimensions;
+
+    @Param({"16", "64", "256"})
+    public int efSearch;
+
+    private HnswIndex hnsw;
+    private BruteForceVectorIndex exact;
+    private EmbeddingVector[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildIndexes() {
+        SplittableRandom random = new SplittableRandom(42);
+        hnsw = new HnswIndex(16, 200, efSearch);
+        exact = new BruteForceVectorIndex();
+        EmbeddingVector[] data = new EmbeddingVector[vectors];
+        for (int i = 0; i < vectors; i++) {
+            data[i] = clusteredVector(random);
+            exact.upsert("v" + i, data[i]);
+        }
+        // Build on every core, as concurrent uploads would
+        IntStream.range(0, vectors).parallel().forEach(i -> hnsw.upsert("v" + i, data[i]));
+
+        queries = new EmbeddingVector[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = clusteredVector(random);
+        }
+        int hits = 0;
+        for (EmbeddingVector query : queries) {
+            Set<String> expected = new HashSet<>();
+            for (NearestMatch match : exact.search(query, K)) {
+                expected.add(match.getId());
+            }
+            for (NearestMatch match : hnsw.search(query, K)) {
+                if (expected.contains(match.getId())) {
+                    hits++;
+                }
+            }
+        }
+        System.out.printf("%nefSearch=%d: recall@%d = %.3f%n", efSearch, K, hits / (double) (K * QUERIES));
+    }
+
+    @Benchmark
+    public List<NearestMatch> hnswSearch() {
+        return hnsw.search(nextQuery(), K);
+    }
+
+    @Benchmark
+    public List<NearestMatch> exactSearch() {
+        return exact.search(nextQuery(), K);
+    }
+
+    private EmbeddingVector nextQuery() {
+        return queries[next++ & (QUERIES - 1)];
+    }
+
+    // Real embeddings cluster by topic; uniform random vectors would make every method look bad
+    private EmbeddingVector clusteredVector(SplittableRandom random) {
+        int cluster = random.nextInt(100);
+        SplittableRandom centre = new SplittableRandom(cluster);
+        float[] values = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            values[i] = (float) (centre.nextGaussian() + 0.7 * random.nextGaussian());
+        }
+        return EmbeddingVector.of("bench", values);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] jmhArgs = new String[args.length + 1];
+        jmhArgs[0] = HnswIndexBenchmark.class.getSimpleName();
+        System.arraycopy(args, 0, jmhArgs, 1, args.length);
+        org.openjdk.jmh.Main.main(jmhArgs);
+    }
+}
@@ -0,0 +1,238 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.model.NearestMatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void search_findsMostOfTheExactNearestNeighbours() {
+        SplittableRandom random = new SplittableRandom(7);
+        HnswIndex hnsw = new HnswIndex(16, 100, 64);
+        VectorIndex exact = new BruteForceVectorIndex(Runnable::run, 1);
+        for (int i = 0; i < 5000; i++) {
+            EmbeddingVector v = randomVector(random, 32);
+            hnsw.upsert("cv-" + i, v);
+            exact.upsert("cv-" + i, v);
+        }
+
+        assertTrue(recallAt10(hnsw, exact, random, 50) >= 0.9);
+    }
+
+    @Test
+    void search_returnsTopK_bestFirst() {
+        HnswIndex index = new HnswIndex(4, 20, 10);
+        index.upsert("java", vec(1f, 0f, 0f));
+        index.upsert("kotlin", vec(0.9f, 0.1f, 0f));
+        index.upsert("python", vec(0f, 1f, 0f));
+        index.upsert("sales", vec(-1f, 0f, 0f));
+
+        List<NearestMatch> matches = index.search(vec(1f, 0.05f, 0f), 2);
+
+        assertEquals(2, matches.size());
+        assertEquals("java", matches.get(0).getId());
+        assertEquals("kotlin", matches.get(1).getId());
+    }
+
+    @Test
+    void remove_leavesTombstone_neverReturned() {
+        HnswIndex index = new HnswIndex(4, 20, 10);
+        index.upsert("a", vec(1f, 0f));
+        index.upsert("b", vec(0f, 1f));
+        index.upsert("c", vec(1f, 1f));
+
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+
+        assertEquals(2, index.size());
+        assertEquals(1, index.getDeletedCount());
+        assertNull(index.get("a"));
+        assertFalse(index.contains("a"));
+        assertEquals("c", index.search(vec(1f, 0f), 1).get(0).getId());
+    }
+
+    @Test
+    void upsert_sameId_replacesVector() {
+        HnswIndex index = new HnswIndex(4, 20, 10);
+        index.upsert("job-1", vec(1f, 0f));
+        index.upsert("job-1", vec(1f, 0f));
+        assertEquals(0, index.getDeletedCount());
+
+        index.upsert("job-1", vec(0f, 1f));
+
+        assertEquals(1, index.size());
+        assertEquals(vec(0f, 1f), index.get("job-1"));
+        List<NearestMatch> matches = index.search(vec(1f, 0f), 5);
+        assertEquals(1, matches.size());
+        assertEquals("job-1", matches.get(0).getId());
+        assertEquals(0f, matches.get(0).getScore(), 1e-6f);
+    }
+
+    @Test
+    void concurrentInserts_allSearchable() throws Exception {
+        SplittableRandom random = new SplittableRandom(11);
+        List<EmbeddingVector> vectors = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            vectors.add(randomVector(random, 16));
+        }
+        HnswIndex index = new HnswIndex(16, 100, 64);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<CompletableFuture<Void>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int first = t;
+                writers.add(CompletableFuture.runAsync(() -> {
+                    for (int i = first; i < vectors.size(); i += 4) {
+                        index.upsert("cv-" + i, vectors.get(i));
+                    }
+                }, pool));
+            }
+            CompletableFuture.allOf(writers.toArray(new CompletableFuture[0])).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(vectors.size(), index.size());
+        int found = 0;
+        for (int i = 0; i < vectors.size(); i += 40) {
+            if (index.search(vectors.get(i), 1).get(0).getId().equals("cv-" + i)) {
+                found++;
+            }
+        }
+        assertTrue(found >= 95);
+    }
+
+    @Test
+    void saveAndLoad_roundTripsGraphAndTombstones() throws IOException {
+        SplittableRandom random = new SplittableRandom(5);
+        HnswIndex index = new HnswIndex(8, 50, 32);
+        for (int i = 0; i < 500; i++) {
+            index.upsert("cv-" + i, randomVector(random, 24));
+        }
+        index.remove("cv-3");
+        Path file = tempDir.resolve("cvs.hnsw");
+
+        index.save(file);
+        HnswIndex loaded = HnswIndex.load(file, 40);
+
+        assertEquals(499, loaded.size());
+        assertEquals(1, loaded.getDeletedCount());
+        assertEquals(8, loaded.getM());
+        assertEquals(40, loaded.getEfSearch());
+        assertFalse(loaded.contains("cv-3"));
+        assertEquals(index.get("cv-42"), loaded.get("cv-42"));
+        index.setEfSearch(40);
+        for (int q = 0; q < 20; q++) {
+            EmbeddingVector query = randomVector(random, 24);
+            assertEquals(ids(index.search(query, 10)), ids(loaded.search(query, 10)));
+        }
+    }
+
+    @Test
+    void save_whileInserting_writesAConsistentGraph() throws Exception {
+        SplittableRandom random = new SplittableRandom(13);
+        List<EmbeddingVector> vectors = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            vectors.add(randomVector(random, 16));
+        }
+        HnswIndex index = new HnswIndex(8, 50, 32);
+        for (int i = 0; i < 1000; i++) {
+            index.upsert("cv-" + i, vectors.get(i));
+        }
+        Path file = tempDir.resolve("cvs.hnsw");
+
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (int i = 1000; i < vectors.size(); i++) {
+                index.upsert("cv-" + i, vectors.get(i));
+            }
+        });
+        index.save(file);
+        writer.join();
+        HnswIndex loaded = HnswIndex.load(file, 32);
+
+        assertTrue(loaded.size() >= 1000 && loaded.size() <= vectors.size());
+        for (String id : loaded.ids()) {
+            assertEquals(index.get(id), loaded.get(id));
+        }
+        assertEquals("cv-7", loaded.search(vectors.get(7), 1).get(0).getId());
+    }
+
+    @Test
+    void load_garbage_throwsIOException() throws IOException {
+        Path file = tempDir.resolve("broken.hnsw");
+        Files.write(file, new byte[]{1, 2, 3});
+
+        assertThrows(IOException.class, () -> HnswIndex.load(file, 10));
+    }
+
+    @Test
+    void compacted_dropsTombstones() {
+        SplittableRandom random = new SplittableRandom(9);
+        HnswIndex index = new HnswIndex(8, 50, 32);
+        for (int i = 0; i < 200; i++) {
+            index.upsert("cv-" + i, randomVector(random, 8));
+        }
+        for (int i = 0; i < 150; i++) {
+            index.remove("cv-" + i);
+        }
+
+        HnswIndex compacted = index.compacted();
+
+        assertEquals(50, compacted.size());
+        assertEquals(0, compacted.getDeletedCount());
+        assertEquals(index.get("cv-180"), compacted.get("cv-180"));
+    }
+
+    private static double recallAt10(VectorIndex approximate, VectorIndex exact, SplittableRandom random, int queries) {
+        int hits = 0;
+        for (int q = 0; q < queries; q++) {
+            EmbeddingVector query = randomVector(random, 32);
+            Set<String> expected = new HashSet<>(ids(exact.search(query, 10)));
+            for (String id : ids(approximate.search(query, 10))) {
+                if (expected.contains(id)) {
+                    hits++;
+                }
+            }
+        }
+        return hits / (10.0 * queries);
+    }
+
+    private static List<String> ids(List<NearestMatch> matches) {
+        List<String> ids = new ArrayList<>();
+        for (NearestMatch match : matches) {
+            ids.add(match.getId());
+        }
+        return ids;
+    }
+
+    private static EmbeddingVector vec(float... values) {
+        return EmbeddingVector.of("m", values);
+    }
+
+    private static EmbeddingVector randomVector(SplittableRandom random, int dim) {
+        float[] values = new float[dim];
+        for (int i = 0; i < dim; i++) {
+            values[i] = (float) random.nextDouble(-1, 1);
+        }
+        return EmbeddingVector.of("m", values);
+    }
+}
@@ -0,0 +1,104 @@
+package eu.cvmatch.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicroBatcherTest {
+
+    private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    private List<CompletableFuture<String>> upperCase(String key, List<String> items) {
+        batches.add(List.copyOf(items));
+        List<CompletableFuture<String>> out = new ArrayList<>();
+        for (String item : items) {
+            out.add(item.equals("boom")
+                    ? CompletableFuture.failedFuture(new IllegalStateException("boom"))
+                    : CompletableFuture.completedFuture(key + ":" + item.toUpperCase()));
+        }
+        return out;
+    }
+
+    // Like a model call: the results land a while after the batch went out
+    private List<CompletableFuture<String>> slowUpperCase(String key, List<String> items) {
+        List<CompletableFuture<String>> out = new ArrayList<>();
+        for (CompletableFuture<String> result : upperCase(key, items)) {
+            out.add(result.thenApplyAsync(r -> r, CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS)));
+        }
+        return out;
+    }
+
+    @Test
+    void loneSubmission_isDispatchedWithoutWaitingForWindow() {
+        MicroBatcher<String, String, String> batcher = new MicroBatcher<>("test", 10, 60_000, this::upperCase);
+
+        CompletableFuture<String> a = batcher.submit("job", "a");
+        CompletableFuture<String> b = batcher.submit("job", "b");
+
+        assertTrue(a.isDone() && b.isDone());
+        assertEquals(List.of(List.of("a"), List.of("b")), batches);
+    }
+
+    @Test
+    void submissionsWhileABatchIsInFlight_sameKey_shareOneBatch() {
+        MicroBatcher<String, String, String> batcher = new MicroBatcher<>("test", 10, 50, this::slowUpperCase);
+
+        CompletableFuture<String> a = batcher.submit("job1", "a");
+        CompletableFuture<String> b = batcher.submit("job1", "b");
+        CompletableFuture<String> c = batcher.submit("job1", "c");
+        CompletableFuture<String> d = batcher.submit("job2", "d");
+
+        assertEquals("job1:A", a.join());
+        assertEquals("job1:B", b.join());
+        assertEquals("job1:C", c.join());
+        assertEquals("job2:D", d.join());
+        assertTrue(batches.contains(List.of("a")));
+        assertTrue(batches.contains(List.of("b", "c")));
+        assertTrue(batches.contains(List.of("d")));
+        assertEquals(3, batcher.getBatchCount());
+        assertEquals(4, batcher.getItemCount());
+    }
+
+    @Test
+    void fullBatch_isDispatchedWithoutWaitingForWindow() {
+        MicroBatcher<String, String, String> batcher = new MicroBatcher<>("test", 2, 60_000, this::slowUpperCase);
+
+        batcher.submit("job", "a");
+        CompletableFuture<String> b = batcher.submit("job", "b");
+        CompletableFuture<String> c = batcher.submit("job", "c");
+
+        assertEquals(List.of(List.of("a"), List.of("b", "c")), batches);
+        assertEquals("job:B", b.join());
+        assertEquals("job:C", c.join());
+    }
+
+    @Test
+    void zeroWindow_dispatchesEachItemAlone() {
+        MicroBatcher<String, String, String> batcher = new MicroBatcher<>("test", 10, 0, this::upperCase);
+
+        batcher.submit("job", "a").join();
+        batcher.submit("job", "b").join();
+
+        assertEquals(List.of(List.of("a"), List.of("b")), batches);
+    }
+
+    @Test
+    void failedItem_doesNotFailItsBatchMates() {
+        MicroBatcher<String, String, String> batcher = new MicroBatcher<>("test", 2, 60_000, this::slowUpperCase);
+
+        batcher.submit("job", "first");
+        CompletableFuture<String> ok = batcher.submit("job", "ok");
+        CompletableFuture<String> boom = batcher.submit("job", "boom");
+
+        assertEquals("job:OK", ok.join());
+        CompletionException e = assertThrows(CompletionException.class, boom::join);
+        assertEquals("boom", e.getCause().getMessage());
+    }
+}
@@ -0,0 +1,114 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.model.NearestMatch;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of int8 and binary quantized search against exact search over the
+ * same vectors. Setup prints each encoding's recall@10 against
+ * {@link BruteForceVectorIndex} and its heap bytes next to those of full vectors.
+ * <p>
+ * Run with {@code java --add-modules jdk.incubator.vector -cp target/test-classes:<test classpath>
+ * eu.cvmatch.backend.service.QuantizedVectorIndexBenchmark}; add {@code -p rescoreFactor=...}
+ * to trade recall for latency.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class QuantizedVectorIndexBenchmark {
+    private static final int K = 10;
+    private static final int QUERIES = 256;
+
+    @Param({"100000"})
+    public int vectors;
+
+    @Param({"768"})
+    public int dimensions;
+
+    @Param({"INT8", "BINARY"})
+    public QuantizedVectorIndex.Encoding encoding;
+
+    /** 0 uses the encoding's default. */
+    @Param({"0"})
+    public int rescoreFactor;
+
+    private QuantizedVectorIndex quantized;
+    private BruteForceVectorIndex exact;
+    private EmbeddingVector[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildIndexes() {
+        SplittableRandom random = new SplittableRandom(42);
+        quantized = new QuantizedVectorIndex(encoding, rescoreFactor);
+        exact = new BruteForceVectorIndex();
+        for (int i = 0; i < vectors; i++) {
+            EmbeddingVector v = clusteredVector(random);
+            quantized.upsert("v" + i, v);
+            exact.upsert("v" + i, v);
+        }
+
+        queries = new EmbeddingVector[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = clusteredVector(random);
+        }
+        int hits = 0;
+        for (EmbeddingVector query : queries) {
+            Set<String> expected = new HashSet<>();
+            for (NearestMatch match : exact.search(query, K)) {
+                expected.add(match.getId());
+            }
+            for (NearestMatch match : quantized.search(query, K)) {
+                if (expected.contains(match.getId())) {
+                    hits++;
+                }
+            }
+        }
+        long fullBytes = (long) vectors * dimensions * Float.BYTES;
+        System.out.printf("%n%s, rescore %d: recall@%d = %.3f, heap %d MB vs %d MB full (%.1fx)%n",
+                encoding, quantized.getRescoreFactor(), K, hits / (double) (K * QUERIES),
+                quantized.getCodeBytes() >> 20, fullBytes >> 20, fullBytes / (double) quantized.getCodeBytes());
+    }
+
+    @Benchmark
+    public List<NearestMatch> quantizedSearch() {
+        return quantized.search(nextQuery(), K);
+    }
+
+    @Benchmark
+    public List<NearestMatch> exactSearch() {
+        return exact.search(nextQuery(), K);
+    }
+
+    private EmbeddingVector nextQuery() {
+        return queries[next++ & (QUERIES - 1)];
+    }
+
+    // Real embeddings cluster by topic; uniform random vectors would make every method look bad
+    private EmbeddingVector clusteredVector(SplittableRandom random) {
+        int cluster = random.nextInt(100);
+        SplittableRandom centre = new SplittableRandom(cluster);
+        float[] values = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            values[i] = (float) (centre.nextGaussian() + 0.7 * random.nextGaussian());
+        }
+        return EmbeddingVector.of("bench", values);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] jmhArgs = new String[args.length + 1];
+        jmhArgs[0] = QuantizedVectorIndexBenchmark.class.getSimpleName();
+        System.arraycopy(args, 0, jmhArgs, 1, args.length);
+        org.openjdk.jmh.Main.main(jmhArgs);
+    }
+}
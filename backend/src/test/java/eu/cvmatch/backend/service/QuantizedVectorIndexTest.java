@@ -0,0 +1,161 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.model.EmbeddingVector;
+import eu.cvmatch.backend.model.NearestMatch;
+import eu.cvmatch.backend.service.QuantizedVectorIndex.Encoding;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantizedVectorIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void int8_recallCloseToExact_codesFourTimesSmaller() {
+        SplittableRandom random = new SplittableRandom(1);
+        QuantizedVectorIndex int8 = new QuantizedVectorIndex(Encoding.INT8, 0);
+        VectorIndex exact = fill(int8, random, 5000, 128);
+
+        assertEquals(4, int8.getRescoreFactor());
+        assertTrue(recallAt10(int8, exact, random, 128) >= 0.98);
+        assertEquals(5000L * (128 + 4), int8.getCodeBytes());
+    }
+
+    @Test
+    void binary_recallAfterRerank_codesThirtyTwoTimesSmaller() {
+        SplittableRandom random = new SplittableRandom(2);
+        QuantizedVectorIndex binary = new QuantizedVectorIndex(Encoding.BINARY, 0, tempDir);
+        VectorIndex exact = fill(binary, random, 5000, 128);
+
+        assertEquals(30, binary.getRescoreFactor());
+        assertTrue(recallAt10(binary, exact, random, 128) >= 0.95);
+        assertEquals(5000L * 128 / 8, binary.getCodeBytes());
+    }
+
+    @Test
+    void search_scoresAreExact() {
+        QuantizedVectorIndex index = new QuantizedVectorIndex(Encoding.BINARY, 10);
+        index.upsert("java", vec(1f, 0.2f, 0f));
+        index.upsert("kotlin", vec(0.9f, 0.3f, 0f));
+        index.upsert("sales", vec(-1f, 0f, 0f));
+        EmbeddingVector query = vec(1f, 0.25f, 0f);
+
+        List<NearestMatch> matches = index.search(query, 2);
+
+        assertEquals(2, matches.size());
+        assertEquals("java", matches.get(0).getId());
+        assertEquals((float) query.dot(vec(1f, 0.2f, 0f)), matches.get(0).getScore(), 1e-6f);
+    }
+
+    @Test
+    void upsertAndRemove_keepCodesAndFullVectorsTogether() {
+        QuantizedVectorIndex index = new QuantizedVectorIndex(Encoding.INT8, 2, tempDir);
+        index.upsert("a", vec(1f, 0f));
+        index.upsert("b", vec(0f, 1f));
+        index.upsert("c", vec(-1f, -1f));
+        index.upsert("b", vec(1f, 1f));
+
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+
+        assertEquals(2, index.size());
+        assertNull(index.get("a"));
+        assertEquals(vec(-1f, -1f), index.get("c"));
+        assertEquals(vec(1f, 1f), index.get("b"));
+        assertEquals("c", index.search(vec(-1f, -0.9f), 1).get(0).getId());
+        assertEquals("b", index.search(vec(1f, 0.9f), 1).get(0).getId());
+    }
+
+    @Test
+    void close_deletesScratchFile() throws IOException {
+        QuantizedVectorIndex index = new QuantizedVectorIndex(Encoding.INT8, 2, tempDir);
+        index.upsert("a", vec(1f, 0f));
+        assertEquals(1, scratchFiles());
+
+        index.close();
+
+        assertEquals(0, scratchFiles());
+        assertEquals(0, index.size());
+        assertThrows(IllegalStateException.class, () -> index.upsert("b", vec(0f, 1f)));
+    }
+
+    @Test
+    void deleteStaleScratchFiles_removesOnlyScratchFiles() throws IOException {
+        Files.createFile(tempDir.resolve("vectors-123.f32"));
+        Files.createFile(tempDir.resolve("cvs.hnsw"));
+
+        QuantizedVectorIndex.deleteStaleScratchFiles(tempDir);
+
+        assertEquals(0, scratchFiles());
+        assertTrue(Files.exists(tempDir.resolve("cvs.hnsw")));
+    }
+
+    @Test
+    void upsert_otherModelOrDimension_throws() {
+        QuantizedVectorIndex index = new QuantizedVectorIndex(Encoding.INT8, 2);
+        index.upsert("a", vec(1f, 0f));
+
+        assertThrows(IllegalArgumentException.class, () -> index.upsert("b", vec(1f, 0f, 0f)));
+        assertThrows(IllegalArgumentException.class,
+                () -> index.search(EmbeddingVector.of("other-model", new float[]{1f, 0f}), 1));
+    }
+
+    private static VectorIndex fill(VectorIndex index, SplittableRandom random, int n, int dim) {
+        VectorIndex exact = new BruteForceVectorIndex(Runnable::run, 1);
+        for (int i = 0; i < n; i++) {
+            EmbeddingVector v = clusteredVector(random, dim);
+            index.upsert("cv-" + i, v);
+            exact.upsert("cv-" + i, v);
+        }
+        return exact;
+    }
+
+    private static double recallAt10(VectorIndex approximate, VectorIndex exact, SplittableRandom random, int dim) {
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            EmbeddingVector query = clusteredVector(random, dim);
+            Set<String> expected = new HashSet<>();
+            for (NearestMatch match : exact.search(query, 10)) {
+                expected.add(match.getId());
+            }
+            for (NearestMatch match : approximate.search(query, 10)) {
+                if (expected.contains(match.getId())) {
+                    hits++;
+                }
+            }
+        }
+        return hits / (10.0 * queries);
+    }
+
+    private long scratchFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".f32")).count();
+        }
+    }
+
+    private static EmbeddingVector vec(float... values) {
+        return EmbeddingVector.of("m", values);
+    }
+
+    private static EmbeddingVector clusteredVector(SplittableRandom random, int dim) {
+        SplittableRandom centre = new SplittableRandom(random.nextInt(20));
+        float[] values = new float[dim];
+        for (int i = 0; i < dim; i++) {
+            values[i] = (float) (centre.nextGaussian() + 0.7 * random.nextGaussian());
+        }
+        return EmbeddingVector.of("m", values);
+    }
+}
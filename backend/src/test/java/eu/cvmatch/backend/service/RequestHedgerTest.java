@@ -0,0 +1,101 @@
+package eu.cvmatch.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestHedgerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /** Enough fast calls for the hedger to know the key's latency. */
+    private static void warmUp(RequestHedger hedger) {
+        for (int i = 0; i < 20; i++) {
+            hedger.execute("model", () -> CompletableFuture.completedFuture("ok"), () -> null, "ok"::equals).join();
+        }
+    }
+
+    @Test
+    void slowCall_hedgeWins_andTheOriginalIsCancelled() throws Exception {
+        RequestHedger hedger = new RequestHedger(95, 1, 20, executor);
+        warmUp(hedger);
+        CompletableFuture<String> stalled = new CompletableFuture<>();
+
+        String result = hedger.execute("model", () -> stalled,
+                () -> CompletableFuture.supplyAsync(() -> "hedge", executor), s -> true).get(2, TimeUnit.SECONDS);
+
+        assertEquals("hedge", result);
+        assertTrue(stalled.isCancelled());
+        assertEquals(1, hedger.getHedgeCount());
+        assertEquals(1, hedger.getHedgeWinCount());
+    }
+
+    @Test
+    void noBudgetForHedge_waitsForTheOriginal() throws Exception {
+        RequestHedger hedger = new RequestHedger(95, 1, 20, executor);
+        warmUp(hedger);
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        executor.execute(() -> {
+            sleep(200);
+            slow.complete("primary");
+        });
+
+        String result = hedger.execute("model", () -> slow, () -> null, s -> true).get(2, TimeUnit.SECONDS);
+
+        assertEquals("primary", result);
+        assertEquals(0, hedger.getHedgeCount());
+        assertEquals(1, hedger.getSkippedCount());
+    }
+
+    @Test
+    void failedHedge_returnsTheOriginalOutcome() throws Exception {
+        RequestHedger hedger = new RequestHedger(95, 1, 20, executor);
+        warmUp(hedger);
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        executor.execute(() -> {
+            sleep(200);
+            slow.complete("429");
+        });
+
+        String result = hedger.execute("model", () -> slow,
+                () -> CompletableFuture.completedFuture("503"), "ok"::equals).get(2, TimeUnit.SECONDS);
+
+        assertEquals("429", result);
+        assertEquals(0, hedger.getHedgeWinCount());
+    }
+
+    @Test
+    void beforeEnoughSamples_orDisabled_neverHedges() {
+        AtomicInteger hedges = new AtomicInteger();
+        RequestHedger cold = new RequestHedger(95, 1, 0, executor);
+        RequestHedger off = new RequestHedger(0, 1, 0, executor);
+
+        for (RequestHedger hedger : new RequestHedger[]{cold, off}) {
+            hedger.execute("model", () -> CompletableFuture.supplyAsync(() -> {
+                sleep(100);
+                return "ok";
+            }, executor), () -> {
+                hedges.incrementAndGet();
+                return CompletableFuture.completedFuture("ok");
+            }, s -> true).join();
+        }
+
+        assertEquals(0, hedges.get());
+        assertEquals(-1, cold.getDelayMillis("model"));
+        assertFalse(off.isEnabled());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
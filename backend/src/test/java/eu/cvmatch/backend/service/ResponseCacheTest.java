@@ -0,0 +1,77 @@
+package eu.cvmatch.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void get_afterPut_hits() {
+        ResponseCache<String> cache = new ResponseCache<>(10, 1_000, now::get);
+        cache.put("k", "v");
+
+        assertEquals("v", cache.get("k"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    void get_unknownKey_countsMiss() {
+        ResponseCache<String> cache = new ResponseCache<>(10, 1_000, now::get);
+
+        assertNull(cache.get("k"));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void get_afterTtl_expiresEntry() {
+        ResponseCache<String> cache = new ResponseCache<>(10, 1_000, now::get);
+        cache.put("k", "v");
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertEquals("v", cache.get("k"));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertNull(cache.get("k"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void put_beyondCapacity_evictsLeastRecentlyUsed() {
+        ResponseCache<String> cache = new ResponseCache<>(2, 1_000, now::get);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void zeroCapacity_disablesCache() {
+        ResponseCache<String> cache = new ResponseCache<>(0, 1_000, now::get);
+        cache.put("k", "v");
+
+        assertNull(cache.get("k"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidate_removesEntry() {
+        ResponseCache<String> cache = new ResponseCache<>(10, 1_000, now::get);
+        cache.put("k", "v");
+        cache.invalidate("k");
+
+        assertNull(cache.get("k"));
+    }
+}
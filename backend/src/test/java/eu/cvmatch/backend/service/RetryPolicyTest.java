@@ -0,0 +1,87 @@
+package eu.cvmatch.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    @Test
+    void delayAfterResponse_nonRetryableStatus_stops() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1_000, 10_000);
+        assertEquals(-1, policy.delayAfterResponse(1, 400, Optional.empty(), 0));
+        assertEquals(-1, policy.delayAfterResponse(1, 404, Optional.empty(), 0));
+    }
+
+    @Test
+    void delayAfterResponse_backoffGrowsExponentially_withFullJitter() {
+        // random() == 1.0 exposes the jitter ceiling for each attempt
+        RetryPolicy policy = new RetryPolicy(10, 100, 1_000, 60_000, () -> 1.0);
+        assertEquals(100, policy.delayAfterResponse(1, 503, Optional.empty(), 0));
+        assertEquals(200, policy.delayAfterResponse(2, 503, Optional.empty(), 0));
+        assertEquals(400, policy.delayAfterResponse(3, 500, Optional.empty(), 0));
+        assertEquals(1_000, policy.delayAfterResponse(5, 429, Optional.empty(), 0));
+
+        RetryPolicy noJitter = new RetryPolicy(10, 100, 1_000, 60_000, () -> 0.0);
+        assertEquals(0, noJitter.delayAfterResponse(3, 503, Optional.empty(), 0));
+    }
+
+    @Test
+    void delayAfterResponse_stopsAfterMaxAttempts() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1_000, 60_000, () -> 0.5);
+        assertTrue(policy.delayAfterResponse(2, 503, Optional.empty(), 0) >= 0);
+        assertEquals(-1, policy.delayAfterResponse(3, 503, Optional.empty(), 0));
+    }
+
+    @Test
+    void delayAfterResponse_respectsElapsedTimeCap() {
+        RetryPolicy policy = new RetryPolicy(10, 1_000, 1_000, 5_000, () -> 1.0);
+        assertEquals(1_000, policy.delayAfterResponse(1, 503, Optional.empty(), 4_000));
+        assertEquals(-1, policy.delayAfterResponse(1, 503, Optional.empty(), 4_500));
+    }
+
+    @Test
+    void delayAfterResponse_honoursRetryAfterSeconds() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1_000, 60_000, () -> 1.0);
+        assertEquals(7_000, policy.delayAfterResponse(1, 429, Optional.of("7"), 0));
+    }
+
+    @Test
+    void delayAfterResponse_retryAfterBeyondBudget_stops() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1_000, 10_000, () -> 1.0);
+        assertEquals(-1, policy.delayAfterResponse(1, 429, Optional.of("30"), 0));
+    }
+
+    @Test
+    void parseRetryAfterMillis_httpDate() {
+        String inTenSeconds = ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(10)
+                .format(DateTimeFormatter.RFC_1123_DATE_TIME);
+        long millis = RetryPolicy.parseRetryAfterMillis(inTenSeconds);
+        assertTrue(millis > 8_000 && millis <= 10_000, "was " + millis);
+    }
+
+    @Test
+    void parseRetryAfterMillis_garbage_returnsMinusOne() {
+        assertEquals(-1, RetryPolicy.parseRetryAfterMillis("soon"));
+    }
+
+    @Test
+    void delayAfterFailure_onlyRetriesIoErrors() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1_000, 60_000, () -> 1.0);
+        assertEquals(100, policy.delayAfterFailure(1, new ConnectException("refused"), 0));
+        assertEquals(100, policy.delayAfterFailure(1, new IOException("reset"), 0));
+        assertEquals(-1, policy.delayAfterFailure(1, new IllegalStateException("queue timeout"), 0));
+    }
+
+    @Test
+    void none_neverRetries() {
+        assertEquals(-1, RetryPolicy.none().delayAfterResponse(1, 503, Optional.empty(), 0));
+    }
+}
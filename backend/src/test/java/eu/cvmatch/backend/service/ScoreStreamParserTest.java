@@ -0,0 +1,83 @@
+package eu.cvmatch.backend.service;
+
+import com.google.gson.Gson;
+import eu.cvmatch.backend.model.ScoreBreakdown;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoreStreamParserTest {
+
+    private final List<ScoreBreakdown> scores = new ArrayList<>();
+    private final StringBuilder streamed = new StringBuilder();
+
+    private final ScoreStreamParser parser = new ScoreStreamParser(new Gson(), new ScoreStreamListener() {
+        @Override
+        public void onScores(ScoreBreakdown breakdown) {
+            scores.add(breakdown);
+        }
+
+        @Override
+        public void onExplanation(String text) {
+            streamed.append(text);
+        }
+    });
+
+    @Test
+    void scoresSplitAcrossFragments_areReportedOnceComplete() {
+        parser.accept("{\"industryScore\":75,\"tech");
+        assertTrue(scores.isEmpty());
+
+        parser.accept("Score\":50,\"jdScore\":60,\"score\":58.5}\nIndustry: ");
+        parser.accept("strong fintech background.");
+
+        assertEquals(1, scores.size());
+        assertEquals(50.0, scores.get(0).getTechScore(), 1e-9);
+        assertEquals("Industry: strong fintech background.", streamed.toString());
+
+        ScoreBreakdown result = parser.result();
+        assertEquals(58.5, result.getScore(), 1e-9);
+        assertEquals("Industry: strong fintech background.", result.getExplanation());
+    }
+
+    @Test
+    void bracesInsideStrings_doNotEndTheObject() {
+        parser.accept("{\"industryScore\":0,\"techScore\":0,\"jdScore\":0,\"score\":0,\"note\":\"} {\\\"\"}");
+        parser.accept("No match.");
+
+        assertEquals(1, scores.size());
+        assertEquals("No match.", parser.result().getExplanation());
+    }
+
+    @Test
+    void streamWithoutScores_fails() {
+        parser.accept("I cannot evaluate this CV.");
+
+        assertThrows(IllegalStateException.class, parser::result);
+    }
+
+    @Test
+    void failingListener_stillGetsFullExplanationRecorded() {
+        List<String> heard = new ArrayList<>();
+        ScoreStreamParser disconnecting = new ScoreStreamParser(new Gson(), new ScoreStreamListener() {
+            @Override
+            public void onScores(ScoreBreakdown breakdown) {
+                throw new IllegalStateException("client went away");
+            }
+
+            @Override
+            public void onExplanation(String text) {
+                heard.add(text);
+            }
+        });
+
+        disconnecting.accept("{\"industryScore\":75,\"techScore\":50,\"jdScore\":60,\"score\":58.5}\nIndustry: ");
+        disconnecting.accept("strong fintech background.");
+
+        assertTrue(heard.isEmpty());
+        assertEquals("Industry: strong fintech background.", disconnecting.result().getExplanation());
+    }
+}
@@ -0,0 +1,149 @@
+package eu.cvmatch.backend.service;
+
+import eu.cvmatch.backend.config.GeminiProperties;
+import eu.cvmatch.backend.model.CVMatchResult;
+import eu.cvmatch.backend.model.JobPosting;
+import eu.cvmatch.backend.model.ScoringTier;
+import eu.cvmatch.backend.test.GeminiStubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The screening cascade of {@link ScoringService#rankJobsForCvAsync} against
+ * {@link GeminiStubServer}, which scores "Backend role n" as n * 10 whatever the model
+ * and wherever the job appears in the prompt.
+ */
+class ScoringCascadeTest {
+
+    private static final Pattern JOB = Pattern.compile("### Job (\\d+)[\\s\\S]*?Backend role (\\d+)");
+    private static final String CV = "Java developer with payments and Kubernetes experience";
+
+    private GeminiStubServer stub;
+    private GeminiProperties props;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new GeminiStubServer().dimensions(64).start();
+        stub.jsonReply(ScoringCascadeTest::jobsReply);
+        props = new GeminiProperties("test-key", null, null);
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        props.setResponseCacheSize(0);
+        props.setScoreBatchWindowMs(0);
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+
+    private static String jobsReply(String prompt) {
+        Matcher m = JOB.matcher(prompt);
+        if (!m.find()) {
+            return null;
+        }
+        StringBuilder json = new StringBuilder("[");
+        do {
+            int index = Integer.parseInt(m.group(1));
+            int role = Integer.parseInt(m.group(2));
+            json.append(json.length() > 1 ? "," : "")
+                    .append(String.format("{\"index\":%d,\"industryScore\":%d,\"techScore\":%d,\"jdScore\":%d,"
+                            + "\"score\":%d,\"explanation\":\"role %d\"}", index, role * 10, role * 10,
+                            role * 10, role * 10, role));
+        } while (m.find());
+        return json.append("]").toString();
+    }
+
+    private static List<JobPosting> jobs(int n) {
+        List<JobPosting> jobs = new ArrayList<>();
+        for (int i = 1; i <= n; i++) {
+            JobPosting job = new JobPosting();
+            job.setIndustry("Fintech");
+            job.setDescription("Backend role " + i + " on payment services");
+            job.setTechnicalSkills(new ArrayList<>());
+            jobs.add(job);
+        }
+        return jobs;
+    }
+
+    private List<CVMatchResult> rank(List<JobPosting> jobs) {
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props);
+        EmbeddingSimilarityService embeddings = new EmbeddingSimilarityService(client);
+        ScoringService service = new ScoringService(new CVScoring(client, embeddings, props), props);
+        List<String> descriptions = jobs.stream().map(JobPosting::getDescription).toList();
+        return service.rankJobsForCvAsync(CV, jobs, embeddings.cosineSimilaritiesAsync(CV, descriptions)).join();
+    }
+
+    private static long countTier(List<CVMatchResult> results, ScoringTier tier) {
+        return results.stream().filter(r -> r.getTier() == tier).count();
+    }
+
+    @Test
+    void screeningModel_scoresEverything_mainModelOnlyTheTopK() {
+        props.setScreenModelId("gemini-2.0-flash-lite");
+        props.setCascadeTopK(3);
+        props.setCascadeBorderline(0);
+
+        List<CVMatchResult> results = rank(jobs(10));
+
+        assertEquals(10, results.size());
+        assertEquals(1, stub.requestCount("generateContent", "gemini-2.0-flash-lite"));
+        assertEquals(1, stub.requestCount("generateContent", "gemini-2.0-flash"));
+        assertEquals(3, countTier(results, ScoringTier.FULL));
+        assertEquals(7, countTier(results, ScoringTier.SCREENING));
+        // Both models agree in the stub, so the finalists stay on top
+        List<CVMatchResult> best = results.stream()
+                .sorted(Comparator.comparingDouble(CVMatchResult::getScore).reversed())
+                .limit(3).toList();
+        best.forEach(r -> assertEquals(ScoringTier.FULL, r.getTier()));
+    }
+
+    @Test
+    void heuristicScreening_sendsOnlyFinalistsToTheModel() {
+        props.setScreenModelId(GeminiProperties.HEURISTIC_SCREEN);
+        props.setCascadeTopK(2);
+        props.setCascadeBorderline(0);
+
+        List<CVMatchResult> results = rank(jobs(6));
+
+        assertEquals(1, stub.requestCount("generateContent"));
+        assertEquals(2, countTier(results, ScoringTier.FULL));
+        assertEquals(4, countTier(results, ScoringTier.HEURISTIC));
+        results.forEach(r -> assertFalse(r.isProvisional()));
+    }
+
+    @Test
+    void noMoreJobsThanTopK_skipsScreening() {
+        props.setScreenModelId("gemini-2.0-flash-lite");
+        props.setCascadeTopK(5);
+
+        List<CVMatchResult> results = rank(jobs(4));
+
+        assertEquals(0, stub.requestCount("generateContent", "gemini-2.0-flash-lite"));
+        assertEquals(4, countTier(results, ScoringTier.FULL));
+    }
+
+    @Test
+    void finalists_includeBorderlineAndUnscreenedPairs() {
+        List<CVMatchResult> screened = Arrays.asList(
+                score(50), score(90), null, score(70), score(68), score(10));
+
+        // Top 2 are 90 and 70; 68 is within 3 points of 70; position 2 failed screening
+        assertEquals(List.of(1, 2, 3, 4), ScoringService.finalists(screened, 2, 3));
+        assertEquals(List.of(1, 2, 3), ScoringService.finalists(screened, 2, 0));
+    }
+
+    private static CVMatchResult score(double score) {
+        return new CVMatchResult(score, 0, 0, 0, "");
+    }
+}
@@ -1,7 +1,11 @@
 package eu.cvmatch.backend.service;
 
+import eu.cvmatch.backend.config.GeminiProperties;
 import eu.cvmatch.backend.model.CVMatchResult;
 import eu.cvmatch.backend.model.JobPosting;
+import eu.cvmatch.backend.test.GeminiStubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
@@ -11,7 +15,24 @@ import static org.junit.jupiter.api.Assertions.*;
 
 public class ScoringServiceTest {
 
-    private final ScoringService scoringService = new ScoringService(new CVScoring());
+    private GeminiStubServer stub;
+    private ScoringService scoringService;
+
+    @BeforeEach
+    public void startStub() throws Exception {
+        stub = new GeminiStubServer().dimensions(64).start();
+        GeminiProperties props = new GeminiProperties("test-key", null, null);
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        GenerativeLanguageClient client = new GenerativeLanguageClient(props);
+        scoringService = new ScoringService(
+                new CVScoring(client, new EmbeddingSimilarityService(client), props), props);
+    }
+
+    @AfterEach
+    public void stopStub() {
+        stub.close();
+    }
 
     @Test
     public void testScoreCVAgainstJob() throws Exception {
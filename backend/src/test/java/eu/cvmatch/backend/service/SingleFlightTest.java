@@ -0,0 +1,93 @@
+package eu.cvmatch.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void execute_sameKeyWhileInFlight_sharesOneCall() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        CompletableFuture<String> first = flight.execute("k", () -> { calls.incrementAndGet(); return upstream; });
+        CompletableFuture<String> second = flight.execute("k", () -> { calls.incrementAndGet(); return upstream; });
+
+        assertEquals(1, calls.get());
+        assertEquals(1, flight.size());
+        assertEquals(1, flight.getCoalescedCount());
+
+        upstream.complete("done");
+        assertEquals("done", first.get(1, TimeUnit.SECONDS));
+        assertEquals("done", second.get(1, TimeUnit.SECONDS));
+        assertEquals(0, flight.size());
+    }
+
+    @Test
+    void execute_afterCompletion_startsNewCall() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(1, flight.execute("k", () -> CompletableFuture.completedFuture(calls.incrementAndGet())).get().intValue());
+        assertEquals(2, flight.execute("k", () -> CompletableFuture.completedFuture(calls.incrementAndGet())).get().intValue());
+        assertEquals(0, flight.getCoalescedCount());
+    }
+
+    @Test
+    void execute_differentKeys_doNotShare() {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        flight.execute("a", () -> { calls.incrementAndGet(); return new CompletableFuture<>(); });
+        flight.execute("b", () -> { calls.incrementAndGet(); return new CompletableFuture<>(); });
+
+        assertEquals(2, calls.get());
+        assertEquals(2, flight.size());
+    }
+
+    @Test
+    void execute_failure_reachesAllCallers_andClearsKey() {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        CompletableFuture<String> first = flight.execute("k", () -> upstream);
+        CompletableFuture<String> second = flight.execute("k", () -> upstream);
+        upstream.completeExceptionally(new IllegalStateException("boom"));
+
+        ExecutionException e1 = assertThrows(ExecutionException.class, () -> first.get(1, TimeUnit.SECONDS));
+        ExecutionException e2 = assertThrows(ExecutionException.class, () -> second.get(1, TimeUnit.SECONDS));
+        assertTrue(e1.getCause() instanceof IllegalStateException);
+        assertTrue(e2.getCause() instanceof IllegalStateException);
+        assertEquals(0, flight.size());
+    }
+
+    @Test
+    void execute_cancellingOneCaller_leavesOthersWaiting() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        CompletableFuture<String> first = flight.execute("k", () -> upstream);
+        CompletableFuture<String> second = flight.execute("k", () -> upstream);
+        first.cancel(true);
+
+        upstream.complete("done");
+        assertEquals("done", second.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void execute_supplierThrows_failsAndClearsKey() {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+
+        CompletableFuture<String> result = flight.execute("k", () -> { throw new IllegalArgumentException("bad"); });
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(0, flight.size());
+    }
+}
@@ -1,11 +1,15 @@
 package eu.cvmatch.backend.service;
 
 import eu.cvmatch.backend.model.JobPosting;
+import eu.cvmatch.backend.test.GeminiStubConfig;
+import eu.cvmatch.backend.test.GeminiStubServer;
 import io.github.cdimascio.dotenv.Dotenv;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIf;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.List;
@@ -15,12 +19,32 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 @SpringBootTest
 @ActiveProfiles("integration")
+@Import(GeminiStubConfig.class)
 class SkillsSuggestionServiceIntegrationTest {
 
     @Autowired
     private SkillsSuggestionService skillsService;
 
+    /** Absent when GEMINI_LIVE_TESTS=true. */
+    @Autowired(required = false)
+    private GeminiStubServer stub;
+
+    @BeforeEach
+    void cannedExtractions() {
+        if (stub != null) {
+            stub.jsonReply(prompt -> prompt.contains("Marketing Manager")
+                    ? "{\"industry\":\"Marketing\",\"technicalSkills\":[{\"skill\":\"SEO\",\"weight\":60},"
+                            + "{\"skill\":\"Google Analytics\",\"weight\":40}]}"
+                    : "{\"industry\":\"Software\",\"technicalSkills\":[{\"skill\":\"Java\",\"weight\":40},"
+                            + "{\"skill\":\"Spring Boot\",\"weight\":30},{\"skill\":\"Docker\",\"weight\":30}]}");
+        }
+    }
+
+    // The stub needs no key; live runs do
     private static boolean isApiKeyAvailable() {
+        if (!GeminiStubConfig.isLive()) {
+            return true;
+        }
         Dotenv dotenv = Dotenv.configure()
                 .ignoreIfMissing()
                 .ignoreIfMalformed()
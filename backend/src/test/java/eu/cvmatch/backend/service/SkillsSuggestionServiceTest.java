@@ -1,8 +1,9 @@
 package eu.cvmatch.backend.service;
 
-import com.google.gson.JsonArray;
+import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import eu.cvmatch.backend.model.JobPosting;
+import eu.cvmatch.backend.model.JobSkillsExtraction;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -32,10 +33,8 @@ class SkillsSuggestionServiceTest {
         // Arrange
         String jobDescription = "We are looking for a Java developer with Spring experience";
 
-        // Create mock Gemini API response
-        JsonArray mockCandidates = new JsonArray();
-        JsonObject mockContent = new JsonObject();
-        mockContent.addProperty("content", """
+        // Create mock Gemini structured response
+        JobSkillsExtraction mockExtraction = new Gson().fromJson("""
                 {
                   "industry": "Software Development",
                   "technicalSkills": [
@@ -45,11 +44,10 @@ class SkillsSuggestionServiceTest {
                     {"skill": "SQL", "weight": 10}
                   ]
                 }
-                """);
-        mockCandidates.add(mockContent);
+                """, JobSkillsExtraction.class);
 
-        when(mockGlClient.generateMessage(anyList(), isNull(), eq(1)))
-                .thenReturn(mockCandidates);
+        when(mockGlClient.generateJson(anyList(), isNull(), any(JsonObject.class), eq(JobSkillsExtraction.class)))
+                .thenReturn(mockExtraction);
 
         // Act
         List<JobPosting.TechnicalSkill> result = service.suggestSkills(jobDescription);
@@ -89,8 +87,8 @@ class SkillsSuggestionServiceTest {
         String jobDescription = "Valid job description";
 
         // Mock empty response from Gemini
-        when(mockGlClient.generateMessage(anyList(), isNull(), eq(1)))
-                .thenReturn(new JsonArray());
+        when(mockGlClient.generateJson(anyList(), isNull(), any(JsonObject.class), eq(JobSkillsExtraction.class)))
+                .thenReturn(null);
 
         // Act & Assert
         Exception exception = assertThrows(IllegalStateException.class, () -> {
@@ -105,10 +103,8 @@ class SkillsSuggestionServiceTest {
         // Arrange
         String jobDescription = "We are looking for a Java developer with Spring experience";
 
-        // Create mock Gemini API response
-        JsonArray mockCandidates = new JsonArray();
-        JsonObject mockContent = new JsonObject();
-        mockContent.addProperty("content", """
+        // Create mock Gemini structured response
+        JobSkillsExtraction mockExtraction = new Gson().fromJson("""
                 {
                   "industry": "Software Development",
                   "technicalSkills": [
@@ -118,11 +114,10 @@ class SkillsSuggestionServiceTest {
                     {"skill": "SQL", "weight": 10}
                   ]
                 }
-                """);
-        mockCandidates.add(mockContent);
+                """, JobSkillsExtraction.class);
 
-        when(mockGlClient.generateMessage(anyList(), isNull(), eq(1)))
-                .thenReturn(mockCandidates);
+        when(mockGlClient.generateJson(anyList(), isNull(), any(JsonObject.class), eq(JobSkillsExtraction.class)))
+                .thenReturn(mockExtraction);
 
         // Act
         String result = service.extractIndustry(jobDescription);
@@ -0,0 +1,101 @@
+package eu.cvmatch.backend.test;
+
+import eu.cvmatch.backend.config.GeminiProperties;
+import eu.cvmatch.backend.model.JobPosting;
+import eu.cvmatch.backend.service.CVScoring;
+import eu.cvmatch.backend.service.EmbeddingSimilarityService;
+import eu.cvmatch.backend.service.GenerativeLanguageClient;
+import eu.cvmatch.backend.service.ScoringService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores CV/job pairs through {@link ScoringService} against {@link GeminiStubServer}
+ * and prints throughput and latency percentiles. Going through the service means the
+ * run measures what production does: micro-batching, the rate limiter, retries and
+ * the embedding and response caches. There are 50 CVs and 10 jobs, so runs of more
+ * than 50 pairs repeat pairs and hit the response cache.
+ *
+ * Usage: {@code GeminiLoadRun [pairs] [medianLatencyMs] [sigma] [429 rate] [503 rate]}.
+ * Batching, limiter, retry and cache settings come from .env as usual, so the same
+ * run can compare configurations.
+ */
+public class GeminiLoadRun {
+
+    public static void main(String[] args) throws Exception {
+        int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        double median = args.length > 1 ? Double.parseDouble(args[1]) : 150;
+        double sigma = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+        double throttle = args.length > 3 ? Double.parseDouble(args[3]) : 0.0;
+        double serverErrors = args.length > 4 ? Double.parseDouble(args[4]) : 0.0;
+
+        try (GeminiStubServer stub = new GeminiStubServer()
+                .latency(GeminiStubServer.Latency.logNormal(median, sigma))
+                .throttleRate(throttle)
+                .serverErrorRate(serverErrors)
+                .start()) {
+            GeminiProperties props = GeminiProperties.fromEnv();
+            props.setApiKey("load-run");
+            props.setBaseUrl(stub.baseUrl());
+            props.setEmbedCacheDir("");
+            GenerativeLanguageClient client = new GenerativeLanguageClient(props);
+            ScoringService scoring = new ScoringService(
+                    new CVScoring(client, new EmbeddingSimilarityService(client), props), props);
+            List<JobPosting> jobs = new ArrayList<>();
+            for (int j = 0; j < 10; j++) {
+                jobs.add(job(j));
+            }
+
+            long[] latencies = new long[pairs];
+            List<CompletableFuture<?>> calls = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < pairs; i++) {
+                int n = i;
+                long sent = System.nanoTime();
+                String cv = "Candidate " + (n % 50) + " java spring kubernetes sql";
+                calls.add(scoring.scoreCVAgainstJobAsync(cv, jobs.get(n % 10))
+                        .whenComplete((ok, err) -> latencies[n] = System.nanoTime() - sent));
+            }
+
+            long failures = 0;
+            for (CompletableFuture<?> call : calls) {
+                try {
+                    call.join();
+                } catch (RuntimeException e) {
+                    failures++;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            System.out.printf("%d pairs in %.2f s (%.1f pairs/s), %d failed%n", pairs, seconds, pairs / seconds, failures);
+            System.out.printf("latency ms: p50 %d, p95 %d, p99 %d, max %d%n",
+                    millis(latencies, 0.50), millis(latencies, 0.95), millis(latencies, 0.99),
+                    TimeUnit.NANOSECONDS.toMillis(latencies[pairs - 1]));
+            System.out.printf("stub requests: generateContent %d, embedContent %d, batchEmbedContents %d%n",
+                    stub.requestCount("generateContent"), stub.requestCount("embedContent"),
+                    stub.requestCount("batchEmbedContents"));
+        }
+        System.exit(0);
+    }
+
+    private static JobPosting job(int n) {
+        JobPosting.TechnicalSkill java = new JobPosting.TechnicalSkill();
+        java.setSkill("Java");
+        java.setWeight(100);
+        JobPosting job = new JobPosting();
+        job.setIndustry("Fintech");
+        job.setDescription("Job " + n + " backend java developer");
+        job.setTechnicalSkills(new ArrayList<>(List.of(java)));
+        return job;
+    }
+
+    private static long millis(long[] sorted, double quantile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+    }
+}
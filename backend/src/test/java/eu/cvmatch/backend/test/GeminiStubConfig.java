@@ -0,0 +1,43 @@
+package eu.cvmatch.backend.test;
+
+import eu.cvmatch.backend.config.GeminiProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+
+/**
+ * Points a Spring test context at a {@link GeminiStubServer} instead of the real API.
+ * Integration tests import it so they run offline and never spend quota; set
+ * {@code GEMINI_LIVE_TESTS=true} to run them against Gemini with the key from .env.
+ *
+ * Tests can autowire the stub (with {@code required = false}, since it is absent in
+ * live runs) to set canned replies.
+ */
+@TestConfiguration
+@ConditionalOnProperty(name = "GEMINI_LIVE_TESTS", havingValue = "false", matchIfMissing = true)
+public class GeminiStubConfig {
+
+    /** True when {@code GEMINI_LIVE_TESTS=true}: integration tests talk to the real API. */
+    public static boolean isLive() {
+        return Boolean.parseBoolean(System.getenv("GEMINI_LIVE_TESTS"));
+    }
+
+    @Bean(destroyMethod = "close")
+    public GeminiStubServer geminiStubServer() throws IOException {
+        return new GeminiStubServer().start();
+    }
+
+    /** The usual .env tuning, but sent to the stub and with nothing cached on disk. */
+    @Bean
+    @Primary
+    public GeminiProperties stubGeminiProperties(GeminiStubServer stub) {
+        GeminiProperties props = GeminiProperties.fromEnv();
+        props.setApiKey("test-key");
+        props.setBaseUrl(stub.baseUrl());
+        props.setEmbedCacheDir("");
+        return props;
+    }
+}
@@ -0,0 +1,582 @@
+package eu.cvmatch.backend.test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Local stand-in for the Gemini REST API, for offline tests and load runs.
+ *
+ * Serves {@code GET /v1/models} and {@code POST /v1/models/{model}:generateContent},
+ * {@code :streamGenerateContent} (SSE), {@code :embedContent} and {@code :batchEmbedContents}, the same under
+ * {@code /v1beta}, plus context caching: {@code /v1beta/cachedContents} can be created, read and deleted, and
+ * generation requests naming a {@code cachedContent} are answered as if its text preceded the prompt. Replies
+ * are deterministic:
+ * <ul>
+ *   <li>structured requests (with a {@code responseSchema}) get JSON matching the
+ *       schema, with numbers derived from a hash of the prompt, in [0, 100], unless
+ *       {@link #jsonReply} supplies the JSON;</li>
+ *   <li>free-form requests get a short text echoing the prompt hash, or whatever
+ *       {@link #textReply} produces;</li>
+ *   <li>embeddings are bag-of-words vectors: each word maps to a fixed
+ *       pseudo-random direction, so texts that share words have a higher cosine.</li>
+ * </ul>
+ * Latency per endpoint and the share of 429 / 503 replies are configurable, so the
+ * client's limiter, retries and tail latency can be measured without a quota.
+ *
+ * Point the client at it with {@code GeminiProperties.setBaseUrl(stub.baseUrl())}
+ * or {@code GEMINI_BASE_URL}. Run {@link #main} to keep one up for a load run.
+ */
+public class GeminiStubServer implements AutoCloseable {
+
+    /** Samples a response delay in milliseconds. */
+    @FunctionalInterface
+    public interface Latency {
+        long sampleMillis(Random random);
+
+        static Latency none() {
+            return random -> 0;
+        }
+
+        static Latency fixed(long millis) {
+            return random -> millis;
+        }
+
+        static Latency uniform(long minMillis, long maxMillis) {
+            return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+        }
+
+        /** Long-tailed: the median is {@code medianMillis}, {@code sigma} controls how heavy the tail is. */
+        static Latency logNormal(double medianMillis, double sigma) {
+            return random -> (long) (medianMillis * Math.exp(sigma * random.nextGaussian()));
+        }
+    }
+
+    private final Gson gson = new Gson();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Latency> latencies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> modelRequestCounts = new ConcurrentHashMap<>();
+    private final Map<String, CachedContent> cachedContents = new ConcurrentHashMap<>();
+    private final AtomicLong cachedContentIds = new AtomicLong();
+    private volatile double throttleRate;
+    private volatile double serverErrorRate;
+    private volatile int retryAfterSeconds = -1;
+    private volatile int dimensions = 768;
+    private volatile Function<String, String> textReply = prompt -> "Stub reply " + Integer.toHexString(prompt.hashCode());
+    private volatile int streamChunkChars = 16;
+    private volatile Function<String, String> jsonReply = prompt -> null;
+
+    public GeminiStubServer() throws IOException {
+        this(0);
+    }
+
+    /** @param port port to bind on localhost; 0 picks a free one */
+    public GeminiStubServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "gemini-stub");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v1/models", this::handle);
+        server.createContext("/v1beta/models", this::handle);
+        server.createContext("/v1beta/cachedContents", this::handle);
+    }
+
+    public GeminiStubServer start() {
+        server.start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** Base URL to hand to the client, e.g. {@code http://127.0.0.1:54321}. */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** Delay for one endpoint: {@code generateContent}, {@code embedContent}, {@code batchEmbedContents}, {@code cachedContents} or {@code models}. */
+    public GeminiStubServer latency(String endpoint, Latency latency) {
+        latencies.put(endpoint, latency);
+        return this;
+    }
+
+    /** Delay for every endpoint without its own setting. */
+    public GeminiStubServer latency(Latency latency) {
+        latencies.put("*", latency);
+        return this;
+    }
+
+    /** Share of requests, in [0, 1], answered with 429 RESOURCE_EXHAUSTED. */
+    public GeminiStubServer throttleRate(double rate) {
+        this.throttleRate = rate;
+        return this;
+    }
+
+    /** Share of requests, in [0, 1], answered with 503 UNAVAILABLE. */
+    public GeminiStubServer serverErrorRate(double rate) {
+        this.serverErrorRate = rate;
+        return this;
+    }
+
+    /** Retry-After value sent with injected 429s; negative omits the header. */
+    public GeminiStubServer retryAfterSeconds(int seconds) {
+        this.retryAfterSeconds = seconds;
+        return this;
+    }
+
+    /** Text returned for free-form (schema-less) generation, given the prompt. */
+    public GeminiStubServer textReply(Function<String, String> textReply) {
+        this.textReply = textReply;
+        return this;
+    }
+
+    /**
+     * JSON returned for schema-constrained generation, given the prompt; returning null
+     * falls back to a value synthesized from the schema.
+     */
+    public GeminiStubServer jsonReply(Function<String, String> jsonReply) {
+        this.jsonReply = jsonReply;
+        return this;
+    }
+
+    /**
+     * Size of each streamGenerateContent event. The delay between events comes from
+     * {@code latency("streamChunk", ...)}.
+     */
+    public GeminiStubServer streamChunkChars(int chars) {
+        this.streamChunkChars = Math.max(1, chars);
+        return this;
+    }
+
+    public GeminiStubServer dimensions(int dimensions) {
+        this.dimensions = dimensions;
+        return this;
+    }
+
+    /** Requests received for an endpoint, including injected failures. */
+    public long requestCount(String endpoint) {
+        AtomicLong count = requestCounts.get(endpoint);
+        return count == null ? 0 : count.get();
+    }
+
+    /** Requests received for an endpoint of one model, e.g. ({@code generateContent}, {@code gemini-2.0-flash}). */
+    public long requestCount(String endpoint, String model) {
+        AtomicLong count = modelRequestCounts.get(endpoint + "@" + model);
+        return count == null ? 0 : count.get();
+    }
+
+    /** Cached contents currently stored (created, not deleted, not expired). */
+    public int cachedContentCount() {
+        long now = System.currentTimeMillis();
+        cachedContents.values().removeIf(c -> c.expiresAtMillis <= now);
+        return cachedContents.size();
+    }
+
+    /** Forgets every cached content, as if their TTLs had run out. */
+    public void expireCachedContents() {
+        cachedContents.clear();
+    }
+
+    public void resetCounts() {
+        requestCounts.clear();
+        modelRequestCounts.clear();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            int colon = path.lastIndexOf(':');
+            String endpoint = path.contains("/cachedContents") ? "cachedContents"
+                    : colon >= 0 ? path.substring(colon + 1) : "models";
+            String model = colon >= 0 ? path.substring(path.indexOf("/models/") + "/models/".length(), colon) : null;
+            requestCounts.computeIfAbsent(endpoint, k -> new AtomicLong()).incrementAndGet();
+            if (model != null) {
+                modelRequestCounts.computeIfAbsent(endpoint + "@" + model, k -> new AtomicLong()).incrementAndGet();
+            }
+
+            sleep(latencies.getOrDefault(endpoint, latencies.getOrDefault("*", Latency.none())));
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < throttleRate) {
+                if (retryAfterSeconds >= 0) {
+                    exchange.getResponseHeaders().add("Retry-After", Integer.toString(retryAfterSeconds));
+                }
+                reply(exchange, 429, error(429, "RESOURCE_EXHAUSTED", "Quota exceeded (stub)"));
+                return;
+            }
+            if (random.nextDouble() < serverErrorRate) {
+                reply(exchange, 503, error(503, "UNAVAILABLE", "The model is overloaded (stub)"));
+                return;
+            }
+
+            JsonObject request = readBody(exchange);
+            switch (endpoint) {
+                case "models" -> reply(exchange, 200, listModels());
+                case "generateContent" -> reply(exchange, 200, generateContent(request));
+                case "streamGenerateContent" -> {
+                    JsonObject reply = generateContent(request);
+                    if (reply.has("error")) {
+                        reply(exchange, 200, reply);
+                    } else {
+                        streamGenerateContent(exchange, reply);
+                    }
+                }
+                case "cachedContents" -> reply(exchange, 200, cachedContents(exchange.getRequestMethod(), path, request));
+                case "embedContent" -> reply(exchange, 200, embedContent(request));
+                case "batchEmbedContents" -> reply(exchange, 200, batchEmbedContents(request, model));
+                default -> reply(exchange, 404, error(404, "NOT_FOUND", "Unknown method " + endpoint));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private JsonObject listModels() {
+        JsonArray models = new JsonArray();
+        for (String name : new String[]{"gemini-2.0-flash", "embedding-001"}) {
+            JsonObject model = new JsonObject();
+            model.addProperty("name", "models/" + name);
+            models.add(model);
+        }
+        JsonObject out = new JsonObject();
+        out.add("models", models);
+        return out;
+    }
+
+    private JsonObject generateContent(JsonObject request) {
+        String cachedText = "";
+        if (request.has("cachedContent")) {
+            CachedContent cached = cachedContents.get(request.get("cachedContent").getAsString());
+            if (cached == null || cached.expiresAtMillis <= System.currentTimeMillis()) {
+                return error(404, "NOT_FOUND", "CachedContent not found (or permission denied)");
+            }
+            cachedText = cached.text;
+        }
+        String prompt = cachedText + promptText(request);
+        SplittableRandom random = new SplittableRandom(prompt.hashCode());
+
+        JsonObject config = request.getAsJsonObject("generationConfig");
+        int candidateCount = config != null && config.has("candidateCount") ? config.get("candidateCount").getAsInt() : 1;
+        JsonObject schema = config != null ? config.getAsJsonObject("responseSchema") : null;
+
+        JsonArray candidates = new JsonArray();
+        int candidateTokens = 0;
+        for (int i = 0; i < Math.max(1, candidateCount); i++) {
+            String custom = schema != null ? jsonReply.apply(prompt) : null;
+            String text = custom != null ? custom
+                    : schema != null ? gson.toJson(synthesize(schema, random))
+                    : textReply.apply(prompt);
+            candidateTokens += tokens(text);
+
+            JsonObject part = new JsonObject();
+            part.addProperty("text", text);
+            JsonArray parts = new JsonArray();
+            parts.add(part);
+            JsonObject content = new JsonObject();
+            content.add("parts", parts);
+            content.addProperty("role", "model");
+
+            JsonObject candidate = new JsonObject();
+            candidate.add("content", content);
+            candidate.addProperty("finishReason", "STOP");
+            candidate.addProperty("index", i);
+            candidates.add(candidate);
+        }
+
+        JsonObject out = new JsonObject();
+        out.add("candidates", candidates);
+        JsonObject usage = usage(tokens(prompt), candidateTokens);
+        if (!cachedText.isEmpty()) {
+            usage.addProperty("cachedContentTokenCount", tokens(cachedText));
+        }
+        out.add("usageMetadata", usage);
+        return out;
+    }
+
+    /** {@code POST /v1beta/cachedContents}, and {@code GET} or {@code DELETE} of {@code /v1beta/cachedContents/{id}}. */
+    private JsonObject cachedContents(String method, String path, JsonObject request) {
+        if (method.equals("POST")) {
+            String ttl = request.has("ttl") ? request.get("ttl").getAsString() : "3600s";
+            long ttlMillis = (long) (Double.parseDouble(ttl.substring(0, ttl.length() - 1)) * 1000);
+            CachedContent cached = new CachedContent("cachedContents/stub-" + cachedContentIds.incrementAndGet(),
+                    request.get("model").getAsString(), promptText(request), System.currentTimeMillis() + ttlMillis);
+            cachedContents.put(cached.name, cached);
+            return cached.toJson();
+        }
+        String name = path.substring(path.indexOf("cachedContents/"));
+        CachedContent cached = method.equals("DELETE") ? cachedContents.remove(name) : cachedContents.get(name);
+        if (cached == null) {
+            return error(404, "NOT_FOUND", "CachedContent not found (or permission denied)");
+        }
+        return method.equals("DELETE") ? new JsonObject() : cached.toJson();
+    }
+
+    private static final class CachedContent {
+        final String name;
+        final String model;
+        final String text;
+        final long expiresAtMillis;
+
+        CachedContent(String name, String model, String text, long expiresAtMillis) {
+            this.name = name;
+            this.model = model;
+            this.text = text;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        JsonObject toJson() {
+            JsonObject out = new JsonObject();
+            out.addProperty("name", name);
+            out.addProperty("model", model);
+            out.addProperty("expireTime", Instant.ofEpochMilli(expiresAtMillis).toString());
+            JsonObject usage = new JsonObject();
+            usage.addProperty("totalTokenCount", tokens(text));
+            out.add("usageMetadata", usage);
+            return out;
+        }
+    }
+
+    /** Rough count, about four characters per token. */
+    private static int tokens(String text) {
+        return (text.length() + 3) / 4;
+    }
+
+    private static JsonObject usage(int promptTokens, int candidateTokens) {
+        JsonObject usage = new JsonObject();
+        usage.addProperty("promptTokenCount", promptTokens);
+        usage.addProperty("candidatesTokenCount", candidateTokens);
+        usage.addProperty("totalTokenCount", promptTokens + candidateTokens);
+        return usage;
+    }
+
+    /**
+     * Sends the first candidate's text as server-sent events of {@code streamChunkChars}
+     * characters each. Like Gemini, every event carries the usage so far.
+     */
+    private void streamGenerateContent(HttpExchange exchange, JsonObject reply) throws IOException {
+        int promptTokens = reply.getAsJsonObject("usageMetadata").get("promptTokenCount").getAsInt();
+        String text = reply.getAsJsonArray("candidates").get(0).getAsJsonObject()
+                .getAsJsonObject("content").getAsJsonArray("parts").get(0).getAsJsonObject()
+                .get("text").getAsString();
+        Latency chunkLatency = latencies.getOrDefault("streamChunk", Latency.none());
+
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int start = 0; start < text.length(); start += streamChunkChars) {
+                String piece = text.substring(start, Math.min(text.length(), start + streamChunkChars));
+                JsonObject part = new JsonObject();
+                part.addProperty("text", piece);
+                JsonArray parts = new JsonArray();
+                parts.add(part);
+                JsonObject content = new JsonObject();
+                content.add("parts", parts);
+                JsonObject candidate = new JsonObject();
+                candidate.add("content", content);
+                JsonArray candidates = new JsonArray();
+                candidates.add(candidate);
+                JsonObject event = new JsonObject();
+                event.add("candidates", candidates);
+                event.add("usageMetadata", usage(promptTokens, tokens(text.substring(0, start + piece.length()))));
+
+                out.write(("data: " + gson.toJson(event) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                sleep(chunkLatency);
+            }
+        }
+    }
+
+    /** Builds a value matching an OpenAPI-style schema; numbers fall in [0, 100]. */
+    private JsonElement synthesize(JsonObject schema, SplittableRandom random) {
+        String type = schema.has("type") ? schema.get("type").getAsString().toUpperCase() : "STRING";
+        switch (type) {
+            case "OBJECT" -> {
+                JsonObject out = new JsonObject();
+                JsonObject properties = schema.getAsJsonObject("properties");
+                if (properties != null) {
+                    for (Map.Entry<String, JsonElement> property : properties.entrySet()) {
+                        out.add(property.getKey(), synthesize(property.getValue().getAsJsonObject(), random));
+                    }
+                }
+                return out;
+            }
+            case "ARRAY" -> {
+                JsonArray out = new JsonArray();
+                JsonObject items = schema.getAsJsonObject("items");
+                for (int i = 0; i < 3 && items != null; i++) {
+                    out.add(synthesize(items, random));
+                }
+                return out;
+            }
+            case "NUMBER" -> {
+                return gson.toJsonTree(Math.round(random.nextDouble(100.0) * 10) / 10.0);
+            }
+            case "INTEGER" -> {
+                return gson.toJsonTree(random.nextInt(101));
+            }
+            case "BOOLEAN" -> {
+                return gson.toJsonTree(random.nextBoolean());
+            }
+            default -> {
+                return gson.toJsonTree("stub-" + Integer.toHexString(random.nextInt()));
+            }
+        }
+    }
+
+    private JsonObject embedContent(JsonObject request) {
+        JsonObject out = new JsonObject();
+        out.add("embedding", embedding(contentText(request.getAsJsonObject("content"))));
+        return out;
+    }
+
+    private JsonObject batchEmbedContents(JsonObject request, String model) {
+        JsonArray embeddings = new JsonArray();
+        for (JsonElement element : request.getAsJsonArray("requests")) {
+            JsonObject single = element.getAsJsonObject();
+            String requestModel = single.has("model") ? single.get("model").getAsString() : null;
+            if (requestModel != null && !requestModel.equals("models/" + model)) {
+                return error(400, "INVALID_ARGUMENT", "Model in request " + requestModel + " doesn't match models/" + model);
+            }
+            embeddings.add(embedding(contentText(single.getAsJsonObject("content"))));
+        }
+        JsonObject out = new JsonObject();
+        out.add("embeddings", embeddings);
+        return out;
+    }
+
+    private JsonObject embedding(String text) {
+        int dim = dimensions;
+        double[] vector = new double[dim];
+        for (String word : text.toLowerCase().split("\\W+")) {
+            if (word.isEmpty()) continue;
+            SplittableRandom random = new SplittableRandom(word.hashCode());
+            for (int i = 0; i < dim; i++) {
+                vector[i] += random.nextDouble(-1.0, 1.0);
+            }
+        }
+        double norm = 0;
+        for (double v : vector) norm += v * v;
+        norm = Math.sqrt(norm);
+
+        JsonArray values = new JsonArray();
+        for (double v : vector) {
+            values.add(norm == 0 ? 0.0 : (float) (v / norm));
+        }
+        JsonObject embedding = new JsonObject();
+        embedding.add("values", values);
+        return embedding;
+    }
+
+    private static String promptText(JsonObject request) {
+        StringBuilder sb = new StringBuilder();
+        JsonArray contents = request.getAsJsonArray("contents");
+        if (contents != null) {
+            for (JsonElement content : contents) {
+                sb.append(contentText(content.getAsJsonObject()));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String contentText(JsonObject content) {
+        StringBuilder sb = new StringBuilder();
+        if (content != null && content.has("parts")) {
+            for (JsonElement part : content.getAsJsonArray("parts")) {
+                JsonObject p = part.getAsJsonObject();
+                if (p.has("text")) {
+                    sb.append(p.get("text").getAsString());
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private JsonObject readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return body.isBlank() ? new JsonObject() : gson.fromJson(body, JsonObject.class);
+        }
+    }
+
+    private static JsonObject error(int code, String status, String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("code", code);
+        error.addProperty("message", message);
+        error.addProperty("status", status);
+        JsonObject out = new JsonObject();
+        out.add("error", error);
+        return out;
+    }
+
+    private void reply(HttpExchange exchange, int status, JsonObject body) throws IOException {
+        if (body.has("error")) {
+            status = body.getAsJsonObject("error").get("code").getAsInt();
+        }
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(Latency latency) {
+        long millis = latency.sampleMillis(ThreadLocalRandom.current());
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs a stub until the process is killed, e.g. for a load run:
+     * {@code GeminiStubServer 8089 120 0.4 0.02 0.01}
+     * (port, median latency ms, latency sigma, 429 rate, 503 rate).
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        double median = args.length > 1 ? Double.parseDouble(args[1]) : 150;
+        double sigma = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+        double throttle = args.length > 3 ? Double.parseDouble(args[3]) : 0.0;
+        double serverErrors = args.length > 4 ? Double.parseDouble(args[4]) : 0.0;
+
+        GeminiStubServer stub = new GeminiStubServer(port)
+                .latency(Latency.logNormal(median, sigma))
+                .throttleRate(throttle)
+                .serverErrorRate(serverErrors)
+                .start();
+        System.out.println("Gemini stub listening on " + stub.baseUrl() + " (set GEMINI_BASE_URL to use it)");
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,107 @@
+package eu.cvmatch.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PromptCompactorTest {
+
+    private static String repeat(String sentence, int times) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            out.append(sentence).append(" (").append(i).append(")\n");
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void normalize_collapsesWhitespaceAndDropsPageBoilerplate() {
+        String extracted = "Jane Doe  —  Curriculum Vitae\r\n"
+                + "  Java\t\tdeveloper​  \n\n\n\n"
+                + "• Spring Boot\n"
+                + "Page 1 of 2\n"
+                + "Jane Doe  —  Curriculum Vitae\n"
+                + "Kafka\n";
+
+        assertEquals("Jane Doe — Curriculum Vitae\nJava developer\n\n- Spring Boot\n\nKafka",
+                PromptCompactor.normalize(extracted));
+    }
+
+    @Test
+    public void normalize_keepsHeadingsRepeatedUnderEachJob() {
+        String cv = "Senior Developer, Acme\n"
+                + "Responsibilities:\n"
+                + "Technologies: Java, Spring Boot\n"
+                + "Developer, Initech\n"
+                + "Responsibilities:\n"
+                + "Technologies: Java, Spring Boot\n";
+
+        assertEquals(cv.strip(), PromptCompactor.normalize(cv));
+    }
+
+    @Test
+    public void normalize_dropsRunningHeaderAtFormFeeds_keepsRepeatsWithinPages() {
+        String cv = "Jane Doe CV\n"
+                + "Acme\nResponsibilities:\nBuilt APIs\n\f"
+                + "Jane Doe CV\n"
+                + "Initech\nResponsibilities:\nBuilt APIs\nRan the release train\n";
+
+        assertEquals("Jane Doe CV\nAcme\nResponsibilities:\nBuilt APIs\n\n"
+                        + "Initech\nResponsibilities:\nBuilt APIs\nRan the release train",
+                PromptCompactor.normalize(cv));
+    }
+
+    @Test
+    public void fit_textWithinBudget_isUnchanged() {
+        String text = "SKILLS\nJava, Spring";
+
+        assertEquals(text, PromptCompactor.fit(text, 100));
+    }
+
+    @Test
+    public void fit_dropsLowValueSectionsFirst() {
+        String experience = "EXPERIENCE\nBackend engineer at Acme, built payment services in Java.";
+        String text = experience + "\n\nHobbies:\n" + repeat("Hiking, chess and photography", 20);
+
+        String fitted = PromptCompactor.fit(text, TokenEstimator.estimate(experience) + 5);
+
+        assertEquals(experience, fitted);
+    }
+
+    @Test
+    public void fit_keepsTheStartOfEverySection_withinBudget() {
+        String text = "SUMMARY\nSenior Java engineer.\n\n"
+                + "EXPERIENCE\n" + repeat("Led a team building low-latency trading systems", 200) + "\n"
+                + "EDUCATION\n" + repeat("BSc Computer Science, Politehnica Bucharest", 50);
+        int budget = 400;
+
+        String fitted = PromptCompactor.fit(text, budget);
+
+        assertTrue(TokenEstimator.estimate(fitted) <= budget);
+        assertTrue(fitted.contains("Senior Java engineer."));
+        assertTrue(fitted.contains("EXPERIENCE\nLed a team building low-latency trading systems (0)"));
+        assertTrue(fitted.contains("EDUCATION\nBSc Computer Science, Politehnica Bucharest (0)"));
+        assertTrue(fitted.contains("[…]"));
+    }
+
+    @Test
+    public void compactPair_shortDescriptionIsKept_cvTakesTheRest() {
+        PromptCompactor compactor = new PromptCompactor(1000);
+        String description = "Java developer for our payments team.";
+        String cv = "EXPERIENCE\n" + repeat("Built REST services with Spring Boot and PostgreSQL", 300);
+
+        String[] texts = compactor.compactPair(cv, description, 200);
+
+        assertEquals(description, texts[1]);
+        assertTrue(TokenEstimator.estimate(texts[0]) + TokenEstimator.estimate(texts[1]) <= 800);
+        assertTrue(TokenEstimator.estimate(texts[0]) > 600);
+    }
+
+    @Test
+    public void tokenEstimator_countsWordPiecesAndPunctuation() {
+        assertEquals(0, TokenEstimator.estimate("   "));
+        assertEquals(1, TokenEstimator.estimate("Java"));
+        assertEquals(3, TokenEstimator.estimate("Kubernetes"));
+        assertEquals(5, TokenEstimator.estimate("C++, Go"));
+    }
+}
@@ -0,0 +1,103 @@
+package eu.cvmatch.backend.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The scalar and Vector API similarity kernels on one pair and on one query against
+ * {@code rows} stored vectors, the shape of ranking a CV against every job.
+ * <p>
+ * Run with {@code java --add-modules jdk.incubator.vector -cp target/test-classes:<test classpath>
+ * eu.cvmatch.backend.utils.SimilarityKernelBenchmark}; without the module only the scalar
+ * benchmarks can run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class SimilarityKernelBenchmark {
+
+    @Param({"768", "3072"})
+    public int dimensions;
+
+    @Param({"20000"})
+    public int rows;
+
+    private final SimilarityKernel scalar = SimilarityKernels.scalar();
+    private SimilarityKernel vectorApi;
+    private float[] query;
+    private float[][] rowArrays;
+    private float[] matrix;
+    private float[] out;
+
+    @Setup
+    public void buildVectors() {
+        vectorApi = SimilarityKernels.vectorApi();
+        if (vectorApi == null) {
+            throw new IllegalStateException("Run with --add-modules jdk.incubator.vector");
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        query = randomVector(random);
+        rowArrays = new float[rows][];
+        matrix = new float[rows * dimensions];
+        for (int r = 0; r < rows; r++) {
+            rowArrays[r] = randomVector(random);
+            System.arraycopy(rowArrays[r], 0, matrix, r * dimensions, dimensions);
+        }
+        out = new float[rows];
+    }
+
+    @Benchmark
+    public float scalarDot() {
+        return scalar.dot(query, rowArrays[0]);
+    }
+
+    @Benchmark
+    public float vectorApiDot() {
+        return vectorApi.dot(query, rowArrays[0]);
+    }
+
+    @Benchmark
+    public void scalarDotManyRows(Blackhole bh) {
+        scalar.dotMany(query, rowArrays, out);
+        bh.consume(out);
+    }
+
+    @Benchmark
+    public void vectorApiDotManyRows(Blackhole bh) {
+        vectorApi.dotMany(query, rowArrays, out);
+        bh.consume(out);
+    }
+
+    @Benchmark
+    public void scalarDotManyMatrix(Blackhole bh) {
+        scalar.dotMany(query, matrix, 0, rows, out);
+        bh.consume(out);
+    }
+
+    @Benchmark
+    public void vectorApiDotManyMatrix(Blackhole bh) {
+        vectorApi.dotMany(query, matrix, 0, rows, out);
+        bh.consume(out);
+    }
+
+    private float[] randomVector(SplittableRandom random) {
+        float[] v = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            v[i] = (float) random.nextDouble(-0.1, 0.1);
+        }
+        return v;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] jmhArgs = new String[args.length + 1];
+        jmhArgs[0] = SimilarityKernelBenchmark.class.getSimpleName();
+        System.arraycopy(args, 0, jmhArgs, 1, args.length);
+        org.openjdk.jmh.Main.main(jmhArgs);
+    }
+}
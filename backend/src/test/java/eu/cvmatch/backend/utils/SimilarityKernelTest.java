@@ -0,0 +1,148 @@
+package eu.cvmatch.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimilarityKernelTest {
+
+    // Lengths around typical lane counts, plus real embedding sizes
+    private static final int[] LENGTHS = {1, 3, 7, 8, 17, 33, 768, 3072};
+
+    @Test
+    void dot_matchesDoubleReference() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (SimilarityKernel kernel : kernels()) {
+            for (int length : LENGTHS) {
+                float[] a = randomVector(random, length);
+                float[] b = randomVector(random, length);
+
+                assertEquals(reference(a, b, 0), kernel.dot(a, b), 1e-4, kernel.name() + " at " + length);
+            }
+        }
+    }
+
+    @Test
+    void dotMany_rowsAndMatrix_matchSinglePairs() {
+        SplittableRandom random = new SplittableRandom(11);
+        for (SimilarityKernel kernel : kernels()) {
+            for (int length : LENGTHS) {
+                float[] query = randomVector(random, length);
+                float[][] rows = new float[5][];
+                float[] matrix = new float[rows.length * length];
+                for (int r = 0; r < rows.length; r++) {
+                    rows[r] = randomVector(random, length);
+                    System.arraycopy(rows[r], 0, matrix, r * length, length);
+                }
+
+                float[] fromRows = new float[rows.length];
+                float[] fromMatrix = new float[rows.length];
+                kernel.dotMany(query, rows, fromRows);
+                kernel.dotMany(query, matrix, 0, rows.length, fromMatrix);
+                float[] tail = new float[2];
+                kernel.dotMany(query, matrix, rows.length - 2, 2, tail);
+
+                for (int r = 0; r < rows.length; r++) {
+                    assertEquals(reference(query, matrix, r * length), fromRows[r], 1e-4, kernel.name());
+                    assertEquals(fromRows[r], fromMatrix[r], kernel.name());
+                }
+                assertEquals(fromRows[rows.length - 2], tail[0], kernel.name());
+                assertEquals(fromRows[rows.length - 1], tail[1], kernel.name());
+            }
+        }
+    }
+
+    @Test
+    void int8Dot_matchesIntReference() {
+        SplittableRandom random = new SplittableRandom(13);
+        for (SimilarityKernel kernel : kernels()) {
+            for (int length : LENGTHS) {
+                byte[] query = new byte[length];
+                byte[] codes = new byte[3 * length];
+                for (int i = 0; i < query.length; i++) {
+                    query[i] = (byte) random.nextInt(-127, 128);
+                }
+                for (int i = 0; i < codes.length; i++) {
+                    codes[i] = (byte) random.nextInt(-127, 128);
+                }
+
+                for (int row = 0; row < 3; row++) {
+                    int expected = 0;
+                    for (int i = 0; i < length; i++) {
+                        expected += query[i] * codes[row * length + i];
+                    }
+                    assertEquals(expected, kernel.dot(query, codes, row), kernel.name() + " at " + length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void int8Dot_on128BitVectors_matchesScalar() {
+        // The int vector width of NEON and SSE-only CPUs
+        SimilarityKernel narrow = SimilarityKernels.vectorApi(128);
+        if (narrow == null) {
+            return;
+        }
+        SimilarityKernel scalar = SimilarityKernels.scalar();
+        SplittableRandom random = new SplittableRandom(17);
+        for (int length : LENGTHS) {
+            byte[] query = new byte[length];
+            byte[] codes = new byte[2 * length];
+            for (int i = 0; i < query.length; i++) {
+                query[i] = (byte) random.nextInt(-127, 128);
+            }
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = (byte) random.nextInt(-127, 128);
+            }
+
+            assertEquals(scalar.dot(query, codes, 1), narrow.dot(query, codes, 1), "128-bit at " + length);
+        }
+        float[] a = randomVector(random, 768);
+        assertEquals(scalar.dot(a, a), narrow.dot(a, a), 1e-4);
+    }
+
+    @Test
+    void get_picksAWorkingKernel() {
+        SimilarityKernel kernel = SimilarityKernels.get();
+
+        assertSame(kernel, SimilarityKernels.get());
+        assertEquals(2f, kernel.dot(new float[]{1f, 1f}, new float[]{1f, 1f}));
+    }
+
+    private static List<SimilarityKernel> kernels() {
+        List<SimilarityKernel> kernels = new ArrayList<>();
+        kernels.add(SimilarityKernels.scalar());
+        // Only when the JVM runs with --add-modules jdk.incubator.vector
+        SimilarityKernel vectorApi = SimilarityKernels.vectorApi();
+        if (vectorApi != null) {
+            kernels.add(vectorApi);
+        }
+        return kernels;
+    }
+
+    private static float[] randomVector(SplittableRandom random, int length) {
+        float[] v = new float[length];
+        double norm = 0;
+        for (int i = 0; i < length; i++) {
+            v[i] = (float) random.nextDouble(-1, 1);
+            norm += v[i] * v[i];
+        }
+        for (int i = 0; i < length; i++) {
+            v[i] /= (float) Math.sqrt(norm);
+        }
+        return v;
+    }
+
+    private static double reference(float[] query, float[] other, int offset) {
+        double dot = 0;
+        for (int i = 0; i < query.length; i++) {
+            dot += (double) query[i] * other[offset + i];
+        }
+        return dot;
+    }
+}